@@ -123,4 +123,28 @@ public class Triangle3d {
 
 	}
 
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + point1.hashCode();
+		result = prime * result + point2.hashCode();
+		result = prime * result + point3.hashCode();
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null) {
+			return false;
+		}
+		if (getClass() != obj.getClass()) {
+			return false;
+		}
+		Triangle3d other = (Triangle3d) obj;
+		return point1.equals(other.point1) && point2.equals(other.point2) && point3.equals(other.point3);
+	}
 }
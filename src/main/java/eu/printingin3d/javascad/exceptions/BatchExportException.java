@@ -0,0 +1,49 @@
+package eu.printingin3d.javascad.exceptions;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>Thrown when some of the files of a batch export could not be saved. The other files of the batch have
+ * been saved anyway.</p>
+ * <p>The first failure is the cause of this exception, the others are added as suppressed exceptions, and
+ * {@link #getFailures()} tells which file failed with which exception.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public class BatchExportException extends IOException {
+	private static final long serialVersionUID = 2470317398117617349L;
+
+	private final transient Map<File, Exception> failures;
+
+	/**
+	 * Constructs the exception with the given failures.
+	 * @param failures the files could not be saved and the exceptions they failed with, in the order
+	 * 		of the files of the batch
+	 * @param numberOfFiles the number of files in the batch
+	 */
+	public BatchExportException(Map<File, Exception> failures, int numberOfFiles) {
+		super(failures.size()+" of the "+numberOfFiles+" files could not be saved: "+failures.keySet(),
+				failures.isEmpty() ? null : failures.values().iterator().next());
+		this.failures = Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+		boolean first = true;
+		for (Exception e : failures.values()) {
+			if (!first) {
+				addSuppressed(e);
+			}
+			first = false;
+		}
+	}
+
+	/**
+	 * Returns the files could not be saved and the exceptions they failed with.
+	 * @return the files could not be saved and the exceptions they failed with, in the order of the files
+	 * 		of the batch
+	 */
+	public Map<File, Exception> getFailures() {
+		return failures;
+	}
+}
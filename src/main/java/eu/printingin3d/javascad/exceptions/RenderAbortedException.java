@@ -0,0 +1,49 @@
+package eu.printingin3d.javascad.exceptions;
+
+/**
+ * Thrown when a rendering has been stopped by its {@link eu.printingin3d.javascad.vrl.RenderHandle}: it has
+ * been cancelled, it has run out of time or it has processed more polygons than allowed.
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public class RenderAbortedException extends RuntimeException {
+	private static final long serialVersionUID = -3269014578023615172L;
+
+	/**
+	 * The reasons a rendering can be stopped for.
+	 */
+	public enum Reason {
+		/**
+		 * The rendering has been cancelled.
+		 */
+		CANCELLED,
+		/**
+		 * The deadline of the rendering has passed.
+		 */
+		DEADLINE_EXCEEDED,
+		/**
+		 * The rendering has processed more polygons than its budget.
+		 */
+		POLYGON_BUDGET_EXCEEDED
+	}
+
+	private final Reason reason;
+
+	/**
+	 * Constructs the exception with the given message and reason.
+	 * @param message the message of the new exception
+	 * @param reason the reason the rendering has been stopped for
+	 */
+	public RenderAbortedException(String message, Reason reason) {
+		super(message);
+		this.reason = reason;
+	}
+
+	/**
+	 * Returns the reason the rendering has been stopped for.
+	 * @return the reason the rendering has been stopped for
+	 */
+	public Reason getReason() {
+		return reason;
+	}
+}
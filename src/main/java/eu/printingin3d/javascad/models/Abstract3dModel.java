@@ -10,6 +10,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 
 import eu.printingin3d.javascad.context.IColorGenerationContext;
@@ -21,8 +22,10 @@ import eu.printingin3d.javascad.enums.Plane;
 import eu.printingin3d.javascad.enums.Side;
 import eu.printingin3d.javascad.exceptions.IllegalValueException;
 import eu.printingin3d.javascad.tranform.TransformationFactory;
+import eu.printingin3d.javascad.tranform.TransformationMatrix;
 import eu.printingin3d.javascad.tranzitions.Colorize;
 import eu.printingin3d.javascad.tranzitions.Difference;
+import eu.printingin3d.javascad.tranzitions.InstanceArray;
 import eu.printingin3d.javascad.tranzitions.Rotate;
 import eu.printingin3d.javascad.tranzitions.Translate;
 import eu.printingin3d.javascad.tranzitions.Union;
@@ -30,6 +33,8 @@ import eu.printingin3d.javascad.utils.AssertValue;
 import eu.printingin3d.javascad.utils.RoundProperties;
 import eu.printingin3d.javascad.vrl.CSG;
 import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+import eu.printingin3d.javascad.vrl.LazyCSG;
+import eu.printingin3d.javascad.vrl.RenderSession;
 
 /**
  * <p>Immutable implementation of IModel interface and adds convenient methods to make it easier to move or rotate
@@ -47,6 +52,10 @@ public abstract class Abstract3dModel implements IModel {
 	private boolean background = false;
 	private final Map<Plane, RoundProperties> roundingPlane = new HashMap<>();
 	private final Set<String> annotations = new HashSet<>();
+	private int hash = 0;
+	private int localHash = 0;
+	private Boolean structurallyCacheable = null;
+	private int[] subtreeTags = null;
 	
 	/**
 	 * Moves this object by the given coordinates. This object won't be changed, but a new object will be created.
@@ -60,17 +69,17 @@ public abstract class Abstract3dModel implements IModel {
 	}
 
 	/**
-	 * <p>Add moves to this model, which converts this to an {@link Union}, representing more than one model.</p>
+	 * <p>Add moves to this model, which converts this to an {@link Union}, representing more than one model.
+	 * The union is an {@link InstanceArray}, which renders this model only once during the CSG rendering.</p>
 	 * @param delta the collection of coordinates used by the move operation
 	 * @return a new object which holds the moved objects
 	 */
 	public Abstract3dModel moves(Collection<Coords3d> delta) {
+		if (delta.size()==1) {
+			return this.move(delta.iterator().next());
+		}
 		if (!delta.isEmpty()) {
-            Abstract3dModel result = new Empty3dModel();
-			for (Coords3d c : delta) {
-                result = result.addModel(this.move(c));
-			}
-			return result;
+			return InstanceArray.moves(this, delta);
 		}
 		return this;
 	}
@@ -142,17 +151,14 @@ public abstract class Abstract3dModel implements IModel {
 	
 	/**
 	 * Add rotates to this model, which converts this to an {@link Union}, representing more than one model.
+	 * The union is an {@link InstanceArray}, which renders this model only once during the CSG rendering.
 	 * This object won't be changed.  
 	 * @param delta the collection of angles used by the rotate operation
 	 * @return a new object which holds the moved objects
 	 */
 	public Abstract3dModel rotates(Collection<Angles3d> delta) {
 		if (!delta.isEmpty()) {
-			List<Abstract3dModel> newModels = new ArrayList<>();
-			for (Angles3d c : delta) {
-				newModels.add(this.rotate(c));
-			}
-			return new Union(newModels);
+			return InstanceArray.rotates(this, delta);
 		}
 		return this;
 	}
@@ -251,6 +257,208 @@ public abstract class Abstract3dModel implements IModel {
 
 	protected abstract Abstract3dModel innerCloneModel();
 	
+	/**
+	 * <p>Returns the structural hash code of this model. It is calculated from the state stored by this class
+	 * - the moves, rotations, tag, flags, roundings and annotations - the class of the model and 
+	 * {@link #innerHashCode()}, which includes the hash code of the children of the model. As the models are
+	 * immutable the hash code is calculated only once for every object, so calculating it for a model tree
+	 * visits every node only once, and calculating it again for a new tree containing unchanged subtrees
+	 * costs only the changed nodes.</p>
+	 * <p>The hash code of the built-in models does not depend on the identity of the objects, so it is the
+	 * same across JVM runs. The subclasses which don't override {@link #innerHashCode()} use the identity of
+	 * the object, so their hash code and the hash code of every tree containing them changes between JVM 
+	 * runs: these models are not structurally cacheable, they can be cached only in the memory.</p>
+	 * <p>The subclasses may override this method and {@link #equals(Object)}, but the caches of the rendering
+	 * always use the structural comparison of the models.</p>
+	 * @return the structural hash code of the model
+	 */
+	@Override
+	public int hashCode() {
+		int result = hash;
+		if (result==0) {
+			final int prime = 31;
+			result = prime * (prime * localHashCode() + move.hashCode()) + rotate.hashCode();
+			// zero marks the hash code which has not been calculated yet
+			if (result==0) {
+				result = 1;
+			}
+			hash = result;
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the hash code of this model without its own moves and rotations, which is the hash code of
+	 * the model in its local frame. It is calculated only once for every object.
+	 */
+	final int localHashCode() {
+		int result = localHash;
+		if (result==0) {
+			result = calculateLocalHashCode();
+			if (result==0) {
+				result = 1;
+			}
+			localHash = result;
+		}
+		return result;
+	}
+	
+	private int calculateLocalHashCode() {
+		final int prime = 31;
+		int result = getClass().getName().hashCode();
+		result = prime * result + tag;
+		result = prime * result + Boolean.hashCode(debug);
+		result = prime * result + Boolean.hashCode(background);
+		// the hash code of the enum keys are not stable across JVM runs, but the values contain the plane too
+		int rounding = 0;
+		for (RoundProperties rp : roundingPlane.values()) {
+			rounding += rp.hashCode();
+		}
+		result = prime * result + rounding;
+		result = prime * result + annotations.hashCode();
+		result = prime * result + innerHashCode();
+		return result;
+	}
+	
+	/**
+	 * <p>Returns true if the given object is a model of the same class with the same structure: the same 
+	 * moves, rotations, tag, flags, roundings and annotations, and {@link #innerEquals(Abstract3dModel)} 
+	 * returns true. Two equal models generate the same OpenSCAD and CSG representation.</p>
+	 * <p>The hash codes are compared first, so the comparison of different models usually returns without
+	 * visiting the subtrees, and the identical subtrees are not visited either.</p>
+	 * @param obj the object to be compared with
+	 * @return true if the given object is structurally equal to this model
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof Abstract3dModel)) {
+			return false;
+		}
+		Abstract3dModel other = (Abstract3dModel) obj;
+		return hashCode() == other.hashCode() &&
+				move.equals(other.move) &&
+				rotate.equals(other.rotate) &&
+				localEquals(other);
+	}
+	
+	/**
+	 * Returns true if the given model is equal to this model apart from their own moves and rotations, which
+	 * means the two models are the same in their local frame.
+	 */
+	final boolean localEquals(Abstract3dModel other) {
+		if (this == other) {
+			return true;
+		}
+		if (getClass() != other.getClass()) {
+			return false;
+		}
+		return localHashCode() == other.localHashCode() &&
+				tag == other.tag &&
+				debug == other.debug &&
+				background == other.background &&
+				roundingPlane.equals(other.roundingPlane) &&
+				annotations.equals(other.annotations) &&
+				innerEquals(other);
+	}
+	
+	/**
+	 * <p>Returns the hash code of the state stored by the subclass - the children should be included by 
+	 * their {@link #hashCode()}, which is calculated only once. It must not depend on the identity of 
+	 * the objects to keep the hash code the same across JVM runs.</p>
+	 * <p>The default implementation is based on the identity of the object, which makes the model and the
+	 * trees containing it not structurally cacheable. The subclasses should override this method and 
+	 * {@link #innerEquals(Abstract3dModel)} together.</p>
+	 * @return the hash code of the state stored by the subclass
+	 */
+	protected int innerHashCode() {
+		return System.identityHashCode(this);
+	}
+	
+	/**
+	 * <p>Returns true if the state stored by the subclass is the same in the given model. The given model
+	 * is always an object of the same class as this object.</p>
+	 * <p>The default implementation is based on the identity of the object, so the objects of the 
+	 * subclasses which don't override this method are equal only to themselves.</p>
+	 * @param other the model to be compared with
+	 * @return true if the state stored by the subclass is the same in the given model
+	 */
+	protected boolean innerEquals(Abstract3dModel other) {
+		return this == other;
+	}
+	
+	/**
+	 * <p>Returns the digest of the content this model reads from outside of the model tree - for example
+	 * the content of an imported file - which is not described by its OpenSCAD representation. The disk
+	 * cache of the rendered CSG uses it to notice when that content changes between two runs.</p>
+	 * <p>The default implementation returns null, which means the model is described completely by its
+	 * OpenSCAD representation.</p>
+	 * @return the digest of the external content or null if there is no such content
+	 */
+	protected String getContentDigest() {
+		return null;
+	}
+	
+	/**
+	 * Returns true if the structural hash code of this model and all of its descendants is the same across 
+	 * JVM runs, so the rendered CSG can be stored by it in the disk cache. It is calculated only once for 
+	 * every object.
+	 */
+	final boolean isStructurallyCacheable() {
+		Boolean result = structurallyCacheable;
+		if (result==null) {
+			boolean cacheable = StableHashCodes.isStable(getClass()) && hasStableInnerState();
+			for (Abstract3dModel child : getChildrenModels()) {
+				cacheable = cacheable && child.isStructurallyCacheable();
+			}
+			result = Boolean.valueOf(cacheable);
+			structurallyCacheable = result;
+		}
+		return result.booleanValue();
+	}
+	
+	/**
+	 * Returns true if the hash code of the state stored by the subclass apart from the children is the same
+	 * across JVM runs. The models containing 2D models have to check the classes of those.
+	 */
+	boolean hasStableInnerState() {
+		return true;
+	}
+	
+	/**
+	 * Returns the tags used by the descendants of this model in ascending order. It is calculated only once
+	 * for every object.
+	 */
+	private int[] getSubtreeTags() {
+		int[] result = subtreeTags;
+		if (result==null) {
+			Set<Integer> tags = new TreeSet<>();
+			for (Abstract3dModel child : getChildrenModels()) {
+				if (child.tag!=0) {
+					tags.add(Integer.valueOf(child.tag));
+				}
+				for (int t : child.getSubtreeTags()) {
+					tags.add(Integer.valueOf(t));
+				}
+			}
+			result = tags.stream().mapToInt(Integer::intValue).toArray();
+			subtreeTags = result;
+		}
+		return result;
+	}
+	
+	private void appendContentDigests(StringBuilder sb) {
+		String digest = getContentDigest();
+		if (digest!=null) {
+			sb.append('\n').append(digest);
+		}
+		for (Abstract3dModel child : getChildrenModels()) {
+			child.appendContentDigests(sb);
+		}
+	}
+	
 	/**
 	 * Generates the OpenSCAD representation of the model without.
 	 * and moves or rotations 
@@ -470,11 +678,120 @@ public abstract class Abstract3dModel implements IModel {
 	
 	protected abstract CSG toInnerCSG(FacetGenerationContext context);
 	
+	/**
+	 * Returns true if {@link #toInnerCSG} renders this model directly in the transformed space if it gets
+	 * a context with an accumulated transformation, see 
+	 * {@link eu.printingin3d.javascad.vrl.CsgOptions#withTransformFusion(boolean)}. It is true for the models
+	 * which only combine the CSG of their children, so the transformation can be pushed down to the
+	 * children. For the others - the default - the context of {@link #toInnerCSG} is cleared from the
+	 * transformation and the result is transformed afterwards.
+	 * @return true if the accumulated transformation can be pushed down to the children of this model
+	 */
+	protected boolean isTransformationPushedDown() {
+		return false;
+	}
+	
 	@Override
 	public final CSG toCSG(FacetGenerationContext aContext) {
+		RenderSession<? super Abstract3dModel> session = aContext.getRenderSession(Abstract3dModel.class);
+		if (session!=null) {
+			FacetGenerationContext local = aContext.withoutTransformation();
+			CSG csg = session.render(this, local, () -> toCachedInnerCSG(local.applyTag(tag)));
+			return aContext.transform(place(csg));
+		}
+		
+		FacetGenerationContext context = aContext.applyTag(tag);
+		
+		if (context.getCsgOptions().isTransformFusion()) {
+			return toFusedCSG(context);
+		}
+		
+		return place(toCachedInnerCSG(context));
+	}
+	
+	/**
+	 * Moves the CSG rendered in the local frame of this model to the frame of its parent.
+	 */
+	private CSG place(CSG localCsg) {
+		CSG csg = localCsg;
+		if (!rotate.isZero()) {
+			csg = csg.transformed(TransformationFactory.getRotationMatrix(rotate));
+		}
+		
+		if (!move.isZero()) {
+			csg = csg.transformed(TransformationFactory.getTranlationMatrix(move));
+		}
+		
+		return csg;
+	}
+	
+	private CSG toFusedCSG(FacetGenerationContext context) {
+		FacetGenerationContext inner = context.applyTransformation(getLocalTransformation());
+		
+		if (isTransformationPushedDown()) {
+			return toInnerCSG(inner);
+		}
+		
+		return inner.transform(toCachedInnerCSG(inner.withoutTransformation()));
+	}
+	
+	/**
+	 * Renders this model in its local frame through the cache of the context, see 
+	 * {@link FacetGenerationContext#setCsgCache(eu.printingin3d.javascad.vrl.CsgCache)}. The model without
+	 * its own moves and rotations is used as the key of the result together with the colors of the tags
+	 * used by its descendants. The disk cache gets the SCAD representation of the model, its hash code, 
+	 * which tells apart the models differing below the precision of the SCAD output, the tag colors and the
+	 * digests of the external content used by the subtree, see {@link #getContentDigest()}. The models which
+	 * are not structurally cacheable are cached only in the memory.
+	 */
+	private CSG toCachedInnerCSG(FacetGenerationContext context) {
+		if (context.getCsgCache()==null) {
+			return toInnerCSG(context);
+		}
+		
+		int[] tags = getSubtreeTags();
+		List<Color> tagColors = new ArrayList<>();
+		for (int t : tags) {
+			tagColors.add(context.getTagColor(t));
+		}
+		return context.renderCached(new LocalStructure(this, tagColors), () -> {
+			if (!isStructurallyCacheable()) {
+				return null;
+			}
+			SCAD structure = innerToScad(context);
+			if (structure==null) {
+				return null;
+			}
+			StringBuilder sb = new StringBuilder(structure.getScad());
+			sb.append('\n').append(Integer.toHexString(localHashCode()));
+			for (int i=0;i<tags.length;i++) {
+				Color color = tagColors.get(i);
+				sb.append('\n').append(tags[i]).append('=')
+					.append(color==null ? "-" : Integer.toHexString(color.getRGB()));
+			}
+			appendContentDigests(sb);
+			return sb.toString();
+		}, () -> toInnerCSG(context));
+	}
+	
+	private TransformationMatrix getLocalTransformation() {
+		if (rotate.isZero()) {
+			return move.isZero() ? null : TransformationFactory.getTranlationMatrix(move);
+		}
+		
+		return TransformationFactory.getRotationAndTranslationMatrix(rotate, move);
+	}
+	
+	/**
+	 * Creates the CSG expression of this model. The models are rendered only when the expression
+	 * is evaluated, see {@link LazyCSG}. The evaluation gives the same result as {@link #toCSG}.
+	 * @param aContext the context to be used during the generation process
+	 * @return the CSG expression of this model
+	 */
+	public final LazyCSG toLazyCSG(FacetGenerationContext aContext) {
 		FacetGenerationContext context = aContext.applyTag(tag);
 		
-		CSG csg = toInnerCSG(context);
+		LazyCSG csg = toInnerLazyCSG(context);
 		
 		if (!rotate.isZero()) {
 			csg = csg.transformed(TransformationFactory.getRotationMatrix(rotate));
@@ -487,6 +804,32 @@ public abstract class Abstract3dModel implements IModel {
 		return csg;
 	}
 	
+	/**
+	 * Creates the CSG expression of this model without the rotation and the move. The default
+	 * implementation defers the {@link #toInnerCSG} call, and gives the boundaries of the model to the
+	 * expression, so the model is not rendered if it is separated from the other operands. The models built
+	 * from other models can override it to record their operation.
+	 * @param context the context to be used during the generation process
+	 * @return the CSG expression of this model
+	 */
+	protected LazyCSG toInnerLazyCSG(FacetGenerationContext context) {
+		return LazyCSG.deferred(() -> toCachedInnerCSG(context), getLocalBoundaries());
+	}
+	
+	/**
+	 * Returns the boundaries of the model without its own moves and rotations or null if they are unknown.
+	 */
+	private Boundaries3d getLocalBoundaries() {
+		Boundaries3d boundaries = getModelBoundaries();
+		if (boundaries==null || boundaries==Boundaries3d.EMPTY) {
+			return boundaries;
+		}
+		for (RoundProperties rp : roundingPlane.values()) {
+			boundaries = boundaries.add(rp.getRoundingSize());
+		}
+		return boundaries;
+	}
+	
 	/**
 	 * Renders this model to its CSG interpretation - convenient method which used the default
 	 * generation context.
@@ -592,4 +935,36 @@ public abstract class Abstract3dModel implements IModel {
 	protected boolean isBackground() {
 		return background;
 	}
+	
+	/**
+	 * Wraps a model to compare it without its own moves and rotations, so the copies of the same subtree 
+	 * placed at different positions are equal. The colors of the tags used by the descendants of the model
+	 * are compared too.
+	 */
+	private static final class LocalStructure {
+		private final Abstract3dModel model;
+		private final List<Color> tagColors;
+		
+		private LocalStructure(Abstract3dModel model, List<Color> tagColors) {
+			this.model = model;
+			this.tagColors = tagColors;
+		}
+		
+		@Override
+		public int hashCode() {
+			return 31 * model.localHashCode() + tagColors.hashCode();
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			LocalStructure other = (LocalStructure) obj;
+			return tagColors.equals(other.tagColors) && model.localEquals(other.model);
+		}
+	}
 }
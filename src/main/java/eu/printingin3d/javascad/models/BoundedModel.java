@@ -56,6 +56,11 @@ public class BoundedModel extends Complex3dModel {
 		return baseModel.toCSG(context);
 	}
 
+	@Override
+	protected boolean isTransformationPushedDown() {
+		return true;
+	}
+
 	@Override
 	protected Abstract3dModel innerSubModel(IScadGenerationContext context) {
 		Abstract3dModel subModel = baseModel.subModel(context);
@@ -66,4 +71,21 @@ public class BoundedModel extends Complex3dModel {
     protected List<Abstract3dModel> getChildrenModels() {
         return Collections.singletonList(baseModel);
     }
+
+	@Override
+	protected int innerHashCode() {
+		final int prime = 31;
+		int result = baseModel.hashCode();
+		result = prime * result + boundaries3d.getMinCorner().hashCode();
+		result = prime * result + boundaries3d.getMaxCorner().hashCode();
+		return result;
+	}
+
+	@Override
+	protected boolean innerEquals(Abstract3dModel other) {
+		BoundedModel o = (BoundedModel) other;
+		return baseModel.equals(o.baseModel) &&
+				boundaries3d.getMinCorner().equals(o.boundaries3d.getMinCorner()) &&
+				boundaries3d.getMaxCorner().equals(o.boundaries3d.getMaxCorner());
+	}
 }
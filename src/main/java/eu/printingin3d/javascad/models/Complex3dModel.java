@@ -1,5 +1,14 @@
 package eu.printingin3d.javascad.models;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import eu.printingin3d.javascad.tranform.TransformationMatrix;
+import eu.printingin3d.javascad.vrl.CSG;
+import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+
 /**
  * This class represents a complex 3D model which consists of several primitive models.
  * Every transition is a descendant of this class.
@@ -11,4 +20,65 @@ public abstract class Complex3dModel extends Abstract3dModel {
 	protected final boolean isPrimitive() {
 		return false;
 	}
+	
+	/**
+	 * Renders the given model transformed by the given transformation. If the transform fusion is turned on
+	 * the transformation is only added to the context, so it will be applied together with the other
+	 * transformations at the primitives, otherwise the rendered CSG is transformed.
+	 * @param model the model to be rendered
+	 * @param context the context to be used during the generation process
+	 * @param transformation the transformation to be applied
+	 * @return the transformed CSG of the model
+	 */
+	protected final CSG toTransformedCSG(Abstract3dModel model, FacetGenerationContext context,
+			TransformationMatrix transformation) {
+		if (context.getCsgOptions().isTransformFusion()) {
+			return model.toCSG(context.applyTransformation(transformation));
+		}
+		return model.toCSG(context).transformed(transformation);
+	}
+
+	/**
+	 * <p>Renders the given models with the given context. If a render pool is set by
+	 * {@link eu.printingin3d.javascad.vrl.CsgOptions#withRenderPool(ForkJoinPool)} the models are rendered
+	 * as fork/join tasks of that pool, otherwise they are rendered one after the other on the calling
+	 * thread.</p>
+	 * <p>The results are in the same order as the models, regardless of the order the tasks finish.</p>
+	 * @param models the models to be rendered
+	 * @param context the context to be used during the generation process
+	 * @return the CSG of the models in the same order as the models were given
+	 */
+	protected final List<CSG> toCSGs(List<Abstract3dModel> models, FacetGenerationContext context) {
+		ForkJoinPool pool = context.getCsgOptions().getRenderPool();
+		if (pool==null || models.size()<2) {
+			List<CSG> result = new ArrayList<>();
+			for (Abstract3dModel model : models) {
+				result.add(model.toCSG(context));
+			}
+			return result;
+		}
+		if (ForkJoinTask.getPool()!=pool) {
+			return pool.invoke(ForkJoinTask.adapt(() -> toCSGs(models, context)));
+		}
+
+		List<ForkJoinTask<CSG>> tasks = new ArrayList<>();
+		for (Abstract3dModel model : models.subList(1, models.size())) {
+			tasks.add(ForkJoinTask.adapt(() -> model.toCSG(context)).fork());
+		}
+		List<CSG> result = new ArrayList<>();
+		try {
+			result.add(models.get(0).toCSG(context));
+			for (ForkJoinTask<CSG> task : tasks) {
+				result.add(task.join());
+			}
+		}
+		catch (RuntimeException e) {
+			// the tasks not started yet are useless, the rendering has failed anyway
+			for (ForkJoinTask<CSG> task : tasks) {
+				task.cancel(false);
+			}
+			throw e;
+		}
+		return result;
+	}
 }
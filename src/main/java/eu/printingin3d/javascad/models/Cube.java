@@ -104,4 +104,14 @@ public class Cube extends Atomic3dModel {
         
 		return new CSG(polygons);
 	}
+
+	@Override
+	protected int innerHashCode() {
+		return size.hashCode();
+	}
+
+	@Override
+	protected boolean innerEquals(Abstract3dModel other) {
+		return size.equals(((Cube) other).size);
+	}
 }
@@ -157,4 +157,21 @@ public class Cylinder extends Atomic3dModel {
     private Coords3d cylPoint(double z, Radius r, double slice) {
         return r.toCoordinate(Angle.A360.mul(slice)).withZ(z);
     }
+
+	@Override
+	protected int innerHashCode() {
+		final int prime = 31;
+		int result = DoubleUtils.hashCodeEps(length);
+		result = prime * result + bottomRadius.hashCode();
+		result = prime * result + topRadius.hashCode();
+		return result;
+	}
+
+	@Override
+	protected boolean innerEquals(Abstract3dModel other) {
+		Cylinder o = (Cylinder) other;
+		return DoubleUtils.equalsEps(length, o.length) &&
+				bottomRadius.equals(o.bottomRadius) &&
+				topRadius.equals(o.topRadius);
+	}
 }
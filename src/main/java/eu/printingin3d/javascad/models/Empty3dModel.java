@@ -50,4 +50,14 @@ public class Empty3dModel extends Atomic3dModel {
 	public Abstract3dModel subtractModel(Abstract3dModel model) {
 		return this;
 	}
+
+	@Override
+	protected int innerHashCode() {
+		return 0;
+	}
+
+	@Override
+	protected boolean innerEquals(Abstract3dModel other) {
+		return true;
+	}
 }
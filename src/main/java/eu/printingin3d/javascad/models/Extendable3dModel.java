@@ -44,6 +44,11 @@ public abstract class Extendable3dModel extends Complex3dModel {
 	protected CSG toInnerCSG(FacetGenerationContext context) {
 		return baseModel.toCSG(context);
 	}
+
+	@Override
+	protected boolean isTransformationPushedDown() {
+		return true;
+	}
 	
 	@Override
 	protected Abstract3dModel innerSubModel(IScadGenerationContext context) {
@@ -65,4 +70,14 @@ public abstract class Extendable3dModel extends Complex3dModel {
     protected List<Abstract3dModel> getChildrenModels() {
         return Collections.singletonList(baseModel);
     }
+
+	@Override
+	protected int innerHashCode() {
+		return baseModel.hashCode();
+	}
+
+	@Override
+	protected boolean innerEquals(Abstract3dModel other) {
+		return baseModel.equals(((Extendable3dModel) other).baseModel);
+	}
 }
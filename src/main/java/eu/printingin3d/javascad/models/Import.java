@@ -6,6 +6,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -21,10 +23,12 @@ import eu.printingin3d.javascad.coords.Triangle3d;
  */
 public class Import extends Polyhedron {
 	private final File file;
+	private final String digest;
 	
-	private Import(File file, List<Triangle3d> triangles) {
+	private Import(File file, List<Triangle3d> triangles, String digest) {
 		super(triangles);
 		this.file = file;
+		this.digest = digest;
 	}
 	
 	/**
@@ -38,7 +42,7 @@ public class Import extends Polyhedron {
 	}
 	
 	protected Import(File file, byte[] bytes) {
-		this(file, parseBytes(bytes));
+		this(file, parseBytes(bytes), digest(bytes));
 	}
 	
 	private static byte[] readFile(File file) throws IOException {
@@ -49,6 +53,20 @@ public class Import extends Polyhedron {
 		return bFile;
 	}
 	
+	private static String digest(byte[] bFile) {
+		try {
+			StringBuilder sb = new StringBuilder("sha256:");
+			for (byte b : MessageDigest.getInstance("SHA-256").digest(bFile)) {
+				sb.append(String.format("%02x", Integer.valueOf(b & 0xff)));
+			}
+			return sb.toString();
+		}
+		catch (NoSuchAlgorithmException e) {
+			// every Java platform has to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+	
 	private static List<Triangle3d> parseBytes(byte[] bFile) {
 		ByteBuffer buffer = ByteBuffer.wrap(bFile).order(ByteOrder.LITTLE_ENDIAN);
 		buffer.position(80);
@@ -73,11 +91,26 @@ public class Import extends Polyhedron {
 	
 	@Override
 	protected Abstract3dModel innerCloneModel() {
-		return new Import(file, triangles);
+		return new Import(file, triangles, digest);
 	}
 
 	@Override
 	protected SCAD innerToScad(IColorGenerationContext context) {
 		return new SCAD("import(\""+file.getAbsolutePath().replace("\\", "\\\\")+"\", convexity=10);");
 	}
+
+	@Override
+	protected String getContentDigest() {
+		return digest;
+	}
+
+	@Override
+	protected int innerHashCode() {
+		return 31 * super.innerHashCode() + file.hashCode();
+	}
+
+	@Override
+	protected boolean innerEquals(Abstract3dModel other) {
+		return super.innerEquals(other) && file.equals(((Import) other).file);
+	}
 }
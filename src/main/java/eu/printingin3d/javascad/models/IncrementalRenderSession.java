@@ -0,0 +1,182 @@
+package eu.printingin3d.javascad.models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import eu.printingin3d.javascad.utils.AssertValue;
+import eu.printingin3d.javascad.vrl.CSG;
+import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+import eu.printingin3d.javascad.vrl.RenderSession;
+
+/**
+ * <p>Renders the successive versions of a model and reuses the results of the subtrees which have not been
+ * changed between the versions. The session keeps the rendered CSG of every node of the last rendered
+ * model. When a new version is rendered the nodes structurally equal to a node of the previous version -
+ * see {@link Abstract3dModel#equals(Object)} - are not rendered again, so only the changed nodes and their
+ * ancestors are rendered. A subtree appearing more than once in the model is rendered only once too.</p>
+ * <p>The results are kept in the local frame of the nodes - without their own moves and rotations - so
+ * a node which has only been moved or rotated is reused too, only its result is transformed again.</p>
+ * <p>After every rendering {@link #getReusedModels()} and {@link #getRenderedModels()} tell which nodes
+ * have been reused and which ones have been rendered, so the cost of a change can be checked.</p>
+ * <p>The transform fusion - see {@link eu.printingin3d.javascad.vrl.CsgOptions#withTransformFusion(boolean)}
+ * - has no effect in a session, because the results have to be independent of the position of the node.
+ * The results depend on the settings of the context given to the constructor, so {@link #reset()} has to
+ * be called if the settings of that context are changed.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public final class IncrementalRenderSession implements RenderSession<Abstract3dModel> {
+	private final FacetGenerationContext context;
+	private Map<Key, CSG> previousResults = Collections.emptyMap();
+	private Map<Key, CSG> results = new ConcurrentHashMap<>();
+	private List<Abstract3dModel> reused = Collections.synchronizedList(new ArrayList<>());
+	private List<Abstract3dModel> rendered = Collections.synchronizedList(new ArrayList<>());
+
+	/**
+	 * Creates a session which uses the default context.
+	 */
+	public IncrementalRenderSession() {
+		this(FacetGenerationContext.DEFAULT);
+	}
+
+	/**
+	 * Creates a session which renders the models with the given context.
+	 * @param context the context used by the renderings
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if the context is null
+	 */
+	public IncrementalRenderSession(FacetGenerationContext context) {
+		AssertValue.isNotNull(context, "The context of the session must not be null!");
+
+		this.context = context;
+	}
+
+	/**
+	 * Renders the given model and reuses the results of the previous rendering wherever possible. Only
+	 * the results of the nodes of this model are kept for the next rendering. If the rendering fails the
+	 * results of the previous rendering are kept too.
+	 * @param model the model to be rendered
+	 * @return the CSG interpretation of the model
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if the model is null
+	 */
+	public synchronized CSG render(Abstract3dModel model) {
+		AssertValue.isNotNull(model, "The model to be rendered must not be null!");
+
+		previousResults = results;
+		results = new ConcurrentHashMap<>();
+		reused = Collections.synchronizedList(new ArrayList<>());
+		rendered = Collections.synchronizedList(new ArrayList<>());
+		boolean finished = false;
+		try {
+			CSG csg = model.toCSG(context.withRenderSession(this));
+			finished = true;
+			return csg;
+		}
+		finally {
+			if (!finished) {
+				previousResults.forEach(results::putIfAbsent);
+			}
+			previousResults = Collections.emptyMap();
+		}
+	}
+
+	@Override
+	public Class<Abstract3dModel> getModelType() {
+		return Abstract3dModel.class;
+	}
+
+	@Override
+	public CSG render(Abstract3dModel model, FacetGenerationContext context, Supplier<CSG> rendering) {
+		Key key = new Key(model, context.getColor().getRGB());
+
+		CSG result = results.get(key);
+		if (result==null) {
+			result = previousResults.get(key);
+			if (result!=null) {
+				results.putIfAbsent(key, result);
+			}
+		}
+		if (result!=null) {
+			reused.add(model);
+			return result;
+		}
+
+		result = rendering.get();
+		rendered.add(model);
+		CSG previous = results.putIfAbsent(key, result);
+		return previous==null ? result : previous;
+	}
+
+	/**
+	 * Returns the roots of the subtrees reused by the last rendering - the unchanged nodes and the nodes
+	 * which have only been moved or rotated. The nodes under them have not been visited at all.
+	 * @return the roots of the reused subtrees
+	 */
+	public List<Abstract3dModel> getReusedModels() {
+		return toModels(reused);
+	}
+
+	/**
+	 * Returns the nodes rendered by the last rendering - the changed nodes and their ancestors.
+	 * @return the rendered nodes in the order their rendering has been finished
+	 */
+	public List<Abstract3dModel> getRenderedModels() {
+		return toModels(rendered);
+	}
+
+	private static List<Abstract3dModel> toModels(List<Abstract3dModel> list) {
+		synchronized (list) {
+			return new ArrayList<>(list);
+		}
+	}
+
+	/**
+	 * Returns the number of results kept by the session.
+	 * @return the number of results kept by the session
+	 */
+	public int size() {
+		return results.size();
+	}
+
+	/**
+	 * Drops all the results kept by the session, so the next rendering renders every node.
+	 */
+	public synchronized void reset() {
+		results = new ConcurrentHashMap<>();
+		reused = Collections.synchronizedList(new ArrayList<>());
+		rendered = Collections.synchronizedList(new ArrayList<>());
+	}
+
+	/**
+	 * The key of a result: the model in its local frame and the color it has been rendered with.
+	 */
+	private static final class Key {
+		private final Abstract3dModel model;
+		private final int color;
+
+		private Key(Abstract3dModel model, int color) {
+			this.model = model;
+			this.color = color;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * model.localHashCode() + color;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return color == other.color && model.localEquals(other.model);
+		}
+	}
+}
@@ -180,4 +180,28 @@ public class LinearExtrude extends Atomic3dModel {
 		
 		return new CSG(polygons);
 	}
+
+	@Override
+	boolean hasStableInnerState() {
+		return StableHashCodes.isStable(model.getClass());
+	}
+
+	@Override
+	protected int innerHashCode() {
+		final int prime = 31;
+		int result = model.hashCode();
+		result = prime * result + DoubleUtils.hashCodeEps(height);
+		result = prime * result + twist.hashCode();
+		result = prime * result + DoubleUtils.hashCodeEps(scale);
+		return result;
+	}
+
+	@Override
+	protected boolean innerEquals(Abstract3dModel other) {
+		LinearExtrude o = (LinearExtrude) other;
+		return model.equals(o.model) &&
+				DoubleUtils.equalsEps(height, o.height) &&
+				twist.equals(o.twist) &&
+				DoubleUtils.equalsEps(scale, o.scale);
+	}
 }
@@ -127,4 +127,14 @@ public class Polyhedron extends Atomic3dModel {
 		}
 		return new CSG(polygons);
 	}
-}
\ No newline at end of file
+
+	@Override
+	protected int innerHashCode() {
+		return triangles.hashCode();
+	}
+
+	@Override
+	protected boolean innerEquals(Abstract3dModel other) {
+		return triangles.equals(((Polyhedron) other).triangles);
+	}
+}
@@ -93,4 +93,14 @@ public class Prism extends Cylinder {
 	protected Abstract3dModel innerCloneModel() {
 		return new Prism(length, bottomRadius, topRadius, numberOfSides);
 	}
+
+	@Override
+	protected int innerHashCode() {
+		return 31 * super.innerHashCode() + numberOfSides;
+	}
+
+	@Override
+	protected boolean innerEquals(Abstract3dModel other) {
+		return super.innerEquals(other) && numberOfSides==((Prism) other).numberOfSides;
+	}
 }
@@ -67,4 +67,19 @@ public class Ring extends Atomic3dModel {
 		throw new NotImplementedException();
 	}
 
+	@Override
+	boolean hasStableInnerState() {
+		return StableHashCodes.isStable(model.getClass());
+	}
+
+	@Override
+	protected int innerHashCode() {
+		return 31 * radius.hashCode() + model.hashCode();
+	}
+
+	@Override
+	protected boolean innerEquals(Abstract3dModel other) {
+		Ring o = (Ring) other;
+		return radius.equals(o.radius) && model.equals(o.model);
+	}
 }
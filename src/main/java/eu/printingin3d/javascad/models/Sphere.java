@@ -108,4 +108,14 @@ public class Sphere extends Atomic3dModel {
         );
         return dir.mul(r.getRadius());
     }
+
+	@Override
+	protected int innerHashCode() {
+		return r.hashCode();
+	}
+
+	@Override
+	protected boolean innerEquals(Abstract3dModel other) {
+		return r.equals(((Sphere) other).r);
+	}
 }
@@ -0,0 +1,51 @@
+package eu.printingin3d.javascad.models;
+
+import eu.printingin3d.javascad.models2d.Abstract2dModel;
+
+/**
+ * Tells if the structural hash code of a model class is the same across JVM runs. It is true if the class or
+ * one of its super classes overrides the identity-based default of {@code innerHashCode()} and none of them
+ * overrides {@code hashCode()}. The result is calculated only once for every class.
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+final class StableHashCodes {
+	private static final ClassValue<Boolean> STABLE = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			Class<?> base = Abstract2dModel.class.isAssignableFrom(type) ? Abstract2dModel.class :
+				Abstract3dModel.class;
+			boolean inner = false;
+			for (Class<?> c = type; c!=base; c = c.getSuperclass()) {
+				if (declares(c, "hashCode")) {
+					return Boolean.FALSE;
+				}
+				inner |= declares(c, "innerHashCode");
+			}
+			return Boolean.valueOf(inner);
+		}
+	};
+
+	private StableHashCodes() {
+		// prevents creating this class
+	}
+
+	private static boolean declares(Class<?> type, String method) {
+		try {
+			type.getDeclaredMethod(method);
+			return true;
+		}
+		catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns true if the structural hash code of the given class is the same across JVM runs.
+	 * @param type the class of a 2D or 3D model
+	 * @return true if the hash code of the class is the same across JVM runs
+	 */
+	static boolean isStable(Class<?> type) {
+		return STABLE.get(type).booleanValue();
+	}
+}
@@ -11,6 +11,7 @@ import eu.printingin3d.javascad.coords.Dims3d;
 import eu.printingin3d.javascad.enums.AlignType;
 import eu.printingin3d.javascad.enums.Side;
 import eu.printingin3d.javascad.tranzitions.Difference;
+import eu.printingin3d.javascad.utils.DoubleUtils;
 import eu.printingin3d.javascad.vrl.CSG;
 import eu.printingin3d.javascad.vrl.FacetGenerationContext;
 
@@ -141,4 +142,14 @@ public class Support extends Atomic3dModel {
 		return getModel().toCSG(context);
 	}
 
+	@Override
+	protected int innerHashCode() {
+		return 31 * dims.hashCode() + DoubleUtils.hashCodeEps(thickness);
+	}
+
+	@Override
+	protected boolean innerEquals(Abstract3dModel other) {
+		Support o = (Support) other;
+		return dims.equals(o.dims) && DoubleUtils.equalsEps(thickness, o.thickness);
+	}
 }
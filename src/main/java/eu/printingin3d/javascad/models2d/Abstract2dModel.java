@@ -73,4 +73,58 @@ public abstract class Abstract2dModel {
 		}
 		return result;
 	}
+
+	/**
+	 * Returns the structural hash code of this model calculated from its class, its move and 
+	 * {@link #innerHashCode()}. It is the same across JVM runs for all the built-in models, but the 
+	 * subclasses which don't override {@link #innerHashCode()} use the identity of the object.
+	 * @return the structural hash code of the model
+	 */
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = getClass().getName().hashCode();
+		result = prime * result + move.hashCode();
+		result = prime * result + innerHashCode();
+		return result;
+	}
+
+	/**
+	 * Returns true if the given object is a model of the same class with the same move and 
+	 * {@link #innerEquals(Abstract2dModel)} returns true.
+	 * @param obj the object to be compared with
+	 * @return true if the given object is structurally equal to this model
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null || getClass() != obj.getClass()) {
+			return false;
+		}
+		Abstract2dModel other = (Abstract2dModel) obj;
+		return move.equals(other.move) && innerEquals(other);
+	}
+
+	/**
+	 * Returns the hash code of the state stored by the subclass. The default implementation is based on the 
+	 * identity of the object, the subclasses should override this method and 
+	 * {@link #innerEquals(Abstract2dModel)} together.
+	 * @return the hash code of the state stored by the subclass
+	 */
+	protected int innerHashCode() {
+		return System.identityHashCode(this);
+	}
+
+	/**
+	 * Returns true if the state stored by the subclass is the same in the given model, which is always an 
+	 * object of the same class as this object. The default implementation is based on the identity of the
+	 * object.
+	 * @param other the model to be compared with
+	 * @return true if the state stored by the subclass is the same in the given model
+	 */
+	protected boolean innerEquals(Abstract2dModel other) {
+		return this == other;
+	}
 }
@@ -74,4 +74,13 @@ public class Circle extends Abstract2dModel {
         return Collections.singleton(new Area2d(points));
 	}
 
+	@Override
+	protected int innerHashCode() {
+		return radius.hashCode();
+	}
+
+	@Override
+	protected boolean innerEquals(Abstract2dModel other) {
+		return radius.equals(((Circle) other).radius);
+	}
 }
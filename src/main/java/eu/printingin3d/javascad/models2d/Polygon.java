@@ -81,4 +81,13 @@ public class Polygon extends Abstract2dModel {
 		return Collections.singleton(new Area2d(coords));
 	}
 
+	@Override
+	protected int innerHashCode() {
+		return coords.hashCode();
+	}
+
+	@Override
+	protected boolean innerEquals(Abstract2dModel other) {
+		return coords.equals(((Polygon) other).coords);
+	}
 }
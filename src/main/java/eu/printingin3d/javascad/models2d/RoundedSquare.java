@@ -110,4 +110,13 @@ public class RoundedSquare extends Square {
         return Collections.singleton(new Area2d(points));
 	}
 
+	@Override
+	protected int innerHashCode() {
+		return 31 * super.innerHashCode() + radius.hashCode();
+	}
+
+	@Override
+	protected boolean innerEquals(Abstract2dModel other) {
+		return super.innerEquals(other) && radius.equals(((RoundedSquare) other).radius);
+	}
 }
@@ -59,4 +59,14 @@ public class Square extends Abstract2dModel {
 				new Coords2d(-size.getX()/2, +size.getY()/2)
 			)));
 	}
+
+	@Override
+	protected int innerHashCode() {
+		return size.hashCode();
+	}
+
+	@Override
+	protected boolean innerEquals(Abstract2dModel other) {
+		return size.equals(((Square) other).size);
+	}
 }
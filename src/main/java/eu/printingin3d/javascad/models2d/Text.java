@@ -60,4 +60,15 @@ public class Text extends Abstract2dModel {
 	protected Collection<Area2d> getInnerPointCircle(FacetGenerationContext context) {
 		throw new NotImplementedException();
 	}
+
+	@Override
+	protected int innerHashCode() {
+		return 31 * text.hashCode() + size.hashCode();
+	}
+
+	@Override
+	protected boolean innerEquals(Abstract2dModel other) {
+		Text o = (Text) other;
+		return text.equals(o.text) && size.equals(o.size);
+	}
 }
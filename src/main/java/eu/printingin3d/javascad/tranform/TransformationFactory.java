@@ -19,7 +19,7 @@ public final class TransformationFactory {
 	 * @param delta the vector of the move
 	 * @return the transformation representing the move
 	 */
-	public static ITransformation getTranlationMatrix(Abstract3d delta) {
+	public static TransformationMatrix getTranlationMatrix(Abstract3d delta) {
         double[] elemenents = {
                 1, 0, 0, delta.getX(), 
                 0, 1, 0, delta.getY(), 
@@ -33,7 +33,7 @@ public final class TransformationFactory {
 	 * @param angles the vector of the rotation
 	 * @return the transformation representing the rotation
 	 */
-	public static ITransformation getRotationMatrix(Angles3d angles) {
+	public static TransformationMatrix getRotationMatrix(Angles3d angles) {
 		Coords3d x = Coords3d.X.rotate(angles);
 		Coords3d y = Coords3d.Y.rotate(angles);
 		Coords3d z = Coords3d.Z.rotate(angles);
@@ -51,7 +51,7 @@ public final class TransformationFactory {
 	 * @param values the vector to be used for the scaling
 	 * @return the transformation representing the scaling
 	 */
-    public static ITransformation getScaleMatrix(Abstract3d values) {
+    public static TransformationMatrix getScaleMatrix(Abstract3d values) {
     	return getScaleMatrix(values.getX(), values.getY(), values.getZ());
     }
     
@@ -62,7 +62,7 @@ public final class TransformationFactory {
 	 * @param z the scale on the Z axis
 	 * @return the transformation representing the scaling
 	 */
-    public static ITransformation getScaleMatrix(double x, double y, double z) {
+    public static TransformationMatrix getScaleMatrix(double x, double y, double z) {
         double[] elemenents = {
             x, 0, 0, 0, 
             0, y, 0, 0, 
@@ -75,15 +75,26 @@ public final class TransformationFactory {
      * @param direction the direction of the mirroring
      * @return the transformation representing a mirror
      */
-    public static ITransformation getMirrorMatrix(Direction direction) {
+    public static TransformationMatrix getMirrorMatrix(Direction direction) {
     	return getScaleMatrix(direction.getCoords().mul(-2.0).add(new Coords3d(1, 1, 1)));
     }
     
+    /**
+     * Returns with a transformation representing a rotation by the given angles followed by a move by the 
+     * given vector - the transformation of a model which is rotated and moved.
+     * @param angles the vector of the rotation
+     * @param delta the vector of the move
+     * @return the combined transformation
+     */
+    public static TransformationMatrix getRotationAndTranslationMatrix(Angles3d angles, Abstract3d delta) {
+    	return getTranlationMatrix(delta).multiply(getRotationMatrix(angles));
+    }
+    
     /**
      * Creates an identity transformation matrix.
      * @return an identity transformation matrix
      */
-    public static ITransformation getIdentityMatrix() {
+    public static TransformationMatrix getIdentityMatrix() {
     	return getScaleMatrix(1, 1, 1);
     }
 
@@ -4,8 +4,11 @@ import eu.printingin3d.javascad.coords.Coords3d;
 import eu.printingin3d.javascad.utils.AssertValue;
 
 /**
- * A special 4x4 transformation matrix, where the 4th row is always 0,0,0,1. This is enough to represent
- * any 3D transformation and reduce the necessary calculation a lot.
+ * <p>A special 4x4 transformation matrix, where the 4th row is always 0,0,0,1. This is enough to represent
+ * any 3D transformation and reduce the necessary calculation a lot.</p>
+ * <p>The matrices can be composed, so a chain of transformations can be replaced by one matrix, and a matrix
+ * can be applied in place to many coordinates stored in a packed array, without creating a new object for
+ * every coordinate.</p>
  *  
  * @author ivivan <ivivan@printingin3d.eu>
  */
@@ -29,6 +32,63 @@ public class TransformationMatrix implements ITransformation {
 		return matrix[getValuePosition(row, column)];
 	}
 	
+	/**
+	 * Composes this transformation with the given one. The result is the same as transforming by the given
+	 * transformation first and by this transformation after that.
+	 * @param other the transformation to be applied first
+	 * @return the combined transformation
+	 */
+	public TransformationMatrix multiply(TransformationMatrix other) {
+		double[] result = new double[12];
+		for (int row = 0; row<3; row++) {
+			for (int column = 0; column<4; column++) {
+				double value = column==3 ? getValue(row, 3) : 0.0;
+				for (int k = 0; k<3; k++) {
+					value += getValue(row, k)*other.getValue(k, column);
+				}
+				result[getValuePosition(row, column)] = value;
+			}
+		}
+		return new TransformationMatrix(result);
+	}
+	
+	/**
+	 * Transforms the coordinates stored in the given array in place. The coordinates are packed one after
+	 * the other in the x, y, z order.
+	 * @param coords the array of the coordinates
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if the length of the array is not
+	 * 		divisible by three
+	 */
+	public void transformAll(double[] coords) {
+		AssertValue.isTrue(coords.length % 3 == 0, 
+				"The length of the coordinate array should be divisible by 3, but was "+coords.length);
+		
+		transformAll(coords, 0, coords.length/3);
+	}
+	
+	/**
+	 * Transforms the given number of coordinates stored in the given array from the given position in place.
+	 * The coordinates are packed one after the other in the x, y, z order.
+	 * @param coords the array of the coordinates
+	 * @param offset the index of the x value of the first coordinate to be transformed
+	 * @param count the number of coordinates to be transformed
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if the range is not inside the array
+	 */
+	public void transformAll(double[] coords, int offset, int count) {
+		AssertValue.isTrue(offset>=0 && count>=0 && offset+count*3<=coords.length, 
+				"The range should be inside the coordinate array!");
+		
+		double[] m = matrix;
+		for (int i = offset; i<offset+count*3; i += 3) {
+			double x = coords[i];
+			double y = coords[i+1];
+			double z = coords[i+2];
+			coords[i]   = m[0]*x + m[1]*y + m[2]*z + m[3];
+			coords[i+1] = m[4]*x + m[5]*y + m[6]*z + m[7];
+			coords[i+2] = m[8]*x + m[9]*y + m[10]*z + m[11];
+		}
+	}
+	
 	private double getDeterminant() {
 		return 
 			+ getValue(0,0)*getValue(1,1)*getValue(2,2)
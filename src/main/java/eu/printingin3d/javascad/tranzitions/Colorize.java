@@ -60,6 +60,11 @@ public class Colorize extends Complex3dModel {
 		return baseModel.toCSG(context);
 	}
 
+	@Override
+	protected boolean isTransformationPushedDown() {
+		return true;
+	}
+
 	/**
 	 * Generates the SCAD representation of the given color.
 	 * @param color the color to be converted
@@ -90,4 +95,15 @@ public class Colorize extends Complex3dModel {
     protected List<Abstract3dModel> getChildrenModels() {
         return Collections.singletonList(baseModel);
     }
+
+	@Override
+	protected int innerHashCode() {
+		return 31 * color.hashCode() + baseModel.hashCode();
+	}
+
+	@Override
+	protected boolean innerEquals(Abstract3dModel other) {
+		Colorize o = (Colorize) other;
+		return color.equals(o.color) && baseModel.equals(o.baseModel);
+	}
 }
@@ -18,6 +18,7 @@ import eu.printingin3d.javascad.utils.AssertValue;
 import eu.printingin3d.javascad.utils.ListUtils;
 import eu.printingin3d.javascad.vrl.CSG;
 import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+import eu.printingin3d.javascad.vrl.LazyCSG;
 
 /**
  * Difference operation. It subtracts from the first model all the others.
@@ -112,13 +113,26 @@ public class Difference extends Complex3dModel {
 
 	@Override
 	protected CSG toInnerCSG(FacetGenerationContext context) {
-		CSG csg = model1.toCSG(context);
-		
+		// the subtracted models come first, so the serial rendering keeps its order
+		List<Abstract3dModel> operands = new ArrayList<>(model2);
+		operands.add(model1);
+		List<CSG> csgs = toCSGs(operands, context);
+		CSG first = csgs.remove(csgs.size()-1);
+		return first.differenceAll(csgs, context.getCsgOptions());
+	}
+
+	@Override
+	protected boolean isTransformationPushedDown() {
+		return true;
+	}
+	
+	@Override
+	protected LazyCSG toInnerLazyCSG(FacetGenerationContext context) {
+		List<LazyCSG> csgs = new ArrayList<>();
 		for (Abstract3dModel model : model2) {
-			csg = csg.difference(model.toCSG(context));
+			csgs.add(model.toLazyCSG(context));
 		}
-		
-		return csg;
+		return model1.toLazyCSG(context).differenceAll(csgs);
 	}
 	
 	@Override
@@ -151,4 +165,15 @@ public class Difference extends Complex3dModel {
         result.add(model1);
         return result;
     }
+
+	@Override
+	protected int innerHashCode() {
+		return 31 * model1.hashCode() + model2.hashCode();
+	}
+
+	@Override
+	protected boolean innerEquals(Abstract3dModel other) {
+		Difference o = (Difference) other;
+		return model1.equals(o.model1) && model2.equals(o.model2);
+	}
 }
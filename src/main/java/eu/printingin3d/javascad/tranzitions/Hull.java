@@ -101,4 +101,14 @@ public class Hull extends Complex3dModel {
     protected List<Abstract3dModel> getChildrenModels() {
         return models;
     }
+
+	@Override
+	protected int innerHashCode() {
+		return models.hashCode();
+	}
+
+	@Override
+	protected boolean innerEquals(Abstract3dModel other) {
+		return models.equals(((Hull) other).models);
+	}
 }
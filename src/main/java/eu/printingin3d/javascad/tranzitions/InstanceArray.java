@@ -0,0 +1,101 @@
+package eu.printingin3d.javascad.tranzitions;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import eu.printingin3d.javascad.coords.Angles3d;
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.models.Abstract3dModel;
+import eu.printingin3d.javascad.tranform.TransformationFactory;
+import eu.printingin3d.javascad.tranform.TransformationMatrix;
+import eu.printingin3d.javascad.utils.AssertValue;
+import eu.printingin3d.javascad.vrl.CSG;
+import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+
+/**
+ * <p>Union of the moved or rotated copies of the same model, created by the
+ * {@link Abstract3dModel#moves(Collection)} and {@link Abstract3dModel#rotates(Collection)} methods. It
+ * behaves exactly like the {@link Union} of the copies - the OpenSCAD output, the boundaries and the
+ * sub-models are the same - but the CSG rendering renders the original model only once and transforms
+ * the result for every copy.</p>
+ * <p>The copies are combined by {@link CSG#unionAll(java.util.List, eu.printingin3d.javascad.vrl.CsgOptions)},
+ * so the copies which do not overlap any other copy are simply concatenated, only the overlapping ones go
+ * through the BSP union.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public final class InstanceArray extends Union {
+	private final Abstract3dModel prototype;
+	private final List<TransformationMatrix> placements;
+
+	private InstanceArray(Abstract3dModel prototype, List<Abstract3dModel> copies,
+			List<TransformationMatrix> placements) {
+		super(copies);
+		this.prototype = prototype;
+		this.placements = placements;
+	}
+
+	/**
+	 * Creates the union of the copies of the given model moved by the given vectors.
+	 * @param prototype the model to be copied
+	 * @param moves the vectors the copies are moved by
+	 * @return the union of the copies
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if any of the parameters is null
+	 */
+	public static InstanceArray moves(Abstract3dModel prototype, Collection<Coords3d> moves) {
+		AssertValue.isNotNull(prototype, "The model to be copied must not be null!");
+		AssertValue.isNotNull(moves, "The moves must not be null!");
+
+		List<Abstract3dModel> copies = new ArrayList<>();
+		List<TransformationMatrix> placements = new ArrayList<>();
+		for (Coords3d move : moves) {
+			copies.add(prototype.move(move));
+			placements.add(TransformationFactory.getTranlationMatrix(move));
+		}
+		return new InstanceArray(prototype, copies, placements);
+	}
+
+	/**
+	 * Creates the union of the copies of the given model rotated by the given angles.
+	 * @param prototype the model to be copied
+	 * @param rotates the angles the copies are rotated by
+	 * @return the union of the copies
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if any of the parameters is null
+	 */
+	public static InstanceArray rotates(Abstract3dModel prototype, Collection<Angles3d> rotates) {
+		AssertValue.isNotNull(prototype, "The model to be copied must not be null!");
+		AssertValue.isNotNull(rotates, "The rotations must not be null!");
+
+		List<Abstract3dModel> copies = new ArrayList<>();
+		List<TransformationMatrix> placements = new ArrayList<>();
+		for (Angles3d rotate : rotates) {
+			copies.add(prototype.rotate(rotate));
+			placements.add(TransformationFactory.getRotationMatrix(rotate));
+		}
+		return new InstanceArray(prototype, copies, placements);
+	}
+
+	@Override
+	protected Abstract3dModel innerCloneModel() {
+		return new InstanceArray(prototype, models, placements);
+	}
+
+	@Override
+	protected CSG toInnerCSG(FacetGenerationContext context) {
+		CSG csg = prototype.toCSG(context);
+		List<CSG> csgs = new ArrayList<>();
+		for (TransformationMatrix placement : placements) {
+			csgs.add(csg.transformed(placement));
+		}
+		return CSG.unionAll(csgs, context.getCsgOptions());
+	}
+
+	/**
+	 * The rendered prototype is shared by the copies, so it has to be rendered in the local frame.
+	 */
+	@Override
+	protected boolean isTransformationPushedDown() {
+		return false;
+	}
+}
@@ -13,6 +13,7 @@ import eu.printingin3d.javascad.models.SCAD;
 import eu.printingin3d.javascad.utils.ListUtils;
 import eu.printingin3d.javascad.vrl.CSG;
 import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+import eu.printingin3d.javascad.vrl.LazyCSG;
 
 /**
  * Intersection operation. The result of this operation is the common part of the child models.
@@ -74,16 +75,21 @@ public class Intersection extends Complex3dModel {
 
 	@Override
 	protected CSG toInnerCSG(FacetGenerationContext context) {
-		CSG csg = null;
+		return CSG.intersectAll(toCSGs(models, context), context.getCsgOptions());
+	}
+
+	@Override
+	protected boolean isTransformationPushedDown() {
+		return true;
+	}
+
+	@Override
+	protected LazyCSG toInnerLazyCSG(FacetGenerationContext context) {
+		List<LazyCSG> csgs = new ArrayList<>();
 		for (Abstract3dModel model : models) {
-			if (csg==null) {
-				csg = model.toCSG(context);
-			}
-			else {
-				csg = csg.intersect(model.toCSG(context));
-			}
+			csgs.add(model.toLazyCSG(context));
 		}
-		return csg;
+		return LazyCSG.intersectAll(csgs);
 	}
 
 	@Override
@@ -99,4 +105,14 @@ public class Intersection extends Complex3dModel {
     protected List<Abstract3dModel> getChildrenModels() {
         return models;
     }
+
+	@Override
+	protected int innerHashCode() {
+		return models.hashCode();
+	}
+
+	@Override
+	protected boolean innerEquals(Abstract3dModel other) {
+		return models.equals(((Intersection) other).models);
+	}
 }
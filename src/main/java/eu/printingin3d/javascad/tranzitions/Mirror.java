@@ -10,11 +10,11 @@ import eu.printingin3d.javascad.exceptions.IllegalValueException;
 import eu.printingin3d.javascad.models.Abstract3dModel;
 import eu.printingin3d.javascad.models.Complex3dModel;
 import eu.printingin3d.javascad.models.SCAD;
-import eu.printingin3d.javascad.tranform.ITransformation;
 import eu.printingin3d.javascad.tranform.TransformationFactory;
 import eu.printingin3d.javascad.utils.AssertValue;
 import eu.printingin3d.javascad.vrl.CSG;
 import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+import eu.printingin3d.javascad.vrl.LazyCSG;
 
 /**
  * Mirrors a model. The plane of the mirroring could only be the X, Y and Z plane, to make it easier 
@@ -84,8 +84,17 @@ public final class Mirror extends Complex3dModel {
 
 	@Override
 	protected CSG toInnerCSG(FacetGenerationContext context) {
-		ITransformation tr = TransformationFactory.getMirrorMatrix(direction);
-		return model.toCSG(context).transformed(tr);
+		return toTransformedCSG(model, context, TransformationFactory.getMirrorMatrix(direction));
+	}
+
+	@Override
+	protected boolean isTransformationPushedDown() {
+		return true;
+	}
+
+	@Override
+	protected LazyCSG toInnerLazyCSG(FacetGenerationContext context) {
+		return model.toLazyCSG(context).transformed(TransformationFactory.getMirrorMatrix(direction));
 	}
 
 	@Override
@@ -98,4 +107,15 @@ public final class Mirror extends Complex3dModel {
     protected List<Abstract3dModel> getChildrenModels() {
         return Collections.singletonList(model);
     }
+
+	@Override
+	protected int innerHashCode() {
+		return 31 * model.hashCode() + direction.name().hashCode();
+	}
+
+	@Override
+	protected boolean innerEquals(Abstract3dModel other) {
+		Mirror o = (Mirror) other;
+		return model.equals(o.model) && direction==o.direction;
+	}
 }
@@ -15,6 +15,7 @@ import eu.printingin3d.javascad.tranform.TransformationFactory;
 import eu.printingin3d.javascad.utils.AssertValue;
 import eu.printingin3d.javascad.vrl.CSG;
 import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+import eu.printingin3d.javascad.vrl.LazyCSG;
 
 /**
  * This represents a rotate transition, but used rarely, because the convenient
@@ -66,7 +67,17 @@ public class Rotate extends Complex3dModel {
 
 	@Override
 	protected CSG toInnerCSG(FacetGenerationContext context) {
-		return model.toCSG(context).transformed(TransformationFactory.getRotationMatrix(angles));
+		return toTransformedCSG(model, context, TransformationFactory.getRotationMatrix(angles));
+	}
+
+	@Override
+	protected boolean isTransformationPushedDown() {
+		return true;
+	}
+
+	@Override
+	protected LazyCSG toInnerLazyCSG(FacetGenerationContext context) {
+		return model.toLazyCSG(context).transformed(TransformationFactory.getRotationMatrix(angles));
 	}
 
 	@Override
@@ -79,4 +90,15 @@ public class Rotate extends Complex3dModel {
     protected List<Abstract3dModel> getChildrenModels() {
         return Collections.singletonList(model);
     }
+
+	@Override
+	protected int innerHashCode() {
+		return 31 * model.hashCode() + angles.hashCode();
+	}
+
+	@Override
+	protected boolean innerEquals(Abstract3dModel other) {
+		Rotate o = (Rotate) other;
+		return model.equals(o.model) && angles.equals(o.angles);
+	}
 }
@@ -65,7 +65,12 @@ public class Scale extends Complex3dModel {
 
 	@Override
 	protected CSG toInnerCSG(FacetGenerationContext context) {
-		return model.toCSG(context).transformed(TransformationFactory.getScaleMatrix(scale));
+		return toTransformedCSG(model, context, TransformationFactory.getScaleMatrix(scale));
+	}
+
+	@Override
+	protected boolean isTransformationPushedDown() {
+		return true;
 	}
 
 	@Override
@@ -78,4 +83,15 @@ public class Scale extends Complex3dModel {
     protected List<Abstract3dModel> getChildrenModels() {
         return Collections.singletonList(model);
     }
+
+	@Override
+	protected int innerHashCode() {
+		return 31 * model.hashCode() + scale.hashCode();
+	}
+
+	@Override
+	protected boolean innerEquals(Abstract3dModel other) {
+		Scale o = (Scale) other;
+		return model.equals(o.model) && scale.equals(o.scale);
+	}
 }
@@ -12,6 +12,7 @@ import eu.printingin3d.javascad.models.Complex3dModel;
 import eu.printingin3d.javascad.models.SCAD;
 import eu.printingin3d.javascad.tranzitions.slicer.CoverFactory;
 import eu.printingin3d.javascad.utils.AssertValue;
+import eu.printingin3d.javascad.utils.DoubleUtils;
 import eu.printingin3d.javascad.vrl.CSG;
 import eu.printingin3d.javascad.vrl.FacetGenerationContext;
 
@@ -130,6 +131,11 @@ public class Slicer extends Complex3dModel {
 		return new Difference(model, sliceModel()).toCSG(context);
 	}
 
+	@Override
+	protected boolean isTransformationPushedDown() {
+		return true;
+	}
+
 	@Override
 	protected Abstract3dModel innerSubModel(IScadGenerationContext context) {
 		Abstract3dModel subModel = model.subModel(context);
@@ -140,4 +146,23 @@ public class Slicer extends Complex3dModel {
     protected List<Abstract3dModel> getChildrenModels() {
         return Collections.singletonList(model);
     }
+
+	@Override
+	protected int innerHashCode() {
+		final int prime = 31;
+		int result = model.hashCode();
+		result = prime * result + direction.name().hashCode();
+		result = prime * result + DoubleUtils.hashCodeEps(lowRate);
+		result = prime * result + DoubleUtils.hashCodeEps(highRate);
+		return result;
+	}
+
+	@Override
+	protected boolean innerEquals(Abstract3dModel other) {
+		Slicer o = (Slicer) other;
+		return model.equals(o.model) &&
+				direction==o.direction &&
+				DoubleUtils.equalsEps(lowRate, o.lowRate) &&
+				DoubleUtils.equalsEps(highRate, o.highRate);
+	}
 }
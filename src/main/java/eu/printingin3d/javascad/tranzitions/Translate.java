@@ -15,6 +15,7 @@ import eu.printingin3d.javascad.tranform.TransformationFactory;
 import eu.printingin3d.javascad.utils.AssertValue;
 import eu.printingin3d.javascad.vrl.CSG;
 import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+import eu.printingin3d.javascad.vrl.LazyCSG;
 
 /**
  * This represents a move transition, but used rarely, because the convenient
@@ -69,7 +70,17 @@ public class Translate extends Complex3dModel {
 
 	@Override
 	protected CSG toInnerCSG(FacetGenerationContext context) {
-		return model.toCSG(context).transformed(TransformationFactory.getTranlationMatrix(move));
+		return toTransformedCSG(model, context, TransformationFactory.getTranlationMatrix(move));
+	}
+
+	@Override
+	protected boolean isTransformationPushedDown() {
+		return true;
+	}
+
+	@Override
+	protected LazyCSG toInnerLazyCSG(FacetGenerationContext context) {
+		return model.toLazyCSG(context).transformed(TransformationFactory.getTranlationMatrix(move));
 	}
 
 	@Override
@@ -82,4 +93,15 @@ public class Translate extends Complex3dModel {
     protected List<Abstract3dModel> getChildrenModels() {
         return Collections.singletonList(model);
     }
+
+	@Override
+	protected int innerHashCode() {
+		return 31 * model.hashCode() + move.hashCode();
+	}
+
+	@Override
+	protected boolean innerEquals(Abstract3dModel other) {
+		Translate o = (Translate) other;
+		return model.equals(o.model) && move.equals(o.move);
+	}
 }
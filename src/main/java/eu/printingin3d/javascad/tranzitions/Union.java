@@ -15,6 +15,7 @@ import eu.printingin3d.javascad.models.SCAD;
 import eu.printingin3d.javascad.utils.ListUtils;
 import eu.printingin3d.javascad.vrl.CSG;
 import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+import eu.printingin3d.javascad.vrl.LazyCSG;
 
 /**
  * <p>Represents an union of models. It is a descendant of {@link Abstract3dModel}, which means you
@@ -83,16 +84,21 @@ public class Union extends Complex3dModel {
 
 	@Override
 	protected CSG toInnerCSG(FacetGenerationContext context) {
-		CSG csg = null;
+		return CSG.unionAll(toCSGs(models, context), context.getCsgOptions());
+	}
+
+	@Override
+	protected boolean isTransformationPushedDown() {
+		return true;
+	}
+
+	@Override
+	protected LazyCSG toInnerLazyCSG(FacetGenerationContext context) {
+		List<LazyCSG> csgs = new ArrayList<>();
 		for (Abstract3dModel model : models) {
-			if (csg==null) {
-				csg = model.toCSG(context);
-			}
-			else {
-				csg = csg.union(model.toCSG(context));
-			}
+			csgs.add(model.toLazyCSG(context));
 		}
-		return csg;
+		return LazyCSG.unionAll(csgs);
 	}
 	
 	@Override
@@ -120,4 +126,14 @@ public class Union extends Complex3dModel {
     protected List<Abstract3dModel> getChildrenModels() {
         return models;
     }
+
+	@Override
+	protected int innerHashCode() {
+		return models.hashCode();
+	}
+
+	@Override
+	protected boolean innerEquals(Abstract3dModel other) {
+		return models.equals(((Union) other).models);
+	}
 }
@@ -67,4 +67,14 @@ public class Translate extends Abstract2dModel {
 	protected Collection<Area2d> getInnerPointCircle(FacetGenerationContext context) {
 		return model.getPointCircle(context);
 	}
+
+	@Override
+	protected int innerHashCode() {
+		return model.hashCode();
+	}
+
+	@Override
+	protected boolean innerEquals(Abstract2dModel other) {
+		return model.equals(((Translate) other).model);
+	}
 }
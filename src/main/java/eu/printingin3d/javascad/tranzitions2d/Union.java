@@ -99,4 +99,13 @@ public class Union extends Abstract2dModel {
 		return result;
 	}
 
+	@Override
+	protected int innerHashCode() {
+		return models.hashCode();
+	}
+
+	@Override
+	protected boolean innerEquals(Abstract2dModel other) {
+		return models.equals(((Union) other).models);
+	}
 }
@@ -0,0 +1,120 @@
+package eu.printingin3d.javascad.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import eu.printingin3d.javascad.exceptions.BatchExportException;
+
+/**
+ * Exports a batch of files on a bounded pool of threads and collects the failures of the files.
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+final class BatchExport {
+	private BatchExport() {
+		// prevents creating this object
+	}
+
+	/**
+	 * The export of one file.
+	 */
+	interface ExportTask {
+		/**
+		 * Generates and saves the file.
+		 * @throws IOException if any IO error happens during the file write
+		 */
+		void export() throws IOException;
+	}
+
+	/**
+	 * Runs the given tasks on the given number of threads. A failing task does not stop the others, the
+	 * failures are thrown together after every task has been finished.
+	 * @param tasks the files and the tasks exporting them
+	 * @param threads the maximum number of files exported at the same time
+	 * @param listener the listener notified after every file or null
+	 * @throws BatchExportException if any of the files could not be saved
+	 * @throws InterruptedIOException if the calling thread has been interrupted while waiting for the export
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if the number of threads is not positive
+	 */
+	static void run(List<Pair<File, ExportTask>> tasks, int threads, IExportProgressListener listener)
+			throws IOException {
+		AssertValue.isTrue(threads>0, "The number of threads should be positive, but was "+threads+"!");
+
+		Exception[] errors = new Exception[tasks.size()];
+		Progress progress = new Progress(listener, tasks.size());
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, tasks.size())));
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i=0;i<tasks.size();i++) {
+				final int index = i;
+				futures.add(executor.submit(() -> {
+					Pair<File, ExportTask> task = tasks.get(index);
+					try {
+						task.getValue2().export();
+					}
+					catch (IOException | RuntimeException e) {
+						errors[index] = e;
+					}
+					progress.fileFinished(task.getValue1(), errors[index]);
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("The export has been interrupted!");
+		}
+		catch (ExecutionException e) {
+			// only the listener or an Error can get here, the failures of the files are collected
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw (RuntimeException) e.getCause();
+		}
+		finally {
+			executor.shutdownNow();
+		}
+
+		Map<File, Exception> failures = new LinkedHashMap<>();
+		for (int i=0;i<errors.length;i++) {
+			if (errors[i]!=null) {
+				failures.put(tasks.get(i).getValue1(), errors[i]);
+			}
+		}
+		if (!failures.isEmpty()) {
+			throw new BatchExportException(failures, tasks.size());
+		}
+	}
+
+	/**
+	 * Counts the finished files and notifies the listener one at a time.
+	 */
+	private static final class Progress {
+		private final IExportProgressListener listener;
+		private final int allFiles;
+		private int finishedFiles = 0;
+
+		private Progress(IExportProgressListener listener, int allFiles) {
+			this.listener = listener;
+			this.allFiles = allFiles;
+		}
+
+		private synchronized void fileFinished(File file, Exception error) {
+			finishedFiles++;
+			if (listener!=null) {
+				listener.fileFinished(file, error, finishedFiles, allFiles);
+			}
+		}
+	}
+}
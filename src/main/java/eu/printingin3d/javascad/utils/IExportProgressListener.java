@@ -0,0 +1,21 @@
+package eu.printingin3d.javascad.utils;
+
+import java.io.File;
+
+/**
+ * Gets notified about the progress of a batch export of {@link SaveScadFiles} or {@link SaveMeshFiles}.
+ * The calls are made from the threads of the export, but never concurrently, so the implementations do not
+ * need to be thread safe.
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public interface IExportProgressListener {
+	/**
+	 * Called when the export of a file has been finished - successfully or not.
+	 * @param file the file has been exported
+	 * @param error the exception the export failed with or null if the file has been saved
+	 * @param finishedFiles the number of files finished so far including this one
+	 * @param allFiles the number of files in the batch
+	 */
+	void fileFinished(File file, Exception error, int finishedFiles, int allFiles);
+}
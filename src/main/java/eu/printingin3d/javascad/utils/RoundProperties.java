@@ -63,4 +63,28 @@ public class RoundProperties {
 			throw new IllegalValueException("Unknown plane type: "+plane);
 		}
 	}
-}
\ No newline at end of file
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + plane.name().hashCode();
+		result = prime * result + DoubleUtils.hashCodeEps(radius);
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null) {
+			return false;
+		}
+		if (getClass() != obj.getClass()) {
+			return false;
+		}
+		RoundProperties other = (RoundProperties) obj;
+		return plane == other.plane && DoubleUtils.equalsEps(radius, other.radius);
+	}
+}
@@ -0,0 +1,138 @@
+package eu.printingin3d.javascad.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import eu.printingin3d.javascad.exceptions.IllegalValueException;
+import eu.printingin3d.javascad.models.IModel;
+import eu.printingin3d.javascad.vrl.Facet;
+import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+import eu.printingin3d.javascad.vrl.export.FileExporterFactory;
+import eu.printingin3d.javascad.vrl.export.IFileExporter;
+
+/**
+ * <p>Helper class to render several models and save them as STL or PLY files to a directory. The format
+ * of a file is determined by its extension, see {@link FileExporterFactory}.<p>
+ * <p>A typical usage looks like this:<p>
+ * <blockquote><pre>
+ *new SaveMeshFiles(new File("c:/temp"))
+ *  .addModelProvider(new TestModelProvider(), "stl")
+ *  .saveMeshFiles(4, null);
+ * </pre></blockquote>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public class SaveMeshFiles {
+	private static final String SCAD_EXTENSION = ".scad";
+
+	private final List<ModelWithPath> models = new ArrayList<>();
+	private final File root;
+	private final FacetGenerationContext context;
+
+	/**
+	 * Creates the object with the given root directory using the default generation context.
+	 * @param root the root directory where the files will be saved
+	 * @throws IllegalValueException if the root is null or exists as a file
+	 */
+	public SaveMeshFiles(File root) throws IllegalValueException {
+		this(root, FacetGenerationContext.DEFAULT);
+	}
+
+	/**
+	 * Creates the object with the given root directory and generation context.
+	 * @param root the root directory where the files will be saved
+	 * @param context the context used to render the models
+	 * @throws IllegalValueException if the root or the context is null or the root exists as a file
+	 */
+	public SaveMeshFiles(File root, FacetGenerationContext context) throws IllegalValueException {
+		AssertValue.isNotNull(root, "The root directory must not be null!");
+		AssertValue.isFalse(root.isFile(), "The root must not be an existing file - " +
+				"if it is exists, it should be a directory!");
+		AssertValue.isNotNull(context, "The context must not be null!");
+		this.root = root;
+		this.context = context;
+	}
+
+	/**
+	 * Adds a model to be saved to the given path.
+	 * @param relPath the path of the file relative to the root directory - its extension should be
+	 * 		{@code stl} or {@code ply}
+	 * @param model the model to be saved
+	 * @return return this object to make it possible to chain more method call
+	 * @throws IllegalValueException if the model is null or the extension of the path is unknown
+	 */
+	public SaveMeshFiles addModel(String relPath, IModel model) throws IllegalValueException {
+		AssertValue.isNotNull(model, "The model must not be null!");
+		String path = relPath.toLowerCase();
+		AssertValue.isTrue(path.endsWith(".stl") || path.endsWith(".ply"),
+				"The file should have stl or ply extension, but was "+relPath+"!");
+		models.add(new ModelWithPath(model, relPath));
+		return this;
+	}
+
+	/**
+	 * Adds the parts of the given model provider - for example an {@link AnnotatedModelProvider}. The paths
+	 * of the parts are kept, only their {@code .scad} extension is replaced by the given one.
+	 * @param provider the provider to be added
+	 * @param extension the extension of the files: {@code stl} or {@code ply}
+	 * @return return this object to make it possible to chain more method call
+	 * @throws IllegalValueException if the extension is unknown
+	 */
+	public SaveMeshFiles addModelProvider(IModelProvider provider, String extension) throws IllegalValueException {
+		for (ModelWithPath mp : provider.getModelsAndPaths()) {
+			String relPath = mp.getRelPath();
+			if (relPath.toLowerCase().endsWith(SCAD_EXTENSION)) {
+				relPath = relPath.substring(0, relPath.length()-SCAD_EXTENSION.length());
+			}
+			addModel(relPath+"."+extension, mp.getModel());
+		}
+		return this;
+	}
+
+	/**
+	 * Renders the added models and saves them into the corresponding files one after the other.
+	 * @throws IOException if any IO error happens during the file write
+	 */
+	public void saveMeshFiles() throws IOException {
+		for (ModelWithPath mp : models) {
+			saveMeshFile(mp);
+		}
+	}
+
+	/**
+	 * <p>Renders the added models and saves them into the corresponding files using the given number of
+	 * threads. At most as many models are rendered and written at the same time as the number of threads.</p>
+	 * <p>A file which cannot be saved does not stop the others: every file is tried and the failures are
+	 * thrown together at the end.</p>
+	 * @param threads the maximum number of files saved at the same time
+	 * @param listener the listener notified after every file or null
+	 * @throws eu.printingin3d.javascad.exceptions.BatchExportException if any of the files could not be saved
+	 * @throws java.io.InterruptedIOException if the calling thread has been interrupted during the save
+	 * @throws IOException if any other IO error happens
+	 * @throws IllegalValueException if the number of threads is not positive
+	 */
+	public void saveMeshFiles(int threads, IExportProgressListener listener) throws IOException {
+		List<Pair<File, BatchExport.ExportTask>> tasks = new ArrayList<>();
+		for (ModelWithPath mp : models) {
+			BatchExport.ExportTask task = () -> saveMeshFile(mp);
+			tasks.add(new Pair<>(getFile(mp), task));
+		}
+		BatchExport.run(tasks, threads, listener);
+	}
+
+	private File getFile(ModelWithPath mp) {
+		return new File(root.getAbsolutePath()+"/"+mp.getRelPath());
+	}
+
+	private void saveMeshFile(ModelWithPath mp) throws IOException {
+		// rendered before the file is opened, so a failing model does not leave an empty file behind
+		List<Facet> facets = mp.getModel().toCSG(context).toFacets(context.getCsgOptions());
+		File file = getFile(mp);
+		file.getParentFile().mkdirs();
+		try (IFileExporter exporter = FileExporterFactory.createExporter(file)) {
+			exporter.writeToFile(facets);
+		}
+	}
+}
@@ -192,9 +192,35 @@ public class SaveScadFiles {
 	 */
 	public void saveScadFiles() throws IOException {
 		for (IScadFile scadFile : scadFiles) {
-			File file = scadFile.getFile(root);
-			file.getParentFile().mkdirs();
-			new ModelToFile(file).addModels(scadFile.getModels()).saveToFile(scadFile.getContext());
+			saveScadFile(scadFile);
 		}
 	}
+
+	/**
+	 * <p>Save the added SCAD files into the corresponding files using the given number of threads. The SCAD
+	 * code of the files is generated and written concurrently, at most as many at the same time as the
+	 * number of threads.</p>
+	 * <p>A file which cannot be saved does not stop the others: every file is tried and the failures are
+	 * thrown together at the end.</p>
+	 * @param threads the maximum number of files saved at the same time
+	 * @param listener the listener notified after every file or null
+	 * @throws eu.printingin3d.javascad.exceptions.BatchExportException if any of the files could not be saved
+	 * @throws java.io.InterruptedIOException if the calling thread has been interrupted during the save
+	 * @throws IOException if any other IO error happens
+	 * @throws IllegalValueException if the number of threads is not positive
+	 */
+	public void saveScadFiles(int threads, IExportProgressListener listener) throws IOException {
+		List<Pair<File, BatchExport.ExportTask>> tasks = new ArrayList<>();
+		for (IScadFile scadFile : scadFiles) {
+			BatchExport.ExportTask task = () -> saveScadFile(scadFile);
+			tasks.add(new Pair<>(scadFile.getFile(root), task));
+		}
+		BatchExport.run(tasks, threads, listener);
+	}
+
+	private void saveScadFile(IScadFile scadFile) throws IOException {
+		File file = scadFile.getFile(root);
+		file.getParentFile().mkdirs();
+		new ModelToFile(file).addModels(scadFile.getModels()).saveToFile(scadFile.getContext());
+	}
 }
@@ -0,0 +1,90 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.util.List;
+
+import eu.printingin3d.javascad.utils.AssertValue;
+
+/**
+ * <p>Plane selection strategy which tries to keep the BSP tree balanced and the number of splits low. 
+ * It takes a few candidates evenly distributed in the list of polygons and scores each of them against 
+ * a sample of the polygons: every polygon which would be split costs {@code splitWeight} points and the
+ * difference between the number of polygons in front and behind the plane costs one point each. 
+ * The candidate with the lowest score wins; on tie the earlier candidate is used, so the result 
+ * is deterministic.</p>
+ * <p>The cost of the selection is proportional to the number of candidates multiplied by the size
+ * of the sample, so it doesn't depend on the number of polygons.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public final class BalancedPlaneSelection implements PlaneSelectionStrategy {
+	private final int candidates;
+	private final int sampleSize;
+	private final double splitWeight;
+	
+	/**
+	 * Creates the strategy with the default parameters: 16 candidates scored against 64 polygons, and
+	 * a split costs 4 times as much as the imbalance.
+	 */
+	public BalancedPlaneSelection() {
+		this(16, 64, 4.0);
+	}
+
+	/**
+	 * Creates the strategy with the given parameters.
+	 * @param candidates the maximum number of candidates to be scored
+	 * @param sampleSize the maximum number of polygons the candidates are scored against
+	 * @param splitWeight the cost of a split relative to the cost of the imbalance
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if the number of candidates or 
+	 * 		the sample size is not positive or the split weight is negative
+	 */
+	public BalancedPlaneSelection(int candidates, int sampleSize, double splitWeight) {
+		AssertValue.isTrue(candidates>0, "The number of candidates should be positive, but was "+candidates);
+		AssertValue.isTrue(sampleSize>0, "The sample size should be positive, but was "+sampleSize);
+		AssertValue.isNotNegative(splitWeight, "The split weight should not be negative!");
+		
+		this.candidates = candidates;
+		this.sampleSize = sampleSize;
+		this.splitWeight = splitWeight;
+	}
+
+	@Override
+	public Polygon selectPlane(List<Polygon> polygons) {
+		int n = polygons.size();
+		int candidateStep = Math.max(1, n / candidates);
+		int sampleStep = Math.max(1, n / sampleSize);
+		
+		Polygon best = null;
+		double bestScore = Double.MAX_VALUE;
+		for (int i = 0; i<n && bestScore>0.0; i += candidateStep) {
+			Polygon candidate = polygons.get(i);
+			double score = score(candidate, polygons, sampleStep);
+			if (score<bestScore) {
+				best = candidate;
+				bestScore = score;
+			}
+		}
+		return best;
+	}
+
+	private double score(Polygon candidate, List<Polygon> polygons, int sampleStep) {
+		int front = 0;
+		int back = 0;
+		int spanning = 0;
+		for (int i = 0; i<polygons.size(); i += sampleStep) {
+			switch (candidate.classify(polygons.get(i))) {
+			case FRONT:
+				front++;
+				break;
+			case BACK:
+				back++;
+				break;
+			case SPANNING:
+				spanning++;
+				break;
+			default:
+				break;
+			}
+		}
+		return splitWeight * spanning + Math.abs(front - back);
+	}
+}
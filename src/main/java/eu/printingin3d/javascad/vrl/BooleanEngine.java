@@ -0,0 +1,51 @@
+package eu.printingin3d.javascad.vrl;
+
+/**
+ * <p>The algorithm evaluating the boolean operations of the {@link CSG} objects. The operations of the
+ * {@link CSG} class dispatch through the engine set by {@link CsgOptions#withEngine(BooleanEngine)}, so the
+ * engine can be chosen for every render separately.</p>
+ * <p>The engines have to produce the same solid, but the surface of the result might be divided into
+ * polygons differently. The implementations must not modify the operands.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public interface BooleanEngine {
+	/**
+	 * The original engine, which is based on BSP trees. This is the default engine.
+	 */
+	BooleanEngine BSP = new BspEngine();
+
+	/**
+	 * Mesh corefinement engine: the triangles of the two operands are intersected with each other, the
+	 * triangles are split along the intersection curve and the parts are kept or dropped by their position
+	 * relative to the other operand. Its running time depends mostly on the size of the intersection curve.
+	 */
+	BooleanEngine COREFINEMENT = new CorefinementEngine();
+
+	/**
+	 * Calculates the union of the two operands.
+	 * @param a the first operand
+	 * @param b the second operand
+	 * @param options the options used for the evaluation
+	 * @return the union of the two operands
+	 */
+	CSG union(CSG a, CSG b, CsgOptions options);
+
+	/**
+	 * Calculates the difference of the two operands.
+	 * @param a the operand to subtract from
+	 * @param b the operand to be subtracted
+	 * @param options the options used for the evaluation
+	 * @return the difference of the two operands
+	 */
+	CSG difference(CSG a, CSG b, CsgOptions options);
+
+	/**
+	 * Calculates the intersection of the two operands.
+	 * @param a the first operand
+	 * @param b the second operand
+	 * @param options the options used for the evaluation
+	 * @return the intersection of the two operands
+	 */
+	CSG intersect(CSG a, CSG b, CsgOptions options);
+}
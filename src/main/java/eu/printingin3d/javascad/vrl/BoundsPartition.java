@@ -0,0 +1,204 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import eu.printingin3d.javascad.coords.Boundaries3d;
+import eu.printingin3d.javascad.coords.Boundary;
+import eu.printingin3d.javascad.coords.Coords3d;
+
+/**
+ * <p>Splits a list of polygons into two groups based on a region: the polygons inside the region and the
+ * polygons outside of it. Polygons crossing the border of the region are split by the planes of the region,
+ * so every polygon ends up entirely on one side.</p>
+ * <p>It is used by the CSG operations to skip the BSP evaluation of the polygons which cannot interact
+ * with the other operand: if the region is the common part of the boundaries of the two operands,
+ * the polygons outside of it are certainly outside of the other operand.</p>
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+final class BoundsPartition {
+	/**
+	 * The margin the common region of the operands is extended by. The polygons lying on the border of the
+	 * common region can only be classified correctly if the BSP tree of the other operand contains the
+	 * polygons touching the border from outside too.
+	 */
+	private static final double MARGIN = 1e-3;
+
+	private final List<Polygon> inside = new ArrayList<>();
+	private final PolygonMesh.Builder outside = new PolygonMesh.Builder();
+
+	/**
+	 * Creates the partition of the given polygons by the given region. If the region is null every
+	 * polygon is considered to be outside. The polygons are classified on the packed arrays of the mesh,
+	 * the polygons outside are copied without creating {@link Polygon} objects.
+	 * @param mesh the polygons to be partitioned
+	 * @param region the region used - can be null
+	 */
+	BoundsPartition(PolygonMesh mesh, Boundaries3d region) {
+		if (region==null) {
+			for (int i = 0; i<mesh.size(); i++) {
+				outside.add(mesh, i);
+			}
+			return;
+		}
+
+		double[] r = new double[] {
+				region.getX().getMin(), region.getY().getMin(), region.getZ().getMin(),
+				region.getX().getMax(), region.getY().getMax(), region.getZ().getMax()
+		};
+		double[] b = new double[6];
+		List<Polygon> planes = null;
+		for (int i = 0; i<mesh.size(); i++) {
+			mesh.calculateBoundaries(i, b);
+			if (isInside(b, r) && !isOnBorder(b, r)) {
+				inside.add(mesh.getPolygon(i));
+			}
+			else if (isOutside(b, r)) {
+				outside.add(mesh, i);
+			}
+			else {
+				if (planes==null) {
+					planes = createPlanes(region);
+				}
+				split(mesh.getPolygon(i), planes);
+			}
+		}
+	}
+
+	/**
+	 * Calculates the region used to partition the polygons of the operands of a boolean operation: the
+	 * common part of their boundaries extended by a small margin on every side.
+	 * @param a the boundaries of the first operand
+	 * @param b the boundaries of the second operand
+	 * @return the region or null if the boundaries are separated
+	 */
+	static Boundaries3d region(Boundaries3d a, Boundaries3d b) {
+		Boundaries3d common = overlap(a, b);
+		return common==null ? null : new Boundaries3d(extend(common.getX()), extend(common.getY()),
+				extend(common.getZ()));
+	}
+
+	private static Boundary extend(Boundary boundary) {
+		return new Boundary(boundary.getMin() - MARGIN, boundary.getMax() + MARGIN);
+	}
+
+	/**
+	 * Calculates the common part of the given boundaries.
+	 * @param a the first boundary
+	 * @param b the second boundary
+	 * @return the common part of the boundaries or null if the boundaries are separated
+	 */
+	static Boundaries3d overlap(Boundaries3d a, Boundaries3d b) {
+		Boundary x = overlap(a.getX(), b.getX());
+		Boundary y = overlap(a.getY(), b.getY());
+		Boundary z = overlap(a.getZ(), b.getZ());
+		return x==null || y==null || z==null ? null : new Boundaries3d(x, y, z);
+	}
+
+	/**
+	 * Calculates the common part of the given intervals.
+	 * @param a the first interval
+	 * @param b the second interval
+	 * @return the common part of the intervals or null if the intervals are separated
+	 */
+	static Boundary overlap(Boundary a, Boundary b) {
+		double min = Math.max(a.getMin(), b.getMin());
+		double max = Math.min(a.getMax(), b.getMax());
+		return isFront(min - max) ? null : new Boundary(min, max);
+	}
+
+	/**
+	 * Returns the polygons which are inside the region.
+	 * @return the polygons which are inside the region
+	 */
+	List<Polygon> getInside() {
+		return inside;
+	}
+
+	/**
+	 * Returns the polygons which are outside the region. Should be called only once.
+	 * @return the polygons which are outside the region
+	 */
+	PolygonMesh getOutside() {
+		return outside.build();
+	}
+
+	private void split(Polygon polygon, List<Polygon> planes) {
+		List<Polygon> remaining = Collections.singletonList(polygon);
+		List<Polygon> out = new ArrayList<>();
+		for (Polygon plane : planes) {
+			List<Polygon> back = new ArrayList<>();
+			for (Polygon p : remaining) {
+				plane.splitPolygon(p, back, out, out, back);
+			}
+			remaining = back;
+		}
+		inside.addAll(remaining);
+		outside.addAll(out);
+	}
+
+	private static boolean isFront(double distance) {
+		return VertexPosition.fromSquareDistance(distance)==VertexPosition.FRONT;
+	}
+
+	private static boolean isInside(double[] b, double[] region) {
+		for (int axis = 0; axis<3; axis++) {
+			if (isFront(b[axis+3] - region[axis+3]) || isFront(region[axis] - b[axis])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Polygons lying on the border of the region are belonging to the region only if their object is on the
+	 * inner side of the border, so they have to be checked by the planes of the region.
+	 */
+	private static boolean isOnBorder(double[] b, double[] region) {
+		for (int axis = 0; axis<3; axis++) {
+			boolean flat = !isFront(b[axis+3] - b[axis]);
+			if (flat && (!isFront(region[axis+3] - b[axis+3]) || !isFront(b[axis] - region[axis]))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isOutside(double[] b, double[] region) {
+		for (int axis = 0; axis<3; axis++) {
+			if (isFront(b[axis] - region[axis+3]) || isFront(region[axis] - b[axis+3])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Creates the six planes of the region with normals pointing outward. The planes are represented
+	 * by polygons which are independent of the size of the region, so degenerated regions work too.
+	 */
+	private static List<Polygon> createPlanes(Boundaries3d region) {
+		double minX = region.getX().getMin();
+		double maxX = region.getX().getMax();
+		double minY = region.getY().getMin();
+		double maxY = region.getY().getMax();
+		double minZ = region.getZ().getMin();
+		double maxZ = region.getZ().getMax();
+
+		return Arrays.asList(
+				createPlane(new Coords3d(maxX, 0, 0), new Coords3d(maxX, 1, 0), new Coords3d(maxX, 0, 1)),
+				createPlane(new Coords3d(minX, 0, 0), new Coords3d(minX, 0, 1), new Coords3d(minX, 1, 0)),
+				createPlane(new Coords3d(0, maxY, 0), new Coords3d(0, maxY, 1), new Coords3d(1, maxY, 0)),
+				createPlane(new Coords3d(0, minY, 0), new Coords3d(1, minY, 0), new Coords3d(0, minY, 1)),
+				createPlane(new Coords3d(0, 0, maxZ), new Coords3d(1, 0, maxZ), new Coords3d(0, 1, maxZ)),
+				createPlane(new Coords3d(0, 0, minZ), new Coords3d(0, 1, minZ), new Coords3d(1, 0, minZ))
+			);
+	}
+
+	private static Polygon createPlane(Coords3d a, Coords3d b, Coords3d c) {
+		return Polygon.fromPolygons(Arrays.asList(a, b, c), Color.BLACK);
+	}
+}
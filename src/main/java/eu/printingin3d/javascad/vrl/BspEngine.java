@@ -0,0 +1,108 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.util.List;
+import java.util.function.BinaryOperator;
+
+import eu.printingin3d.javascad.coords.Boundaries3d;
+
+/**
+ * The BSP tree based boolean engine, see the implementation details in the documentation of {@link CSG}.
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+final class BspEngine implements BooleanEngine {
+
+	@Override
+	public CSG union(CSG first, CSG second, CsgOptions options) {
+		return combine(first, second, options, true, true, (pa, pb) -> {
+			MutableNode a = MutableNode.fromPolygons(pa, first.getBvh(), options);
+			MutableNode b = MutableNode.fromPolygons(pb, second.getBvh(), options);
+			a.clipTo(b, options);
+			b.clipTo(a, options);
+			b.invert(options);
+			b.clipTo(a, options);
+			b.invert(options);
+			a.build(b.allPolygons(), options);
+			return a.allPolygons();
+		});
+	}
+
+	@Override
+	public CSG difference(CSG first, CSG second, CsgOptions options) {
+		return combine(first, second, options, true, false, (pa, pb) -> {
+			MutableNode a = MutableNode.fromPolygons(pa, first.getBvh(), options);
+			MutableNode b = MutableNode.fromPolygons(pb, second.getBvh(), options);
+			a.invert(options);
+			a.clipTo(b, options);
+			b.clipTo(a, options);
+			b.invert(options);
+			b.clipTo(a, options);
+			b.invert(options);
+			a.build(b.allPolygons(), options);
+			a.invert(options);
+			return a.allPolygons();
+		});
+	}
+
+	@Override
+	public CSG intersect(CSG first, CSG second, CsgOptions options) {
+		return combine(first, second, options, false, false, (pa, pb) -> {
+			MutableNode a = MutableNode.fromPolygons(pa, first.getBvh(), options);
+			MutableNode b = MutableNode.fromPolygons(pb, second.getBvh(), options);
+			a.invert(options);
+			b.clipTo(a, options);
+			b.invert(options);
+			a.clipTo(b, options);
+			b.clipTo(a, options);
+			a.build(b.allPolygons(), options);
+			a.invert(options);
+			return a.allPolygons();
+		});
+	}
+
+	/**
+	 * Evaluates a boolean operation. If the bounds partitioning is turned on only the polygons inside the
+	 * common part of the boundaries of the two operands - extended by a small margin, see
+	 * {@link BoundsPartition#region(Boundaries3d, Boundaries3d)} - are processed by the given BSP operation,
+	 * the others are either kept or dropped without further processing.
+	 * @param first the first operand
+	 * @param second the second operand
+	 * @param options the options used for the evaluation
+	 * @param keepOutside true if the polygons of the first operand outside the common region should be kept
+	 * @param keepOtherOutside true if the polygons of the second operand outside the common region
+	 * 		should be kept
+	 * @param operation the BSP operation to be used on the polygons
+	 * @return the result of the operation
+	 */
+	private static CSG combine(CSG first, CSG second, CsgOptions options, boolean keepOutside,
+			boolean keepOtherOutside, BinaryOperator<List<Polygon>> operation) {
+		boolean empty = first.getMesh().size()==0 || second.getMesh().size()==0;
+		if (!empty && !options.isBoundsPartitioning()) {
+			return new CSG(ForkJoinUtils.run(options,
+					() -> operation.apply(first.getPolygons(), second.getPolygons())));
+		}
+
+		Boundaries3d region = empty ? null : BoundsPartition.region(first.getBoundaries(), second.getBoundaries());
+		BoundsPartition a = new BoundsPartition(first.getMesh(), region);
+		BoundsPartition b = new BoundsPartition(second.getMesh(), region);
+
+		if (region!=null && (a.getInside().isEmpty() || b.getInside().isEmpty())) {
+			// the surface of one of the operands does not cross the common region, so the polygons inside
+			// the region cannot tell if the region is inside or outside of that operand
+			return new CSG(ForkJoinUtils.run(options,
+					() -> operation.apply(first.getPolygons(), second.getPolygons())));
+		}
+
+		PolygonMesh.Builder result = new PolygonMesh.Builder();
+		if (keepOutside) {
+			result.addAll(a.getOutside());
+		}
+		if (keepOtherOutside) {
+			result.addAll(b.getOutside());
+		}
+		if (region!=null) {
+			result.addAll(ForkJoinUtils.run(options, () -> operation.apply(a.getInside(), b.getInside())));
+		}
+		return new CSG(result.build());
+	}
+}
@@ -0,0 +1,131 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Collects counters about the BSP trees built during the CSG operations. It can be attached to the
+ * evaluation by {@link CsgOptions#withStatistics(BspStatistics)}, which makes it possible to compare 
+ * the different plane selection strategies on real models.</p>
+ * <p>It also collects the polygon counts before and after merging the coplanar polygons, see 
+ * {@link CSG#mergeCoplanarPolygons(CsgOptions)}.</p>
+ * <p>The object is thread-safe, so it can be used in parallel mode too.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public final class BspStatistics {
+	private final AtomicLong nodes = new AtomicLong();
+	private final AtomicLong fragments = new AtomicLong();
+	private final AtomicInteger maxDepth = new AtomicInteger();
+	private final AtomicLong polygonsBeforeMerging = new AtomicLong();
+	private final AtomicLong polygonsAfterMerging = new AtomicLong();
+	private final AtomicLong culled = new AtomicLong();
+
+	/**
+	 * Records a node built on the given depth.
+	 * @param depth the depth of the node - the root is on depth 1
+	 * @param newFragments the number of extra polygons created by splitting the polygons of the node
+	 */
+	void recordNode(int depth, int newFragments) {
+		nodes.incrementAndGet();
+		fragments.addAndGet(newFragments);
+		maxDepth.accumulateAndGet(depth, Math::max);
+	}
+
+	/**
+	 * Records the extra polygons created by the splitting while clipping polygons by a tree.
+	 * @param newFragments the number of extra polygons created by the splitting
+	 */
+	void recordFragments(int newFragments) {
+		fragments.addAndGet(newFragments);
+	}
+
+	/**
+	 * Records the polygons which were clipped as a whole, because they were not near to the surface of the
+	 * tree.
+	 * @param count the number of polygons
+	 */
+	void recordCulled(int count) {
+		culled.addAndGet(count);
+	}
+
+	/**
+	 * Records a merging of coplanar polygons.
+	 * @param before the number of polygons before the merging
+	 * @param after the number of polygons after the merging
+	 */
+	void recordMerging(int before, int after) {
+		polygonsBeforeMerging.addAndGet(before);
+		polygonsAfterMerging.addAndGet(after);
+	}
+
+	/**
+	 * Returns the number of BSP nodes built.
+	 * @return the number of BSP nodes built
+	 */
+	public long getNodeCount() {
+		return nodes.get();
+	}
+
+	/**
+	 * Returns the number of extra polygon fragments created by the splitting while building the trees and 
+	 * clipping the polygons by them.
+	 * @return the number of extra polygon fragments
+	 */
+	public long getFragmentCount() {
+		return fragments.get();
+	}
+
+	/**
+	 * Returns the depth of the deepest node built.
+	 * @return the depth of the deepest node built
+	 */
+	public int getMaxDepth() {
+		return maxDepth.get();
+	}
+
+	/**
+	 * Returns the total number of polygons the merging of the coplanar polygons started with.
+	 * @return the total number of polygons before the merging
+	 */
+	public long getPolygonCountBeforeMerging() {
+		return polygonsBeforeMerging.get();
+	}
+
+	/**
+	 * Returns the total number of polygons the merging of the coplanar polygons resulted.
+	 * @return the total number of polygons after the merging
+	 */
+	public long getPolygonCountAfterMerging() {
+		return polygonsAfterMerging.get();
+	}
+
+	/**
+	 * Returns the number of polygons clipped as a whole without splitting, because the bounding volume
+	 * hierarchy showed they were not near to the surface of the tree, see 
+	 * {@link CsgOptions#withBvhCulling(boolean)}.
+	 * @return the number of polygons clipped as a whole
+	 */
+	public long getCulledPolygonCount() {
+		return culled.get();
+	}
+
+	/**
+	 * Clears all the counters.
+	 */
+	public void reset() {
+		nodes.set(0);
+		fragments.set(0);
+		maxDepth.set(0);
+		polygonsBeforeMerging.set(0);
+		polygonsAfterMerging.set(0);
+		culled.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return "BspStatistics [nodes=" + nodes + ", fragments=" + fragments + ", maxDepth=" + maxDepth + 
+				", polygonsBeforeMerging=" + polygonsBeforeMerging + 
+				", polygonsAfterMerging=" + polygonsAfterMerging + ", culled=" + culled + "]";
+	}
+}
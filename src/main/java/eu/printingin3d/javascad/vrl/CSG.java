@@ -38,8 +38,11 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import eu.printingin3d.javascad.coords.Boundaries3d;
 import eu.printingin3d.javascad.coords.Coords3d;
 import eu.printingin3d.javascad.tranform.ITransformation;
+import eu.printingin3d.javascad.tranform.TransformationMatrix;
+import eu.printingin3d.javascad.utils.AssertValue;
 
 /**
  * Constructive Solid Geometry (CSG).
@@ -52,6 +55,9 @@ import eu.printingin3d.javascad.tranform.ITransformation;
  *
  * <b>Implementation Details</b>
  *
+ * The boolean operations are evaluated by the {@link BooleanEngine} set in the {@link CsgOptions}. The
+ * details below describe the default {@link BooleanEngine#BSP} engine.<br><br>
+ *
  * All CSG operations are implemented in terms of two functions,
  * {@link Node#clipTo(Node)} and {@link Node#invert()},
  * which remove parts of a BSP tree inside another BSP tree and swap solid and
@@ -84,11 +90,34 @@ import eu.printingin3d.javascad.tranform.ITransformation;
  * Subtraction and intersection naturally follow from set operations. If union
  * is {@code A | B}, differenceion is {@code A - B = ~(~A | B)} and intersection
  * is {@code A & B =
- * ~(~A | ~B)} where {@code ~} is the complement operator.
+ * ~(~A | ~B)} where {@code ~} is the complement operator.<br><br>
+ *
+ * Before building the BSP trees the polygons of both operands are partitioned by the common part of 
+ * their boundaries. Polygons outside of that region cannot interact with the other operand, so they are 
+ * kept (union and the left side of the difference) or dropped (intersection and the right side of the 
+ * difference) as they are; only the polygons inside the region go through the BSP trees. This can be 
+ * turned off with {@link CsgOptions#withBoundsPartitioning(boolean)}.<br><br>
+ * 
+ * The operations work on mutable BSP trees internally, which are modified in place during the sequence
+ * above like in the original csg.js. Those trees never leave the operation, so neither of the operands 
+ * is modified.<br><br>
+ * 
+ * The polygons are stored in a compact {@link PolygonMesh} between the operations. The partitioning runs
+ * on the packed arrays of the mesh and the polygons outside the common region are copied without ever 
+ * creating {@link Polygon} objects; {@link #getPolygons()} is a lazily created view of the mesh.
  */
 public class CSG {
+    /**
+     * The default tolerance used by {@link #toIndexedMesh()}: the vertices closer to each other than this
+     * value are welded together.
+     */
+    public static final double DEFAULT_WELD_TOLERANCE = 1e-6;
 
-    private final List<Polygon> polygons;
+    // at least one of the two representations is always set, the other one is created when first needed
+    private volatile List<Polygon> polygons;
+    private volatile PolygonMesh mesh;
+    private Boundaries3d boundaries;
+    private volatile PolygonBvh bvh;
 
     /**
      * Creates a new CSG file based on the given polygons.
@@ -98,6 +127,16 @@ public class CSG {
     	this.polygons = Collections.unmodifiableList(polygons);
     }
 
+    /**
+     * Creates a new CSG file based on the given compact mesh. The {@link Polygon} objects are created only
+     * when they are accessed through {@link #getPolygons()}.
+     * @param mesh the mesh to be used
+     */
+    public CSG(PolygonMesh mesh) {
+    	AssertValue.isNotNull(mesh, "The mesh should not be null!");
+    	this.mesh = mesh;
+    }
+
     /**
      * Constructs a CSG from the specified {@link Polygon} instances.
      *
@@ -113,8 +152,23 @@ public class CSG {
      * @return the polygons of this CSG
      */
     public List<Polygon> getPolygons() {
+    	if (polygons==null) {
+    		polygons = mesh.toPolygons();
+    	}
         return polygons;
     }
+
+    /**
+     * Returns the compact representation of the polygons of this CSG. The mesh is created on the first call
+     * if this CSG has been created from a list of polygons.
+     * @return the compact representation of the polygons of this CSG
+     */
+    public PolygonMesh getMesh() {
+    	if (mesh==null) {
+    		mesh = PolygonMesh.fromPolygons(polygons);
+    	}
+    	return mesh;
+    }
     
     /**
      * Get all the points this CSG holds.
@@ -155,15 +209,23 @@ public class CSG {
      * @return union of this csg and the specified csg
      */
     public CSG union(CSG csg) {
-        Node a = Node.fromPoligons(this.polygons);
-        Node b = Node.fromPoligons(csg.polygons);
-        a = a.clipTo(b);
-        b = b.clipTo(a);
-        b = b.invert();
-        b = b.clipTo(a);
-        b = b.invert();
-        a = a.build(b.allPolygons());
-        return new CSG(a.allPolygons());
+        return union(csg, CsgOptions.DEFAULT);
+    }
+
+    /**
+     * Return a new CSG solid representing the union of this csg and the
+     * specified csg using the given options.
+     *
+     * <b>Note:</b> Neither this csg nor the specified csg are modified.
+     *
+     * @param csg other csg
+     * @param options the options used for the evaluation
+     * @return union of this csg and the specified csg
+     * @see #union(CSG)
+     */
+    public CSG union(CSG csg, CsgOptions options) {
+        options.checkRender();
+        return afterOperation(options.getEngine().union(this, csg, options), options);
     }
 
     /**
@@ -189,17 +251,23 @@ public class CSG {
      * @return difference of this csg and the specified csg
      */
     public CSG difference(CSG csg) {
-        Node a = Node.fromPoligons(this.polygons);
-        Node b = Node.fromPoligons(csg.polygons);
-        a = a.invert();
-        a = a.clipTo(b);
-        b = b.clipTo(a);
-        b = b.invert();
-        b = b.clipTo(a);
-        b = b.invert();
-        a = a.build(b.allPolygons());
-        a = a.invert();
-        return new CSG(a.allPolygons());
+        return difference(csg, CsgOptions.DEFAULT);
+    }
+
+    /**
+     * Return a new CSG solid representing the difference of this csg and the
+     * specified csg using the given options.
+     *
+     * <b>Note:</b> Neither this csg nor the specified csg are modified.
+     *
+     * @param csg other csg
+     * @param options the options used for the evaluation
+     * @return difference of this csg and the specified csg
+     * @see #difference(CSG)
+     */
+    public CSG difference(CSG csg, CsgOptions options) {
+        options.checkRender();
+        return afterOperation(options.getEngine().difference(this, csg, options), options);
     }
 
     /**
@@ -226,16 +294,158 @@ public class CSG {
      * @return intersection of this csg and the specified csg
      */
     public CSG intersect(CSG csg) {
-        Node a = Node.fromPoligons(this.polygons);
-        Node b = Node.fromPoligons(csg.polygons);
-        a = a.invert();
-        b = b.clipTo(a);
-        b = b.invert();
-        a = a.clipTo(b);
-        b = b.clipTo(a);
-        a = a.build(b.allPolygons());
-        a = a.invert();
-        return new CSG(a.allPolygons());
+        return intersect(csg, CsgOptions.DEFAULT);
+    }
+
+    /**
+     * Return a new CSG solid representing the intersection of this csg and the
+     * specified csg using the given options.
+     *
+     * <b>Note:</b> Neither this csg nor the specified csg are modified.
+     *
+     * @param csg other csg
+     * @param options the options used for the evaluation
+     * @return intersection of this csg and the specified csg
+     * @see #intersect(CSG)
+     */
+    public CSG intersect(CSG csg, CsgOptions options) {
+        options.checkRender();
+        return afterOperation(options.getEngine().intersect(this, csg, options), options);
+    }
+
+    /**
+     * Return a new CSG solid representing the union of all the given csgs. The union is evaluated as
+     * a balanced reduction tree, the independent pairs are evaluated concurrently if the parallel 
+     * evaluation is turned on in the options. Groups of csgs whose boundaries don't touch each other 
+     * are merged without any BSP operation.
+     *
+     * <b>Note:</b> None of the given csgs are modified.
+     *
+     * @param csgs the csgs to be used
+     * @param options the options used for the evaluation
+     * @return union of the given csgs
+     */
+    public static CSG unionAll(List<CSG> csgs, CsgOptions options) {
+        return CsgReduction.union(csgs, options);
+    }
+
+    /**
+     * Return a new CSG solid representing the difference of this csg and all the given csgs. The 
+     * subtracted csgs are combined by {@link #unionAll(List, CsgOptions)} first, then the result is 
+     * subtracted from this csg in one operation. The csgs whose boundaries don't touch this csg are 
+     * ignored.
+     *
+     * <b>Note:</b> Neither this csg nor the given csgs are modified.
+     *
+     * @param csgs the csgs to be subtracted
+     * @param options the options used for the evaluation
+     * @return difference of this csg and the given csgs
+     */
+    public CSG differenceAll(List<CSG> csgs, CsgOptions options) {
+        return CsgReduction.difference(this, csgs, options);
+    }
+
+    /**
+     * Return a new CSG solid representing the intersection of all the given csgs. The intersection is 
+     * evaluated as a balanced reduction tree, the independent pairs are evaluated concurrently if the 
+     * parallel evaluation is turned on in the options. If the boundaries of the csgs have no common part
+     * the result is empty without any BSP operation.
+     *
+     * <b>Note:</b> None of the given csgs are modified.
+     *
+     * @param csgs the csgs to be used
+     * @param options the options used for the evaluation
+     * @return intersection of the given csgs
+     */
+    public static CSG intersectAll(List<CSG> csgs, CsgOptions options) {
+        return CsgReduction.intersect(csgs, options);
+    }
+
+    /**
+     * Merges the coplanar polygons of the result of an operation if the options require it.
+     * @param result the result of the operation
+     * @param options the options used for the evaluation
+     * @return the result itself or the result with the coplanar polygons merged
+     */
+    private static CSG afterOperation(CSG result, CsgOptions options) {
+    	return options.getPolygonMerging()==PolygonMerging.AFTER_EACH_OPERATION ? 
+    			result.mergeCoplanarPolygons(options) : result;
+    }
+
+
+    /**
+     * Calculates the including cuboid of this CSG. The result is calculated only once.
+     * @return the including cuboid of this CSG or {@link Boundaries3d#EMPTY} if this CSG is empty
+     */
+    public Boundaries3d getBoundaries() {
+    	if (boundaries==null) {
+    		boundaries = getMesh().getBoundaries();
+    	}
+    	return boundaries;
+    }
+
+    /**
+     * Returns the bounding volume hierarchy of the polygons of this CSG. It is built on the first call and
+     * reused by every later operation on this object.
+     * @return the bounding volume hierarchy of the polygons
+     */
+    PolygonBvh getBvh() {
+    	if (bvh==null) {
+    		bvh = new PolygonBvh(getMesh());
+    	}
+    	return bvh;
+    }
+
+    /**
+     * Merges the adjacent coplanar polygons with the same color into maximal convex polygons. The BSP 
+     * operations split the flat faces into many fragments, this method merges the fragments sharing an
+     * edge back as long as the result is convex. The solid represented by the result is the same. If the
+     * statistics are collected by the given options the polygon counts before and after the merging are 
+     * recorded.
+     * @param options the options used - only the statistics are used from it
+     * @return a new CSG with the merged polygons
+     */
+    public CSG mergeCoplanarPolygons(CsgOptions options) {
+    	List<Polygon> merged = CoplanarMerge.merge(getPolygons());
+    	if (options.getStatistics()!=null) {
+    		options.getStatistics().recordMerging(getMesh().size(), merged.size());
+    	}
+    	return new CSG(PolygonMesh.fromPolygons(merged));
+    }
+
+    /**
+     * Returns with all the facet this CSG object holds. The adjacent coplanar polygons are merged first if
+     * the given options require merging before the export.
+     * @param options the options used
+     * @return all the facet this CSG object holds
+     */
+    public List<Facet> toFacets(CsgOptions options) {
+    	if (options.getPolygonMerging()==PolygonMerging.BEFORE_EXPORT) {
+    		return mergeCoplanarPolygons(options).toFacets();
+    	}
+    	return toFacets();
+    }
+
+    /**
+     * Converts this CSG to a watertight indexed triangle mesh using the default tolerance.
+     * @return the indexed mesh
+     * @see #toIndexedMesh(double)
+     */
+    public IndexedMesh toIndexedMesh() {
+    	return toIndexedMesh(DEFAULT_WELD_TOLERANCE);
+    }
+
+    /**
+     * Converts this CSG to an indexed triangle mesh. The vertices closer to each other than the given 
+     * tolerance are welded together and the T-junctions left by the BSP splitting are repaired, so the
+     * neighbouring triangles share their edges and the result is watertight.
+     * @param tolerance the vertices closer to each other than this value are welded together
+     * @return the indexed mesh
+     * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if the tolerance is not positive
+     */
+    public IndexedMesh toIndexedMesh(double tolerance) {
+    	AssertValue.isTrue(tolerance>0.0, "The welding tolerance should be positive, but was "+tolerance+"!");
+    	return MeshWelder.weld(getPolygons(), tolerance);
     }
 
     /**
@@ -244,22 +454,26 @@ public class CSG {
      */
     public List<Facet> toFacets() {
     	List<Facet> facets = new ArrayList<>();
-    	for (Polygon p : polygons) {
+    	for (Polygon p : getPolygons()) {
     		facets.addAll(p.toFacets());
     	}
     	return facets;
     }
     
     /**
-     * Returns a transformed copy of this CSG.
+     * Returns a transformed copy of this CSG. A {@link TransformationMatrix} is applied to the packed 
+     * coordinates of the mesh without creating the polygon objects.
      *
      * @param transform the transform to apply
      *
      * @return a transformed copy of this CSG
      */
     public CSG transformed(ITransformation transform) {
+    	if (transform instanceof TransformationMatrix) {
+    		return new CSG(getMesh().transformed((TransformationMatrix) transform));
+    	}
     	List<Polygon> newpolygons = new ArrayList<>();
-    	for (Polygon p : this.polygons) {
+    	for (Polygon p : getPolygons()) {
     		newpolygons.add(p.transformed(transform));
     	}
 
@@ -0,0 +1,372 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.awt.Color;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import eu.printingin3d.javascad.coords.Coords3d;
+
+/**
+ * <p>Merges the adjacent coplanar polygons with the same color into maximal convex polygons. Two polygons
+ * are adjacent if they share an edge with exactly the same end points. The fragments created by the BSP
+ * splitting often meet in T-junctions, so first the edges are split by the vertices of the other polygons 
+ * of the same plane lying on them.</p>
+ * <p>The polygons are merged greedily: a polygon is merged with its neighbour through a common edge if
+ * the result is convex and the merging is repeated until no more merging is possible. The vertices of the 
+ * merged polygons lying on a straight line between their neighbours are removed at the end.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+final class CoplanarMerge {
+	private static final double PLANE_PRECISION = 1e6;
+	private static final double ANGLE_TOLERANCE = 1e-9;
+	private static final double EDGE_TOLERANCE = VertexPosition.EPSILON;
+
+	private final List<Coords3d> coords = new ArrayList<>();
+	private final Map<VertexKey, Integer> vertexIds = new HashMap<>();
+
+	private CoplanarMerge() {
+		// only used by the merge method
+	}
+
+	/**
+	 * Merges the adjacent coplanar polygons of the given list. The polygons which are not merged are kept
+	 * as they are.
+	 * @param polygons the polygons to be merged
+	 * @return the list of the merged polygons
+	 */
+	static List<Polygon> merge(List<Polygon> polygons) {
+		Map<PlaneKey, List<Polygon>> groups = new LinkedHashMap<>();
+		for (Polygon p : polygons) {
+			groups.computeIfAbsent(new PlaneKey(p), k -> new ArrayList<>()).add(p);
+		}
+
+		List<Polygon> result = new ArrayList<>(polygons.size());
+		for (List<Polygon> group : groups.values()) {
+			if (group.size()==1) {
+				result.addAll(group);
+			}
+			else {
+				new CoplanarMerge().mergeGroup(group, result);
+			}
+		}
+		return result;
+	}
+
+	private int vertexId(Coords3d v) {
+		return vertexIds.computeIfAbsent(new VertexKey(v), k -> {
+			coords.add(v);
+			return Integer.valueOf(coords.size()-1);
+		}).intValue();
+	}
+
+	private void mergeGroup(List<Polygon> group, List<Polygon> result) {
+		int n = group.size();
+		int[][] loops = new int[n][];
+		boolean[] merged = new boolean[n];
+		boolean[] alive = new boolean[n];
+		Map<Long, Integer> edges = new HashMap<>();
+		Deque<Integer> queue = new ArrayDeque<>();
+		for (int i = 0; i<n; i++) {
+			List<Coords3d> vertices = group.get(i).getVertices();
+			loops[i] = new int[vertices.size()];
+			for (int j = 0; j<vertices.size(); j++) {
+				loops[i][j] = vertexId(vertices.get(j));
+			}
+			alive[i] = true;
+		}
+		splitEdges(loops);
+		for (int i = 0; i<n; i++) {
+			addEdges(edges, loops[i], i);
+			queue.add(Integer.valueOf(i));
+		}
+
+		Coords3d normal = group.get(0).getNormal();
+		while (!queue.isEmpty()) {
+			int i = queue.poll().intValue();
+			if (!alive[i]) {
+				continue;
+			}
+			int[] loop = loops[i];
+			for (int k = 0; k<loop.length; k++) {
+				int a = loop[k];
+				int b = loop[(k+1) % loop.length];
+				Integer other = edges.get(Long.valueOf(edgeKey(b, a)));
+				if (other==null || other.intValue()==i || !alive[other.intValue()]) {
+					continue;
+				}
+				int j = other.intValue();
+				int[] joined = join(loop, k, loops[j], normal);
+				if (joined!=null) {
+					removeEdges(edges, loops[i], i);
+					removeEdges(edges, loops[j], j);
+					alive[j] = false;
+					loops[i] = joined;
+					merged[i] = true;
+					addEdges(edges, joined, i);
+					queue.add(Integer.valueOf(i));
+					break;
+				}
+			}
+		}
+
+		for (int i = 0; i<n; i++) {
+			if (alive[i]) {
+				Polygon p = group.get(i);
+				result.add(merged[i] ? toPolygon(loops[i], p) : p);
+			}
+		}
+	}
+
+	/**
+	 * Inserts the vertices lying on the edges of the loops into the loops, so the neighbouring polygons
+	 * meeting in a T-junction get a common edge. The vertices are sorted by their X coordinate, so only
+	 * those vertices are checked which are in the X range of the edge.
+	 */
+	private void splitEdges(int[][] loops) {
+		Integer[] byX = new Integer[coords.size()];
+		double[] xs = new double[coords.size()];
+		for (int i = 0; i<byX.length; i++) {
+			byX[i] = Integer.valueOf(i);
+		}
+		Arrays.sort(byX, Comparator.comparingDouble(i -> coords.get(i.intValue()).getX()));
+		for (int i = 0; i<byX.length; i++) {
+			xs[i] = coords.get(byX[i].intValue()).getX();
+		}
+
+		for (int l = 0; l<loops.length; l++) {
+			List<Integer> refined = new ArrayList<>();
+			int[] loop = loops[l];
+			for (int k = 0; k<loop.length; k++) {
+				int a = loop[k];
+				int b = loop[(k+1) % loop.length];
+				refined.add(Integer.valueOf(a));
+				refined.addAll(verticesOnEdge(a, b, byX, xs));
+			}
+			if (refined.size()>loop.length) {
+				loops[l] = refined.stream().mapToInt(Integer::intValue).toArray();
+			}
+		}
+	}
+
+	private List<Integer> verticesOnEdge(int a, int b, Integer[] byX, double[] xs) {
+		Coords3d start = coords.get(a);
+		Coords3d direction = coords.get(b).add(start.inverse());
+		double length = direction.magnitude();
+		if (length<=EDGE_TOLERANCE) {
+			return Collections.emptyList();
+		}
+		Coords3d unit = direction.unit();
+
+		double minX = Math.min(start.getX(), coords.get(b).getX()) - EDGE_TOLERANCE;
+		double maxX = Math.max(start.getX(), coords.get(b).getX()) + EDGE_TOLERANCE;
+		int from = Arrays.binarySearch(xs, minX);
+		from = from<0 ? -from-1 : from;
+		while (from>0 && xs[from-1]>=minX) {
+			from--;
+		}
+
+		List<Integer> found = new ArrayList<>();
+		List<Double> positions = new ArrayList<>();
+		for (int i = from; i<xs.length && xs[i]<=maxX; i++) {
+			int v = byX[i].intValue();
+			if (v==a || v==b) {
+				continue;
+			}
+			Coords3d relative = coords.get(v).add(start.inverse());
+			double t = relative.dot(unit);
+			if (t>EDGE_TOLERANCE && t<length-EDGE_TOLERANCE &&
+					relative.cross(unit).magnitude()<=EDGE_TOLERANCE) {
+				int index = 0;
+				while (index<positions.size() && positions.get(index).doubleValue()<t) {
+					index++;
+				}
+				positions.add(index, Double.valueOf(t));
+				found.add(index, Integer.valueOf(v));
+			}
+		}
+		return found;
+	}
+
+	private Polygon toPolygon(int[] loop, Polygon plane) {
+		List<Integer> ids = new ArrayList<>(loop.length);
+		for (int id : loop) {
+			ids.add(Integer.valueOf(id));
+		}
+		Coords3d normal = plane.getNormal();
+		for (int m = ids.size()-1; m>=0 && ids.size()>3; m--) {
+			if (turn(ids, m, normal)==0) {
+				ids.remove(m);
+			}
+		}
+
+		List<Coords3d> vertices = new ArrayList<>(ids.size());
+		for (Integer id : ids) {
+			vertices.add(coords.get(id.intValue()));
+		}
+		return Polygon.fromPlane(vertices, plane.getNormal(), plane.getDist(), plane.getColor());
+	}
+
+	/**
+	 * Joins the two loops through the edge starting at the given index of the first loop, which is the
+	 * reversed pair of an edge of the second loop. The loops might share a chain of collinear edges - the
+	 * edges split at T-junctions - so the common chain is extended in both directions and its inner 
+	 * vertices are left out of the result. Returns null if the result would not be convex.
+	 */
+	private int[] join(int[] first, int k, int[] second, Coords3d normal) {
+		int n1 = first.length;
+		int n2 = second.length;
+		int start = indexOf(second, first[k]);
+
+		// the number of common edges before and after the given edge in the first loop
+		int before = 0;
+		while (1+before<Math.min(n1, n2) && 
+				first[(k-1-before+n1) % n1]==second[(start+1+before) % n2]) {
+			before++;
+		}
+		int after = 0;
+		while (1+before+after<Math.min(n1, n2) && 
+				first[(k+2+after) % n1]==second[(start-2-after+2*n2) % n2]) {
+			after++;
+		}
+		int common = 1+before+after;
+
+		List<Integer> joined = new ArrayList<>(n1+n2-2*common);
+		// the first loop from the end of the chain to its start, then the second loop from the vertex after
+		// the start of the chain to the vertex before its end
+		for (int m = 0; m<=n1-common; m++) {
+			joined.add(Integer.valueOf(first[(k+1+after+m) % n1]));
+		}
+		for (int m = 0; m<n2-common-1; m++) {
+			joined.add(Integer.valueOf(second[(start+before+1+m) % n2]));
+		}
+
+		if (joined.size()<3 || joined.stream().distinct().count()!=joined.size()) {
+			return null;
+		}
+		for (int m = 0; m<joined.size(); m++) {
+			if (turn(joined, m, normal)<0) {
+				return null;
+			}
+		}
+		return joined.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * Calculates the direction of the turn at the given vertex of the loop: 1 for a convex corner, 0 for
+	 * a straight line and -1 for a concave corner or a reversal.
+	 */
+	private int turn(List<Integer> loop, int index, Coords3d normal) {
+		int size = loop.size();
+		Coords3d prev = coords.get(loop.get((index+size-1) % size).intValue());
+		Coords3d current = coords.get(loop.get(index).intValue());
+		Coords3d next = coords.get(loop.get((index+1) % size).intValue());
+		Coords3d e1 = current.add(prev.inverse());
+		Coords3d e2 = next.add(current.inverse());
+		double limit = ANGLE_TOLERANCE * e1.magnitude() * e2.magnitude();
+		double sine = e1.cross(e2).dot(normal);
+		if (sine>limit) {
+			return 1;
+		}
+		return sine<-limit || e1.dot(e2)<=0 ? -1 : 0;
+	}
+
+	private static int indexOf(int[] loop, int vertex) {
+		for (int i = 0; i<loop.length; i++) {
+			if (loop[i]==vertex) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static long edgeKey(int a, int b) {
+		return ((long) a << 32) | (b & 0xffffffffL);
+	}
+
+	private static void addEdges(Map<Long, Integer> edges, int[] loop, int owner) {
+		for (int k = 0; k<loop.length; k++) {
+			edges.put(Long.valueOf(edgeKey(loop[k], loop[(k+1) % loop.length])), Integer.valueOf(owner));
+		}
+	}
+
+	private static void removeEdges(Map<Long, Integer> edges, int[] loop, int owner) {
+		for (int k = 0; k<loop.length; k++) {
+			edges.remove(Long.valueOf(edgeKey(loop[k], loop[(k+1) % loop.length])), Integer.valueOf(owner));
+		}
+	}
+
+	/**
+	 * Identifies a vertex by its exact coordinates.
+	 */
+	private static final class VertexKey {
+		private final double x;
+		private final double y;
+		private final double z;
+
+		private VertexKey(Coords3d v) {
+			this.x = v.getX();
+			this.y = v.getY();
+			this.z = v.getZ();
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(Double.valueOf(x), Double.valueOf(y), Double.valueOf(z));
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof VertexKey)) {
+				return false;
+			}
+			VertexKey other = (VertexKey) obj;
+			return Double.compare(x, other.x)==0 && Double.compare(y, other.y)==0 && Double.compare(z, other.z)==0;
+		}
+	}
+
+	/**
+	 * Identifies the plane and the color of a polygon - the plane is rounded, so the planes of the
+	 * fragments of the same face fall into the same group even if they are slightly different.
+	 */
+	private static final class PlaneKey {
+		private final long nx;
+		private final long ny;
+		private final long nz;
+		private final long dist;
+		private final Color color;
+
+		private PlaneKey(Polygon polygon) {
+			Coords3d normal = polygon.getNormal();
+			this.nx = Math.round(normal.getX()*PLANE_PRECISION);
+			this.ny = Math.round(normal.getY()*PLANE_PRECISION);
+			this.nz = Math.round(normal.getZ()*PLANE_PRECISION);
+			this.dist = Math.round(polygon.getDist()*PLANE_PRECISION);
+			this.color = polygon.getColor();
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(Long.valueOf(nx), Long.valueOf(ny), Long.valueOf(nz), Long.valueOf(dist), color);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof PlaneKey)) {
+				return false;
+			}
+			PlaneKey other = (PlaneKey) obj;
+			return nx==other.nx && ny==other.ny && nz==other.nz && dist==other.dist &&
+					Objects.equals(color, other.color);
+		}
+	}
+}
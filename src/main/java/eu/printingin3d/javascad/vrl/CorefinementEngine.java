@@ -0,0 +1,206 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+import eu.printingin3d.javascad.coords.Coords3d;
+
+/**
+ * <p>Boolean engine based on mesh corefinement. The operands are welded into closed triangle meshes, then
+ * </p>
+ * <ol>
+ * <li>the intersection curve of the two surfaces is calculated by intersecting the triangle pairs near to
+ * each other, see {@link MeshIntersection}, and the triangles of both operands are split along the curve,
+ * see {@link TriangleRefinement}</li>
+ * <li>the split triangles are welded together again and a {@link HalfEdgeMesh} is built from the triangles
+ * of both operands; the intersection curve is formed by the edges present in both of them and the edges
+ * the curve was split into in either operand - the two operands might split the curve at different points</li>
+ * <li>the triangles of both operands are divided into patches bordered by the intersection curve, and every
+ * patch is classified as a whole by one of its points: outside or inside the other operand, or lying on the
+ * surface of the other operand facing the same or the opposite direction</li>
+ * <li>the patches are kept or dropped by the operation, the kept patches of the subtracted operand are
+ * flipped</li>
+ * </ol>
+ * <p>Only the patches have to be classified and only the triangles near to the other operand have to be
+ * intersected, so the running time depends on the size of the intersection curve rather than on the
+ * product of the polygon counts. The result is a set of triangles.</p>
+ * <p>If an operand is not a closed surface or the refinement fails on a degenerated configuration, the
+ * operation falls back to the {@link BooleanEngine#BSP} engine.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+final class CorefinementEngine implements BooleanEngine {
+	private static final double TOLERANCE = CSG.DEFAULT_WELD_TOLERANCE;
+
+	@Override
+	public CSG union(CSG a, CSG b, CsgOptions options) {
+		return evaluate(a, b, options, Operation.UNION);
+	}
+
+	@Override
+	public CSG difference(CSG a, CSG b, CsgOptions options) {
+		return evaluate(a, b, options, Operation.DIFFERENCE);
+	}
+
+	@Override
+	public CSG intersect(CSG a, CSG b, CsgOptions options) {
+		return evaluate(a, b, options, Operation.INTERSECTION);
+	}
+
+	private static CSG evaluate(CSG a, CSG b, CsgOptions options, Operation operation) {
+		if (a.getMesh().size()==0 || b.getMesh().size()==0 ||
+				BoundsPartition.overlap(a.getBoundaries(), b.getBoundaries())==null) {
+			return operation.separated(a, b);
+		}
+		try {
+			return corefine(a, b, operation);
+		}
+		catch (IllegalStateException e) {
+			return operation.evaluate(BooleanEngine.BSP, a, b, options);
+		}
+	}
+
+	private static CSG corefine(CSG a, CSG b, Operation operation) {
+		MeshIntersection intersection = new MeshIntersection(weld(a), weld(b), TOLERANCE);
+		List<Polygon> pieces = new ArrayList<>(intersection.getFirstPieces());
+		int firstCount = pieces.size();
+		pieces.addAll(intersection.getSecondPieces());
+
+		Set<Long> curve = new HashSet<>();
+		IndexedMesh mesh = MeshWelder.weld(pieces, TOLERANCE, intersection.getCurve(), curve);
+		HalfEdgeMesh first = new HalfEdgeMesh(mesh, triangles(mesh, source -> source<firstCount));
+		HalfEdgeMesh second = new HalfEdgeMesh(mesh, triangles(mesh, source -> source>=firstCount));
+		Set<Long> common = first.getEdges();
+		common.retainAll(second.getEdges());
+		curve.addAll(common);
+
+		List<Polygon> result = new ArrayList<>();
+		select(first, second, curve, operation.firstKept, false, result);
+		select(second, first, curve, operation.secondKept, operation.secondFlipped, result);
+		return new CSG(result);
+	}
+
+	private static IndexedMesh weld(CSG csg) {
+		IndexedMesh mesh = MeshWelder.weld(csg.getPolygons(), TOLERANCE);
+		if (!mesh.isWatertight()) {
+			throw new IllegalStateException("The operand is not a closed surface.");
+		}
+		return mesh;
+	}
+
+	private static int[] triangles(IndexedMesh mesh, IntPredicate sourceFilter) {
+		return IntStream.range(0, mesh.getTriangleCount()).filter(t -> sourceFilter.test(mesh.getSource(t))).toArray();
+	}
+
+	private static void select(HalfEdgeMesh part, HalfEdgeMesh other, Set<Long> curve, Set<Position> kept,
+			boolean flipped, List<Polygon> result) {
+		int[] patches = part.findPatches(curve);
+		Position[] positions = classify(part, patches, other);
+		for (int t = 0; t<part.getTriangleCount(); t++) {
+			if (kept.contains(positions[patches[t]])) {
+				Polygon polygon = part.toPolygon(t);
+				result.add(flipped ? polygon.flip() : polygon);
+			}
+		}
+	}
+
+	/**
+	 * Classifies every patch by the center of its biggest triangle - the biggest triangle is the least
+	 * likely to be so thin that its center is closer to the other surface than the tolerance.
+	 */
+	private static Position[] classify(HalfEdgeMesh part, int[] patches, HalfEdgeMesh other) {
+		int count = Arrays.stream(patches).max().orElse(-1) + 1;
+		int[] representatives = new int[count];
+		double[] areas = new double[count];
+		Arrays.fill(areas, -1.0);
+		for (int t = 0; t<patches.length; t++) {
+			double area = part.getAreaVector(t).magnitude();
+			if (area>areas[patches[t]]) {
+				areas[patches[t]] = area;
+				representatives[patches[t]] = t;
+			}
+		}
+
+		Position[] result = new Position[count];
+		for (int p = 0; p<count; p++) {
+			int t = representatives[p];
+			Coords3d center = part.getCenter(t);
+			Coords3d normal = other.findSurfaceNormal(center, TOLERANCE);
+			if (normal!=null) {
+				result[p] = normal.dot(part.getAreaVector(t))>0.0 ? Position.SAME : Position.OPPOSITE;
+			}
+			else {
+				result[p] = other.windingNumber(center)>0.5 ? Position.INSIDE : Position.OUTSIDE;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * The position of a patch relative to the other operand.
+	 */
+	private enum Position {
+		/** The patch is outside of the other operand. */
+		OUTSIDE,
+		/** The patch is inside of the other operand. */
+		INSIDE,
+		/** The patch lies on the surface of the other operand, both are facing the same direction. */
+		SAME,
+		/** The patch lies on the surface of the other operand, they are facing the opposite directions. */
+		OPPOSITE
+	}
+
+	/**
+	 * The boolean operations with the patches they keep from the two operands.
+	 */
+	private enum Operation {
+		/** The union keeps the outer parts of both operands and one copy of their common surface. */
+		UNION(EnumSet.of(Position.OUTSIDE, Position.SAME), EnumSet.of(Position.OUTSIDE), false),
+		/** The difference keeps the outer part of the first and the flipped inner part of the second. */
+		DIFFERENCE(EnumSet.of(Position.OUTSIDE, Position.OPPOSITE), EnumSet.of(Position.INSIDE), true),
+		/** The intersection keeps the inner parts of both operands and one copy of their common surface. */
+		INTERSECTION(EnumSet.of(Position.INSIDE, Position.SAME), EnumSet.of(Position.INSIDE), false);
+
+		private final Set<Position> firstKept;
+		private final Set<Position> secondKept;
+		private final boolean secondFlipped;
+
+		Operation(Set<Position> firstKept, Set<Position> secondKept, boolean secondFlipped) {
+			this.firstKept = firstKept;
+			this.secondKept = secondKept;
+			this.secondFlipped = secondFlipped;
+		}
+
+		/**
+		 * Calculates the result if the operands cannot touch each other.
+		 */
+		private CSG separated(CSG a, CSG b) {
+			switch (this) {
+			case UNION:
+				return new CSG(new PolygonMesh.Builder().addAll(a.getMesh()).addAll(b.getMesh()).build());
+			case DIFFERENCE:
+				return a;
+			default:
+				return new CSG(Collections.<Polygon>emptyList());
+			}
+		}
+
+		private CSG evaluate(BooleanEngine engine, CSG a, CSG b, CsgOptions options) {
+			switch (this) {
+			case UNION:
+				return engine.union(a, b, options);
+			case DIFFERENCE:
+				return engine.difference(a, b, options);
+			default:
+				return engine.intersect(a, b, options);
+			}
+		}
+	}
+}
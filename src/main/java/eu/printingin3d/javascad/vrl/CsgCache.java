@@ -0,0 +1,145 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import eu.printingin3d.javascad.utils.AssertValue;
+
+/**
+ * <p>Render scoped cache of the rendered CSG of the models. It can be attached to a rendering by
+ * {@link FacetGenerationContext#setCsgCache(CsgCache)}: the models are rendered in their own local frame -
+ * without their own moves and rotations - and the results are stored by the structure of the model, the
+ * resolution and the color used by the rendering. If the same subtree appears again in the model - for
+ * example because it was copied by the {@code moves} or {@code rotates} methods - the cached result is
+ * used and only the transformation of the copy has to be calculated.</p>
+ * <p>The cache holds the results until {@link #reset()} is called, so it is meant to be used for one
+ * rendering or for a series of renderings of the same model. A {@link MeshDiskCache} can be attached to 
+ * keep the results across JVM runs: the results missing from the memory are looked up there before
+ * rendering them. The object is thread-safe.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public final class CsgCache {
+	private final Map<Object, CSG> results = new ConcurrentHashMap<>();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong diskHits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final MeshDiskCache diskCache;
+
+	/**
+	 * Creates a cache which keeps the results only in the memory.
+	 */
+	public CsgCache() {
+		this(null);
+	}
+
+	/**
+	 * Creates a cache which stores the results in the given disk cache too.
+	 * @param diskCache the disk cache to be used - can be null, which means the results are kept only in the
+	 * 		memory
+	 */
+	public CsgCache(MeshDiskCache diskCache) {
+		this.diskCache = diskCache;
+	}
+
+	/**
+	 * Returns the result stored with the given key or calculates and stores it if there is no such result yet.
+	 * The calculation is not locked, so it might run more than once if the same key is requested on more
+	 * threads at the same time, but only the first result is stored.
+	 * @param key the key of the result - it has to describe everything the result depends on, because it is
+	 * 		used across JVM runs by the disk cache
+	 * @param calculation the calculation of the result
+	 * @return the result stored with the given key
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if the key is null
+	 */
+	CSG get(String key, Supplier<CSG> calculation) {
+		return get(key, () -> key, calculation);
+	}
+
+	/**
+	 * Returns the result stored with the given key or calculates and stores it if there is no such result yet.
+	 * The results are kept in the memory by the given key, which has to implement equals and hashCode, and
+	 * the disk cache uses the given textual key, which is created only if the result is not in the memory.
+	 * @param key the key of the result in the memory
+	 * @param diskKey creates the key of the result in the disk cache - it has to describe everything the
+	 * 		result depends on, because it is used across JVM runs. If it returns null the result is not stored
+	 * 		on the disk.
+	 * @param calculation the calculation of the result
+	 * @return the result stored with the given key
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if the key is null
+	 */
+	CSG get(Object key, Supplier<String> diskKey, Supplier<CSG> calculation) {
+		AssertValue.isNotNull(key, "The key of the cached CSG should not be null!");
+
+		CSG result = results.get(key);
+		if (result!=null) {
+			hits.incrementAndGet();
+			return result;
+		}
+
+		String textKey = diskCache==null ? null : diskKey.get();
+		result = textKey==null ? null : diskCache.load(textKey);
+		if (result!=null) {
+			diskHits.incrementAndGet();
+		}
+		else {
+			misses.incrementAndGet();
+			result = calculation.get();
+			if (textKey!=null) {
+				diskCache.store(textKey, result);
+			}
+		}
+		CSG previous = results.putIfAbsent(key, result);
+		return previous==null ? result : previous;
+	}
+
+	/**
+	 * Returns the number of requests served from the cache.
+	 * @return the number of requests served from the cache
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of requests served from the disk cache.
+	 * @return the number of requests served from the disk cache
+	 */
+	public long getDiskHitCount() {
+		return diskHits.get();
+	}
+
+	/**
+	 * Returns the number of requests which had to be calculated.
+	 * @return the number of requests which had to be calculated
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns the number of results stored in the cache.
+	 * @return the number of results stored in the cache
+	 */
+	public int size() {
+		return results.size();
+	}
+
+	/**
+	 * Drops all the results stored in the memory and clears the counters. The disk cache is not cleared.
+	 */
+	public void reset() {
+		results.clear();
+		hits.set(0);
+		diskHits.set(0);
+		misses.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return "CsgCache [hits=" + hits + ", diskHits=" + diskHits + ", misses=" + misses + 
+				", size=" + results.size() + "]";
+	}
+}
@@ -0,0 +1,373 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.util.concurrent.ForkJoinPool;
+
+import eu.printingin3d.javascad.utils.AssertValue;
+
+/**
+ * <p>Immutable set of options controlling how the CSG operations are evaluated. None of the options
+ * changes the solid an operation results, only the way it is calculated. The plane selection strategy
+ * might change how the surface of the result is divided into polygons though.</p>
+ * <p>The usual way to use this class is chaining:</p>
+ * <pre><code>CsgOptions.DEFAULT
+	.withParallel(true)
+	.withParallelThreshold(500);</code></pre>
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public final class CsgOptions {
+	/**
+	 * The default options: everything is evaluated on the calling thread and the bounds partitioning is used.
+	 */
+	public static final CsgOptions DEFAULT = new CsgOptions(false, 256, true, PlaneSelectionStrategy.FIRST_POLYGON,
+			null, false, PolygonMerging.NEVER, BooleanEngine.BSP, true, false, null, null);
+
+	private final boolean parallel;
+	private final int parallelThreshold;
+	private final boolean boundsPartitioning;
+	private final PlaneSelectionStrategy planeSelection;
+	private final BspStatistics statistics;
+	private final boolean robust;
+	private final PolygonMerging polygonMerging;
+	private final BooleanEngine engine;
+	private final boolean bvhCulling;
+	private final boolean transformFusion;
+	private final ForkJoinPool renderPool;
+	private final RenderHandle renderHandle;
+
+	// CHECKSTYLE:OFF - every option is passed to keep the fields final
+	private CsgOptions(boolean parallel, int parallelThreshold, boolean boundsPartitioning,
+			PlaneSelectionStrategy planeSelection, BspStatistics statistics, boolean robust,
+			PolygonMerging polygonMerging, BooleanEngine engine, boolean bvhCulling, boolean transformFusion,
+			ForkJoinPool renderPool, RenderHandle renderHandle) {
+		this.parallel = parallel;
+		this.parallelThreshold = parallelThreshold;
+		this.boundsPartitioning = boundsPartitioning;
+		this.planeSelection = planeSelection;
+		this.statistics = statistics;
+		this.robust = robust;
+		this.polygonMerging = polygonMerging;
+		this.engine = engine;
+		this.bvhCulling = bvhCulling;
+		this.transformFusion = transformFusion;
+		this.renderPool = renderPool;
+		this.renderHandle = renderHandle;
+	}
+	// CHECKSTYLE:ON
+
+	/**
+	 * Creates a new object with the parallel evaluation turned on or off. In parallel mode the independent
+	 * front and back subtrees of the BSP trees are processed as fork/join tasks. The result is exactly the
+	 * same as the serial evaluation's.
+	 * @param parallel true if the parallel evaluation should be used
+	 * @return a new object with the parallel flag set
+	 */
+	public CsgOptions withParallel(boolean parallel) {
+		return new CsgOptions(parallel, parallelThreshold, boundsPartitioning, planeSelection, statistics, robust,
+				polygonMerging, engine, bvhCulling, transformFusion, renderPool, renderHandle);
+	}
+
+	/**
+	 * Creates a new object with the given parallel threshold. Subtrees with less polygons than
+	 * the threshold won't be forked, because the overhead would be bigger than the gain.
+	 * @param parallelThreshold the minimum number of polygons needed to fork a new task
+	 * @return a new object with the threshold set
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if the threshold is negative
+	 */
+	public CsgOptions withParallelThreshold(int parallelThreshold) {
+		AssertValue.isNotNegative(parallelThreshold, "The parallel threshold should not be negative!");
+		return new CsgOptions(parallel, parallelThreshold, boundsPartitioning, planeSelection, statistics, robust,
+				polygonMerging, engine, bvhCulling, transformFusion, renderPool, renderHandle);
+	}
+
+	/**
+	 * Creates a new object with the bounds partitioning turned on or off. If it is turned on - which is the
+	 * default - only those polygons go through the BSP trees which are inside the common part of the 
+	 * boundaries of the two operands.
+	 * @param boundsPartitioning true if the bounds partitioning should be used
+	 * @return a new object with the bounds partitioning flag set
+	 */
+	public CsgOptions withBoundsPartitioning(boolean boundsPartitioning) {
+		return new CsgOptions(parallel, parallelThreshold, boundsPartitioning, planeSelection, statistics, robust,
+				polygonMerging, engine, bvhCulling, transformFusion, renderPool, renderHandle);
+	}
+
+	/**
+	 * Creates a new object with the given plane selection strategy, which is used to choose the splitting
+	 * plane of the BSP nodes. The default is {@link PlaneSelectionStrategy#FIRST_POLYGON}.
+	 * @param planeSelection the strategy to be used
+	 * @return a new object with the plane selection strategy set
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if the strategy is null
+	 */
+	public CsgOptions withPlaneSelection(PlaneSelectionStrategy planeSelection) {
+		AssertValue.isNotNull(planeSelection, "The plane selection strategy should not be null!");
+		return new CsgOptions(parallel, parallelThreshold, boundsPartitioning, planeSelection, statistics, robust,
+				polygonMerging, engine, bvhCulling, transformFusion, renderPool, renderHandle);
+	}
+
+	/**
+	 * Creates a new object which collects the statistics of the BSP trees built into the given object.
+	 * @param statistics the object to collect the statistics into - can be null, which turns off the collecting
+	 * @return a new object with the statistics set
+	 */
+	public CsgOptions withStatistics(BspStatistics statistics) {
+		return new CsgOptions(parallel, parallelThreshold, boundsPartitioning, planeSelection, statistics, robust,
+				polygonMerging, engine, bvhCulling, transformFusion, renderPool, renderHandle);
+	}
+
+	/**
+	 * Creates a new object with the robust mode turned on or off. In robust mode the position of the vertices
+	 * relative to the splitting planes is calculated by a filtered exact predicate instead of plain double
+	 * arithmetic. It is a bit slower, but avoids the misclassification of vertices - and the sliver fragments
+	 * resulting from it - on big models or models far from the origin.
+	 * @param robust true if the robust mode should be used
+	 * @return a new object with the robust flag set
+	 */
+	public CsgOptions withRobust(boolean robust) {
+		return new CsgOptions(parallel, parallelThreshold, boundsPartitioning, planeSelection, statistics, robust,
+				polygonMerging, engine, bvhCulling, transformFusion, renderPool, renderHandle);
+	}
+
+	/**
+	 * Creates a new object with the given polygon merging mode, which controls when the adjacent coplanar
+	 * polygons with the same color are merged back into bigger convex polygons. The default is 
+	 * {@link PolygonMerging#NEVER}.
+	 * @param polygonMerging the merging mode to be used
+	 * @return a new object with the polygon merging mode set
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if the mode is null
+	 */
+	public CsgOptions withPolygonMerging(PolygonMerging polygonMerging) {
+		AssertValue.isNotNull(polygonMerging, "The polygon merging mode should not be null!");
+		return new CsgOptions(parallel, parallelThreshold, boundsPartitioning, planeSelection, statistics, robust,
+				polygonMerging, engine, bvhCulling, transformFusion, renderPool, renderHandle);
+	}
+
+	/**
+	 * Creates a new object with the given boolean engine, which evaluates the union, difference and 
+	 * intersection operations. The default is {@link BooleanEngine#BSP}. Most of the other options are 
+	 * used only by the BSP engine.
+	 * @param engine the engine to be used
+	 * @return a new object with the engine set
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if the engine is null
+	 */
+	public CsgOptions withEngine(BooleanEngine engine) {
+		AssertValue.isNotNull(engine, "The boolean engine should not be null!");
+		return new CsgOptions(parallel, parallelThreshold, boundsPartitioning, planeSelection, statistics, robust,
+				polygonMerging, engine, bvhCulling, transformFusion, renderPool, renderHandle);
+	}
+
+	/**
+	 * Creates a new object with the bounding volume hierarchy culling turned on or off. If it is turned on -
+	 * which is the default - the BSP trees skip splitting the polygons which are not near to any polygon
+	 * of the other operand: these polygons cannot cross the surface of the other operand, so they are kept
+	 * or dropped as a whole. The hierarchy is built once for every {@link CSG} object and reused by every
+	 * operation on it.
+	 * @param bvhCulling true if the bounding volume hierarchy culling should be used
+	 * @return a new object with the culling flag set
+	 */
+	public CsgOptions withBvhCulling(boolean bvhCulling) {
+		return new CsgOptions(parallel, parallelThreshold, boundsPartitioning, planeSelection, statistics, robust,
+				polygonMerging, engine, bvhCulling, transformFusion, renderPool, renderHandle);
+	}
+
+	/**
+	 * Creates a new object with the transform fusion turned on or off. If it is turned on the moves, rotations,
+	 * scales and mirrors of the models are not applied to the rendered CSG of every level of the model tree,
+	 * but composed top-down into one matrix, which is applied only once to the polygons of the primitives.
+	 * The models which cannot render their children in the transformed space get the children without the
+	 * transformation and transform their own result, see 
+	 * {@link eu.printingin3d.javascad.models.Abstract3dModel#isTransformationPushedDown()}.
+	 * @param transformFusion true if the transform fusion should be used
+	 * @return a new object with the transform fusion flag set
+	 */
+	public CsgOptions withTransformFusion(boolean transformFusion) {
+		return new CsgOptions(parallel, parallelThreshold, boundsPartitioning, planeSelection, statistics, robust,
+				polygonMerging, engine, bvhCulling, transformFusion, renderPool, renderHandle);
+	}
+
+	/**
+	 * <p>Creates a new object with the given pool used to render the independent children of the models -
+	 * the operands of the unions, intersections and differences - in parallel. Every child is rendered as
+	 * a fork/join task of the pool, so the parallelism of the pool bounds the number of threads used by
+	 * the rendering. The results are combined in the order of the children, so the result is exactly the
+	 * same as the serial rendering's.</p>
+	 * <p>The pool is used by the parallel evaluation of the BSP trees too - see {@link #withParallel(boolean)}
+	 * - if it is turned on. The pool is not shut down by the rendering.</p>
+	 * @param renderPool the pool to be used or null if the children should be rendered on the calling thread
+	 * @return a new object with the pool set
+	 */
+	public CsgOptions withRenderPool(ForkJoinPool renderPool) {
+		return new CsgOptions(parallel, parallelThreshold, boundsPartitioning, planeSelection, statistics, robust,
+				polygonMerging, engine, bvhCulling, transformFusion, renderPool, renderHandle);
+	}
+
+	/**
+	 * Creates a new object with the given handle controlling the evaluation. The CSG operations and the
+	 * BSP trees poll the handle regularly, so the evaluation can be cancelled, limited in time and in the
+	 * number of polygons processed, and its progress can be followed.
+	 * @param renderHandle the handle controlling the evaluation or null if the evaluation is not controlled
+	 * @return a new object with the handle set
+	 */
+	public CsgOptions withRenderHandle(RenderHandle renderHandle) {
+		return new CsgOptions(parallel, parallelThreshold, boundsPartitioning, planeSelection, statistics, robust,
+				polygonMerging, engine, bvhCulling, transformFusion, renderPool, renderHandle);
+	}
+
+	/**
+	 * Returns true if the parallel evaluation is turned on.
+	 * @return true if the parallel evaluation is turned on
+	 */
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	/**
+	 * Returns the minimum number of polygons needed to fork a new task in parallel mode.
+	 * @return the minimum number of polygons needed to fork a new task
+	 */
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	/**
+	 * Returns true if the bounds partitioning is turned on.
+	 * @return true if the bounds partitioning is turned on
+	 */
+	public boolean isBoundsPartitioning() {
+		return boundsPartitioning;
+	}
+
+	/**
+	 * Returns the strategy used to choose the splitting plane of the BSP nodes.
+	 * @return the strategy used to choose the splitting plane of the BSP nodes
+	 */
+	public PlaneSelectionStrategy getPlaneSelection() {
+		return planeSelection;
+	}
+
+	/**
+	 * Returns the object the statistics are collected into.
+	 * @return the object the statistics are collected into or null if the statistics are not collected
+	 */
+	public BspStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Returns true if the robust mode is turned on.
+	 * @return true if the robust mode is turned on
+	 */
+	public boolean isRobust() {
+		return robust;
+	}
+
+	/**
+	 * Returns when the adjacent coplanar polygons are merged.
+	 * @return when the adjacent coplanar polygons are merged
+	 */
+	public PolygonMerging getPolygonMerging() {
+		return polygonMerging;
+	}
+
+	/**
+	 * Returns the engine evaluating the boolean operations.
+	 * @return the engine evaluating the boolean operations
+	 */
+	public BooleanEngine getEngine() {
+		return engine;
+	}
+
+	/**
+	 * Returns true if the bounding volume hierarchy culling is turned on.
+	 * @return true if the bounding volume hierarchy culling is turned on
+	 */
+	public boolean isBvhCulling() {
+		return bvhCulling;
+	}
+
+	/**
+	 * Returns true if the transform fusion is turned on.
+	 * @return true if the transform fusion is turned on
+	 */
+	public boolean isTransformFusion() {
+		return transformFusion;
+	}
+
+	/**
+	 * Returns the pool the children of the models are rendered in.
+	 * @return the pool the children of the models are rendered in or null if they are rendered on the
+	 * 		calling thread
+	 */
+	public ForkJoinPool getRenderPool() {
+		return renderPool;
+	}
+
+	/**
+	 * Returns the handle controlling the evaluation.
+	 * @return the handle controlling the evaluation or null if the evaluation is not controlled
+	 */
+	public RenderHandle getRenderHandle() {
+		return renderHandle;
+	}
+
+	/**
+	 * Records the processing of a BSP node if the evaluation is controlled by a handle.
+	 * @param depth the depth of the node
+	 * @param polygons the number of polygons processed by the node
+	 * @throws eu.printingin3d.javascad.exceptions.RenderAbortedException if the evaluation has to be stopped
+	 */
+	void recordProgress(int depth, int polygons) {
+		if (renderHandle!=null) {
+			renderHandle.recordProgress(depth, polygons);
+		}
+	}
+
+	/**
+	 * Checks if the evaluation can go on if it is controlled by a handle.
+	 * @throws eu.printingin3d.javascad.exceptions.RenderAbortedException if the evaluation has to be stopped
+	 */
+	void checkRender() {
+		if (renderHandle!=null) {
+			renderHandle.check();
+		}
+	}
+
+	/**
+	 * Records a built BSP node if the statistics are collected.
+	 * @param depth the depth of the node
+	 * @param newFragments the number of extra polygons created by the splitting
+	 */
+	void recordNode(int depth, int newFragments) {
+		if (statistics!=null) {
+			statistics.recordNode(depth, newFragments);
+		}
+	}
+
+	/**
+	 * Records the extra polygons created by the splitting while clipping if the statistics are collected.
+	 * @param newFragments the number of extra polygons created by the splitting
+	 */
+	void recordFragments(int newFragments) {
+		if (statistics!=null) {
+			statistics.recordFragments(newFragments);
+		}
+	}
+
+	/**
+	 * Records the polygons clipped as a whole if the statistics are collected.
+	 * @param count the number of polygons
+	 */
+	void recordCulled(int count) {
+		if (statistics!=null && count>0) {
+			statistics.recordCulled(count);
+		}
+	}
+
+	/**
+	 * Decides if a work on the given number of polygons worth to be forked.
+	 * @param size the number of polygons to be processed
+	 * @return true if and only if the work should be forked
+	 */
+	boolean shouldFork(int size) {
+		return parallel && size>=parallelThreshold;
+	}
+}
@@ -0,0 +1,186 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BinaryOperator;
+
+import eu.printingin3d.javascad.coords.Boundaries3d;
+import eu.printingin3d.javascad.utils.Pair;
+
+/**
+ * <p>Evaluates n-ary unions and intersections as a balanced pairwise reduction tree instead of folding the
+ * operands from left to right. This way the accumulated mesh is not re-split against every new operand.
+ * If the parallel evaluation is turned on the independent pairs are evaluated concurrently.</p>
+ * <p>The operands of a union are grouped first by their boundaries: the groups which are not touching
+ * each other are merged by simply concatenating their polygons.</p>
+ * <p>An n-ary difference is evaluated by combining the subtracted objects with such a union and
+ * subtracting the result from the base object in one step, so the growing base mesh is split only once
+ * instead of once for every subtracted object.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+final class CsgReduction {
+	private CsgReduction() {
+		// prevents creating this object
+	}
+
+	/**
+	 * Calculates the union of the given objects.
+	 * @param csgs the objects to be used
+	 * @param options the options used for the evaluation
+	 * @return the union of the given objects
+	 */
+	static CSG union(List<CSG> csgs, CsgOptions options) {
+		List<CSG> nonEmpty = new ArrayList<>();
+		for (CSG csg : csgs) {
+			if (csg.getMesh().size()>0) {
+				nonEmpty.add(csg);
+			}
+		}
+
+		PolygonMesh.Builder result = new PolygonMesh.Builder();
+		for (List<CSG> group : groupByBoundaries(nonEmpty)) {
+			result.addAll(reduce(group, options, (a, b) -> a.union(b, options)).getMesh());
+		}
+		return new CSG(result.build());
+	}
+
+	/**
+	 * Calculates the intersection of the given objects.
+	 * @param csgs the objects to be used
+	 * @param options the options used for the evaluation
+	 * @return the intersection of the given objects
+	 */
+	static CSG intersect(List<CSG> csgs, CsgOptions options) {
+		if (csgs.isEmpty()) {
+			return CSG.fromPolygons();
+		}
+
+		Boundaries3d common = null;
+		for (CSG csg : csgs) {
+			if (csg.getMesh().size()==0) {
+				return CSG.fromPolygons();
+			}
+			common = common==null ? csg.getBoundaries() : BoundsPartition.overlap(common, csg.getBoundaries());
+			if (common==null) {
+				return CSG.fromPolygons();
+			}
+		}
+
+		return reduce(csgs, options, (a, b) -> a.intersect(b, options));
+	}
+
+	/**
+	 * Subtracts all the given objects from the base object. The objects which don't touch the boundaries
+	 * of the base object are ignored, the others are combined into one object first.
+	 * @param base the object subtracted from
+	 * @param csgs the objects to be subtracted
+	 * @param options the options used for the evaluation
+	 * @return the difference of the objects
+	 */
+	static CSG difference(CSG base, List<CSG> csgs, CsgOptions options) {
+		if (base.getMesh().size()==0) {
+			return base;
+		}
+
+		List<CSG> touching = new ArrayList<>();
+		for (CSG csg : csgs) {
+			if (csg.getMesh().size()>0 && BoundsPartition.overlap(base.getBoundaries(), csg.getBoundaries())!=null) {
+				touching.add(csg);
+			}
+		}
+
+		switch (touching.size()) {
+		case 0:
+			return base;
+		case 1:
+			return base.difference(touching.get(0), options);
+		default:
+			return base.difference(union(touching, options), options);
+		}
+	}
+
+	private static CSG reduce(List<CSG> csgs, CsgOptions options, BinaryOperator<CSG> operation) {
+		return ForkJoinUtils.run(options, () -> reduce(csgs, 0, csgs.size(), options, operation));
+	}
+
+	private static CSG reduce(List<CSG> csgs, int from, int to, CsgOptions options,
+			BinaryOperator<CSG> operation) {
+		if (to-from==1) {
+			return csgs.get(from);
+		}
+
+		int middle = (from+to)/2;
+		if (options.isParallel()) {
+			Pair<CSG, CSG> halves = ForkJoinUtils.evaluate(
+					() -> reduce(csgs, from, middle, options, operation),
+					() -> reduce(csgs, middle, to, options, operation));
+			return operation.apply(halves.getValue1(), halves.getValue2());
+		}
+		CSG first = reduce(csgs, from, middle, options, operation);
+		CSG second = reduce(csgs, middle, to, options, operation);
+		return operation.apply(first, second);
+	}
+
+	/**
+	 * Splits the objects into groups where the boundaries of the objects in different groups don't
+	 * touch each other. The order of the objects are kept within the groups and the groups are ordered
+	 * by their first object.
+	 */
+	private static List<List<CSG>> groupByBoundaries(List<CSG> csgs) {
+		int n = csgs.size();
+		int[] parent = new int[n];
+		List<Integer> order = new ArrayList<>();
+		for (int i = 0; i<n; i++) {
+			parent[i] = i;
+			order.add(Integer.valueOf(i));
+		}
+
+		// sweep along the X axis, so only the objects overlapping on that axis are compared
+		order.sort(Comparator.comparingDouble(i -> csgs.get(i.intValue()).getBoundaries().getX().getMin()));
+		for (int i = 0; i<n; i++) {
+			int a = order.get(i).intValue();
+			Boundaries3d ba = csgs.get(a).getBoundaries();
+			for (int j = i+1; j<n; j++) {
+				int b = order.get(j).intValue();
+				Boundaries3d bb = csgs.get(b).getBoundaries();
+				if (BoundsPartition.overlap(ba.getX(), bb.getX())==null) {
+					break;
+				}
+				if (BoundsPartition.overlap(ba, bb)!=null) {
+					parent[find(parent, a)] = find(parent, b);
+				}
+			}
+		}
+
+		List<List<CSG>> groups = new ArrayList<>();
+		List<List<CSG>> groupOfRoot = new ArrayList<>(Collections.<List<CSG>>nCopies(n, null));
+		for (int i = 0; i<n; i++) {
+			int root = find(parent, i);
+			List<CSG> group = groupOfRoot.get(root);
+			if (group==null) {
+				group = new ArrayList<>();
+				groupOfRoot.set(root, group);
+				groups.add(group);
+			}
+			group.add(csgs.get(i));
+		}
+		return groups;
+	}
+
+	private static int find(int[] parent, int i) {
+		int root = i;
+		while (parent[root]!=root) {
+			root = parent[root];
+		}
+		int current = i;
+		while (parent[current]!=root) {
+			int next = parent[current];
+			parent[current] = root;
+			current = next;
+		}
+		return root;
+	}
+}
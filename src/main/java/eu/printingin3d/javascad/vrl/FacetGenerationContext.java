@@ -1,14 +1,19 @@
 package eu.printingin3d.javascad.vrl;
 
 import java.awt.Color;
+import java.util.function.Supplier;
 
 import eu.printingin3d.javascad.basic.Radius;
 import eu.printingin3d.javascad.context.ColorHandlingContext;
 import eu.printingin3d.javascad.context.ITagColors;
+import eu.printingin3d.javascad.tranform.TransformationMatrix;
+import eu.printingin3d.javascad.utils.AssertValue;
 
 /**
  * Generation context for the CSG rendering. It handles the color and the resolution of circular objects 
- * (circle, cylinder etc.) 
+ * (circle, cylinder etc.) and carries the transformation accumulated from the ancestor models if the
+ * transform fusion is turned on, see {@link CsgOptions#withTransformFusion(boolean)}, and the 
+ * {@link RenderSession} if there is any.
  * @author ivivan <ivivan@printingin3d.eu>
  */
 public class FacetGenerationContext extends ColorHandlingContext {
@@ -19,7 +24,11 @@ public class FacetGenerationContext extends ColorHandlingContext {
 
 	private double fs = 0.25;
 	private int fa = 6;
+	private CsgOptions csgOptions = CsgOptions.DEFAULT;
+	private CsgCache csgCache = null;
 	private final FacetGenerationContext parentFacet;
+	private final TransformationMatrix transformation;
+	private final RenderSession<?> renderSession;
 	
 	/**
 	 * Creates a new context with the given tag-color pairs, parent context and tag.
@@ -28,8 +37,16 @@ public class FacetGenerationContext extends ColorHandlingContext {
 	 * @param tag the tag of the context
 	 */
 	public FacetGenerationContext(ITagColors tagColors, FacetGenerationContext parent, int tag) {
+		this(tagColors, parent, tag, parent==null ? null : parent.transformation, 
+				parent==null ? null : parent.renderSession);
+	}
+	
+	private FacetGenerationContext(ITagColors tagColors, FacetGenerationContext parent, int tag,
+			TransformationMatrix transformation, RenderSession<?> renderSession) {
 		super(tagColors, parent, tag);
 		this.parentFacet = parent;
+		this.transformation = transformation;
+		this.renderSession = renderSession;
 	}
 	
 	/**
@@ -48,6 +65,91 @@ public class FacetGenerationContext extends ColorHandlingContext {
 		}
 	}
 	
+	/**
+	 * Sets the options used by the CSG operations during the rendering. 
+	 * @param csgOptions the options to be used
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if the parameter is null
+	 */
+	public void setCsgOptions(CsgOptions csgOptions) {
+		AssertValue.isNotNull(csgOptions, "The CSG options should not be null!");
+		
+		if (parentFacet==null) {
+			this.csgOptions = csgOptions;
+		}
+		else {
+			parentFacet.setCsgOptions(csgOptions);
+		}
+	}
+	
+	/**
+	 * Returns the options used by the CSG operations during the rendering.
+	 * @return the options used by the CSG operations
+	 */
+	public CsgOptions getCsgOptions() {
+		return parentFacet==null ? csgOptions : parentFacet.getCsgOptions();
+	}
+	
+	/**
+	 * Sets the cache used to store the rendered CSG of the models during the rendering.
+	 * @param csgCache the cache to be used - can be null, which turns off the caching
+	 */
+	public void setCsgCache(CsgCache csgCache) {
+		if (parentFacet==null) {
+			this.csgCache = csgCache;
+		}
+		else {
+			parentFacet.setCsgCache(csgCache);
+		}
+	}
+	
+	/**
+	 * Returns the cache used to store the rendered CSG of the models during the rendering.
+	 * @return the cache used or null if the caching is turned off
+	 */
+	public CsgCache getCsgCache() {
+		return parentFacet==null ? csgCache : parentFacet.getCsgCache();
+	}
+	
+	/**
+	 * Renders a model through the cache set by {@link #setCsgCache(CsgCache)}. The result is stored by the
+	 * given structure together with the resolution and the color of this context, so the rendering is called
+	 * only if there is no result stored for the same combination yet. If there is no cache set the rendering
+	 * is called every time.
+	 * @param structure the structure of the model, which determines the result of the rendering - it has to
+	 * 		implement equals and hashCode
+	 * @param description creates the textual description of the structure, which is used as the key of the
+	 * 		disk cache - it has to be the same across JVM runs. If it returns null the result is kept only in
+	 * 		the memory.
+	 * @param rendering the rendering of the model
+	 * @return the rendered CSG
+	 */
+	public CSG renderCached(Object structure, Supplier<String> description, Supplier<CSG> rendering) {
+		CsgCache cache = getCsgCache();
+		if (cache==null) {
+			return rendering.get();
+		}
+		
+		FacetGenerationContext root = getRoot();
+		int color = getColor().getRGB();
+		return cache.get(new CacheKey(root.fs, root.fa, color, structure), () -> {
+			String text = description.get();
+			return text==null ? null : root.fs + "," + root.fa + "," + Integer.toHexString(color) + "\n" + text;
+		}, rendering);
+	}
+	
+	/**
+	 * Returns the color assigned to the given tag by the tag-color pairs of this context.
+	 * @param tag the tag to be queried
+	 * @return the color of the given tag or null if there is no color assigned to it
+	 */
+	public Color getTagColor(int tag) {
+		return tagColors==null ? null : tagColors.getColor(tag);
+	}
+	
+	private FacetGenerationContext getRoot() {
+		return parentFacet==null ? this : parentFacet.getRoot();
+	}
+	
 	/**
 	 * Calculate the number of slices for the given radius based on the $fs and $fa values set.
 	 * @param r the radius of the object
@@ -76,9 +178,114 @@ public class FacetGenerationContext extends ColorHandlingContext {
 		return new FacetGenerationContext(tagColors, this, tag);
 	}
 	
+	/**
+	 * Creates a new context with the given transformation applied before the accumulated transformation
+	 * of this context.
+	 * @param local the transformation to be applied - null means no transformation
+	 * @return a context with the combined transformation
+	 */
+	public FacetGenerationContext applyTransformation(TransformationMatrix local) {
+		if (local==null) {
+			return this;
+		}
+		
+		return new FacetGenerationContext(tagColors, this, tag, 
+				transformation==null ? local : transformation.multiply(local), renderSession);
+	}
+	
+	/**
+	 * Creates a new context without the accumulated transformation of this context.
+	 * @return a context without any transformation
+	 */
+	public FacetGenerationContext withoutTransformation() {
+		if (transformation==null) {
+			return this;
+		}
+		
+		return new FacetGenerationContext(tagColors, this, tag, null, renderSession);
+	}
+	
+	/**
+	 * Creates a new context which renders the models through the given session. The new context and the
+	 * contexts derived from it use the session, this context is not changed.
+	 * @param session the session to be used - can be null, which turns off the session
+	 * @return a context with the given session
+	 */
+	public FacetGenerationContext withRenderSession(RenderSession<?> session) {
+		if (session==renderSession) {
+			return this;
+		}
+		
+		return new FacetGenerationContext(tagColors, this, tag, transformation, session);
+	}
+	
+	/**
+	 * Returns the session the models of the given type are rendered through.
+	 * @param modelType the type of the model to be rendered
+	 * @param <M> the type of the model to be rendered
+	 * @return the session or null if there is no session used or it cannot render the models of the given type
+	 */
+	@SuppressWarnings("unchecked")
+	public <M> RenderSession<? super M> getRenderSession(Class<M> modelType) {
+		if (renderSession==null || !renderSession.getModelType().isAssignableFrom(modelType)) {
+			return null;
+		}
+		// the session accepts the given type or one of its super types, so the cast is safe
+		return (RenderSession<? super M>) renderSession;
+	}
+	
+	/**
+	 * Transforms the given CSG by the accumulated transformation of this context.
+	 * @param csg the CSG to be transformed
+	 * @return the transformed CSG or the given CSG if there is no transformation to be applied
+	 */
+	public CSG transform(CSG csg) {
+		return transformation==null ? csg : csg.transformed(transformation);
+	}
+	
 	@Override
 	public Color getColor() {
 		Color result = super.getColor();
 		return result==null ? Color.GRAY : result;
 	}
+	
+	/**
+	 * The key of a result in the memory of the cache.
+	 */
+	private static final class CacheKey {
+		private final double fs;
+		private final int fa;
+		private final int color;
+		private final Object structure;
+		
+		private CacheKey(double fs, int fa, int color, Object structure) {
+			this.fs = fs;
+			this.fa = fa;
+			this.color = color;
+			this.structure = structure;
+		}
+		
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = structure.hashCode();
+			result = prime * result + Double.hashCode(fs);
+			result = prime * result + fa;
+			result = prime * result + color;
+			return result;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			CacheKey other = (CacheKey) obj;
+			return Double.compare(fs, other.fs) == 0 && fa == other.fa && color == other.color && 
+					structure.equals(other.structure);
+		}
+	}
 }
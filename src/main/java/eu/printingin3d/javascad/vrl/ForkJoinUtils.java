@@ -0,0 +1,47 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+import eu.printingin3d.javascad.utils.Pair;
+
+/**
+ * Helper methods to evaluate independent calculations as fork/join tasks.
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+final class ForkJoinUtils {
+	private ForkJoinUtils() {
+		// prevents creating this object
+	}
+
+	/**
+	 * Evaluates the two independent calculations: the first one is forked as a new task while the second
+	 * one is calculated on the current thread.
+	 * @param first the first calculation
+	 * @param second the second calculation
+	 * @param <T> the type of the results
+	 * @return the results of the two calculations in the same order as the calculations were given
+	 */
+	static <T> Pair<T, T> evaluate(Supplier<T> first, Supplier<T> second) {
+		ForkJoinTask<T> task = ForkJoinTask.adapt(first::get).fork();
+		T secondResult = second.get();
+		return new Pair<>(task.join(), secondResult);
+	}
+
+	/**
+	 * Runs the given calculation in the fork/join pool if the options turned on the parallel evaluation,
+	 * otherwise runs it on the calling thread.
+	 * @param options the options used for the evaluation
+	 * @param calculation the calculation to be run
+	 * @param <T> the type of the result
+	 * @return the result of the calculation
+	 */
+	static <T> T run(CsgOptions options, Supplier<T> calculation) {
+		if (!options.isParallel() || ForkJoinTask.inForkJoinPool()) {
+			return calculation.get();
+		}
+		return ForkJoinPool.commonPool().invoke(ForkJoinTask.adapt(calculation::get));
+	}
+}
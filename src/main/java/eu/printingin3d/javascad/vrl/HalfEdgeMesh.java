@@ -0,0 +1,247 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import eu.printingin3d.javascad.coords.Coords3d;
+
+/**
+ * <p>Half-edge structure over a subset of the triangles of an {@link IndexedMesh}. The half-edges of the
+ * triangle with index {@code i} in the subset are {@code 3*i}, {@code 3*i+1} and {@code 3*i+2}, starting at
+ * the corners with the same index; the twin of every half-edge is the half-edge of the neighbouring triangle
+ * going in the opposite direction.</p>
+ * <p>The triangles have to form a closed, manifold surface: every half-edge must have exactly one twin,
+ * otherwise an {@link IllegalStateException} is thrown.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+final class HalfEdgeMesh {
+	private final IndexedMesh mesh;
+	private final int[] triangles;
+	private final int[] twins;
+
+	/**
+	 * Builds the half-edge structure of the given triangles.
+	 * @param mesh the mesh the triangles are part of
+	 * @param triangles the indexes of the triangles to be used
+	 */
+	HalfEdgeMesh(IndexedMesh mesh, int[] triangles) {
+		this.mesh = mesh;
+		this.triangles = triangles;
+		this.twins = new int[triangles.length*3];
+
+		Map<Long, Integer> halfEdges = new HashMap<>();
+		for (int h = 0; h<twins.length; h++) {
+			if (halfEdges.put(Long.valueOf(edgeKey(getOrigin(h), getTarget(h))), Integer.valueOf(h))!=null) {
+				throw new IllegalStateException("The surface is not manifold.");
+			}
+		}
+		for (int h = 0; h<twins.length; h++) {
+			Integer twin = halfEdges.get(Long.valueOf(edgeKey(getTarget(h), getOrigin(h))));
+			if (twin==null) {
+				throw new IllegalStateException("The surface is not closed.");
+			}
+			twins[h] = twin.intValue();
+		}
+	}
+
+	/**
+	 * Returns the number of the triangles.
+	 * @return the number of the triangles
+	 */
+	int getTriangleCount() {
+		return triangles.length;
+	}
+
+	/**
+	 * Returns the vertex index the given half-edge starts from.
+	 * @param halfEdge the half-edge
+	 * @return the index of the vertex in the mesh
+	 */
+	int getOrigin(int halfEdge) {
+		return mesh.getTriangleVertex(triangles[halfEdge/3], halfEdge % 3);
+	}
+
+	/**
+	 * Returns the vertex index the given half-edge points to.
+	 * @param halfEdge the half-edge
+	 * @return the index of the vertex in the mesh
+	 */
+	int getTarget(int halfEdge) {
+		return getOrigin(getNext(halfEdge));
+	}
+
+	/**
+	 * Returns the next half-edge of the same triangle.
+	 * @param halfEdge the half-edge
+	 * @return the next half-edge
+	 */
+	static int getNext(int halfEdge) {
+		return halfEdge - halfEdge % 3 + (halfEdge+1) % 3;
+	}
+
+	/**
+	 * Returns the half-edge of the neighbouring triangle going in the opposite direction.
+	 * @param halfEdge the half-edge
+	 * @return the twin of the half-edge
+	 */
+	int getTwin(int halfEdge) {
+		return twins[halfEdge];
+	}
+
+	/**
+	 * Returns the undirected edges of the surface, see {@link #undirectedKey(int, int)}.
+	 * @return the set of the edges
+	 */
+	Set<Long> getEdges() {
+		Set<Long> result = new HashSet<>();
+		for (int h = 0; h<twins.length; h++) {
+			result.add(Long.valueOf(undirectedKey(getOrigin(h), getTarget(h))));
+		}
+		return result;
+	}
+
+	/**
+	 * Divides the triangles into patches: two triangles are in the same patch if they can be reached from
+	 * each other without crossing any of the given border edges.
+	 * @param borders the undirected keys of the border edges
+	 * @return the index of the patch of every triangle; the patches are indexed from zero
+	 */
+	int[] findPatches(Set<Long> borders) {
+		int[] patches = new int[triangles.length];
+		Arrays.fill(patches, -1);
+		int count = 0;
+		Deque<Integer> queue = new ArrayDeque<>();
+		for (int start = 0; start<triangles.length; start++) {
+			if (patches[start]<0) {
+				patches[start] = count;
+				queue.add(Integer.valueOf(start));
+				while (!queue.isEmpty()) {
+					int t = queue.poll().intValue();
+					for (int h = t*3; h<t*3+3; h++) {
+						int neighbour = twins[h]/3;
+						if (patches[neighbour]<0 &&
+								!borders.contains(Long.valueOf(undirectedKey(getOrigin(h), getTarget(h))))) {
+							patches[neighbour] = count;
+							queue.add(Integer.valueOf(neighbour));
+						}
+					}
+				}
+				count++;
+			}
+		}
+		return patches;
+	}
+
+	/**
+	 * Returns the given corner of the given triangle.
+	 * @param triangle the index of the triangle
+	 * @param corner the corner: 0, 1 or 2
+	 * @return the coordinates of the corner
+	 */
+	Coords3d getCorner(int triangle, int corner) {
+		return mesh.getVertices().get(getOrigin(triangle*3 + corner));
+	}
+
+	/**
+	 * Calculates the area vector of the given triangle: its direction is the normal of the triangle, its
+	 * length is the double of the area of the triangle.
+	 * @param triangle the index of the triangle
+	 * @return the area vector
+	 */
+	Coords3d getAreaVector(int triangle) {
+		Coords3d a = getCorner(triangle, 0);
+		return getCorner(triangle, 1).add(a.inverse()).cross(getCorner(triangle, 2).add(a.inverse()));
+	}
+
+	/**
+	 * Calculates the center of the given triangle.
+	 * @param triangle the index of the triangle
+	 * @return the center of the triangle
+	 */
+	Coords3d getCenter(int triangle) {
+		return getCorner(triangle, 0).add(getCorner(triangle, 1)).add(getCorner(triangle, 2)).mul(1.0/3.0);
+	}
+
+	/**
+	 * Creates a polygon from the given triangle with the plane and color of the polygon it was created from.
+	 * @param triangle the index of the triangle
+	 * @return the polygon
+	 */
+	Polygon toPolygon(int triangle) {
+		Coords3d normal = mesh.getNormal(triangles[triangle]);
+		List<Coords3d> vertices = Arrays.asList(getCorner(triangle, 0), getCorner(triangle, 1), getCorner(triangle, 2));
+		return Polygon.fromPlane(vertices, normal, normal.dot(vertices.get(0)), mesh.getColor(triangles[triangle]));
+	}
+
+	/**
+	 * Calculates the generalized winding number of the given point: the sum of the solid angles of the
+	 * triangles seen from the point divided by 4&pi;. It is 1 for the points inside the closed surface and
+	 * 0 for the points outside.
+	 * @param point the point to be checked
+	 * @return the winding number of the point
+	 */
+	double windingNumber(Coords3d point) {
+		double sum = 0.0;
+		for (int t = 0; t<triangles.length; t++) {
+			Coords3d a = getCorner(t, 0).add(point.inverse());
+			Coords3d b = getCorner(t, 1).add(point.inverse());
+			Coords3d c = getCorner(t, 2).add(point.inverse());
+			double la = a.magnitude();
+			double lb = b.magnitude();
+			double lc = c.magnitude();
+			double determinant = a.dot(b.cross(c));
+			double divisor = la*lb*lc + a.dot(b)*lc + a.dot(c)*lb + b.dot(c)*la;
+			sum += 2.0*Math.atan2(determinant, divisor);
+		}
+		return sum / (4.0*Math.PI);
+	}
+
+	/**
+	 * Finds a triangle the given point lies on and returns its normal.
+	 * @param point the point to be checked
+	 * @param tolerance the maximum distance of the point from the triangle
+	 * @return the unit normal of the triangle the point lies on or null if the point is not on the surface
+	 */
+	Coords3d findSurfaceNormal(Coords3d point, double tolerance) {
+		for (int t = 0; t<triangles.length; t++) {
+			Coords3d normal = getAreaVector(t).unit();
+			if (Math.abs(normal.dot(point.add(getCorner(t, 0).inverse())))<=tolerance && contains(t, normal, point,
+					tolerance)) {
+				return normal;
+			}
+		}
+		return null;
+	}
+
+	private boolean contains(int triangle, Coords3d normal, Coords3d point, double tolerance) {
+		for (int k = 0; k<3; k++) {
+			Coords3d start = getCorner(triangle, k);
+			Coords3d inward = normal.cross(getCorner(triangle, (k+1) % 3).add(start.inverse())).unit();
+			if (inward.dot(point.add(start.inverse())) < -tolerance) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the key of the edge between the two vertices, which is the same for both directions.
+	 * @param a the index of one end of the edge
+	 * @param b the index of the other end of the edge
+	 * @return the key of the edge
+	 */
+	static long undirectedKey(int a, int b) {
+		return edgeKey(Math.min(a, b), Math.max(a, b));
+	}
+
+	private static long edgeKey(int a, int b) {
+		return ((long) a << 32) | (b & 0xffffffffL);
+	}
+}
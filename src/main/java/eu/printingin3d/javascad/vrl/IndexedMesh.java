@@ -0,0 +1,149 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.coords.Triangle3d;
+
+/**
+ * <p>Immutable triangle mesh where the triangles refer to a shared list of vertices by their index. It is
+ * created by {@link CSG#toIndexedMesh(double)}, which welds the nearly identical vertices and repairs the
+ * T-junctions, so the neighbouring triangles share their vertices and edges.</p>
+ * <p>The exporters can write it directly without searching for the identical vertices again, see
+ * {@link eu.printingin3d.javascad.vrl.export.IFileExporter#writeToFile(IndexedMesh)}.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public final class IndexedMesh {
+	private final List<Coords3d> vertices;
+	private final int[] triangles;
+	private final Coords3d[] normals;
+	private final Color[] colors;
+	private final int[] sources;
+
+	/**
+	 * Creates the mesh from the given arrays - used by the welding, the arrays are not copied.
+	 * @param vertices the vertices of the mesh
+	 * @param triangles three vertex indexes for every triangle
+	 * @param normals the normal vector of every triangle
+	 * @param colors the color of every triangle
+	 * @param sources the index of the polygon every triangle has been created from
+	 */
+	IndexedMesh(List<Coords3d> vertices, int[] triangles, Coords3d[] normals, Color[] colors, int[] sources) {
+		this.vertices = Collections.unmodifiableList(vertices);
+		this.triangles = triangles;
+		this.normals = normals;
+		this.colors = colors;
+		this.sources = sources;
+	}
+
+	/**
+	 * Returns the number of the vertices.
+	 * @return the number of the vertices
+	 */
+	public int getVertexCount() {
+		return vertices.size();
+	}
+
+	/**
+	 * Returns the vertices of the mesh.
+	 * @return the unmodifiable list of the vertices
+	 */
+	public List<Coords3d> getVertices() {
+		return vertices;
+	}
+
+	/**
+	 * Returns the number of the triangles.
+	 * @return the number of the triangles
+	 */
+	public int getTriangleCount() {
+		return normals.length;
+	}
+
+	/**
+	 * Returns the index of a vertex of the given triangle.
+	 * @param triangle the index of the triangle
+	 * @param corner the corner of the triangle: 0, 1 or 2
+	 * @return the index of the vertex in the vertex list
+	 */
+	public int getTriangleVertex(int triangle, int corner) {
+		return triangles[triangle*3 + corner];
+	}
+
+	/**
+	 * Returns the normal vector of the given triangle.
+	 * @param triangle the index of the triangle
+	 * @return the normal vector of the triangle
+	 */
+	public Coords3d getNormal(int triangle) {
+		return normals[triangle];
+	}
+
+	/**
+	 * Returns the color of the given triangle.
+	 * @param triangle the index of the triangle
+	 * @return the color of the triangle
+	 */
+	public Color getColor(int triangle) {
+		return colors[triangle];
+	}
+
+	/**
+	 * Returns the index of the polygon the given triangle has been created from.
+	 * @param triangle the index of the triangle
+	 * @return the index of the polygon in the list the mesh has been welded from
+	 */
+	int getSource(int triangle) {
+		return sources[triangle];
+	}
+
+	/**
+	 * Converts the mesh to facets.
+	 * @return the list of the facets
+	 */
+	public List<Facet> toFacets() {
+		List<Facet> facets = new ArrayList<>(getTriangleCount());
+		for (int t = 0; t<getTriangleCount(); t++) {
+			Triangle3d triangle = new Triangle3d(
+					vertices.get(triangles[t*3]),
+					vertices.get(triangles[t*3+1]),
+					vertices.get(triangles[t*3+2]));
+			facets.add(new Facet(triangle, normals[t], colors[t]));
+		}
+		return facets;
+	}
+
+	/**
+	 * Checks if the mesh is watertight: every edge of every triangle is shared with exactly one other
+	 * triangle, which uses it in the opposite direction.
+	 * @return true if and only if the mesh is watertight
+	 */
+	public boolean isWatertight() {
+		Map<Long, Integer> edges = new HashMap<>();
+		for (int t = 0; t<getTriangleCount(); t++) {
+			for (int corner = 0; corner<3; corner++) {
+				long key = edgeKey(triangles[t*3 + corner], triangles[t*3 + (corner+1) % 3]);
+				if (edges.put(Long.valueOf(key), Integer.valueOf(t))!=null) {
+					return false;
+				}
+			}
+		}
+		for (Long key : edges.keySet()) {
+			long value = key.longValue();
+			if (!edges.containsKey(Long.valueOf(edgeKey((int) value, (int) (value >>> 32))))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static long edgeKey(int a, int b) {
+		return ((long) a << 32) | (b & 0xffffffffL);
+	}
+}
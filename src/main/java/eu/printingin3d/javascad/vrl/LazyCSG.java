@@ -0,0 +1,480 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import eu.printingin3d.javascad.coords.Boundaries3d;
+import eu.printingin3d.javascad.coords.Boundary;
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.tranform.ITransformation;
+import eu.printingin3d.javascad.tranform.TransformationMatrix;
+import eu.printingin3d.javascad.utils.AssertValue;
+
+/**
+ * <p>Represents a CSG object as an expression: the union, difference, intersection and transformation
+ * operations are only recorded and the polygons are calculated only when they are needed, for example
+ * when the facets are requested. The same expression can be used as an operand of several other
+ * expressions, so the operations form a directed acyclic graph and every node is evaluated only once
+ * with the same options.</p>
+ * <p>The evaluation uses the following rewrite rules:</p>
+ * <ul>
+ * <li>consecutive transformations are folded into one transformation, so the polygons are transformed
+ * in one pass - the {@link TransformationMatrix} objects are composed into one matrix, the other mirror 
+ * transformations are not folded, because the flipped polygons would get a different normal vector</li>
+ * <li>empty operands are dropped</li>
+ * <li>operands which are separated from the other operands by their boundaries are not evaluated by
+ * the BSP trees: the subtracted operands are skipped and the intersection is empty without evaluating
+ * the operands - the boundaries of a deferred leaf are calculated without calling its supplier if they
+ * were given by {@link #deferred(Supplier, Boundaries3d)}, otherwise the leaf has to be evaluated</li>
+ * </ul>
+ * <p>The result of the evaluation is the same as the result of the eager evaluation of the same
+ * operations on {@link CSG} objects.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public abstract class LazyCSG {
+	private static final LazyCSG EMPTY = of(CSG.fromPolygons());
+
+	private CsgOptions evaluatedWith;
+	private CSG evaluated;
+	private Boundaries3d boundaries;
+
+	LazyCSG() {
+		// only the nodes in this package can extend it
+	}
+
+	/**
+	 * Creates an expression of an already evaluated CSG object.
+	 * @param csg the object to be used
+	 * @return the expression representing the given object
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if the parameter is null
+	 */
+	public static LazyCSG of(CSG csg) {
+		AssertValue.isNotNull(csg, "The CSG object should not be null!");
+		return new Leaf(() -> csg, null);
+	}
+
+	/**
+	 * Creates an expression of a CSG object which will be calculated by the given supplier when it is
+	 * needed first. The supplier is called at most once.
+	 * @param supplier the calculation of the object
+	 * @return the expression representing the calculated object
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if the parameter is null
+	 */
+	public static LazyCSG deferred(Supplier<CSG> supplier) {
+		return deferred(supplier, null);
+	}
+
+	/**
+	 * Creates an expression of a CSG object which will be calculated by the given supplier when it is
+	 * needed first and which is known to be inside the given cuboid. The boundaries of the expression are
+	 * calculated from the given cuboid, so the supplier is not called if the object turns out to be 
+	 * separated from the other operands. The supplier is called at most once.
+	 * @param supplier the calculation of the object
+	 * @param boundaries the cuboid containing the calculated object - {@link Boundaries3d#EMPTY} if the 
+	 * 		object is empty, or null if it is not known, in which case the supplier is called to calculate the
+	 * 		boundaries
+	 * @return the expression representing the calculated object
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if the supplier is null
+	 */
+	public static LazyCSG deferred(Supplier<CSG> supplier, Boundaries3d boundaries) {
+		AssertValue.isNotNull(supplier, "The supplier should not be null!");
+		return new Leaf(supplier, boundaries);
+	}
+
+	/**
+	 * Returns the expression representing the empty object.
+	 * @return the expression representing the empty object
+	 */
+	public static LazyCSG empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Creates the union of the given expressions. The evaluation gives the same result as
+	 * {@link CSG#unionAll(List, CsgOptions)}.
+	 * @param operands the operands of the union
+	 * @return the expression representing the union
+	 */
+	public static LazyCSG unionAll(List<LazyCSG> operands) {
+		return new UnionNode(operands);
+	}
+
+	/**
+	 * Creates the intersection of the given expressions. The evaluation gives the same result as
+	 * {@link CSG#intersectAll(List, CsgOptions)}.
+	 * @param operands the operands of the intersection
+	 * @return the expression representing the intersection
+	 */
+	public static LazyCSG intersectAll(List<LazyCSG> operands) {
+		return new IntersectionNode(operands);
+	}
+
+	/**
+	 * Creates the union of this expression and the given one.
+	 * @param other the other operand
+	 * @return the expression representing the union
+	 */
+	public LazyCSG union(LazyCSG other) {
+		return unionAll(Arrays.asList(this, other));
+	}
+
+	/**
+	 * Creates the intersection of this expression and the given one.
+	 * @param other the other operand
+	 * @return the expression representing the intersection
+	 */
+	public LazyCSG intersect(LazyCSG other) {
+		return intersectAll(Arrays.asList(this, other));
+	}
+
+	/**
+	 * Creates the difference of this expression and the given one.
+	 * @param other the operand to be subtracted
+	 * @return the expression representing the difference
+	 */
+	public LazyCSG difference(LazyCSG other) {
+		return differenceAll(Collections.singletonList(other));
+	}
+
+	/**
+	 * Creates an expression which subtracts all the given operands from this one. The evaluation gives
+	 * the same result as {@link CSG#differenceAll(List, CsgOptions)}.
+	 * @param others the operands to be subtracted
+	 * @return the expression representing the difference
+	 */
+	public LazyCSG differenceAll(List<LazyCSG> others) {
+		return new DifferenceNode(this, others);
+	}
+
+	/**
+	 * Creates the transformed version of this expression. The evaluation gives the same result as
+	 * {@link CSG#transformed(ITransformation)}.
+	 * @param transformation the transformation to be applied
+	 * @return the expression representing the transformed object
+	 */
+	public LazyCSG transformed(ITransformation transformation) {
+		return new TransformedNode(this, transformation);
+	}
+
+	/**
+	 * <p>Returns a cuboid which contains the object represented by this expression. The operations are
+	 * not evaluated, only the leaves of the expression, so the result could be bigger than the exact
+	 * boundaries of the evaluated object.</p>
+	 * @return the including cuboid or {@link Boundaries3d#EMPTY} if the object is certainly empty
+	 */
+	public final synchronized Boundaries3d getBoundaries() {
+		if (boundaries==null) {
+			boundaries = calculateBoundaries();
+		}
+		return boundaries;
+	}
+
+	/**
+	 * Evaluates the expression with the default options.
+	 * @return the evaluated object
+	 */
+	public final CSG evaluate() {
+		return evaluate(CsgOptions.DEFAULT);
+	}
+
+	/**
+	 * Evaluates the expression with the given options. The result is kept, so evaluating the same
+	 * expression again with the same options gives back the same object.
+	 * @param options the options used for the evaluation
+	 * @return the evaluated object
+	 */
+	public final synchronized CSG evaluate(CsgOptions options) {
+		if (evaluated==null || evaluatedWith!=options) {
+			evaluated = calculate(options);
+			evaluatedWith = options;
+		}
+		return evaluated;
+	}
+
+	/**
+	 * Evaluates the expression with the default options and returns with the facets of the result.
+	 * @return the facets of the evaluated object
+	 */
+	public List<Facet> toFacets() {
+		return evaluate().toFacets();
+	}
+
+	/**
+	 * Returns true if the object is certainly empty without evaluating the operations.
+	 * @return true if the object is certainly empty
+	 */
+	boolean isKnownEmpty() {
+		return getBoundaries()==Boundaries3d.EMPTY;
+	}
+
+	abstract Boundaries3d calculateBoundaries();
+
+	abstract CSG calculate(CsgOptions options);
+
+	private static boolean isSeparated(LazyCSG a, LazyCSG b) {
+		return BoundsPartition.overlap(a.getBoundaries(), b.getBoundaries())==null;
+	}
+
+	/**
+	 * A leaf of the expression, which holds an evaluated or a deferred object and its boundaries if they
+	 * are known without the evaluation.
+	 */
+	private static final class Leaf extends LazyCSG {
+		private final Boundaries3d knownBoundaries;
+		private Supplier<CSG> supplier;
+		private CSG csg;
+
+		private Leaf(Supplier<CSG> supplier, Boundaries3d knownBoundaries) {
+			this.supplier = supplier;
+			this.knownBoundaries = knownBoundaries;
+		}
+
+		private synchronized CSG get() {
+			if (csg==null) {
+				csg = supplier.get();
+				supplier = null;
+			}
+			return csg;
+		}
+
+		@Override
+		Boundaries3d calculateBoundaries() {
+			if (knownBoundaries!=null) {
+				return knownBoundaries;
+			}
+			CSG value = get();
+			return value.getMesh().size()==0 ? Boundaries3d.EMPTY : value.getBoundaries();
+		}
+
+		@Override
+		CSG calculate(CsgOptions options) {
+			return get();
+		}
+	}
+
+	/**
+	 * A transformation of an expression. Consecutive non-mirror transformations are folded into one.
+	 */
+	private static final class TransformedNode extends LazyCSG {
+		private final LazyCSG operand;
+		private final List<ITransformation> transformations;
+
+		private TransformedNode(LazyCSG operand, ITransformation transformation) {
+			AssertValue.isNotNull(transformation, "The transformation should not be null!");
+			List<ITransformation> list = new ArrayList<>();
+			if (operand instanceof TransformedNode && canFold((TransformedNode) operand, transformation)) {
+				TransformedNode inner = (TransformedNode) operand;
+				this.operand = inner.operand;
+				list.addAll(inner.transformations);
+			}
+			else {
+				this.operand = operand;
+			}
+			list.add(transformation);
+			this.transformations = Collections.unmodifiableList(list);
+		}
+
+		/**
+		 * The matrices can always be folded, because the combined matrix is a mirror if and only if an odd
+		 * number of mirrors were composed, otherwise the mirrors are not folded.
+		 */
+		private static boolean canFold(TransformedNode inner, ITransformation transformation) {
+			if (transformation instanceof TransformationMatrix &&
+					inner.transformations.stream().allMatch(t -> t instanceof TransformationMatrix)) {
+				return true;
+			}
+			return !transformation.isMirror() && !inner.isMirror();
+		}
+
+		private boolean isMirror() {
+			for (ITransformation t : transformations) {
+				if (t.isMirror()) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		Boundaries3d calculateBoundaries() {
+			Boundaries3d b = operand.getBoundaries();
+			if (b==Boundaries3d.EMPTY) {
+				return b;
+			}
+
+			double[] xs = new double[8];
+			double[] ys = new double[8];
+			double[] zs = new double[8];
+			for (int i = 0; i<8; i++) {
+				Coords3d corner = transform(new Coords3d(
+						(i & 1)==0 ? b.getX().getMin() : b.getX().getMax(),
+						(i & 2)==0 ? b.getY().getMin() : b.getY().getMax(),
+						(i & 4)==0 ? b.getZ().getMin() : b.getZ().getMax()));
+				xs[i] = corner.getX();
+				ys[i] = corner.getY();
+				zs[i] = corner.getZ();
+			}
+			return new Boundaries3d(new Boundary(xs), new Boundary(ys), new Boundary(zs));
+		}
+
+		/**
+		 * Composes the transformations into one matrix if all of them are matrices.
+		 * @return the combined matrix or null if any of the transformations is not a matrix
+		 */
+		private TransformationMatrix compose() {
+			TransformationMatrix result = null;
+			for (ITransformation t : transformations) {
+				if (!(t instanceof TransformationMatrix)) {
+					return null;
+				}
+				result = result==null ? (TransformationMatrix) t : ((TransformationMatrix) t).multiply(result);
+			}
+			return result;
+		}
+
+		private Coords3d transform(Coords3d c) {
+			Coords3d result = c;
+			for (ITransformation t : transformations) {
+				result = t.transform(result);
+			}
+			return result;
+		}
+
+		@Override
+		CSG calculate(CsgOptions options) {
+			CSG csg = operand.evaluate(options);
+			if (transformations.size()==1) {
+				return csg.transformed(transformations.get(0));
+			}
+			TransformationMatrix matrix = compose();
+			if (matrix!=null) {
+				return csg.transformed(matrix);
+			}
+			return csg.transformed(new ITransformation() {
+				@Override
+				public Coords3d transform(Coords3d vec) {
+					return TransformedNode.this.transform(vec);
+				}
+
+				@Override
+				public boolean isMirror() {
+					return false;
+				}
+			});
+		}
+	}
+
+	/**
+	 * The union of expressions. The empty operands are dropped.
+	 */
+	private static final class UnionNode extends LazyCSG {
+		private final List<LazyCSG> operands;
+
+		private UnionNode(List<LazyCSG> operands) {
+			this.operands = new ArrayList<>(operands);
+		}
+
+		@Override
+		Boundaries3d calculateBoundaries() {
+			List<Boundaries3d> list = new ArrayList<>();
+			for (LazyCSG operand : operands) {
+				if (!operand.isKnownEmpty()) {
+					list.add(operand.getBoundaries());
+				}
+			}
+			return list.isEmpty() ? Boundaries3d.EMPTY : Boundaries3d.combine(list);
+		}
+
+		@Override
+		CSG calculate(CsgOptions options) {
+			List<CSG> csgs = new ArrayList<>();
+			for (LazyCSG operand : operands) {
+				if (!operand.isKnownEmpty()) {
+					csgs.add(operand.evaluate(options));
+				}
+			}
+			return CSG.unionAll(csgs, options);
+		}
+	}
+
+	/**
+	 * The intersection of expressions. If any of the operands is empty or the operands are separated the
+	 * result is empty without evaluating the operands.
+	 */
+	private static final class IntersectionNode extends LazyCSG {
+		private final List<LazyCSG> operands;
+
+		private IntersectionNode(List<LazyCSG> operands) {
+			this.operands = new ArrayList<>(operands);
+		}
+
+		@Override
+		Boundaries3d calculateBoundaries() {
+			if (operands.isEmpty()) {
+				return Boundaries3d.EMPTY;
+			}
+			Boundaries3d common = null;
+			for (LazyCSG operand : operands) {
+				if (operand.isKnownEmpty()) {
+					return Boundaries3d.EMPTY;
+				}
+				common = common==null ? operand.getBoundaries() : 
+					BoundsPartition.overlap(common, operand.getBoundaries());
+				if (common==null) {
+					return Boundaries3d.EMPTY;
+				}
+			}
+			return common;
+		}
+
+		@Override
+		CSG calculate(CsgOptions options) {
+			if (isKnownEmpty()) {
+				return CSG.fromPolygons();
+			}
+			List<CSG> csgs = new ArrayList<>();
+			for (LazyCSG operand : operands) {
+				csgs.add(operand.evaluate(options));
+			}
+			return CSG.intersectAll(csgs, options);
+		}
+	}
+
+	/**
+	 * Subtracts all the operands from the first operand in one step. The empty operands and the operands
+	 * separated from the first one are skipped.
+	 */
+	private static final class DifferenceNode extends LazyCSG {
+		private final LazyCSG first;
+		private final List<LazyCSG> others;
+
+		private DifferenceNode(LazyCSG first, List<LazyCSG> others) {
+			this.first = first;
+			this.others = new ArrayList<>(others);
+		}
+
+		@Override
+		Boundaries3d calculateBoundaries() {
+			return first.getBoundaries();
+		}
+
+		@Override
+		CSG calculate(CsgOptions options) {
+			CSG csg = first.evaluate(options);
+			if (csg.getMesh().size()==0) {
+				return csg;
+			}
+			List<CSG> csgs = new ArrayList<>();
+			for (LazyCSG other : others) {
+				if (!other.isKnownEmpty() && !(options.isBoundsPartitioning() && isSeparated(first, other))) {
+					csgs.add(other.evaluate(options));
+				}
+			}
+			return csg.differenceAll(csgs, options);
+		}
+	}
+}
@@ -0,0 +1,289 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import eu.printingin3d.javascad.utils.AssertValue;
+
+/**
+ * <p>Persistent cache of the rendered CSG objects in a directory, which can be used across JVM runs. It can
+ * be attached to a {@link CsgCache}, which looks up the results missing from the memory in this cache
+ * before rendering them, and stores the rendered results here too.</p>
+ * <p>Every result is stored in its own file named by the SHA-256 hash of the key and the version of the
+ * library, so a new version of the library never uses the results of an old one. The meshes are stored in
+ * a compact binary format, written to a temporary file first and moved to their final name, so a reader
+ * never sees a half-written file. If the size of the files exceeds the given limit the least recently
+ * used files are deleted - every read updates the modification time of the file. The total size is
+ * counted when the cache is opened and kept up to date by the writes and deletions of this object, so the
+ * directory is listed only when the limit has been exceeded.</p>
+ * <p>The cache never breaks the rendering: if a file cannot be read it is handled as a miss and deleted,
+ * if a file cannot be written the result is simply not cached. The number of these failures can be checked
+ * by {@link #getErrorCount()}. The object is thread-safe, and more processes can use the same directory.</p>
+ * <p>When the library is not loaded from its jar file - while developing it - the version is not known, and
+ * the directory should be cleared after every change of the rendering.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public final class MeshDiskCache {
+	private static final int MAGIC = 0x4a534d48;
+	private static final int FORMAT_VERSION = 1;
+	private static final String SUFFIX = ".mesh";
+	private static final String VERSION = findVersion();
+
+	private final Path directory;
+	private final long maxBytes;
+	private final AtomicLong errors = new AtomicLong();
+	private final AtomicLong size;
+
+	/**
+	 * Creates the cache in the given directory. The directory is created if it doesn't exist.
+	 * @param directory the directory the files are stored in
+	 * @param maxBytes the maximum total size of the files
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if the directory is null or exists
+	 * 		as a file, or the size limit is negative
+	 * @throws IOException if the directory cannot be created
+	 */
+	public MeshDiskCache(File directory, long maxBytes) throws IOException {
+		AssertValue.isNotNull(directory, "The cache directory must not be null!");
+		AssertValue.isFalse(directory.isFile(), "The cache directory must not be an existing file!");
+		AssertValue.isNotNegative(maxBytes, "The size limit of the cache should not be negative!");
+
+		this.directory = Files.createDirectories(directory.toPath());
+		this.maxBytes = maxBytes;
+		this.size = new AtomicLong(sumSize(listFiles()));
+	}
+
+	private static String findVersion() {
+		String version = MeshDiskCache.class.getPackage().getImplementationVersion();
+		return version==null ? "development" : version;
+	}
+
+	/**
+	 * Loads the result stored with the given key.
+	 * @param key the key of the result
+	 * @return the stored result or null if there is no such result
+	 */
+	CSG load(String key) {
+		Path file = getFile(key);
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+		try (InputStream stream = Files.newInputStream(file)) {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+			if (in.readInt()!=MAGIC || in.readInt()!=FORMAT_VERSION) {
+				throw new IOException("The file is not a cached mesh.");
+			}
+			CSG result = new CSG(PolygonMesh.read(in));
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+			return result;
+		}
+		catch (IOException | RuntimeException e) {
+			errors.incrementAndGet();
+			delete(file);
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the given result with the given key and deletes the least recently used files if the size
+	 * limit has been exceeded.
+	 * @param key the key of the result
+	 * @param csg the result to be stored
+	 */
+	void store(String key, CSG csg) {
+		Path file = getFile(key);
+		Path temp = null;
+		try {
+			temp = Files.createTempFile(directory, "store", ".tmp");
+			try (OutputStream stream = Files.newOutputStream(temp)) {
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				csg.getMesh().write(out);
+				out.flush();
+			}
+			long newSize = Files.size(temp);
+			long oldSize = Files.isRegularFile(file) ? sizeOf(file) : 0;
+			move(temp, file);
+			if (size.addAndGet(newSize-oldSize)>maxBytes) {
+				evict();
+			}
+		}
+		catch (IOException | RuntimeException e) {
+			errors.incrementAndGet();
+			if (temp!=null) {
+				deleteQuietly(temp);
+			}
+		}
+	}
+
+	private static void move(Path from, Path to) throws IOException {
+		try {
+			Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (AtomicMoveNotSupportedException e) {
+			Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Deletes the least recently used files until the total size is under the limit. The directory is listed
+	 * again, because other processes might have changed it, and the running total is corrected by it.
+	 */
+	private synchronized void evict() throws IOException {
+		List<Entry> entries = new ArrayList<>();
+		for (Path p : listFiles()) {
+			Entry entry = Entry.of(p);
+			if (entry!=null) {
+				entries.add(entry);
+			}
+		}
+		long total = 0;
+		for (Entry e : entries) {
+			total += e.size;
+		}
+		if (total>maxBytes) {
+			entries.sort(Comparator.comparingLong(e -> e.lastUsed));
+			for (Entry e : entries) {
+				if (total<=maxBytes) {
+					break;
+				}
+				deleteQuietly(e.file);
+				total -= e.size;
+			}
+		}
+		size.set(total);
+	}
+
+	private List<Path> listFiles() throws IOException {
+		List<Path> files = new ArrayList<>();
+		try (Stream<Path> stream = Files.list(directory)) {
+			stream.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).forEach(files::add);
+		}
+		return files;
+	}
+
+	private static long sumSize(List<Path> files) {
+		long total = 0;
+		for (Path p : files) {
+			total += sizeOf(p);
+		}
+		return total;
+	}
+
+	/**
+	 * Returns the size of the given file or zero if it has been deleted by someone else in the meantime.
+	 */
+	private static long sizeOf(Path file) {
+		try {
+			return Files.size(file);
+		}
+		catch (IOException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Deletes the given file and removes its size from the running total.
+	 */
+	private void delete(Path file) {
+		long fileSize = sizeOf(file);
+		if (deleteQuietly(file)) {
+			size.addAndGet(-fileSize);
+		}
+	}
+
+	/**
+	 * Returns the total size of the files stored in the cache. The files written or deleted by other 
+	 * processes using the same directory are counted only from the next eviction.
+	 * @return the total size of the files in bytes
+	 */
+	public long getSize() {
+		return size.get();
+	}
+
+	/**
+	 * Returns the number of files which could not be read or written.
+	 * @return the number of failed reads and writes
+	 */
+	public long getErrorCount() {
+		return errors.get();
+	}
+
+	private Path getFile(String key) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(VERSION.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			byte[] hash = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+			StringBuilder sb = new StringBuilder();
+			for (byte b : hash) {
+				sb.append(String.format("%02x", Integer.valueOf(b & 0xff)));
+			}
+			return directory.resolve(sb.append(SUFFIX).toString());
+		}
+		catch (NoSuchAlgorithmException e) {
+			// every Java platform has to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Deletes the given file - if it cannot be deleted it will be tried again by the next eviction.
+	 */
+	private static boolean deleteQuietly(Path file) {
+		try {
+			return Files.deleteIfExists(file);
+		}
+		catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * A file of the cache with its size and the time it was used last.
+	 */
+	private static final class Entry {
+		private final Path file;
+		private final long size;
+		private final long lastUsed;
+
+		private Entry(Path file, long size, long lastUsed) {
+			this.file = file;
+			this.size = size;
+			this.lastUsed = lastUsed;
+		}
+
+		/**
+		 * Reads the attributes of the given file.
+		 * @return the entry or null if the file has been deleted by someone else in the meantime
+		 */
+		private static Entry of(Path file) {
+			try {
+				return new Entry(file, Files.size(file), Files.getLastModifiedTime(file).toMillis());
+			}
+			catch (IOException e) {
+				return null;
+			}
+		}
+	}
+}
@@ -0,0 +1,327 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import eu.printingin3d.javascad.coords.Coords3d;
+
+/**
+ * <p>Calculates the intersection curve of two closed triangle meshes and splits the triangles of both meshes
+ * along that curve. The candidate triangle pairs are found by sweeping the bounding boxes of the triangles
+ * along the X axis, and only those triangles are tested which are inside the common part of the bounding
+ * boxes of the two meshes, so the work is proportional to the size of the intersection curve rather than
+ * the number of all triangle pairs.</p>
+ * <p>The intersection of a triangle pair is calculated the usual way: the corners of both triangles are
+ * classified by the plane of the other triangle, the segment where one triangle crosses the plane of the
+ * other is calculated for both, and the common part of these two segments is the intersection. The points
+ * where an edge crosses a plane are always interpolated from the lower vertex index, so the neighbouring
+ * triangles sharing that edge get exactly the same point. If the triangles are coplanar the edges of
+ * each triangle clipped by the other are used as the intersection segments.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+final class MeshIntersection {
+	private final double tolerance;
+	private final Triangle[] first;
+	private final Triangle[] second;
+	private final List<Coords3d[]> curve = new ArrayList<>();
+	private final List<Polygon> firstPieces;
+	private final List<Polygon> secondPieces;
+
+	/**
+	 * Calculates the intersection of the two meshes.
+	 * @param firstMesh the first mesh
+	 * @param secondMesh the second mesh
+	 * @param tolerance the points closer to each other than this value are handled as the same point
+	 */
+	MeshIntersection(IndexedMesh firstMesh, IndexedMesh secondMesh, double tolerance) {
+		this.tolerance = tolerance;
+		this.first = toTriangles(firstMesh);
+		this.second = toTriangles(secondMesh);
+		intersectAll();
+		this.firstPieces = pieces(first);
+		this.secondPieces = pieces(second);
+	}
+
+	/**
+	 * Returns the triangles of the first mesh split along the intersection curve.
+	 * @return the pieces of the triangles of the first mesh
+	 */
+	List<Polygon> getFirstPieces() {
+		return firstPieces;
+	}
+
+	/**
+	 * Returns the triangles of the second mesh split along the intersection curve.
+	 * @return the pieces of the triangles of the second mesh
+	 */
+	List<Polygon> getSecondPieces() {
+		return secondPieces;
+	}
+
+	/**
+	 * Returns the edges of the intersection curve as they were inserted into the triangles of either mesh.
+	 * The two meshes might split the curve at different points, so both versions are returned.
+	 * @return the list of the edges as arrays of two end points
+	 */
+	List<Coords3d[]> getCurve() {
+		return curve;
+	}
+
+	private Triangle[] toTriangles(IndexedMesh mesh) {
+		Triangle[] result = new Triangle[mesh.getTriangleCount()];
+		for (int t = 0; t<result.length; t++) {
+			result[t] = new Triangle(mesh, t);
+		}
+		return result;
+	}
+
+	private void intersectAll() {
+		double[] common = new double[6];
+		for (int axis = 0; axis<3; axis++) {
+			common[axis] = Math.max(min(first, axis), min(second, axis)) - tolerance;
+			common[axis+3] = Math.min(max(first, axis), max(second, axis)) + tolerance;
+		}
+		Triangle[] a = candidates(first, common);
+		Triangle[] b = candidates(second, common);
+
+		// sweep along the X axis: the active triangles of the second mesh are those which have been started,
+		// but not yet finished at the start of the current triangle of the first mesh
+		List<Triangle> active = new ArrayList<>();
+		int next = 0;
+		for (Triangle t : a) {
+			while (next<b.length && b[next].min[0] <= t.max[0] + tolerance) {
+				active.add(b[next]);
+				next++;
+			}
+			active.removeIf(u -> u.max[0] < t.min[0] - tolerance);
+			for (Triangle u : active) {
+				if (u.overlaps(t, tolerance)) {
+					intersect(t, u);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Selects the triangles which overlap the given box and sorts them by the lower end of their X range.
+	 */
+	private Triangle[] candidates(Triangle[] triangles, double[] box) {
+		List<Triangle> result = new ArrayList<>();
+		for (Triangle t : triangles) {
+			if (t.overlaps(box)) {
+				result.add(t);
+			}
+		}
+		result.sort(Comparator.comparingDouble(t -> t.min[0]));
+		return result.toArray(new Triangle[result.size()]);
+	}
+
+	private void intersect(Triangle t, Triangle u) {
+		double[] ds = distances(t, u);
+		if (isOneSide(ds)) {
+			return;
+		}
+		double[] du = distances(u, t);
+		if (isOneSide(du)) {
+			return;
+		}
+		if (isZero(ds) || isZero(du)) {
+			intersectCoplanar(t, u);
+			intersectCoplanar(u, t);
+			return;
+		}
+
+		List<Coords3d> pt = crossing(t, ds);
+		List<Coords3d> pu = crossing(u, du);
+		Coords3d direction = t.normal.cross(u.normal);
+		if (pt.size()<2 || pu.size()<2 || direction.magnitude()==0.0) {
+			return;
+		}
+		direction = direction.unit();
+		sortAlong(pt, direction);
+		sortAlong(pu, direction);
+
+		Coords3d low = pt.get(0).dot(direction)>pu.get(0).dot(direction) ? pt.get(0) : pu.get(0);
+		Coords3d high = pt.get(1).dot(direction)<pu.get(1).dot(direction) ? pt.get(1) : pu.get(1);
+		if (high.dot(direction) - low.dot(direction) > tolerance) {
+			t.refinement(tolerance).addSegment(low, high);
+			u.refinement(tolerance).addSegment(low, high);
+		}
+	}
+
+	/**
+	 * Adds the edges of the second triangle clipped by the first triangle to the first triangle. Used
+	 * when the triangles are in the same plane.
+	 */
+	private void intersectCoplanar(Triangle t, Triangle u) {
+		for (int k = 0; k<3; k++) {
+			double low = 0.0;
+			double high = 1.0;
+			Coords3d start = u.corners[k];
+			Coords3d end = u.corners[(k+1) % 3];
+			for (int e = 0; e<3 && low<high; e++) {
+				Coords3d edgeStart = t.corners[e];
+				Coords3d inward = t.normal.cross(t.corners[(e+1) % 3].add(edgeStart.inverse())).unit();
+				double s = inward.dot(start.add(edgeStart.inverse()));
+				double f = inward.dot(end.add(edgeStart.inverse()));
+				if (s< -tolerance && f< -tolerance) {
+					high = low;
+				}
+				else if (s< -tolerance) {
+					low = Math.max(low, s / (s-f));
+				}
+				else if (f< -tolerance) {
+					high = Math.min(high, s / (s-f));
+				}
+			}
+			Coords3d from = start.lerp(end, low);
+			Coords3d to = start.lerp(end, high);
+			if (low<high && from.add(to.inverse()).magnitude()>tolerance) {
+				t.refinement(tolerance).addSegment(from, to);
+			}
+		}
+	}
+
+	/**
+	 * Calculates the signed distances of the corners of the first triangle from the plane of the second.
+	 * The distances smaller than the tolerance are rounded to zero.
+	 */
+	private double[] distances(Triangle t, Triangle plane) {
+		double[] result = new double[3];
+		for (int k = 0; k<3; k++) {
+			double d = plane.normal.dot(t.corners[k]) - plane.dist;
+			result[k] = Math.abs(d)<=tolerance ? 0.0 : d;
+		}
+		return result;
+	}
+
+	private static boolean isOneSide(double[] distances) {
+		return distances[0]>0.0 && distances[1]>0.0 && distances[2]>0.0 ||
+				distances[0]<0.0 && distances[1]<0.0 && distances[2]<0.0;
+	}
+
+	private static boolean isZero(double[] distances) {
+		return distances[0]==0.0 && distances[1]==0.0 && distances[2]==0.0;
+	}
+
+	/**
+	 * Calculates the points where the triangle touches or crosses the plane the distances were calculated
+	 * from.
+	 */
+	private static List<Coords3d> crossing(Triangle t, double[] distances) {
+		List<Coords3d> result = new ArrayList<>(2);
+		for (int k = 0; k<3; k++) {
+			int next = (k+1) % 3;
+			if (distances[k]==0.0) {
+				result.add(t.corners[k]);
+			}
+			else if (distances[k]*distances[next]<0.0) {
+				int from = t.ids[k]<t.ids[next] ? k : next;
+				int to = from==k ? next : k;
+				double ratio = distances[from] / (distances[from]-distances[to]);
+				result.add(t.corners[from].lerp(t.corners[to], ratio));
+			}
+		}
+		return result;
+	}
+
+	private static void sortAlong(List<Coords3d> points, Coords3d direction) {
+		points.sort(Comparator.comparingDouble(p -> p.dot(direction)));
+		if (points.size()>2) {
+			points.subList(1, points.size()-1).clear();
+		}
+	}
+
+	private List<Polygon> pieces(Triangle[] triangles) {
+		List<Polygon> result = new ArrayList<>();
+		for (Triangle t : triangles) {
+			if (t.refinement==null || !t.refinement.hasSegments()) {
+				result.add(t.toPolygon(t.corners));
+			}
+			else {
+				for (Coords3d[] piece : t.refinement.triangulate()) {
+					result.add(t.toPolygon(piece));
+				}
+				curve.addAll(t.refinement.getSegmentEdges());
+			}
+		}
+		return result;
+	}
+
+	private static double min(Triangle[] triangles, int axis) {
+		return Arrays.stream(triangles).mapToDouble(t -> t.min[axis]).min().orElse(0.0);
+	}
+
+	private static double max(Triangle[] triangles, int axis) {
+		return Arrays.stream(triangles).mapToDouble(t -> t.max[axis]).max().orElse(0.0);
+	}
+
+	/**
+	 * A triangle of one of the meshes with its plane, bounding box and the refinement collecting the
+	 * intersection segments.
+	 */
+	private static final class Triangle {
+		private final IndexedMesh mesh;
+		private final int index;
+		private final int[] ids = new int[3];
+		private final Coords3d[] corners = new Coords3d[3];
+		private final double[] min = new double[3];
+		private final double[] max = new double[3];
+		private final Coords3d normal;
+		private final double dist;
+		private TriangleRefinement refinement;
+
+		private Triangle(IndexedMesh mesh, int index) {
+			this.mesh = mesh;
+			this.index = index;
+			for (int k = 0; k<3; k++) {
+				ids[k] = mesh.getTriangleVertex(index, k);
+				corners[k] = mesh.getVertices().get(ids[k]);
+			}
+			for (int axis = 0; axis<3; axis++) {
+				min[axis] = Double.POSITIVE_INFINITY;
+				max[axis] = Double.NEGATIVE_INFINITY;
+				for (Coords3d c : corners) {
+					double value = axis==0 ? c.getX() : (axis==1 ? c.getY() : c.getZ());
+					min[axis] = Math.min(min[axis], value);
+					max[axis] = Math.max(max[axis], value);
+				}
+			}
+			this.normal = corners[1].add(corners[0].inverse()).cross(corners[2].add(corners[0].inverse())).unit();
+			this.dist = normal.dot(corners[0]);
+		}
+
+		private boolean overlaps(Triangle other, double tolerance) {
+			for (int axis = 0; axis<3; axis++) {
+				if (min[axis] > other.max[axis] + tolerance || other.min[axis] > max[axis] + tolerance) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private boolean overlaps(double[] box) {
+			for (int axis = 0; axis<3; axis++) {
+				if (min[axis] > box[axis+3] || max[axis] < box[axis]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private TriangleRefinement refinement(double tolerance) {
+			if (refinement==null) {
+				refinement = new TriangleRefinement(corners[0], corners[1], corners[2], tolerance);
+			}
+			return refinement;
+		}
+
+		private Polygon toPolygon(Coords3d[] vertices) {
+			Coords3d n = mesh.getNormal(index);
+			return Polygon.fromPlane(Arrays.asList(vertices), n, n.dot(vertices[0]), mesh.getColor(index));
+		}
+	}
+}
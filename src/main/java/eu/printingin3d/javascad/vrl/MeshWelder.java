@@ -0,0 +1,388 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import eu.printingin3d.javascad.coords.Coords3d;
+
+/**
+ * <p>Converts polygons to a watertight {@link IndexedMesh}. It is done in three steps:</p>
+ * <ol>
+ * <li>the vertices closer to each other than the tolerance are welded into one vertex - the vertices
+ * are found by a spatial hash with the tolerance as the cell size</li>
+ * <li>the T-junctions are repaired: if a vertex lies on an edge of a polygon which has no pair in the
+ * opposite direction, the vertex is inserted into that edge - the polygons without area are dropped before,
+ * so the edges around them are repaired the same way</li>
+ * <li>the polygons are triangulated by ear clipping, which never creates degenerated triangles from
+ * the vertices lying on a straight line</li>
+ * </ol>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+final class MeshWelder {
+	private final double tolerance;
+	private final List<Coords3d> vertices = new ArrayList<>();
+	private final Map<Cell, List<Integer>> cells = new HashMap<>();
+	private final List<List<Integer>> loops = new ArrayList<>();
+	private final List<Polygon> sources = new ArrayList<>();
+	private final List<Integer> sourceIndexes = new ArrayList<>();
+
+	private MeshWelder(double tolerance) {
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * Welds the given polygons into an indexed mesh.
+	 * @param polygons the polygons to be used
+	 * @param tolerance the vertices closer to each other than this value are welded together
+	 * @return the welded mesh
+	 */
+	static IndexedMesh weld(List<Polygon> polygons, double tolerance) {
+		MeshWelder welder = new MeshWelder(tolerance);
+		for (int i = 0; i<polygons.size(); i++) {
+			welder.addPolygon(polygons.get(i), i);
+		}
+		welder.repairTJunctions();
+		return welder.triangulate();
+	}
+
+	/**
+	 * Welds the given polygons into an indexed mesh and finds the welded vertices of the end points of the
+	 * given segments.
+	 * @param polygons the polygons to be used
+	 * @param tolerance the vertices closer to each other than this value are welded together
+	 * @param segments the segments as arrays of two end points
+	 * @param segmentKeys the undirected keys of the segments are added to this set, see
+	 * 		{@link HalfEdgeMesh#undirectedKey(int, int)}; the segments whose end points are not vertices of the
+	 * 		mesh are skipped
+	 * @return the welded mesh
+	 */
+	static IndexedMesh weld(List<Polygon> polygons, double tolerance, List<Coords3d[]> segments,
+			Set<Long> segmentKeys) {
+		MeshWelder welder = new MeshWelder(tolerance);
+		for (int i = 0; i<polygons.size(); i++) {
+			welder.addPolygon(polygons.get(i), i);
+		}
+		for (Coords3d[] segment : segments) {
+			int a = welder.find(segment[0]);
+			int b = welder.find(segment[1]);
+			if (a>=0 && b>=0 && a!=b) {
+				segmentKeys.add(Long.valueOf(HalfEdgeMesh.undirectedKey(a, b)));
+			}
+		}
+		welder.repairTJunctions();
+		return welder.triangulate();
+	}
+
+	private void addPolygon(Polygon polygon, int index) {
+		List<Integer> loop = new ArrayList<>();
+		for (Coords3d v : polygon.getVertices()) {
+			Integer id = Integer.valueOf(weld(v));
+			if (loop.isEmpty() || !loop.get(loop.size()-1).equals(id)) {
+				loop.add(id);
+			}
+		}
+		if (loop.size()>1 && loop.get(0).equals(loop.get(loop.size()-1))) {
+			loop.remove(loop.size()-1);
+		}
+		if (loop.size()>=3 && !isStraight(loop)) {
+			loops.add(loop);
+			sources.add(polygon);
+			sourceIndexes.add(Integer.valueOf(index));
+		}
+	}
+
+	private int weld(Coords3d v) {
+		int found = find(v);
+		if (found>=0) {
+			return found;
+		}
+		vertices.add(v);
+		int id = vertices.size()-1;
+		cells.computeIfAbsent(new Cell(cellIndex(v.getX()), cellIndex(v.getY()), cellIndex(v.getZ())),
+				c -> new ArrayList<>()).add(Integer.valueOf(id));
+		return id;
+	}
+
+	private int find(Coords3d v) {
+		long cx = cellIndex(v.getX());
+		long cy = cellIndex(v.getY());
+		long cz = cellIndex(v.getZ());
+		for (long x = cx-1; x<=cx+1; x++) {
+			for (long y = cy-1; y<=cy+1; y++) {
+				for (long z = cz-1; z<=cz+1; z++) {
+					List<Integer> candidates = cells.get(new Cell(x, y, z));
+					if (candidates!=null) {
+						for (Integer id : candidates) {
+							if (distance(vertices.get(id.intValue()), v)<=tolerance) {
+								return id.intValue();
+							}
+						}
+					}
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Checks if all the vertices of the loop are on one straight line, so the loop has no area. These loops
+	 * are dropped before the T-junction repair, so their middle vertices are inserted into the edges of
+	 * their neighbours instead of leaving a hole after the triangulation.
+	 */
+	private boolean isStraight(List<Integer> loop) {
+		Coords3d start = vertices.get(loop.get(0).intValue());
+		Coords3d end = start;
+		for (Integer id : loop) {
+			Coords3d v = vertices.get(id.intValue());
+			if (distance(start, v)>distance(start, end)) {
+				end = v;
+			}
+		}
+		Coords3d unit = end.add(start.inverse()).unit();
+		for (Integer id : loop) {
+			if (vertices.get(id.intValue()).add(start.inverse()).cross(unit).magnitude()>tolerance) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private long cellIndex(double value) {
+		return (long) Math.floor(value / tolerance);
+	}
+
+	/**
+	 * Inserts the end points of the unpaired edges into those unpaired edges they are lying on. The
+	 * candidate vertices are sorted by their X coordinate, so only those are checked which are in the
+	 * X range of the edge.
+	 */
+	private void repairTJunctions() {
+		Set<Long> edges = new HashSet<>();
+		for (List<Integer> loop : loops) {
+			for (int k = 0; k<loop.size(); k++) {
+				edges.add(Long.valueOf(edgeKey(loop.get(k), loop.get((k+1) % loop.size()))));
+			}
+		}
+
+		Set<Integer> candidateSet = new HashSet<>();
+		for (Long edge : edges) {
+			long value = edge.longValue();
+			int a = (int) (value >>> 32);
+			int b = (int) value;
+			if (!edges.contains(Long.valueOf(edgeKey(Integer.valueOf(b), Integer.valueOf(a))))) {
+				candidateSet.add(Integer.valueOf(a));
+				candidateSet.add(Integer.valueOf(b));
+			}
+		}
+		if (candidateSet.isEmpty()) {
+			return;
+		}
+		List<Integer> candidates = new ArrayList<>(candidateSet);
+		candidates.sort(Comparator.comparingDouble(id -> vertices.get(id.intValue()).getX()));
+
+		for (List<Integer> loop : loops) {
+			for (int k = loop.size()-1; k>=0; k--) {
+				Integer a = loop.get(k);
+				Integer b = loop.get((k+1) % loop.size());
+				if (!edges.contains(Long.valueOf(edgeKey(b, a)))) {
+					loop.addAll(k+1, verticesOnEdge(a.intValue(), b.intValue(), candidates));
+				}
+			}
+		}
+	}
+
+	private List<Integer> verticesOnEdge(int a, int b, List<Integer> candidates) {
+		Coords3d start = vertices.get(a);
+		Coords3d end = vertices.get(b);
+		Coords3d direction = end.add(start.inverse());
+		double length = direction.magnitude();
+		Coords3d unit = direction.unit();
+		double minX = Math.min(start.getX(), end.getX()) - tolerance;
+		double maxX = Math.max(start.getX(), end.getX()) + tolerance;
+
+		List<Integer> found = new ArrayList<>();
+		List<Double> positions = new ArrayList<>();
+		for (int i = firstAtLeast(candidates, minX); i<candidates.size(); i++) {
+			int v = candidates.get(i).intValue();
+			Coords3d relative = vertices.get(v).add(start.inverse());
+			if (vertices.get(v).getX()>maxX) {
+				break;
+			}
+			double t = relative.dot(unit);
+			if (v!=a && v!=b && t>tolerance && t<length-tolerance &&
+					relative.cross(unit).magnitude()<=tolerance) {
+				int index = 0;
+				while (index<positions.size() && positions.get(index).doubleValue()<t) {
+					index++;
+				}
+				positions.add(index, Double.valueOf(t));
+				found.add(index, Integer.valueOf(v));
+			}
+		}
+		return found;
+	}
+
+	private int firstAtLeast(List<Integer> sorted, double x) {
+		int low = 0;
+		int high = sorted.size();
+		while (low<high) {
+			int middle = (low+high) >>> 1;
+			if (vertices.get(sorted.get(middle).intValue()).getX()<x) {
+				low = middle+1;
+			}
+			else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	private IndexedMesh triangulate() {
+		List<Integer> triangles = new ArrayList<>();
+		List<Coords3d> normals = new ArrayList<>();
+		List<Color> colors = new ArrayList<>();
+		List<Integer> triangleSources = new ArrayList<>();
+		for (int i = 0; i<loops.size(); i++) {
+			Polygon source = sources.get(i);
+			int before = triangles.size();
+			clipEars(new ArrayList<>(loops.get(i)), source.getNormal(), triangles);
+			for (int t = before; t<triangles.size(); t += 3) {
+				normals.add(source.getNormal());
+				colors.add(source.getColor());
+				triangleSources.add(sourceIndexes.get(i));
+			}
+		}
+		return new IndexedMesh(vertices, triangles.stream().mapToInt(Integer::intValue).toArray(),
+				normals.toArray(new Coords3d[normals.size()]), colors.toArray(new Color[colors.size()]),
+				triangleSources.stream().mapToInt(Integer::intValue).toArray());
+	}
+
+	/**
+	 * Clips the ears of the given convex loop. A vertex is an ear if it is not on the straight line of
+	 * its neighbours and the remaining vertices would not be on one straight line after clipping it. From
+	 * the ears the one is clipped which leaves its neighbours the farthest from the straight line of their
+	 * new neighbours, otherwise a thin loop with vertices inserted into its long side could become a loop
+	 * without any ear.
+	 */
+	private void clipEars(List<Integer> ring, Coords3d normal, List<Integer> triangles) {
+		while (ring.size()>3) {
+			int ear = -1;
+			double best = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i<ring.size(); i++) {
+				if (isCorner(ring, i, normal) && !isRestStraight(ring, i)) {
+					double quality = quality(ring, i, normal);
+					if (quality>best) {
+						best = quality;
+						ear = i;
+					}
+				}
+			}
+			if (ear<0) {
+				return;
+			}
+			addTriangle(ring, ear, triangles);
+			ring.remove(ear);
+		}
+		if (isCorner(ring, 1, normal)) {
+			addTriangle(ring, 1, triangles);
+		}
+	}
+
+	/**
+	 * Calculates the smaller distance of the two neighbours of the given vertex from the straight line of
+	 * their neighbours after the vertex is clipped.
+	 */
+	private double quality(List<Integer> ring, int i, Coords3d normal) {
+		Coords3d prevPrev = vertex(ring, i-2);
+		Coords3d prev = vertex(ring, i-1);
+		Coords3d next = vertex(ring, i+1);
+		Coords3d nextNext = vertex(ring, i+2);
+		return Math.min(height(prevPrev, prev, next, normal), height(prev, next, nextNext, normal));
+	}
+
+	private void addTriangle(List<Integer> ring, int i, List<Integer> triangles) {
+		int size = ring.size();
+		triangles.add(ring.get((i+size-1) % size));
+		triangles.add(ring.get(i));
+		triangles.add(ring.get((i+1) % size));
+	}
+
+	private boolean isCorner(List<Integer> ring, int i, Coords3d normal) {
+		return height(vertex(ring, i-1), vertex(ring, i), vertex(ring, i+1), normal) > tolerance;
+	}
+
+	/**
+	 * Calculates the signed distance of the current vertex from the straight line of its neighbours, it is
+	 * positive if the vertex is a convex corner.
+	 */
+	private static double height(Coords3d prev, Coords3d current, Coords3d next, Coords3d normal) {
+		double area = current.add(prev.inverse()).cross(next.add(current.inverse())).dot(normal);
+		return area / next.add(prev.inverse()).magnitude();
+	}
+
+	private Coords3d vertex(List<Integer> ring, int i) {
+		int size = ring.size();
+		return vertices.get(ring.get(((i % size) + size) % size).intValue());
+	}
+
+	/**
+	 * Checks if the vertices of the ring except the given one are on a straight line.
+	 */
+	private boolean isRestStraight(List<Integer> ring, int i) {
+		int size = ring.size();
+		Coords3d prev = vertices.get(ring.get((i+size-1) % size).intValue());
+		Coords3d next = vertices.get(ring.get((i+1) % size).intValue());
+		Coords3d unit = next.add(prev.inverse()).unit();
+		for (int j = 0; j<size; j++) {
+			Coords3d v = vertices.get(ring.get(j).intValue());
+			if (j!=i && v.add(prev.inverse()).cross(unit).magnitude()>tolerance) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static double distance(Coords3d a, Coords3d b) {
+		return a.add(b.inverse()).magnitude();
+	}
+
+	private static long edgeKey(Integer a, Integer b) {
+		return ((long) a.intValue() << 32) | (b.intValue() & 0xffffffffL);
+	}
+
+	/**
+	 * A cell of the spatial hash.
+	 */
+	private static final class Cell {
+		private final long x;
+		private final long y;
+		private final long z;
+
+		private Cell(long x, long y, long z) {
+			this.x = x;
+			this.y = y;
+			this.z = z;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(x*73856093L ^ y*19349663L ^ z*83492791L);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Cell)) {
+				return false;
+			}
+			Cell other = (Cell) obj;
+			return x==other.x && y==other.y && z==other.z;
+		}
+	}
+}
@@ -0,0 +1,316 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import eu.printingin3d.javascad.utils.Pair;
+
+/**
+ * <p>Mutable counterpart of {@link Node} used as the working representation of the CSG operations. 
+ * The original csg.js modifies the trees in place during the clip/invert/build sequence of an operation; 
+ * doing the same avoids building a complete new tree in every step. The objects of this class never leave
+ * the {@link CSG} operations, so the public API keeps its no-mutation guarantee.</p>
+ * <p>The trees are walked with explicit stacks like the immutable version, and the result is always the
+ * same as the result of the same sequence of operations on {@link Node} objects. If the parallel evaluation
+ * is turned on the nodes are processed concurrently.</p>
+ * <p>If the root knows the spatial index of the surface the tree was built from, the polygons which are
+ * not near to any polygon of that surface are not split while clipping: they cannot cross the surface, so
+ * they are either kept or removed as a whole.</p>
+ * <p>If a {@link RenderHandle} is attached to the options it is polled at every node processed.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+final class MutableNode {
+	private final List<Polygon> polygons = new ArrayList<>();
+	private Polygon plane;
+	private MutableNode front;
+	private MutableNode back;
+	// set only on the root
+	private PolygonBvh surface;
+	
+	private MutableNode(Polygon plane) {
+		this.plane = plane;
+	}
+	
+	/**
+	 * Creates a BSP tree consisting of the specified polygons.
+	 * @param polygons the polygons to be used
+	 * @param options the options used for the evaluation
+	 * @return the root of the new tree or null if the list of polygons is empty
+	 */
+	static MutableNode fromPolygons(List<Polygon> polygons, CsgOptions options) {
+		if (polygons.isEmpty()) {
+			return null;
+		}
+		MutableNode node = new MutableNode(options.getPlaneSelection().selectPlane(polygons));
+		node.build(polygons, options, 1);
+		return node;
+	}
+	
+	/**
+	 * Creates a BSP tree consisting of the specified polygons, which uses the given spatial index while
+	 * clipping if the options allow it.
+	 * @param polygons the polygons to be used
+	 * @param surface the spatial index of the object the polygons are coming from - all polygons of the 
+	 * 		tree have to be inside the polygons of the index
+	 * @param options the options used for the evaluation
+	 * @return the root of the new tree or null if the list of polygons is empty
+	 */
+	static MutableNode fromPolygons(List<Polygon> polygons, PolygonBvh surface, CsgOptions options) {
+		MutableNode node = fromPolygons(polygons, options);
+		if (node!=null && options.isBvhCulling()) {
+			node.surface = surface;
+		}
+		return node;
+	}
+	
+	/**
+	 * Converts solid space to empty space and vice verse by flipping every polygon and plane and swapping 
+	 * the front and back nodes.
+	 * @param options the options used for the evaluation
+	 */
+	void invert(CsgOptions options) {
+		forEachNode(options, node -> {
+			node.polygons.replaceAll(Polygon::flip);
+			node.plane = node.plane.flip();
+			MutableNode temp = node.front;
+			node.front = node.back;
+			node.back = temp;
+		});
+	}
+	
+	/**
+	 * Removes all polygons in this tree that are inside the given other tree.
+	 * @param bsp the other tree
+	 * @param options the options used for the evaluation
+	 */
+	void clipTo(MutableNode bsp, CsgOptions options) {
+		forEachNode(options, node -> {
+			List<Polygon> clipped = bsp.clipPolygons(node.polygons, options);
+			node.polygons.clear();
+			node.polygons.addAll(clipped);
+		});
+	}
+	
+	/**
+	 * Removes all polygons in the given list that are inside this tree. The polygons are split if necessary.
+	 * @param polys the polygons to clip
+	 * @param options the options used for the evaluation
+	 * @return the remaining polygons
+	 */
+	List<Polygon> clipPolygons(List<Polygon> polys, CsgOptions options) {
+		return clipPolygons(polys, options, 1);
+	}
+	
+	private List<Polygon> clipPolygons(List<Polygon> polys, CsgOptions options, int rootDepth) {
+		List<Polygon> result = new ArrayList<>();
+		List<StackItem> stack = new ArrayList<>();
+		stack.add(new StackItem(this, surface==null ? polys : cull(polys, result, options), rootDepth));
+		
+		while (!stack.isEmpty()) {
+			StackItem item = stack.remove(stack.size()-1);
+			MutableNode node = item.node;
+			List<Polygon> nodePolys = item.polygons;
+			if (nodePolys.isEmpty()) {
+				continue;
+			}
+			options.recordProgress(item.depth, nodePolys.size());
+			
+			List<Polygon> frontP = new ArrayList<>();
+			List<Polygon> backP = new ArrayList<>();
+			for (Polygon polygon : nodePolys) {
+				node.plane.splitPolygon(polygon, frontP, backP, frontP, backP, options.isRobust());
+			}
+			options.recordFragments(frontP.size() + backP.size() - nodePolys.size());
+			
+			if (node.front!=null && node.back!=null && options.shouldFork(nodePolys.size())) {
+				Pair<List<Polygon>, List<Polygon>> clipped = ForkJoinUtils.evaluate(
+						() -> node.front.clipPolygons(frontP, options, item.depth+1), 
+						() -> node.back.clipPolygons(backP, options, item.depth+1));
+				result.addAll(clipped.getValue1());
+				result.addAll(clipped.getValue2());
+				continue;
+			}
+			
+			// the back part is pushed first, so the front part is processed first
+			if (node.back != null) {
+				stack.add(new StackItem(node.back, backP, item.depth+1));
+			}
+			if (node.front == null) {
+				result.addAll(frontP);
+			}
+			else {
+				stack.add(new StackItem(node.front, frontP, item.depth+1));
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Handles the polygons which are not near to the surface of the tree: they are added to the result if
+	 * they are outside of the tree. The other polygons are returned, those have to be clipped as usual.
+	 */
+	private List<Polygon> cull(List<Polygon> polys, List<Polygon> result, CsgOptions options) {
+		List<Polygon> near = new ArrayList<>();
+		double[] box = new double[6];
+		int culled = 0;
+		for (Polygon polygon : polys) {
+			polygon.calculateBoundaries(box);
+			if (surface.overlaps(box, VertexPosition.EPSILON)) {
+				near.add(polygon);
+			}
+			else {
+				culled++;
+				if (!isRemoved(polygon)) {
+					result.add(polygon);
+				}
+			}
+		}
+		options.recordCulled(culled);
+		return near;
+	}
+	
+	/**
+	 * Walks the given polygon down the tree without splitting it and decides if it would be removed by
+	 * the clipping.
+	 */
+	private boolean isRemoved(Polygon polygon) {
+		MutableNode node = this;
+		while (true) {
+			if (node.plane.isOnFrontSide(polygon)) {
+				if (node.front==null) {
+					return false;
+				}
+				node = node.front;
+			}
+			else {
+				if (node.back==null) {
+					return true;
+				}
+				node = node.back;
+			}
+		}
+	}
+	
+	/**
+	 * Returns all the polygons of the tree in the same order as {@link Node#allPolygons()} does.
+	 * @return all the polygons of the tree
+	 */
+	List<Polygon> allPolygons() {
+		List<Polygon> result = new ArrayList<>();
+		for (MutableNode node : allNodes()) {
+			result.addAll(node.polygons);
+		}
+		return result;
+	}
+	
+	/**
+	 * Adds the given polygons to the tree, splitting the polygons if necessary.
+	 * @param polys the polygons to be added
+	 * @param options the options used for the evaluation
+	 */
+	void build(List<Polygon> polys, CsgOptions options) {
+		build(polys, options, 1);
+	}
+	
+	private void build(List<Polygon> polys, CsgOptions options, int depth) {
+		List<StackItem> stack = new ArrayList<>();
+		stack.add(new StackItem(this, polys, depth));
+		
+		while (!stack.isEmpty()) {
+			StackItem item = stack.remove(stack.size()-1);
+			MutableNode node = item.node;
+			if (item.polygons.isEmpty()) {
+				continue;
+			}
+			
+			options.recordProgress(item.depth, item.polygons.size());
+			int before = node.polygons.size();
+			List<Polygon> frontP = new ArrayList<>();
+			List<Polygon> backP = new ArrayList<>();
+			for (Polygon polygon : item.polygons) {
+				node.plane.splitPolygon(polygon, node.polygons, node.polygons, frontP, backP, options.isRobust());
+			}
+			options.recordNode(item.depth, 
+					node.polygons.size() - before + frontP.size() + backP.size() - item.polygons.size());
+			
+			if (node.front == null && !frontP.isEmpty()) {
+				node.front = new MutableNode(options.getPlaneSelection().selectPlane(frontP));
+			}
+			if (node.back == null && !backP.isEmpty()) {
+				node.back = new MutableNode(options.getPlaneSelection().selectPlane(backP));
+			}
+			
+			if (!frontP.isEmpty() && !backP.isEmpty() && options.shouldFork(item.polygons.size())) {
+				ForkJoinUtils.evaluate(
+						() -> node.front.buildAndReturn(frontP, options, item.depth+1), 
+						() -> node.back.buildAndReturn(backP, options, item.depth+1));
+				continue;
+			}
+			
+			stack.add(new StackItem(node.back, backP, item.depth+1));
+			stack.add(new StackItem(node.front, frontP, item.depth+1));
+		}
+	}
+	
+	private MutableNode buildAndReturn(List<Polygon> polys, CsgOptions options, int depth) {
+		build(polys, options, depth);
+		return this;
+	}
+	
+	/**
+	 * Collects the nodes of the tree in pre-order: the node itself, then the front and the back subtree.
+	 */
+	private List<MutableNode> allNodes() {
+		List<MutableNode> result = new ArrayList<>();
+		List<MutableNode> stack = new ArrayList<>();
+		stack.add(this);
+		
+		while (!stack.isEmpty()) {
+			MutableNode node = stack.remove(stack.size()-1);
+			result.add(node);
+			// the back node is pushed first, so the front node is processed first
+			if (node.back != null) {
+				stack.add(node.back);
+			}
+			if (node.front != null) {
+				stack.add(node.front);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Runs the given action on every node of the tree. The action may only change the node it gets, 
+	 * so the nodes can be processed concurrently if the parallel evaluation is turned on.
+	 */
+	private void forEachNode(CsgOptions options, Consumer<MutableNode> action) {
+		List<MutableNode> nodes = allNodes();
+		if (options.shouldFork(nodes.size())) {
+			ForkJoinUtils.run(options, () -> {
+				nodes.parallelStream().forEach(action);
+				return null;
+			});
+		}
+		else {
+			nodes.forEach(action);
+		}
+	}
+	
+	/**
+	 * A node and the polygons waiting to be added to it or clipped by it in the iterative walks, together
+	 * with the depth of the node.
+	 */
+	private static final class StackItem {
+		private final MutableNode node;
+		private final List<Polygon> polygons;
+		private final int depth;
+		
+		private StackItem(MutableNode node, List<Polygon> polygons, int depth) {
+			this.node = node;
+			this.polygons = polygons;
+			this.depth = depth;
+		}
+	}
+}
@@ -35,6 +35,8 @@ import java.util.Collections;
 import java.util.List;
 
 import eu.printingin3d.javascad.utils.AssertValue;
+import eu.printingin3d.javascad.utils.Pair;
+import eu.printingin3d.javascad.vrl.TreeEvaluator.Step;
 
 /**
  * Holds a node in a BSP tree. A BSP tree is built from a collection of polygons
@@ -42,6 +44,15 @@ import eu.printingin3d.javascad.utils.AssertValue;
  * polygons) are added directly to that node and the other polygons are added to
  * the front and/or back subtrees. This is not a leafy BSP tree since there is
  * no distinction between internal and leaf nodes.
+ * 
+ * Every operation walks the tree with an explicit stack instead of recursion, so arbitrarily deep trees
+ * can be processed without running out of stack space.
+ * 
+ * Every operation has a variant with a {@link CsgOptions} parameter. If the parallel evaluation 
+ * is turned on in the options the independent front and back subtrees are processed as fork/join tasks. 
+ * Because the nodes are immutable and the partial results are combined in the same order, the result
+ * is always the same as the serial evaluation's. If a {@link RenderHandle} is attached to the options
+ * it is polled at every node processed, so a long operation can be stopped.
  */
 public final class Node {
 
@@ -50,9 +61,9 @@ public final class Node {
      */
     private final List<Polygon> polygons;
     /**
-     * Plane used if polygons is empty.
+     * The splitting plane of this node. It is kept even if all the polygons of the node are removed.
      */
-    private final Polygon basePlane;
+    private final Polygon plane;
     /**
      * Polygons in front of the plane.
      */
@@ -61,24 +72,23 @@ public final class Node {
      * Polygons in back of the plane.
      */
     private final Node back;
+    /**
+     * Number of polygons in this node and all its subtrees.
+     */
+    private final int size;
 
-    private Node(List<Polygon> polygons, Node front, Node back) {
-    	AssertValue.isNotEmpty(polygons, 
-    			"Polygons should be provided! If it is empty use the other constructor with the basePlane.");
+    private Node(Polygon plane, List<Polygon> polygons, Node front, Node back) {
+    	AssertValue.isNotNull(plane, "The splitting plane should be provided!");
     	
+    	this.plane = plane;
     	this.polygons = Collections.unmodifiableList(polygons);
-    	this.basePlane = null;
 		this.front = front;
 		this.back = back;
+		this.size = polygons.size() + sizeOf(front) + sizeOf(back);
 	}
     
-    private Node(Polygon basePlane, Node front, Node back) {
-    	AssertValue.isNotNull(basePlane, "Baseplane should be provided if polygons is missing!");
-    	
-    	this.polygons = Collections.emptyList();
-    	this.basePlane = basePlane;
-    	this.front = front;
-    	this.back = back;
+    private static int sizeOf(Node node) {
+    	return node==null ? 0 : node.size;
     }
 
 	/**
@@ -88,11 +98,27 @@ public final class Node {
      * @return a new Node based on the list of polygons given
      */
     public static Node fromPoligons(List<Polygon> polygons) {
+    	return fromPoligons(polygons, CsgOptions.DEFAULT);
+    }
+    
+    /**
+     * Creates a BSP node consisting of the specified polygons using the given options.
+     *
+     * @param polygons polygons
+     * @param options the options used for the evaluation
+     * @return a new Node based on the list of polygons given
+     */
+    public static Node fromPoligons(List<Polygon> polygons, CsgOptions options) {
+    	return TreeEvaluator.evaluate(() -> fromPoligons(polygons, options, 1));
+    }
+    
+    private static Step<Node> fromPoligons(List<Polygon> polygons, CsgOptions options, int depth) {
     	if (polygons==null || polygons.isEmpty()) {
-			return null;
+			return Step.done(null);
 		}
     	
-    	Polygon newPlane = polygons.get(0);
+    	options.recordProgress(depth, polygons.size());
+    	Polygon newPlane = options.getPlaneSelection().selectPlane(polygons);
 
     	List<Polygon> newPolygons = new ArrayList<>();
         List<Polygon> frontP = new ArrayList<>();
@@ -100,12 +126,15 @@ public final class Node {
 
         for (Polygon polygon : polygons) {
         	newPlane.splitPolygon(
-                    polygon, newPolygons, newPolygons, frontP, backP);
+                    polygon, newPolygons, newPolygons, frontP, backP, options.isRobust());
         }
+        options.recordNode(depth, newPolygons.size() + frontP.size() + backP.size() - polygons.size());
         
-        Node newFront = fromPoligons(frontP);
-        Node newBack = fromPoligons(backP);
-        return new Node(newPolygons, newFront, newBack);
+        return Step.split(
+        		() -> fromPoligons(frontP, options, depth+1), 
+        		() -> fromPoligons(backP, options, depth+1), 
+        		(newFront, newBack) -> new Node(newPlane, newPolygons, newFront, newBack),
+        		options.shouldFork(polygons.size()));
     }
 
     /**
@@ -114,16 +143,35 @@ public final class Node {
      * @return a new node which contains the reversed poligons
      */
 	public Node invert() {
+		return invert(CsgOptions.DEFAULT);
+	}
+	
+	/**
+	 * Inverts the node by flipping all the poligons it contains and inverting the front and 
+	 * back nodes as well using the given options. 
+	 * @param options the options used for the evaluation
+	 * @return a new node which contains the reversed poligons
+	 */
+	public Node invert(CsgOptions options) {
+		return TreeEvaluator.evaluate(() -> invert(this, options));
+	}
+	
+	private static Step<Node> invert(Node node, CsgOptions options) {
+		if (node==null) {
+			return Step.done(null);
+		}
+		
     	List<Polygon> newPolygons = new ArrayList<>();
-
-        for (Polygon polygon : this.polygons) {
+        for (Polygon polygon : node.polygons) {
         	newPolygons.add(polygon.flip());
         }
-
-        Node newBack = this.front == null ? null : this.front.invert();
-        Node newFront = this.back == null ? null : this.back.invert();
         
-        return createNewNode(newPolygons, newFront, newBack);
+        Polygon newPlane = node.plane.flip();
+        return Step.split(
+        		() -> invert(node.back, options), 
+        		() -> invert(node.front, options), 
+        		(newFront, newBack) -> new Node(newPlane, newPolygons, newFront, newBack), 
+        		options.shouldFork(node.size));
     }
 
     /**
@@ -137,25 +185,68 @@ public final class Node {
      * @return the cliped list of polygons
      */
 	public List<Polygon> clipPolygons(List<Polygon> polys) {
-        if (polys.isEmpty()) {
-            return new ArrayList<>();
-        }
-        Polygon plane = getPlane();
-
-        List<Polygon> frontP = new ArrayList<>();
-        List<Polygon> backP = new ArrayList<>();
-
-        for (Polygon polygon : polys) {
-        	plane.splitPolygon(polygon, frontP, backP, frontP, backP);
-        }
-        if (this.front != null) {
-            frontP = this.front.clipPolygons(frontP);
-        }
-        if (this.back != null) {
-        	frontP.addAll(this.back.clipPolygons(backP));
-        }
+		return clipPolygons(polys, CsgOptions.DEFAULT);
+	}
+	
+	/**
+	 * Recursively removes all polygons in the {@link polygons} list that are
+	 * contained within this BSP tree using the given options. The tree is walked with an explicit 
+	 * stack and the remaining polygons are collected directly into the result list.
+	 *
+	 * <b>Note:</b> polygons are splitted if necessary.
+	 *
+	 * @param polys the polygons to clip
+	 * @param options the options used for the evaluation
+	 *
+	 * @return the cliped list of polygons
+	 */
+	public List<Polygon> clipPolygons(List<Polygon> polys, CsgOptions options) {
+		return clipPolygons(polys, options, 1);
+	}
+	
+	private List<Polygon> clipPolygons(List<Polygon> polys, CsgOptions options, int rootDepth) {
+		List<Polygon> result = new ArrayList<>();
+		List<ClipItem> stack = new ArrayList<>();
+		stack.add(new ClipItem(this, polys, rootDepth));
+		
+		while (!stack.isEmpty()) {
+			ClipItem item = stack.remove(stack.size()-1);
+			Node node = item.node;
+			List<Polygon> nodePolys = item.polygons;
+			if (nodePolys.isEmpty()) {
+				continue;
+			}
+			options.recordProgress(item.depth, nodePolys.size());
+			
+	        List<Polygon> frontP = new ArrayList<>();
+	        List<Polygon> backP = new ArrayList<>();
+	        for (Polygon polygon : nodePolys) {
+	        	node.plane.splitPolygon(polygon, frontP, backP, frontP, backP, options.isRobust());
+	        }
+	        options.recordFragments(frontP.size() + backP.size() - nodePolys.size());
+	        
+	        if (node.front!=null && node.back!=null && options.shouldFork(nodePolys.size())) {
+	        	Pair<List<Polygon>, List<Polygon>> clipped = ForkJoinUtils.evaluate(
+	        			() -> node.front.clipPolygons(frontP, options, item.depth+1), 
+	        			() -> node.back.clipPolygons(backP, options, item.depth+1));
+	        	result.addAll(clipped.getValue1());
+	        	result.addAll(clipped.getValue2());
+	        	continue;
+	        }
+	        
+	        // the back part is pushed first, so the front part is processed first
+	        if (node.back != null) {
+	        	stack.add(new ClipItem(node.back, backP, item.depth+1));
+	        }
+	        if (node.front == null) {
+	        	result.addAll(frontP);
+	        }
+	        else {
+	        	stack.add(new ClipItem(node.front, frontP, item.depth+1));
+	        }
+		}
 
-        return frontP;
+        return result;
     }
 
     /**
@@ -164,68 +255,115 @@ public final class Node {
      * @return a new object to contain the clipped poligons 
      */
 	public Node clipTo(Node bsp) {
-        List<Polygon> newPolygons = bsp.clipPolygons(this.polygons);
-        Node newFront = null;
-        Node newBack = null;
-        if (front != null) {
-            newFront = front.clipTo(bsp);
-        }
-        if (back != null) {
-            newBack = back.clipTo(bsp);
-        }
-        
-        return createNewNode(newPolygons, newFront, newBack);
+		return clipTo(bsp, CsgOptions.DEFAULT);
+	}
+	
+	/**
+	 * Remove all polygons in this BSP tree that are inside the given other BSP tree using the given options.
+	 * @param bsp the tree to remove
+	 * @param options the options used for the evaluation
+	 * @return a new object to contain the clipped poligons 
+	 */
+	public Node clipTo(Node bsp, CsgOptions options) {
+		return TreeEvaluator.evaluate(() -> clipTo(this, bsp, options));
+	}
+	
+	private static Step<Node> clipTo(Node node, Node bsp, CsgOptions options) {
+		if (node==null) {
+			return Step.done(null);
+		}
+		
+        List<Polygon> newPolygons = bsp.clipPolygons(node.polygons, options);
+        return Step.split(
+        		() -> clipTo(node.front, bsp, options), 
+        		() -> clipTo(node.back, bsp, options), 
+        		(newFront, newBack) -> new Node(node.plane, newPolygons, newFront, newBack), 
+        		options.shouldFork(node.size));
     }
 
 	/**
 	 * Returns with all the polygons this node holds including those which are in the front and back nodes.
+	 * The tree is walked with an explicit stack and the polygons are collected into a single list.
 	 * @return all the polygons this node holds
 	 */
 	public List<Polygon> allPolygons() {
-        List<Polygon> localPolygons = new ArrayList<>(polygons);
-        if (front != null) {
-            localPolygons.addAll(front.allPolygons());
-        }
-        if (back != null) {
-            localPolygons.addAll(back.allPolygons());
+        List<Polygon> result = new ArrayList<>(size);
+        List<Node> stack = new ArrayList<>();
+        stack.add(this);
+        
+        while (!stack.isEmpty()) {
+        	Node node = stack.remove(stack.size()-1);
+        	result.addAll(node.polygons);
+        	// the back node is pushed first, so the front node is processed first
+        	if (node.back != null) {
+        		stack.add(node.back);
+        	}
+        	if (node.front != null) {
+        		stack.add(node.front);
+        	}
         }
 
-        return localPolygons;
+        return result;
     }
 
-	private static Node combinePoligons(Node node, List<Polygon> polygons) {
-		return (node==null) ? fromPoligons(polygons) : node.build(polygons);
-	}
-	
 	/**
 	 * Build a new node adding the given polygons - splitting the polygons if necessary.
 	 * @param polygons the polygons to be added
 	 * @return a new node with the added polygons
 	 */
 	public Node build(List<Polygon> polygons) {
+		return build(polygons, CsgOptions.DEFAULT);
+	}
+	
+	/**
+	 * Build a new node adding the given polygons - splitting the polygons if necessary - using the given options.
+	 * @param polygons the polygons to be added
+	 * @param options the options used for the evaluation
+	 * @return a new node with the added polygons
+	 */
+	public Node build(List<Polygon> polygons, CsgOptions options) {
+		return TreeEvaluator.evaluate(() -> build(this, polygons, options, 1));
+	}
+	
+	private static Step<Node> build(Node node, List<Polygon> polygons, CsgOptions options, int depth) {
+		if (node==null) {
+			return fromPoligons(polygons, options, depth);
+		}
     	if (polygons==null || polygons.isEmpty()) {
-			return this;
+			return Step.done(node);
 		}
     	
-    	Polygon newPlane = (this.polygons.isEmpty() ? polygons : this.polygons).get(0);
-
-    	List<Polygon> newPolygons = new ArrayList<>(this.polygons);
+    	options.recordProgress(depth, polygons.size());
+    	List<Polygon> newPolygons = new ArrayList<>(node.polygons);
         List<Polygon> frontP = new ArrayList<>();
         List<Polygon> backP = new ArrayList<>();
 
         for (Polygon polygon : polygons) {
-        	newPlane.splitPolygon(polygon, newPolygons, newPolygons, frontP, backP);
+        	node.plane.splitPolygon(polygon, newPolygons, newPolygons, frontP, backP, options.isRobust());
         }
-        return new Node(newPolygons, combinePoligons(front, frontP), combinePoligons(back, backP));
+        options.recordNode(depth, 
+        		newPolygons.size() - node.polygons.size() + frontP.size() + backP.size() - polygons.size());
+        
+        return Step.split(
+        		() -> build(node.front, frontP, options, depth+1), 
+        		() -> build(node.back, backP, options, depth+1), 
+        		(newFront, newBack) -> new Node(node.plane, newPolygons, newFront, newBack), 
+        		options.shouldFork(node.size + polygons.size()));
     }
 	
-	private Polygon getPlane() {
-		return polygons.isEmpty() ? basePlane : polygons.get(0);
-	}
-	
-	private Node createNewNode(List<Polygon> newPolygons, Node newFront, Node newBack) {
-        return newPolygons.isEmpty() ? new Node(getPlane(), newFront, newBack) :
-    		new Node(newPolygons, newFront, newBack);
-
+	/**
+	 * A node and the polygons waiting to be clipped by it in the iterative clipping, together with the
+	 * depth of the node.
+	 */
+	private static final class ClipItem {
+		private final Node node;
+		private final List<Polygon> polygons;
+		private final int depth;
+		
+		private ClipItem(Node node, List<Polygon> polygons, int depth) {
+			this.node = node;
+			this.polygons = polygons;
+			this.depth = depth;
+		}
 	}
 }
@@ -0,0 +1,156 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import eu.printingin3d.javascad.coords.Coords3d;
+
+/**
+ * <p>Filtered exact orientation predicate used by the robust mode of the polygon splitting. The plane is
+ * given by three vertices of the polygon instead of the normalized normal vector and distance, and the 
+ * position of a vertex is decided by the sign of the well-known orient3d determinant compared against the
+ * usual {@link VertexPosition#EPSILON} tolerance scaled by the length of the (not normalized) normal.</p>
+ * <p>The determinant is calculated in double precision first together with a bound of its rounding error 
+ * (J. R. Shewchuk: Adaptive Precision Floating-Point Arithmetic and Fast Robust Geometric Predicates). 
+ * Only if the result is too close to the tolerance to be decided is the calculation repeated 
+ * with exact arithmetic, which is rare, so the common case stays fast.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+final class OrientationPredicate {
+	private static final double MACHINE_EPSILON = Math.ulp(1.0) / 2.0;
+	private static final double ERROR_BOUND = (7.0 + 56.0 * MACHINE_EPSILON) * MACHINE_EPSILON;
+	// relative error of the tolerance calculated in double precision, overestimated heavily
+	private static final double TOLERANCE_ERROR = 1e-12;
+	private static final BigDecimal SQUARE_EPSILON = 
+			new BigDecimal(VertexPosition.EPSILON).multiply(new BigDecimal(VertexPosition.EPSILON));
+	
+	private final Coords3d a;
+	private final Coords3d b;
+	private final Coords3d c;
+	private final double tolerance;
+	
+	private OrientationPredicate(Coords3d a, Coords3d b, Coords3d c) {
+		this.a = a;
+		this.b = b;
+		this.c = c;
+		
+		double nx = (b.getY()-a.getY())*(c.getZ()-a.getZ()) - (b.getZ()-a.getZ())*(c.getY()-a.getY());
+		double ny = (b.getZ()-a.getZ())*(c.getX()-a.getX()) - (b.getX()-a.getX())*(c.getZ()-a.getZ());
+		double nz = (b.getX()-a.getX())*(c.getY()-a.getY()) - (b.getY()-a.getY())*(c.getX()-a.getX());
+		this.tolerance = VertexPosition.EPSILON * Math.sqrt(nx*nx + ny*ny + nz*nz);
+	}
+	
+	/**
+	 * Creates the predicate for the plane of the given convex polygon. From the triangles having the first 
+	 * vertex as a corner the one with the biggest area is used, so collinear vertices - which are common 
+	 * after splitting - don't cause a problem.
+	 * @param vertices the vertices of the polygon
+	 * @return the predicate for the plane of the polygon
+	 */
+	static OrientationPredicate fromVertices(List<Coords3d> vertices) {
+		Coords3d first = vertices.get(0);
+		int best = 1;
+		double bestArea = -1.0;
+		for (int i = 1; i<vertices.size()-1; i++) {
+			Coords3d edge1 = vertices.get(i).add(first.inverse());
+			Coords3d edge2 = vertices.get(i+1).add(first.inverse());
+			double area = edge1.cross(edge2).magnitude();
+			if (area>bestArea) {
+				best = i;
+				bestArea = area;
+			}
+		}
+		return new OrientationPredicate(first, vertices.get(best), vertices.get(best+1));
+	}
+	
+	/**
+	 * Calculates the signed distance of the given vertex from the plane multiplied by the length of the
+	 * normal of the triangle defining the plane. The value is calculated in double precision, so it should
+	 * be used only for interpolation.
+	 * @param v the vertex
+	 * @return the scaled signed distance of the vertex from the plane
+	 */
+	double scaledDistance(Coords3d v) {
+		double adx = a.getX() - v.getX();
+		double bdx = b.getX() - v.getX();
+		double cdx = c.getX() - v.getX();
+		double ady = a.getY() - v.getY();
+		double bdy = b.getY() - v.getY();
+		double cdy = c.getY() - v.getY();
+		double adz = a.getZ() - v.getZ();
+		double bdz = b.getZ() - v.getZ();
+		double cdz = c.getZ() - v.getZ();
+		
+		// orient3d(a, b, c, v) is positive if v is behind the plane
+		return -(adx * (bdy*cdz - bdz*cdy) + bdx * (cdy*adz - cdz*ady) + cdx * (ady*bdz - adz*bdy));
+	}
+	
+	/**
+	 * Calculates the position of the given vertex relative to the plane.
+	 * @param v the vertex
+	 * @return the position of the vertex
+	 */
+	VertexPosition classify(Coords3d v) {
+		double adx = a.getX() - v.getX();
+		double bdx = b.getX() - v.getX();
+		double cdx = c.getX() - v.getX();
+		double ady = a.getY() - v.getY();
+		double bdy = b.getY() - v.getY();
+		double cdy = c.getY() - v.getY();
+		double adz = a.getZ() - v.getZ();
+		double bdz = b.getZ() - v.getZ();
+		double cdz = c.getZ() - v.getZ();
+		
+		double bdycdz = bdy*cdz;
+		double bdzcdy = bdz*cdy;
+		double cdyadz = cdy*adz;
+		double cdzady = cdz*ady;
+		double adybdz = ady*bdz;
+		double adzbdy = adz*bdy;
+		
+		double distance = -(adx * (bdycdz - bdzcdy) + bdx * (cdyadz - cdzady) + cdx * (adybdz - adzbdy));
+		double permanent = (Math.abs(bdycdz) + Math.abs(bdzcdy)) * Math.abs(adx) + 
+				(Math.abs(cdyadz) + Math.abs(cdzady)) * Math.abs(bdx) + 
+				(Math.abs(adybdz) + Math.abs(adzbdy)) * Math.abs(cdx);
+		double error = ERROR_BOUND * permanent;
+		double margin = tolerance * TOLERANCE_ERROR;
+		
+		if (distance - error > tolerance + margin) {
+			return VertexPosition.FRONT;
+		}
+		if (distance + error < -tolerance - margin) {
+			return VertexPosition.BACK;
+		}
+		if (Math.abs(distance) + error < tolerance - margin) {
+			return VertexPosition.COPLANAR;
+		}
+		return classifyExact(v);
+	}
+	
+	private VertexPosition classifyExact(Coords3d v) {
+		BigDecimal ax = new BigDecimal(a.getX());
+		BigDecimal ay = new BigDecimal(a.getY());
+		BigDecimal az = new BigDecimal(a.getZ());
+		BigDecimal bax = new BigDecimal(b.getX()).subtract(ax);
+		BigDecimal bay = new BigDecimal(b.getY()).subtract(ay);
+		BigDecimal baz = new BigDecimal(b.getZ()).subtract(az);
+		BigDecimal cax = new BigDecimal(c.getX()).subtract(ax);
+		BigDecimal cay = new BigDecimal(c.getY()).subtract(ay);
+		BigDecimal caz = new BigDecimal(c.getZ()).subtract(az);
+		
+		BigDecimal nx = bay.multiply(caz).subtract(baz.multiply(cay));
+		BigDecimal ny = baz.multiply(cax).subtract(bax.multiply(caz));
+		BigDecimal nz = bax.multiply(cay).subtract(bay.multiply(cax));
+		
+		BigDecimal distance = nx.multiply(new BigDecimal(v.getX()).subtract(ax))
+				.add(ny.multiply(new BigDecimal(v.getY()).subtract(ay)))
+				.add(nz.multiply(new BigDecimal(v.getZ()).subtract(az)));
+		BigDecimal squareLength = nx.multiply(nx).add(ny.multiply(ny)).add(nz.multiply(nz));
+		
+		if (distance.multiply(distance).compareTo(SQUARE_EPSILON.multiply(squareLength))<=0) {
+			return VertexPosition.COPLANAR;
+		}
+		return distance.signum()>0 ? VertexPosition.FRONT : VertexPosition.BACK;
+	}
+}
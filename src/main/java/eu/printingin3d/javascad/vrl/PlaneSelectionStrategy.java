@@ -0,0 +1,25 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.util.List;
+
+/**
+ * Strategy to choose the splitting plane of a BSP node from the polygons the node is built from. 
+ * The choice does not change the solid the CSG operations produce, but it has a big impact on the depth
+ * of the tree and the number of polygon fragments created by the splitting.
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+@FunctionalInterface
+public interface PlaneSelectionStrategy {
+	/**
+	 * The original strategy: always the first polygon of the list is used as the splitting plane.
+	 */
+	PlaneSelectionStrategy FIRST_POLYGON = polygons -> polygons.get(0);
+
+	/**
+	 * Selects the polygon which plane will be used to split the given polygons.
+	 * @param polygons the polygons the node is built from - never empty
+	 * @return one of the given polygons
+	 */
+	Polygon selectPlane(List<Polygon> polygons);
+}
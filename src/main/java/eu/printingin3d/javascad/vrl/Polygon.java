@@ -39,6 +39,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.stream.Stream;
 
+import eu.printingin3d.javascad.coords.Boundaries3d;
 import eu.printingin3d.javascad.coords.Coords3d;
 import eu.printingin3d.javascad.coords.Triangle3d;
 import eu.printingin3d.javascad.coords2d.LineSegment;
@@ -69,18 +70,74 @@ public final class Polygon {
      * The color of the polygon. 
      */
     private final Color color;
+    /**
+     * The predicate used in robust mode - created only when first needed.
+     */
+    private OrientationPredicate predicate;
+    
+    private static volatile boolean debugChecks = Boolean.getBoolean("javascad.debugChecks");
 
+    /**
+     * Creates the polygon without any check, the checks are the responsibility of the caller.
+     */
 	private Polygon(List<Coords3d> vertices, Coords3d normal, double dist, Color color) {
 		this.vertices = vertices;
 		this.normal = normal;
 		this.dist = dist;
 		this.color = color;
-		
+	}
+	
+	/**
+	 * Turns the debug checks on or off. By default only the polygons created by the public 
+	 * {@link #fromPolygons(List, Color)} method are checked for coplanarity, the polygons produced by 
+	 * the engine - flipped and transformed polygons and fragments of split polygons - are trusted to be 
+	 * coplanar by construction. If the debug checks are turned on every polygon is checked. The initial 
+	 * value comes from the {@code javascad.debugChecks} system property.
+	 * @param debugChecks true if every polygon should be checked
+	 */
+	public static void setDebugChecks(boolean debugChecks) {
+		Polygon.debugChecks = debugChecks;
+	}
+	
+	/**
+	 * Returns true if every polygon is checked for coplanarity.
+	 * @return true if every polygon is checked for coplanarity
+	 */
+	public static boolean isDebugChecks() {
+		return debugChecks;
+	}
+	
+	private Polygon checked() {
 		for (Coords3d v : vertices) {
 			VertexPosition position = calculateVertexPosition(v);
 			AssertValue.isTrue(position==VertexPosition.COPLANAR, 
 					"Every vertex in a polygon must be coplanar, but was "+position+"!");
 		}
+		return this;
+	}
+	
+	/**
+	 * Creates a polygon produced by the engine, which is coplanar by construction. It is checked only
+	 * if the debug checks are turned on.
+	 */
+	private static Polygon trusted(List<Coords3d> vertices, Coords3d normal, double dist, Color color) {
+		Polygon polygon = new Polygon(vertices, normal, dist, color);
+		return debugChecks ? polygon.checked() : polygon;
+	}
+	
+	/**
+	 * Returns a unit vector perpendicular to the given normal, which is therefore parallel to the plane.
+	 */
+	private static Coords3d tangentOf(Coords3d normal) {
+		Coords3d axis = Math.abs(normal.getX())<0.5 ? Coords3d.X : Coords3d.Y;
+		return normal.cross(axis).unit();
+	}
+	
+	private static Coords3d calculateNormal(List<Coords3d> vertices) {
+    	Coords3d a = vertices.get(0);
+    	Coords3d b = vertices.get(1);
+    	Coords3d c = vertices.get(2);
+    	return b.add(a.inverse()).cross(c.add(a.inverse())).unit();
 	}
 
 	/**
@@ -96,12 +153,21 @@ public final class Polygon {
     public static Polygon fromPolygons(List<Coords3d> vertices, Color color) {
     	AssertValue.isTrue(vertices.size()>=3, "The coordinate list should contain at least 3 points.");
     	
-    	Coords3d a = vertices.get(0);
-    	Coords3d b = vertices.get(1);
-    	Coords3d c = vertices.get(2);
-    	Coords3d n = b.add(a.inverse()).cross(c.add(a.inverse())).unit();
-        
-    	return new Polygon(vertices, n, n.dot(a), color);
+    	Coords3d n = calculateNormal(vertices);
+    	return new Polygon(vertices, n, n.dot(vertices.get(0)), color).checked();
+    }
+
+    /**
+     * Creates a new polygon from the given vertices and plane without calculating the plane again. Used
+     * when the plane is already known, like when a polygon is recreated from a {@link PolygonMesh}.
+     * @param vertices polygon vertices
+     * @param normal the normal vector of the polygon
+     * @param dist the distance of the plane of the polygon from the origin
+     * @param color the color of the polygon
+     * @return a new polygon that consists of the specified vertices
+     */
+    static Polygon fromPlane(List<Coords3d> vertices, Coords3d normal, double dist, Color color) {
+    	return trusted(vertices, normal, dist, color);
     }
 
     /**
@@ -114,7 +180,7 @@ public final class Polygon {
     	
         Collections.reverse(newVertices);
 
-        return new Polygon(newVertices, normal.inverse(), -dist, color);
+        return trusted(newVertices, normal.inverse(), -dist, color);
     }
 
     /**
@@ -139,6 +205,61 @@ public final class Polygon {
     	return vertices;
     }
     
+    Coords3d getNormal() {
+    	return normal;
+    }
+    
+    double getDist() {
+    	return dist;
+    }
+    
+    Color getColor() {
+    	return color;
+    }
+    
+    /**
+     * Calculates the including cuboid of this polygon.
+     * @return the including cuboid of this polygon
+     */
+    public Boundaries3d getBoundaries() {
+    	Coords3d first = vertices.get(0);
+    	double minX = first.getX();
+    	double minY = first.getY();
+    	double minZ = first.getZ();
+    	double maxX = minX;
+    	double maxY = minY;
+    	double maxZ = minZ;
+    	for (Coords3d v : vertices) {
+    		minX = Math.min(minX, v.getX());
+    		minY = Math.min(minY, v.getY());
+    		minZ = Math.min(minZ, v.getZ());
+    		maxX = Math.max(maxX, v.getX());
+    		maxY = Math.max(maxY, v.getY());
+    		maxZ = Math.max(maxZ, v.getZ());
+    	}
+    	return new Boundaries3d(new Coords3d(minX, minY, minZ), new Coords3d(maxX, maxY, maxZ));
+    }
+    
+    /**
+     * Calculates the including cuboid of this polygon into the given array in the order of minX, minY, minZ,
+     * maxX, maxY, maxZ - without creating any object.
+     * @param minMax the array of at least 6 elements to be filled
+     */
+    void calculateBoundaries(double[] minMax) {
+    	for (int axis = 0; axis<3; axis++) {
+    		minMax[axis] = Double.POSITIVE_INFINITY;
+    		minMax[axis+3] = Double.NEGATIVE_INFINITY;
+    	}
+    	for (Coords3d v : vertices) {
+    		minMax[0] = Math.min(minMax[0], v.getX());
+    		minMax[1] = Math.min(minMax[1], v.getY());
+    		minMax[2] = Math.min(minMax[2], v.getZ());
+    		minMax[3] = Math.max(minMax[3], v.getX());
+    		minMax[4] = Math.max(minMax[4], v.getY());
+    		minMax[5] = Math.max(minMax[5], v.getZ());
+    	}
+    }
+    
     /**
      * Returns a transformed copy of this polygon.
      *
@@ -157,11 +278,32 @@ public final class Polygon {
     		newVertices.add(transform.transform(v));
     	}
     	
-    	Polygon result = fromPolygons(newVertices, color);
+    	Coords3d origin = newVertices.get(0);
+    	Coords3d newNormal = transformNormal(vertices.get(0), origin, normal, transform);
+    	Polygon result = trusted(newVertices, newNormal, newNormal.dot(origin), color);
 
     	return transform.isMirror() ? result.flip() : result;
     }
     
+    /**
+     * Transforms the normal of a plane. The plane is transformed too instead of calculating it from the 
+     * first three transformed vertices: two vectors parallel to the plane are transformed and the new 
+     * normal is their cross product. If the transformation is a mirror the result has to be flipped.
+     * @param vertex a point of the plane
+     * @param origin the transformed point
+     * @param normal the normal of the plane
+     * @param transform the transformation to apply
+     * @return the transformed normal
+     */
+    static Coords3d transformNormal(Coords3d vertex, Coords3d origin, Coords3d normal, 
+    		ITransformation transform) {
+    	Coords3d u = tangentOf(normal);
+    	Coords3d v = normal.cross(u);
+    	Coords3d newU = transform.transform(vertex.add(u)).add(origin.inverse());
+    	Coords3d newV = transform.transform(vertex.add(v)).add(origin.inverse());
+    	return newU.cross(newV).unit();
+    }
+    
     private VertexPosition calculateVertexPosition(Coords3d v) {
         double t = this.normal.dot(v) - this.dist;
         return VertexPosition.fromSquareDistance(t);
@@ -210,6 +352,115 @@ public final class Polygon {
         }
     }
     
+    /**
+     * Splits a {@link Polygon} by this plane the same way as 
+     * {@link #splitPolygon(Polygon, List, List, List, List)} does. In robust mode the position of the 
+     * vertices is calculated by a filtered exact orientation predicate and the fragments keep the plane of
+     * the original polygon, which avoids the misclassification of vertices on models far from the origin.
+     *
+     * @param polygon polygon to split
+     * @param coplanarFront "coplanar front" polygons
+     * @param coplanarBack "coplanar back" polygons
+     * @param front front polygons
+     * @param back back polgons
+     * @param robust true if the robust mode should be used
+     */
+    void splitPolygon(Polygon polygon, List<Polygon> coplanarFront, List<Polygon> coplanarBack,
+    		List<Polygon> front, List<Polygon> back, boolean robust) {
+    	if (!robust) {
+    		splitPolygon(polygon, coplanarFront, coplanarBack, front, back);
+    		return;
+    	}
+    	
+    	if (predicate==null) {
+    		// the predicate is immutable, so it doesn't matter if it is created more than once
+    		predicate = OrientationPredicate.fromVertices(vertices);
+    	}
+    	int n = polygon.vertices.size();
+    	VertexPosition[] positions = new VertexPosition[n];
+    	VertexPosition polygonType = VertexPosition.COPLANAR;
+    	for (int i = 0; i<n; i++) {
+    		positions[i] = predicate.classify(polygon.vertices.get(i));
+    		polygonType = polygonType.add(positions[i]);
+    	}
+    	
+        switch (polygonType) {
+            case COPLANAR:
+                (this.normal.dot(polygon.normal) > 0 ? coplanarFront : coplanarBack).add(polygon);
+                break;
+            case FRONT:
+                front.add(polygon);
+                break;
+            case BACK:
+                back.add(polygon);
+                break;
+            default:
+            	splitPolygonRobust(polygon, predicate, positions, front, back);
+                break;
+        }
+    }
+    
+    private void splitPolygonRobust(Polygon polygon, OrientationPredicate predicate, VertexPosition[] positions,
+    		List<Polygon> front, List<Polygon> back) {
+    	int n = polygon.vertices.size();
+		List<Coords3d> f = new ArrayList<>();
+		List<Coords3d> b = new ArrayList<>();
+		for (int i = 0; i<n; i++) {
+			int j = (i+1) % n;
+			Coords3d current = polygon.vertices.get(i);
+			if (positions[i]!=VertexPosition.BACK) {
+				f.add(current);
+			}
+			if (positions[i]!=VertexPosition.FRONT) {
+				b.add(current);
+			}
+			if (positions[i].add(positions[j])==VertexPosition.SPANNING) {
+				Coords3d next = polygon.vertices.get(j);
+				double di = predicate.scaledDistance(current);
+				double dj = predicate.scaledDistance(next);
+				Coords3d v = current.lerp(next, di / (di - dj));
+				f.add(v);
+				b.add(v);
+			}
+		}
+		front.add(trusted(f, polygon.normal, polygon.dist, polygon.color));
+		back.add(trusted(b, polygon.normal, polygon.dist, polygon.color));
+    }
+    
+    /**
+     * Decides on which side of this plane the given polygon goes when a BSP tree is clipping it, where
+     * the coplanar polygons facing the same direction go to the front side. A polygon crossing the plane
+     * is not split, it goes to the side of its center: the caller has to know that both parts of it
+     * would end up with the same result.
+     * @param polygon the polygon to be checked
+     * @return true if the polygon goes to the front side
+     */
+    boolean isOnFrontSide(Polygon polygon) {
+    	switch (calculatePolygonPosition(polygon)) {
+    	case COPLANAR:
+    		return this.normal.dot(polygon.normal) > 0;
+    	case FRONT:
+    		return true;
+    	case BACK:
+    		return false;
+    	default:
+    		Coords3d center = Coords3d.ZERO;
+    		for (Coords3d v : polygon.vertices) {
+    			center = center.add(v);
+    		}
+    		return this.normal.dot(center.mul(1.0 / polygon.vertices.size())) - this.dist > 0.0;
+    	}
+    }
+    
+    /**
+     * Classifies the given polygon relative to the plane of this polygon without splitting it.
+     * @param polygon the polygon to be classified
+     * @return the position of the polygon relative to this plane
+     */
+    VertexPosition classify(Polygon polygon) {
+    	return calculatePolygonPosition(polygon);
+    }
+    
     // Classify the entire polygon into one of the four possible classes.
     private VertexPosition calculatePolygonPosition(Polygon polygon) {
         VertexPosition polygonType = VertexPosition.COPLANAR;
@@ -226,8 +477,8 @@ public final class Polygon {
 		for (LineSegment<Coords3d> ls : LineSegment.lineSegmentSeries(polygon.vertices)) {
 			classifyAndSplitVertex(ls.getStart(), ls.getEnd(), f, b);
 		}
-		front.add(fromPolygons(f, polygon.color));
-		back.add(fromPolygons(b, polygon.color));
+		front.add(trusted(f, polygon.normal, polygon.dist, polygon.color));
+		back.add(trusted(b, polygon.normal, polygon.dist, polygon.color));
 	}
 
 	private void classifyAndSplitVertex(Coords3d currentVertex, Coords3d nextVertex,
@@ -256,20 +507,7 @@ public final class Polygon {
 	}
     
     private void addVertexToList(List<Coords3d> list, Coords3d newVertex) {
-/*    	if (!list.isEmpty()) {
-    		Coords3d lastVertex = list.get(list.size()-1);
-    		
-    		Coords3d prev = vertices.get(vertices.size()-1);
-    		for (Coords3d c : vertices) {
-    			Coords3d cross = EdgeCrossSolver.findIntersection(prev, c, lastVertex, newVertex);
-    			if (cross!=null && !cross.equals(newVertex) && !cross.equals(lastVertex)) {
-    				System.out.println(
-    				"Added new vertex: "+cross+" between "+lastVertex+" and "+newVertex+" ("+prev+", "+c+")");
-    				list.add(cross);
-    				break;
-    			}
-    		}
-    	}*/
+    	// the T-junctions created here are repaired by the welding, see CSG.toIndexedMesh
     	list.add(newVertex);
     }
 
@@ -0,0 +1,153 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * <p>Bounding volume hierarchy over the polygons of a {@link PolygonMesh}. Every polygon is represented by
+ * its axis aligned bounding box, and the boxes are organized into a binary tree: the polygons of a node are
+ * split into two halves by the center of their boxes along the longest axis of the node, until at most
+ * {@value #LEAF_SIZE} polygons remain in a leaf.</p>
+ * <p>It is used to find out quickly if anything of the mesh can be near to a given box, so the polygons
+ * which cannot cross the surface of the mesh can be handled as a whole. The object is immutable and is
+ * built once for every {@link CSG}, see {@link CSG#getBvh()}.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+final class PolygonBvh {
+	private static final int LEAF_SIZE = 4;
+
+	private final double[] boxes;
+	private final int[] order;
+	private final double[] nodeBoxes;
+	private final int[] children;
+	private final int[] ranges;
+	private final int nodeCount;
+
+	/**
+	 * Builds the hierarchy of the polygons of the given mesh.
+	 * @param mesh the mesh to be used
+	 */
+	PolygonBvh(PolygonMesh mesh) {
+		int n = mesh.size();
+		this.boxes = new double[n*6];
+		double[] box = new double[6];
+		for (int i = 0; i<n; i++) {
+			mesh.calculateBoundaries(i, box);
+			System.arraycopy(box, 0, boxes, i*6, 6);
+		}
+
+		Integer[] sorted = new Integer[n];
+		for (int i = 0; i<n; i++) {
+			sorted[i] = Integer.valueOf(i);
+		}
+		int maxNodes = Math.max(1, 2*n);
+		this.nodeBoxes = new double[maxNodes*6];
+		this.children = new int[maxNodes*2];
+		this.ranges = new int[maxNodes*2];
+		this.nodeCount = n==0 ? 0 : build(sorted, 0, n, 0);
+		this.order = new int[n];
+		for (int i = 0; i<n; i++) {
+			order[i] = sorted[i].intValue();
+		}
+	}
+
+	/**
+	 * Builds the node of the polygons between the given indexes of the sorted array and returns the index
+	 * of the next free node.
+	 */
+	private int build(Integer[] sorted, int from, int to, int node) {
+		double[] bounds = new double[6];
+		Arrays.fill(bounds, 0, 3, Double.POSITIVE_INFINITY);
+		Arrays.fill(bounds, 3, 6, Double.NEGATIVE_INFINITY);
+		for (int i = from; i<to; i++) {
+			int b = sorted[i].intValue()*6;
+			for (int axis = 0; axis<3; axis++) {
+				bounds[axis] = Math.min(bounds[axis], boxes[b+axis]);
+				bounds[axis+3] = Math.max(bounds[axis+3], boxes[b+axis+3]);
+			}
+		}
+		System.arraycopy(bounds, 0, nodeBoxes, node*6, 6);
+		ranges[node*2] = from;
+		ranges[node*2+1] = to;
+
+		if (to-from<=LEAF_SIZE) {
+			children[node*2] = -1;
+			children[node*2+1] = -1;
+			return node+1;
+		}
+
+		int axis = 0;
+		for (int a = 1; a<3; a++) {
+			if (bounds[a+3]-bounds[a] > bounds[axis+3]-bounds[axis]) {
+				axis = a;
+			}
+		}
+		int splitAxis = axis;
+		Arrays.sort(sorted, from, to, Comparator.comparingDouble(i -> center(i.intValue(), splitAxis)));
+
+		int middle = (from+to) >>> 1;
+		int left = node+1;
+		int right = build(sorted, from, middle, left);
+		children[node*2] = left;
+		children[node*2+1] = right;
+		return build(sorted, middle, to, right);
+	}
+
+	private double center(int polygon, int axis) {
+		return boxes[polygon*6+axis] + boxes[polygon*6+axis+3];
+	}
+
+	/**
+	 * Returns the number of polygons in the hierarchy.
+	 * @return the number of polygons in the hierarchy
+	 */
+	int size() {
+		return order.length;
+	}
+
+	/**
+	 * Checks if the box of any polygon overlaps the given box extended by the given margin.
+	 * @param box the box in the order of minX, minY, minZ, maxX, maxY, maxZ
+	 * @param margin the margin the box is extended by on every side
+	 * @return true if and only if there is at least one polygon near to the box
+	 */
+	boolean overlaps(double[] box, double margin) {
+		if (nodeCount==0) {
+			return false;
+		}
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = 0;
+		while (top>0) {
+			int node = stack[--top];
+			if (!overlaps(nodeBoxes, node*6, box, margin)) {
+				continue;
+			}
+			if (children[node*2]<0) {
+				for (int i = ranges[node*2]; i<ranges[node*2+1]; i++) {
+					if (overlaps(boxes, order[i]*6, box, margin)) {
+						return true;
+					}
+				}
+			}
+			else {
+				if (top+2>stack.length) {
+					stack = Arrays.copyOf(stack, stack.length*2);
+				}
+				stack[top++] = children[node*2+1];
+				stack[top++] = children[node*2];
+			}
+		}
+		return false;
+	}
+
+	private static boolean overlaps(double[] boxes, int offset, double[] box, double margin) {
+		for (int axis = 0; axis<3; axis++) {
+			if (boxes[offset+axis] > box[axis+3]+margin || boxes[offset+axis+3] < box[axis]-margin) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
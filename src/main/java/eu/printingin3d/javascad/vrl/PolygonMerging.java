@@ -0,0 +1,24 @@
+package eu.printingin3d.javascad.vrl;
+
+/**
+ * <p>Controls when the adjacent coplanar polygons with the same color are merged back into bigger convex
+ * polygons. The BSP operations split the flat faces into many fragments, the merging makes the following
+ * operations and the export faster by reducing the number of polygons.</p>
+ * <p>It can be set by {@link CsgOptions#withPolygonMerging(PolygonMerging)}.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public enum PolygonMerging {
+	/**
+	 * The polygons are never merged automatically.
+	 */
+	NEVER,
+	/**
+	 * The polygons are merged only when the facets are generated by {@link CSG#toFacets(CsgOptions)}.
+	 */
+	BEFORE_EXPORT,
+	/**
+	 * The polygons are merged after every CSG operation, so the following operations get less polygons.
+	 */
+	AFTER_EACH_OPERATION
+}
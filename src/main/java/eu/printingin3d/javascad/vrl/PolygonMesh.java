@@ -0,0 +1,406 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.awt.Color;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import eu.printingin3d.javascad.coords.Boundaries3d;
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.tranform.TransformationMatrix;
+
+/**
+ * <p>Compact, structure-of-arrays representation of a list of polygons. The coordinates of the vertices 
+ * are packed into a single {@code double[]}, the polygons are given by offsets into that array, the planes
+ * of the polygons are stored in another {@code double[]} and the colors are stored as indexes into a 
+ * palette. This takes a fraction of the memory the {@link Polygon} objects take, and the bulk 
+ * operations - like calculating the boundaries or partitioning the polygons by a region - can run on
+ * the arrays without touching any object.</p>
+ * <p>The mesh keeps the {@link Polygon} objects it has been created from. The polygons of a mesh read from
+ * its arrays are recreated lazily when they are first asked for and kept afterwards.</p>
+ * <p>The object is immutable, the lazy creation of the polygons is thread-safe.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public final class PolygonMesh {
+	/**
+	 * The empty mesh.
+	 */
+	public static final PolygonMesh EMPTY = new Builder().build();
+	
+	private final double[] coords;
+	private final int[] offsets;
+	private final double[] planes;
+	private final int[] colors;
+	private final Color[] palette;
+	private final Polygon[] polygons;
+	
+	private PolygonMesh(double[] coords, int[] offsets, double[] planes, int[] colors, Color[] palette, 
+			Polygon[] polygons) {
+		this.coords = coords;
+		this.offsets = offsets;
+		this.planes = planes;
+		this.colors = colors;
+		this.palette = palette;
+		this.polygons = polygons;
+	}
+	
+	/**
+	 * Creates a mesh from the given polygons.
+	 * @param polygons the polygons to be used
+	 * @return the new mesh
+	 */
+	public static PolygonMesh fromPolygons(List<Polygon> polygons) {
+		Builder builder = new Builder();
+		for (Polygon p : polygons) {
+			builder.add(p);
+		}
+		return builder.build();
+	}
+	
+	/**
+	 * Returns the number of polygons in this mesh.
+	 * @return the number of polygons in this mesh
+	 */
+	public int size() {
+		return colors.length;
+	}
+	
+	/**
+	 * Returns the number of vertices stored in this mesh. Vertices shared by more polygons are counted
+	 * multiple times.
+	 * @return the number of vertices stored in this mesh
+	 */
+	public int getVertexCount() {
+		return offsets[offsets.length-1];
+	}
+	
+	/**
+	 * Returns the polygon with the given index. The polygon is created on the first call.
+	 * @param index the index of the polygon
+	 * @return the polygon with the given index
+	 */
+	public Polygon getPolygon(int index) {
+		Polygon polygon = polygons[index];
+		if (polygon==null) {
+			// Polygon is immutable, so it is safe to publish it this way - at worst it is created twice
+			polygon = createPolygon(index);
+			polygons[index] = polygon;
+		}
+		return polygon;
+	}
+	
+	/**
+	 * Returns an unmodifiable list view of the polygons of this mesh. The polygons are created
+	 * only when they are accessed through the list.
+	 * @return the polygons of this mesh
+	 */
+	public List<Polygon> toPolygons() {
+		return new PolygonListView();
+	}
+	
+	/**
+	 * Calculates the including cuboid of all the vertices of this mesh.
+	 * @return the including cuboid of this mesh or {@link Boundaries3d#EMPTY} if the mesh is empty
+	 */
+	public Boundaries3d getBoundaries() {
+		if (size()==0) {
+			return Boundaries3d.EMPTY;
+		}
+		double[] minMax = new double[6];
+		calculateBoundaries(0, getVertexCount(), minMax);
+		return new Boundaries3d(new Coords3d(minMax[0], minMax[1], minMax[2]), 
+				new Coords3d(minMax[3], minMax[4], minMax[5]));
+	}
+	
+	/**
+	 * Calculates the including cuboid of the given polygon into the given array in the order of 
+	 * minX, minY, minZ, maxX, maxY, maxZ.
+	 * @param index the index of the polygon
+	 * @param minMax the array of at least 6 elements to be filled
+	 */
+	void calculateBoundaries(int index, double[] minMax) {
+		calculateBoundaries(offsets[index], offsets[index+1], minMax);
+	}
+	
+	private void calculateBoundaries(int fromVertex, int toVertex, double[] minMax) {
+		Arrays.fill(minMax, 0, 3, Double.POSITIVE_INFINITY);
+		Arrays.fill(minMax, 3, 6, Double.NEGATIVE_INFINITY);
+		for (int v = fromVertex*3; v<toVertex*3; v += 3) {
+			for (int axis = 0; axis<3; axis++) {
+				double c = coords[v+axis];
+				minMax[axis] = Math.min(minMax[axis], c);
+				minMax[axis+3] = Math.max(minMax[axis+3], c);
+			}
+		}
+	}
+	
+	/**
+	 * Transforms this mesh by the given matrix. The packed coordinates are transformed in one pass by 
+	 * {@link TransformationMatrix#transformAll(double[])}, the planes are transformed the same way as 
+	 * {@link Polygon#transformed(eu.printingin3d.javascad.tranform.ITransformation)} does it. If the matrix
+	 * is a mirror the order of the vertices of every polygon is reversed and the planes are flipped. 
+	 * The polygon objects are not created.
+	 * @param matrix the transformation to apply
+	 * @return the transformed mesh
+	 */
+	PolygonMesh transformed(TransformationMatrix matrix) {
+		double[] newCoords = coords.clone();
+		matrix.transformAll(newCoords);
+		boolean mirror = matrix.isMirror();
+		double sign = mirror ? -1.0 : 1.0;
+		double[] newPlanes = new double[planes.length];
+		for (int i = 0; i<size(); i++) {
+			int first = offsets[i]*3;
+			Coords3d origin = new Coords3d(newCoords[first], newCoords[first+1], newCoords[first+2]);
+			int p = i*4;
+			Coords3d normal = Polygon.transformNormal(
+					new Coords3d(coords[first], coords[first+1], coords[first+2]), origin, 
+					new Coords3d(planes[p], planes[p+1], planes[p+2]), matrix);
+			newPlanes[p] = sign*normal.getX();
+			newPlanes[p+1] = sign*normal.getY();
+			newPlanes[p+2] = sign*normal.getZ();
+			newPlanes[p+3] = sign*normal.dot(origin);
+			if (mirror) {
+				reverseVertices(newCoords, offsets[i], offsets[i+1]);
+			}
+		}
+		return new PolygonMesh(newCoords, offsets, newPlanes, colors, palette, new Polygon[size()]);
+	}
+	
+	private static void reverseVertices(double[] coords, int fromVertex, int toVertex) {
+		for (int a = fromVertex*3, b = (toVertex-1)*3; a<b; a += 3, b -= 3) {
+			for (int axis = 0; axis<3; axis++) {
+				double temp = coords[a+axis];
+				coords[a+axis] = coords[b+axis];
+				coords[b+axis] = temp;
+			}
+		}
+	}
+	
+	/**
+	 * Writes the arrays of this mesh to the given output: the palette, the offsets and colors of the 
+	 * polygons, the planes and the coordinates.
+	 * @param out the output to be used
+	 * @throws IOException if the writing fails
+	 */
+	void write(DataOutput out) throws IOException {
+		out.writeInt(palette.length);
+		for (Color c : palette) {
+			out.writeInt(c.getRGB());
+		}
+		out.writeInt(colors.length);
+		for (int i = 0; i<colors.length; i++) {
+			out.writeInt(offsets[i+1]);
+			out.writeInt(colors[i]);
+		}
+		for (double d : planes) {
+			out.writeDouble(d);
+		}
+		for (double d : coords) {
+			out.writeDouble(d);
+		}
+	}
+	
+	/**
+	 * Reads a mesh written by {@link #write(DataOutput)}.
+	 * @param in the input to be used
+	 * @return the mesh read
+	 * @throws IOException if the reading fails or the data is corrupted
+	 */
+	static PolygonMesh read(DataInput in) throws IOException {
+		Color[] palette = new Color[readCount(in)];
+		for (int i = 0; i<palette.length; i++) {
+			palette[i] = new Color(in.readInt(), true);
+		}
+		int polygonCount = readCount(in);
+		int[] offsets = new int[polygonCount+1];
+		int[] colors = new int[polygonCount];
+		for (int i = 0; i<polygonCount; i++) {
+			offsets[i+1] = in.readInt();
+			colors[i] = in.readInt();
+			if (offsets[i+1]<offsets[i] || colors[i]<0 || colors[i]>=palette.length) {
+				throw new IOException("Corrupted mesh data.");
+			}
+		}
+		double[] planes = new double[polygonCount*4];
+		for (int i = 0; i<planes.length; i++) {
+			planes[i] = in.readDouble();
+		}
+		double[] coords = new double[offsets[polygonCount]*3];
+		for (int i = 0; i<coords.length; i++) {
+			coords[i] = in.readDouble();
+		}
+		return new PolygonMesh(coords, offsets, planes, colors, palette, new Polygon[polygonCount]);
+	}
+	
+	private static int readCount(DataInput in) throws IOException {
+		int count = in.readInt();
+		if (count<0) {
+			throw new IOException("Corrupted mesh data.");
+		}
+		return count;
+	}
+	
+	private Polygon createPolygon(int index) {
+		List<Coords3d> vertices = new ArrayList<>(offsets[index+1] - offsets[index]);
+		for (int v = offsets[index]*3; v<offsets[index+1]*3; v += 3) {
+			vertices.add(new Coords3d(coords[v], coords[v+1], coords[v+2]));
+		}
+		int p = index*4;
+		return Polygon.fromPlane(vertices, new Coords3d(planes[p], planes[p+1], planes[p+2]), planes[p+3], 
+				palette[colors[index]]);
+	}
+	
+	/**
+	 * Lazy list view of the polygons of the mesh.
+	 */
+	private final class PolygonListView extends AbstractList<Polygon> implements RandomAccess {
+		@Override
+		public Polygon get(int index) {
+			return getPolygon(index);
+		}
+
+		@Override
+		public int size() {
+			return PolygonMesh.this.size();
+		}
+	}
+	
+	/**
+	 * Collects polygons into growing arrays and creates a {@link PolygonMesh} from them. 
+	 * Polygons can be added either as objects or copied from another mesh without creating the objects.
+	 */
+	static final class Builder {
+		private double[] coords = new double[48];
+		private int[] offsets = new int[17];
+		private double[] planes = new double[64];
+		private int[] colors = new int[16];
+		private Polygon[] polygons = new Polygon[16];
+		private final List<Color> palette = new ArrayList<>();
+		private final Map<Color, Integer> colorIndexes = new HashMap<>();
+		private int polygonCount = 0;
+		private int vertexCount = 0;
+		
+		/**
+		 * Adds the given polygon to the mesh. The polygon object is kept by the new mesh.
+		 * @param polygon the polygon to be added
+		 * @return this object
+		 */
+		Builder add(Polygon polygon) {
+			List<Coords3d> vertices = polygon.getVertices();
+			ensureVertexCapacity(vertices.size());
+			for (Coords3d v : vertices) {
+				int c = vertexCount*3;
+				coords[c] = v.getX();
+				coords[c+1] = v.getY();
+				coords[c+2] = v.getZ();
+				vertexCount++;
+			}
+			Coords3d normal = polygon.getNormal();
+			addPolygon(normal.getX(), normal.getY(), normal.getZ(), polygon.getDist(), 
+					colorIndex(polygon.getColor()), polygon);
+			return this;
+		}
+		
+		/**
+		 * Adds all the given polygons to the mesh.
+		 * @param polygons the polygons to be added
+		 * @return this object
+		 */
+		Builder addAll(List<Polygon> polygons) {
+			for (Polygon p : polygons) {
+				add(p);
+			}
+			return this;
+		}
+		
+		/**
+		 * Copies the polygon with the given index from the given mesh. If the polygon object has already 
+		 * been created in the source mesh it is shared with the new mesh.
+		 * @param mesh the source mesh
+		 * @param index the index of the polygon in the source mesh
+		 * @return this object
+		 */
+		Builder add(PolygonMesh mesh, int index) {
+			int from = mesh.offsets[index];
+			int count = mesh.offsets[index+1] - from;
+			ensureVertexCapacity(count);
+			System.arraycopy(mesh.coords, from*3, coords, vertexCount*3, count*3);
+			vertexCount += count;
+			int p = index*4;
+			addPolygon(mesh.planes[p], mesh.planes[p+1], mesh.planes[p+2], mesh.planes[p+3], 
+					colorIndex(mesh.palette[mesh.colors[index]]), mesh.polygons[index]);
+			return this;
+		}
+		
+		/**
+		 * Copies all the polygons of the given mesh.
+		 * @param mesh the source mesh
+		 * @return this object
+		 */
+		Builder addAll(PolygonMesh mesh) {
+			for (int i = 0; i<mesh.size(); i++) {
+				add(mesh, i);
+			}
+			return this;
+		}
+		
+		/**
+		 * Creates the mesh. The builder should not be used afterwards.
+		 * @return the new mesh
+		 */
+		PolygonMesh build() {
+			return new PolygonMesh(
+					Arrays.copyOf(coords, vertexCount*3), 
+					Arrays.copyOf(offsets, polygonCount+1), 
+					Arrays.copyOf(planes, polygonCount*4), 
+					Arrays.copyOf(colors, polygonCount), 
+					palette.toArray(new Color[palette.size()]),
+					Arrays.copyOf(polygons, polygonCount));
+		}
+		
+		private void addPolygon(double nx, double ny, double nz, double dist, int color, Polygon polygon) {
+			if (polygonCount==colors.length) {
+				int capacity = colors.length*2;
+				offsets = Arrays.copyOf(offsets, capacity+1);
+				planes = Arrays.copyOf(planes, capacity*4);
+				colors = Arrays.copyOf(colors, capacity);
+				polygons = Arrays.copyOf(polygons, capacity);
+			}
+			int p = polygonCount*4;
+			planes[p] = nx;
+			planes[p+1] = ny;
+			planes[p+2] = nz;
+			planes[p+3] = dist;
+			colors[polygonCount] = color;
+			polygons[polygonCount] = polygon;
+			polygonCount++;
+			offsets[polygonCount] = vertexCount;
+		}
+		
+		private void ensureVertexCapacity(int count) {
+			int needed = (vertexCount+count)*3;
+			if (needed>coords.length) {
+				coords = Arrays.copyOf(coords, Math.max(needed, coords.length*2));
+			}
+		}
+		
+		private int colorIndex(Color color) {
+			Integer index = colorIndexes.get(color);
+			if (index==null) {
+				index = Integer.valueOf(palette.size());
+				palette.add(color);
+				colorIndexes.put(color, index);
+			}
+			return index.intValue();
+		}
+	}
+}
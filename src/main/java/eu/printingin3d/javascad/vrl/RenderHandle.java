@@ -0,0 +1,151 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import eu.printingin3d.javascad.exceptions.RenderAbortedException;
+import eu.printingin3d.javascad.exceptions.RenderAbortedException.Reason;
+import eu.printingin3d.javascad.utils.AssertValue;
+
+/**
+ * <p>Controls a long rendering. It can be attached to the evaluation by
+ * {@link CsgOptions#withRenderHandle(RenderHandle)}, and the CSG operations and the BSP trees poll it
+ * regularly: if the rendering has been cancelled, its deadline has passed or it has processed more polygons
+ * than its budget, the rendering is stopped by a {@link RenderAbortedException}. The partial results are not
+ * kept anywhere, so they can be garbage collected as soon as the exception leaves the rendering.</p>
+ * <p>A typical usage looks like this:</p>
+ * <pre><code>RenderHandle handle = new RenderHandle()
+	.setTimeout(10, TimeUnit.SECONDS)
+	.setPolygonBudget(5000000);
+context.setCsgOptions(CsgOptions.DEFAULT.withRenderHandle(handle));
+model.toCSG(context);</code></pre>
+ * <p>Once a rendering has been stopped every later poll of the handle fails with the same reason, so the
+ * parallel parts of the rendering stop too. A handle should be used for one rendering only.</p>
+ * <p>The object is thread-safe: it can be cancelled from any thread and it can be used in parallel mode.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public final class RenderHandle {
+	private final AtomicReference<Reason> abortReason = new AtomicReference<>();
+	private final AtomicLong processedPolygons = new AtomicLong();
+	private final AtomicInteger maxDepth = new AtomicInteger();
+	private volatile boolean hasDeadline = false;
+	private volatile long deadline;
+	private volatile long polygonBudget = Long.MAX_VALUE;
+	private volatile RenderProgressListener listener = null;
+
+	/**
+	 * Sets the deadline of the rendering to the given time from now.
+	 * @param timeout the time the rendering may take from now
+	 * @param unit the unit of the timeout
+	 * @return return this object to make it possible to chain more method call
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if the timeout is negative
+	 */
+	public RenderHandle setTimeout(long timeout, TimeUnit unit) {
+		AssertValue.isTrue(timeout>=0, "The timeout should not be negative, but was "+timeout+"!");
+		this.deadline = System.nanoTime() + unit.toNanos(timeout);
+		this.hasDeadline = true;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of polygons the BSP trees may process during the rendering.
+	 * @param polygonBudget the maximum number of polygons processed
+	 * @return return this object to make it possible to chain more method call
+	 * @throws eu.printingin3d.javascad.exceptions.IllegalValueException if the budget is negative
+	 */
+	public RenderHandle setPolygonBudget(long polygonBudget) {
+		AssertValue.isTrue(polygonBudget>=0, "The polygon budget should not be negative, but was "
+				+polygonBudget+"!");
+		this.polygonBudget = polygonBudget;
+		return this;
+	}
+
+	/**
+	 * Sets the listener to be notified about the progress of the rendering.
+	 * @param listener the listener or null if the progress should not be published
+	 * @return return this object to make it possible to chain more method call
+	 */
+	public RenderHandle setProgressListener(RenderProgressListener listener) {
+		this.listener = listener;
+		return this;
+	}
+
+	/**
+	 * Cancels the rendering. The rendering stops at its next poll of this handle.
+	 */
+	public void cancel() {
+		abortReason.compareAndSet(null, Reason.CANCELLED);
+	}
+
+	/**
+	 * Returns the reason the rendering has been stopped for.
+	 * @return the reason the rendering has been stopped for or null if it has not been stopped
+	 */
+	public Reason getAbortReason() {
+		return abortReason.get();
+	}
+
+	/**
+	 * Returns the number of polygons processed by the BSP trees so far.
+	 * @return the number of polygons processed so far
+	 */
+	public long getProcessedPolygons() {
+		return processedPolygons.get();
+	}
+
+	/**
+	 * Returns the depth of the deepest BSP node processed so far.
+	 * @return the depth of the deepest BSP node processed so far
+	 */
+	public int getMaxDepth() {
+		return maxDepth.get();
+	}
+
+	/**
+	 * Records the processing of a BSP node, publishes the progress and checks if the rendering can go on.
+	 * @param depth the depth of the node
+	 * @param polygons the number of polygons processed by the node
+	 * @throws RenderAbortedException if the rendering has to be stopped
+	 */
+	void recordProgress(int depth, int polygons) {
+		long processed = processedPolygons.addAndGet(polygons);
+		maxDepth.accumulateAndGet(depth, Math::max);
+		RenderProgressListener actualListener = listener;
+		if (actualListener!=null) {
+			actualListener.progress(processed, depth);
+		}
+		check();
+	}
+
+	/**
+	 * Checks if the rendering can go on.
+	 * @throws RenderAbortedException if the rendering has to be stopped
+	 */
+	void check() {
+		if (abortReason.get()==null) {
+			if (hasDeadline && System.nanoTime()-deadline>0) {
+				abortReason.compareAndSet(null, Reason.DEADLINE_EXCEEDED);
+			}
+			else if (processedPolygons.get()>polygonBudget) {
+				abortReason.compareAndSet(null, Reason.POLYGON_BUDGET_EXCEEDED);
+			}
+			else {
+				return;
+			}
+		}
+
+		Reason reason = abortReason.get();
+		switch (reason) {
+		case CANCELLED:
+			throw new RenderAbortedException("The rendering has been cancelled!", reason);
+		case DEADLINE_EXCEEDED:
+			throw new RenderAbortedException("The deadline of the rendering has passed!", reason);
+		default:
+			throw new RenderAbortedException("The rendering has processed more than "+polygonBudget+
+					" polygons!", reason);
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package eu.printingin3d.javascad.vrl;
+
+/**
+ * Gets notified about the progress of the renderings controlled by a {@link RenderHandle}. In parallel mode
+ * it is called from several threads at the same time, so the implementations have to be thread safe.
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public interface RenderProgressListener {
+	/**
+	 * Called every time a BSP node is processed.
+	 * @param processedPolygons the number of polygons processed by the rendering so far
+	 * @param depth the depth of the BSP node being processed - the root is on depth 1
+	 */
+	void progress(long processedPolygons, int depth);
+}
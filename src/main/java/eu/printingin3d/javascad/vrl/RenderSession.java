@@ -0,0 +1,33 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.util.function.Supplier;
+
+/**
+ * <p>A session of renderings which can reuse the results of the models rendered earlier. It is attached to
+ * a rendering by {@link FacetGenerationContext#withRenderSession(RenderSession)}, and every model of the
+ * rendered tree is rendered through it.</p>
+ * <p>The models are rendered in their local frame - without their own moves and rotations and without
+ * the transformation accumulated from the ancestors - so the results can be reused at any position.</p>
+ * <p>The session is used only by the models which are instances of its {@link #getModelType() model type},
+ * see {@link FacetGenerationContext#getRenderSession(Class)}.</p>
+ *
+ * @param <M> the type of the models the session can render
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+public interface RenderSession<M> {
+	/**
+	 * Returns the type of the models the session can render.
+	 * @return the type of the models the session can render
+	 */
+	Class<M> getModelType();
+
+	/**
+	 * Returns the result of the given model from the session or renders it.
+	 * @param model the model to be rendered - its structure in its local frame determines if a result can
+	 * 		be reused
+	 * @param context the context of the rendering without any accumulated transformation
+	 * @param rendering the rendering of the model in its local frame
+	 * @return the CSG of the model in its local frame
+	 */
+	CSG render(M model, FacetGenerationContext context, Supplier<CSG> rendering);
+}
@@ -0,0 +1,126 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+import eu.printingin3d.javascad.utils.Pair;
+
+/**
+ * <p>Evaluates a binary recursion - like the processing of a BSP tree - with an explicit stack instead of 
+ * the call stack, so arbitrarily deep trees can be processed without {@link StackOverflowError}.</p>
+ * <p>Every step of the recursion is either a final result or a split into two sub-steps and a function
+ * which combines the results of the two sub-steps. The sub-steps are evaluated in order: the first one
+ * is always finished before the second one is started. If the step is marked as forkable the two
+ * sub-steps are evaluated as fork/join tasks instead.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+final class TreeEvaluator {
+	private TreeEvaluator() {
+		// prevents creating this object
+	}
+	
+	/**
+	 * One step of the recursion.
+	 * @param <R> the type of the result
+	 */
+	static final class Step<R> {
+		private final R result;
+		private final Supplier<Step<R>> first;
+		private final Supplier<Step<R>> second;
+		private final BiFunction<R, R, R> combine;
+		private final boolean fork;
+		
+		private Step(R result, Supplier<Step<R>> first, Supplier<Step<R>> second, 
+				BiFunction<R, R, R> combine, boolean fork) {
+			this.result = result;
+			this.first = first;
+			this.second = second;
+			this.combine = combine;
+			this.fork = fork;
+		}
+		
+		/**
+		 * Creates a final step with the given result.
+		 * @param result the result of the step - can be null
+		 * @param <R> the type of the result
+		 * @return the new step
+		 */
+		static <R> Step<R> done(R result) {
+			return new Step<>(result, null, null, null, false);
+		}
+		
+		/**
+		 * Creates a step which has to be split into two sub-steps.
+		 * @param first the first sub-step
+		 * @param second the second sub-step
+		 * @param combine the function calculating the result of this step from the results of the sub-steps
+		 * @param fork true if the sub-steps should be evaluated as fork/join tasks
+		 * @param <R> the type of the result
+		 * @return the new step
+		 */
+		static <R> Step<R> split(Supplier<Step<R>> first, Supplier<Step<R>> second, 
+				BiFunction<R, R, R> combine, boolean fork) {
+			return new Step<>(null, first, second, combine, fork);
+		}
+		
+		private boolean isDone() {
+			return combine==null;
+		}
+	}
+	
+	/**
+	 * Evaluates the recursion starting with the given step.
+	 * @param root the first step of the recursion
+	 * @param <R> the type of the result
+	 * @return the result of the recursion
+	 */
+	static <R> R evaluate(Supplier<Step<R>> root) {
+		// the frames are either steps to be expanded or combine functions waiting for their arguments
+		List<Object> frames = new ArrayList<>();
+		List<R> results = new ArrayList<>();
+		frames.add(root);
+		
+		while (!frames.isEmpty()) {
+			Object frame = frames.remove(frames.size()-1);
+			if (frame instanceof Supplier) {
+				expand(TreeEvaluator.<R>getStep(frame), frames, results);
+			}
+			else {
+				R second = results.remove(results.size()-1);
+				R first = results.remove(results.size()-1);
+				results.add(TreeEvaluator.<R>getCombine(frame).apply(first, second));
+			}
+		}
+		return results.get(0);
+	}
+
+	private static <R> void expand(Step<R> step, List<Object> frames, List<R> results) {
+		if (step.isDone()) {
+			results.add(step.result);
+		}
+		else if (step.fork) {
+			Pair<R, R> children = ForkJoinUtils.evaluate(
+					() -> evaluate(step.first), 
+					() -> evaluate(step.second));
+			results.add(step.combine.apply(children.getValue1(), children.getValue2()));
+		}
+		else {
+			frames.add(step.combine);
+			frames.add(step.second);
+			frames.add(step.first);
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static <R> Step<R> getStep(Object frame) {
+		return ((Supplier<Step<R>>) frame).get();
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static <R> BiFunction<R, R, R> getCombine(Object frame) {
+		return (BiFunction<R, R, R>) frame;
+	}
+}
@@ -0,0 +1,371 @@
+package eu.printingin3d.javascad.vrl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import eu.printingin3d.javascad.coords.Coords3d;
+
+/**
+ * <p>Splits a triangle along segments lying in its plane. The end points of the segments are inserted into
+ * the triangle one by one, then every segment is forced to be an edge of the triangulation by flipping the
+ * edges crossing it. The calculation runs on the projection of the triangle to the coordinate plane the
+ * triangle is the most parallel to.</p>
+ * <p>The triangles of the result have the same orientation as the original triangle. If the segments are
+ * in such a degenerated position the refinement cannot handle an {@link IllegalStateException} is thrown.</p>
+ *
+ * @author ivivan <ivivan@printingin3d.eu>
+ */
+final class TriangleRefinement {
+	private final double tolerance;
+	private final int axisU;
+	private final int axisV;
+	private final double signV;
+	private final List<Coords3d> points = new ArrayList<>();
+	private final List<double[]> projected = new ArrayList<>();
+	private final List<int[]> segments = new ArrayList<>();
+	private final List<int[]> triangles = new ArrayList<>();
+	private final List<Coords3d[]> edges = new ArrayList<>();
+	private int[] aliases;
+
+	/**
+	 * Creates the refinement of the given triangle.
+	 * @param a the first corner of the triangle
+	 * @param b the second corner of the triangle
+	 * @param c the third corner of the triangle
+	 * @param tolerance the points closer to each other than this value are handled as the same point
+	 */
+	TriangleRefinement(Coords3d a, Coords3d b, Coords3d c, double tolerance) {
+		this.tolerance = tolerance;
+		Coords3d normal = b.add(a.inverse()).cross(c.add(a.inverse()));
+		int dropped = 2;
+		if (Math.abs(normal.getX())>=Math.abs(normal.getY()) && Math.abs(normal.getX())>=Math.abs(normal.getZ())) {
+			dropped = 0;
+		}
+		else if (Math.abs(normal.getY())>=Math.abs(normal.getZ())) {
+			dropped = 1;
+		}
+		this.axisU = (dropped+1) % 3;
+		this.axisV = (dropped+2) % 3;
+		this.signV = coordinate(normal, dropped)<0.0 ? -1.0 : 1.0;
+		addPoint(a);
+		addPoint(b);
+		addPoint(c);
+	}
+
+	/**
+	 * Adds a segment the triangle should be split along.
+	 * @param start the start point of the segment
+	 * @param end the end point of the segment
+	 */
+	void addSegment(Coords3d start, Coords3d end) {
+		int first = addPoint(start);
+		int second = addPoint(end);
+		if (first!=second) {
+			segments.add(new int[] {first, second});
+		}
+	}
+
+	/**
+	 * Returns true if there is at least one segment added to the triangle.
+	 * @return true if and only if the triangle has to be split
+	 */
+	boolean hasSegments() {
+		return !segments.isEmpty();
+	}
+
+	/**
+	 * Calculates the triangles the original triangle is split into.
+	 * @return the list of the triangles as arrays of three corners
+	 */
+	List<Coords3d[]> triangulate() {
+		splitCrossingSegments();
+		List<int[]> pieces = splitSegmentsAtPoints();
+
+		aliases = new int[points.size()];
+		for (int i = 0; i<aliases.length; i++) {
+			aliases[i] = i;
+		}
+		triangles.add(new int[] {0, 1, 2});
+		for (int i = 3; i<points.size(); i++) {
+			insert(i);
+		}
+		for (int[] segment : pieces) {
+			int a = aliases[segment[0]];
+			int b = aliases[segment[1]];
+			recover(a, b);
+			if (a!=b) {
+				edges.add(new Coords3d[] {points.get(a), points.get(b)});
+			}
+		}
+
+		List<Coords3d[]> result = new ArrayList<>(triangles.size());
+		for (int[] t : triangles) {
+			result.add(new Coords3d[] {points.get(t[0]), points.get(t[1]), points.get(t[2])});
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the edges of the triangulation the segments have been split into. Only valid after
+	 * {@link #triangulate()} has been called.
+	 * @return the list of the edges as arrays of two end points
+	 */
+	List<Coords3d[]> getSegmentEdges() {
+		return edges;
+	}
+
+	private int addPoint(Coords3d point) {
+		for (int i = 0; i<points.size(); i++) {
+			if (points.get(i).add(point.inverse()).magnitude()<=tolerance) {
+				return i;
+			}
+		}
+		points.add(point);
+		projected.add(new double[] {coordinate(point, axisU), signV*coordinate(point, axisV)});
+		return points.size()-1;
+	}
+
+	/**
+	 * Adds the crossing points of the segments crossing each other as new points.
+	 */
+	private void splitCrossingSegments() {
+		int count = segments.size();
+		for (int i = 0; i<count; i++) {
+			for (int j = i+1; j<count; j++) {
+				int[] s = segments.get(i);
+				int[] r = segments.get(j);
+				if (crosses(s[0], s[1], r[0], r[1])) {
+					double ds = side(r[0], r[1], s[0]);
+					double de = side(r[0], r[1], s[1]);
+					addPoint(points.get(s[0]).lerp(points.get(s[1]), ds / (ds-de)));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Splits every segment at the points lying on it.
+	 * @return the list of the pieces
+	 */
+	private List<int[]> splitSegmentsAtPoints() {
+		List<int[]> result = new ArrayList<>();
+		for (int[] s : segments) {
+			double[] start = project(s[0]);
+			double[] end = project(s[1]);
+			double length = Math.hypot(end[0]-start[0], end[1]-start[1]);
+			List<Integer> inner = new ArrayList<>();
+			List<Double> positions = new ArrayList<>();
+			for (int i = 0; i<points.size(); i++) {
+				double[] p = project(i);
+				double position = ((p[0]-start[0])*(end[0]-start[0]) + (p[1]-start[1])*(end[1]-start[1])) / length;
+				if (i!=s[0] && i!=s[1] && position>tolerance && position<length-tolerance &&
+						Math.abs(side(s[0], s[1], i))<=tolerance) {
+					int index = 0;
+					while (index<positions.size() && positions.get(index).doubleValue()<position) {
+						index++;
+					}
+					positions.add(index, Double.valueOf(position));
+					inner.add(index, Integer.valueOf(i));
+				}
+			}
+			int previous = s[0];
+			for (Integer i : inner) {
+				result.add(new int[] {previous, i.intValue()});
+				previous = i.intValue();
+			}
+			result.add(new int[] {previous, s[1]});
+		}
+		return result;
+	}
+
+	/**
+	 * Inserts the given point into the triangle of the current triangulation it is the deepest inside. If
+	 * the point is on an edge of that triangle the edge is split, if it is at a corner the point is handled
+	 * as an alias of the corner.
+	 */
+	private void insert(int point) {
+		int best = -1;
+		double bestDepth = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i<triangles.size(); i++) {
+			int[] t = triangles.get(i);
+			double depth = Math.min(side(t[0], t[1], point),
+					Math.min(side(t[1], t[2], point), side(t[2], t[0], point)));
+			if (depth>bestDepth) {
+				bestDepth = depth;
+				best = i;
+			}
+		}
+		if (bestDepth < -2.0*tolerance) {
+			throw new IllegalStateException("The point is outside of the triangle.");
+		}
+
+		int[] t = triangles.get(best);
+		int onEdge = -1;
+		int onEdgeCount = 0;
+		for (int k = 0; k<3; k++) {
+			if (side(t[k], t[(k+1) % 3], point)<=tolerance) {
+				onEdge = k;
+				onEdgeCount++;
+			}
+		}
+		if (onEdgeCount>=2) {
+			aliases[point] = nearestCorner(t, point);
+		}
+		else if (onEdgeCount==1) {
+			splitEdge(best, onEdge, point);
+		}
+		else {
+			triangles.set(best, new int[] {t[0], t[1], point});
+			triangles.add(new int[] {t[1], t[2], point});
+			triangles.add(new int[] {t[2], t[0], point});
+		}
+	}
+
+	private int nearestCorner(int[] t, int point) {
+		int result = t[0];
+		double min = Double.POSITIVE_INFINITY;
+		for (int corner : t) {
+			double distance = points.get(corner).add(points.get(point).inverse()).magnitude();
+			if (distance<min) {
+				min = distance;
+				result = corner;
+			}
+		}
+		return result;
+	}
+
+	private void splitEdge(int index, int edge, int point) {
+		int[] t = triangles.get(index);
+		int a = t[edge];
+		int b = t[(edge+1) % 3];
+		int c = t[(edge+2) % 3];
+		triangles.set(index, new int[] {a, point, c});
+		triangles.add(new int[] {point, b, c});
+
+		int other = findTriangle(b, a);
+		if (other>=0) {
+			int d = third(triangles.get(other), b, a);
+			triangles.set(other, new int[] {b, point, d});
+			triangles.add(new int[] {point, a, d});
+		}
+	}
+
+	/**
+	 * Flips the edges crossing the segment between the given points until the segment becomes an edge of
+	 * the triangulation. The crossing edges are processed in a queue: an edge is flipped only if the two
+	 * triangles sharing it form a convex quadrilateral, otherwise it is put back to the end of the queue, as
+	 * is the new edge if it still crosses the segment.
+	 */
+	private void recover(int a, int b) {
+		if (a==b || findTriangle(a, b)>=0 || findTriangle(b, a)>=0) {
+			return;
+		}
+		Deque<int[]> crossing = new ArrayDeque<>();
+		for (int[] t : triangles) {
+			for (int k = 0; k<3; k++) {
+				if (t[k]<t[(k+1) % 3] && crosses(a, b, t[k], t[(k+1) % 3])) {
+					crossing.add(new int[] {t[k], t[(k+1) % 3]});
+				}
+			}
+		}
+
+		int limit = 4 * triangles.size() * triangles.size() + 16;
+		while (!crossing.isEmpty()) {
+			limit--;
+			int[] edge = crossing.poll();
+			int first = findTriangle(edge[0], edge[1]);
+			int second = findTriangle(edge[1], edge[0]);
+			if (limit<0 || first<0 || second<0) {
+				throw new IllegalStateException("The segment cannot be recovered.");
+			}
+			int u = edge[0];
+			int v = edge[1];
+			int w = third(triangles.get(first), u, v);
+			int x = third(triangles.get(second), v, u);
+			if (side(u, x, w)>tolerance && side(x, v, w)>tolerance) {
+				triangles.set(first, new int[] {u, x, w});
+				triangles.set(second, new int[] {x, v, w});
+				if (crosses(a, b, w, x)) {
+					crossing.add(new int[] {w, x});
+				}
+			}
+			else {
+				crossing.add(edge);
+			}
+		}
+		if (findTriangle(a, b)<0 && findTriangle(b, a)<0) {
+			throw new IllegalStateException("The segment cannot be recovered.");
+		}
+	}
+
+	private int findTriangle(int a, int b) {
+		for (int i = 0; i<triangles.size(); i++) {
+			int[] t = triangles.get(i);
+			for (int k = 0; k<3; k++) {
+				if (t[k]==a && t[(k+1) % 3]==b) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
+	private static int third(int[] t, int a, int b) {
+		for (int corner : t) {
+			if (corner!=a && corner!=b) {
+				return corner;
+			}
+		}
+		throw new IllegalStateException("Degenerated triangle.");
+	}
+
+	/**
+	 * Checks if the segments a-b and c-d cross each other in an inner point of both.
+	 */
+	private boolean crosses(int a, int b, int c, int d) {
+		if (a==c || a==d || b==c || b==d) {
+			return false;
+		}
+		double sc = side(a, b, c);
+		double sd = side(a, b, d);
+		double sa = side(c, d, a);
+		double sb = side(c, d, b);
+		return (sc>tolerance && sd< -tolerance || sc< -tolerance && sd>tolerance) &&
+				(sa>tolerance && sb< -tolerance || sa< -tolerance && sb>tolerance);
+	}
+
+	/**
+	 * Calculates the signed distance of the given point from the line going through a and b in the
+	 * projection. It is positive on the left side of the a-b direction, which is the inner side of the
+	 * edges of the triangles.
+	 */
+	private double side(int a, int b, int point) {
+		double[] pa = project(a);
+		double[] pb = project(b);
+		double[] p = project(point);
+		double dx = pb[0]-pa[0];
+		double dy = pb[1]-pa[1];
+		double length = Math.hypot(dx, dy);
+		if (length==0.0) {
+			return 0.0;
+		}
+		return (dx*(p[1]-pa[1]) - dy*(p[0]-pa[0])) / length;
+	}
+
+	private double[] project(int point) {
+		return projected.get(point);
+	}
+
+	private static double coordinate(Coords3d p, int axis) {
+		switch (axis) {
+		case 0:
+			return p.getX();
+		case 1:
+			return p.getY();
+		default:
+			return p.getZ();
+		}
+	}
+}
@@ -41,7 +41,10 @@ public enum VertexPosition {
     	return SPANNING;
     }
     
-    private static final double EPSILON = 1e-6;
+    /**
+     * The tolerance of the position calculation: vertices closer to the plane are considered to be on it.
+     */
+    static final double EPSILON = 1e-6;
     
     /**
      * Determine the vertex position based on the squared distance from the plane.
@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.util.List;
 
 import eu.printingin3d.javascad.vrl.Facet;
+import eu.printingin3d.javascad.vrl.IndexedMesh;
 
 /**
  * An interface used to export facets to file. The interface is implemented by all exporters.
@@ -20,4 +21,15 @@ public interface IFileExporter extends Closeable {
 	 * @throws IOException if any IO error happens during the export.
 	 */
 	void writeToFile(List<Facet> facets) throws IOException;
+	
+	/**
+	 * Do the actual export of an indexed mesh to file. The default implementation exports the facets
+	 * of the mesh, the exporters can override it to use the shared vertices directly.
+	 * @param mesh the mesh to export.
+	 * See the {@link eu.printingin3d.javascad.vrl.CSG#toIndexedMesh() CSG.toIndexedMesh()} method
+	 * @throws IOException if any IO error happens during the export.
+	 */
+	default void writeToFile(IndexedMesh mesh) throws IOException {
+		writeToFile(mesh.toFacets());
+	}
 }
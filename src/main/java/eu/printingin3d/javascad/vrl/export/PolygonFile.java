@@ -4,10 +4,13 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import eu.printingin3d.javascad.enums.OutputFormat;
 import eu.printingin3d.javascad.vrl.Facet;
+import eu.printingin3d.javascad.vrl.IndexedMesh;
 import eu.printingin3d.javascad.vrl.Vertex;
 import eu.printingin3d.javascad.vrl.VertexMap;
 
@@ -39,23 +42,7 @@ public class PolygonFile implements IFileExporter {
 		List<Vertex> sortedList = map.getVertexList();
 		
 		try (PrintStream ps = new PrintStream(stream)) {
-			// fix header
-			ps.println("ply");
-			ps.println("format ascii 1.0");
-			// elements headers
-			// vertexes are store the coordinates and the color
-			ps.println("element vertex "+sortedList.size());
-			ps.println("property float x");
-			ps.println("property float y");
-			ps.println("property float z");
-			ps.println("property uchar red");
-			ps.println("property uchar green");
-			ps.println("property uchar blue");
-			// faces are a list of coordinate indexes
-			ps.println("element face "+facets.size());
-			ps.println("property list uchar int vertex_index");
-			// end_header
-			ps.println("end_header");
+			writeHeader(ps, sortedList.size(), facets.size());
 			
 			// list of vertexes
 			for (Vertex v : sortedList) {
@@ -74,6 +61,59 @@ public class PolygonFile implements IFileExporter {
 		}
 	}
 
+	/**
+	 * Exports the mesh using its shared vertices. A vertex is written as many times as many different
+	 * colors the triangles using it have, because the format stores the color by the vertexes.
+	 */
+	@Override
+	public void writeToFile(IndexedMesh mesh) {
+		Map<Vertex, Integer> indexes = new LinkedHashMap<>();
+		int[] faces = new int[mesh.getTriangleCount()*3];
+		for (int t = 0; t<mesh.getTriangleCount(); t++) {
+			for (int corner = 0; corner<3; corner++) {
+				Vertex v = new Vertex(mesh.getVertices().get(mesh.getTriangleVertex(t, corner)), mesh.getColor(t));
+				Integer index = indexes.get(v);
+				if (index==null) {
+					index = Integer.valueOf(indexes.size());
+					indexes.put(v, index);
+				}
+				faces[t*3 + corner] = index.intValue();
+			}
+		}
+		
+		try (PrintStream ps = new PrintStream(stream)) {
+			writeHeader(ps, indexes.size(), mesh.getTriangleCount());
+			
+			for (Vertex v : indexes.keySet()) {
+				ps.println(v.format(OutputFormat.POLYGON));
+			}
+			
+			for (int t = 0; t<mesh.getTriangleCount(); t++) {
+				ps.println("3 "+faces[t*3]+" "+faces[t*3+1]+" "+faces[t*3+2]+" ");
+			}
+		}
+	}
+	
+	private static void writeHeader(PrintStream ps, int vertexCount, int faceCount) {
+		// fix header
+		ps.println("ply");
+		ps.println("format ascii 1.0");
+		// elements headers
+		// vertexes are store the coordinates and the color
+		ps.println("element vertex "+vertexCount);
+		ps.println("property float x");
+		ps.println("property float y");
+		ps.println("property float z");
+		ps.println("property uchar red");
+		ps.println("property uchar green");
+		ps.println("property uchar blue");
+		// faces are a list of coordinate indexes
+		ps.println("element face "+faceCount);
+		ps.println("property list uchar int vertex_index");
+		// end_header
+		ps.println("end_header");
+	}
+
 	@Override
 	public void close() throws IOException {
 		stream.close();
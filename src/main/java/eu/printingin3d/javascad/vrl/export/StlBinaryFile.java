@@ -7,6 +7,7 @@ import java.nio.ByteOrder;
 import java.util.List;
 
 import eu.printingin3d.javascad.vrl.Facet;
+import eu.printingin3d.javascad.vrl.IndexedMesh;
 
 /**
  * An IFileExporter implementation for the binary STL file format. The usual extension of the file
@@ -35,6 +36,27 @@ public class StlBinaryFile implements IFileExporter {
     	}
 	}
 	
+	/**
+	 * Exports the mesh directly from its vertex list without creating facets.
+	 */
+	@Override
+	public void writeToFile(IndexedMesh mesh) throws IOException {
+		out.write(new byte[80]);
+		
+		out.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(mesh.getTriangleCount()).array());
+		
+		ByteBuffer byteBuffer = ByteBuffer.allocate(50).order(ByteOrder.LITTLE_ENDIAN);
+		for (int t = 0; t<mesh.getTriangleCount(); t++) {
+			byteBuffer.clear();
+			mesh.getNormal(t).toByteArray(byteBuffer);
+			for (int corner = 0; corner<3; corner++) {
+				mesh.getVertices().get(mesh.getTriangleVertex(t, corner)).toByteArray(byteBuffer);
+			}
+			byteBuffer.putShort((short)0);
+			out.write(byteBuffer.array());
+		}
+	}
+	
 	private static byte[] facetToBinaryStl(Facet facet) throws IOException {
 		ByteBuffer byteBuffer = ByteBuffer.allocate(50).order(ByteOrder.LITTLE_ENDIAN);
 		
@@ -19,11 +19,24 @@ import eu.printingin3d.javascad.basic.Radius;
 import eu.printingin3d.javascad.coords.Abstract3dTest.TestAbstract3d;
 import eu.printingin3d.javascad.coords.Angles3d;
 import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.coords.Dims3d;
+import eu.printingin3d.javascad.coords.Triangle3d;
 import eu.printingin3d.javascad.coords2d.Abstract2dTest.TestAbstract2d;
 import eu.printingin3d.javascad.coords2d.Coords2d;
+import eu.printingin3d.javascad.coords2d.Dims2d;
 import eu.printingin3d.javascad.coords2d.LineSegment2d;
+import eu.printingin3d.javascad.enums.Plane;
+import eu.printingin3d.javascad.models.Abstract3dModel;
+import eu.printingin3d.javascad.models.Cube;
+import eu.printingin3d.javascad.models.Cylinder;
+import eu.printingin3d.javascad.models.LinearExtrude;
 import eu.printingin3d.javascad.models.SCAD;
+import eu.printingin3d.javascad.models.Sphere;
+import eu.printingin3d.javascad.models2d.Circle;
+import eu.printingin3d.javascad.models2d.Square;
 import eu.printingin3d.javascad.testutils.RandomUtils;
+import eu.printingin3d.javascad.tranzitions.Difference;
+import eu.printingin3d.javascad.tranzitions.Union;
 import eu.printingin3d.javascad.vrl.Vertex;
 
 @RunWith(Parameterized.class)
@@ -121,6 +134,39 @@ public class EqualsAndHashCodeBatchTest {
 						Angle.ofDegree(45),
 						Angle.A45,
 						Angle.ZERO, Angle.ofRadian(Math.PI)
+						),
+				new TestCase<Triangle3d>(
+						new Triangle3d(Coords3d.ZERO, Coords3d.X, Coords3d.Y),
+						new Triangle3d(new Coords3d(0, 0, 0), new Coords3d(1, 0, 0), new Coords3d(0, 1, 0)),
+						new Triangle3d(Coords3d.ZERO, Coords3d.Y, Coords3d.X), 
+						new Triangle3d(Coords3d.ZERO, Coords3d.X, Coords3d.Z)
+						),
+				new TestCase<Abstract3dModel>(
+						new Cube(10).move(c).rotate(new Angles3d(10, 20, 30)).annotate("a"),
+						new Cube(new Dims3d(10, 10, 10)).move(c).rotate(new Angles3d(10, 20, 30)).annotate("a"),
+						new Cube(11).move(c).rotate(new Angles3d(10, 20, 30)).annotate("a"),
+						new Cube(10).rotate(new Angles3d(10, 20, 30)).annotate("a"),
+						new Cube(10).move(c).rotate(new Angles3d(10, 20, 31)).annotate("a"),
+						new Cube(10).move(c).rotate(new Angles3d(10, 20, 30)).annotate("b"),
+						new Cube(10).move(c).rotate(new Angles3d(10, 20, 30)).annotate("a").withTag(2),
+						new Cube(10).move(c).rotate(new Angles3d(10, 20, 30)).annotate("a").debug(),
+						new Cube(10).move(c).rotate(new Angles3d(10, 20, 30)).annotate("a").round(Plane.XY, 1.0),
+						new Sphere(Radius.fromRadius(10)).move(c).rotate(new Angles3d(10, 20, 30)).annotate("a")
+						),
+				new TestCase<Abstract3dModel>(
+						new Difference(new Cylinder(10, Radius.fromRadius(5)), new Cube(3), new Cube(4).move(c)),
+						new Difference(new Cylinder(10, Radius.fromDiameter(10)), new Cube(3), new Cube(4).move(c)),
+						new Difference(new Cylinder(10, Radius.fromRadius(5)), new Cube(4).move(c), new Cube(3)),
+						new Difference(new Cylinder(10, Radius.fromRadius(5)), new Cube(3)),
+						new Union(new Cylinder(10, Radius.fromRadius(5)), new Cube(3), new Cube(4).move(c)),
+						new Difference(new Cylinder(11, Radius.fromRadius(5)), new Cube(3), new Cube(4).move(c))
+						),
+				new TestCase<Abstract3dModel>(
+						new LinearExtrude(new Circle(Radius.fromRadius(3)).move(new Coords2d(1, 2)), 10, Angle.A45),
+						new LinearExtrude(new Circle(Radius.fromRadius(3)).move(new Coords2d(1, 2)), 10, Angle.A45),
+						new LinearExtrude(new Circle(Radius.fromRadius(3)), 10, Angle.A45),
+						new LinearExtrude(new Square(new Dims2d(3, 3)).move(new Coords2d(1, 2)), 10, Angle.A45),
+						new LinearExtrude(new Circle(Radius.fromRadius(3)).move(new Coords2d(1, 2)), 10, Angle.ZERO)
 						)
 			);
 	}
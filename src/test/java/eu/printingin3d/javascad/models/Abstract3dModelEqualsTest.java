@@ -0,0 +1,77 @@
+package eu.printingin3d.javascad.models;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import eu.printingin3d.javascad.basic.Radius;
+import eu.printingin3d.javascad.coords.Angles3d;
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.enums.Plane;
+import eu.printingin3d.javascad.testutils.Test3dModel;
+import eu.printingin3d.javascad.tranzitions.Union;
+
+public class Abstract3dModelEqualsTest {
+	private static Abstract3dModel createAssembly(int parts, int partsPerGroup, int changedPart) {
+		List<Abstract3dModel> groups = new ArrayList<>();
+		for (int g=0;g<parts/partsPerGroup;g++) {
+			List<Abstract3dModel> group = new ArrayList<>();
+			for (int i=0;i<partsPerGroup;i++) {
+				int index = g*partsPerGroup+i;
+				double size = index==changedPart ? 2.0 : 1.0;
+				group.add(new Cube(size).move(new Coords3d(i, g, 0)));
+			}
+			groups.add(new Union(group).rotate(new Angles3d(0, 0, g)));
+		}
+		return new Union(groups);
+	}
+
+	@Test
+	public void movedBackModelShouldBeEqual() {
+		Coords3d move = new Coords3d(1.5, -3, 7);
+		Abstract3dModel model = new Cylinder(10, Radius.fromRadius(3));
+
+		assertEquals(model, model.move(move).move(move.inverse()));
+	}
+
+	@Test
+	public void orderOfTheAnnotationsAndRoundingsShouldNotMatter() {
+		Abstract3dModel model = new Cube(10);
+
+		assertEquals(model.annotate("a").annotate("b"), model.annotate("b").annotate("a"));
+		assertEquals(model.round(Plane.XY, 1.0).round(Plane.XZ, 2.0),
+				model.round(Plane.XZ, 2.0).round(Plane.XY, 1.0));
+	}
+
+	@Test
+	public void modelWithoutStructuralEqualityShouldBeEqualOnlyToItself() {
+		Abstract3dModel model = new Test3dModel("(model)");
+
+		assertEquals(model, model);
+		assertNotEquals(model, new Test3dModel("(model)"));
+		assertNotEquals(new Union(model), new Union(new Test3dModel("(model)")));
+		assertEquals(new Union(model), new Union(model));
+	}
+
+	@Test
+	public void equalSubtreesShouldBeFoundInAMap() {
+		Abstract3dModel model = createAssembly(100000, 100, -1);
+		Abstract3dModel sameModel = createAssembly(100000, 100, -1);
+		Abstract3dModel changedModel = createAssembly(100000, 100, 4321);
+
+		Map<Abstract3dModel, String> results = new HashMap<>();
+		results.put(model, "result");
+
+		assertEquals(model.hashCode(), sameModel.hashCode());
+		assertSame(results.get(model), results.get(sameModel));
+		assertNotEquals(model, changedModel);
+		assertEquals(null, results.get(changedModel));
+	}
+}
@@ -2,6 +2,7 @@ package eu.printingin3d.javascad.models;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
 
@@ -129,6 +130,21 @@ public class CloneModelTest {
 		assertEquals(original.toScad(ColorHandlingContext.DEFAULT), original.cloneModel().toScad(ColorHandlingContext.DEFAULT));
 	}
 	
+	@Test
+	public void cloneShouldBeEqual() {
+		Abstract3dModel clone = original.cloneModel();
+		assertEquals(original, clone);
+		assertEquals(original.hashCode(), clone.hashCode());
+		assertEquals(original, original.subModel(ScadGenerationContextFactory.DEFAULT));
+	}
+	
+	@Test
+	public void changedCloneShouldNotBeEqual() {
+		assertNotEquals(original, original.move(new Coords3d(1, 2, 3)));
+		assertNotEquals(original, original.withTag(111));
+		assertNotEquals(original, original.annotate("changed"));
+	}
+	
 	@Test
 	public void shouldBeIndependent() {
 		Abstract3dModel clone = original.cloneModel();
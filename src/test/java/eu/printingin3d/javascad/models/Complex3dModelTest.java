@@ -0,0 +1,102 @@
+package eu.printingin3d.javascad.models;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Test;
+
+import eu.printingin3d.javascad.basic.Radius;
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.coords.Dims3d;
+import eu.printingin3d.javascad.coords2d.Dims2d;
+import eu.printingin3d.javascad.exceptions.NotImplementedException;
+import eu.printingin3d.javascad.models2d.Square;
+import eu.printingin3d.javascad.tranzitions.Colorize;
+import eu.printingin3d.javascad.tranzitions.Difference;
+import eu.printingin3d.javascad.tranzitions.Direction;
+import eu.printingin3d.javascad.tranzitions.Intersection;
+import eu.printingin3d.javascad.tranzitions.Slicer;
+import eu.printingin3d.javascad.tranzitions.Union;
+import eu.printingin3d.javascad.vrl.CSG;
+import eu.printingin3d.javascad.vrl.CsgOptions;
+import eu.printingin3d.javascad.vrl.Facet;
+import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+import eu.printingin3d.javascad.vrl.Vertex;
+
+public class Complex3dModelTest {
+	private final ForkJoinPool pool = new ForkJoinPool(3);
+
+	@After
+	public void shutdownPool() {
+		pool.shutdown();
+	}
+
+	private static Abstract3dModel createAssembly() {
+		List<Abstract3dModel> parts = new ArrayList<>();
+		for (int i=0;i<6;i++) {
+			Abstract3dModel part = new Difference(new Cube(10),
+					new Cylinder(12, Radius.fromRadius(1+i*0.5)),
+					new Cube(4).move(new Coords3d(5, 0, 0)));
+			parts.add(new Colorize(i%2==0 ? Color.RED : Color.BLUE, part).move(new Coords3d(i*8, 0, 0)));
+		}
+		return new Intersection(new Union(parts), new Cube(new Dims3d(100, 12, 12)).move(new Coords3d(20, 0, 0)),
+				new Slicer(new Sphere(Radius.fromRadius(60)), Direction.Z, 2, 0));
+	}
+
+	private FacetGenerationContext parallelContext(CsgOptions options) {
+		FacetGenerationContext context = new FacetGenerationContext(null, null, 0);
+		context.setCsgOptions(options.withRenderPool(pool));
+		return context;
+	}
+
+	private static List<Vertex> vertices(CSG csg) {
+		List<Vertex> result = new ArrayList<>();
+		for (Facet f : csg.toFacets()) {
+			result.addAll(f.getVertexes());
+		}
+		return result;
+	}
+
+	@Test
+	public void parallelRenderingShouldGiveTheSameResult() {
+		Abstract3dModel model = createAssembly();
+		CSG expected = model.toCSG();
+
+		CSG actual = model.toCSG(parallelContext(CsgOptions.DEFAULT));
+
+		assertEquals(vertices(expected), vertices(actual));
+	}
+
+	@Test
+	public void parallelRenderingShouldShareThePoolWithTheParallelBspTrees() {
+		Abstract3dModel model = createAssembly();
+		CSG expected = model.toCSG();
+
+		CSG actual = model.toCSG(parallelContext(CsgOptions.DEFAULT.withParallel(true).withParallelThreshold(0)));
+
+		assertEquals(vertices(expected), vertices(actual));
+	}
+
+	@Test
+	public void parallelRenderingShouldBeRepeatable() {
+		Abstract3dModel model = createAssembly();
+		CSG first = model.toCSG(parallelContext(CsgOptions.DEFAULT));
+
+		for (int i=0;i<5;i++) {
+			assertEquals(vertices(first), vertices(model.toCSG(parallelContext(CsgOptions.DEFAULT))));
+		}
+	}
+
+	@Test(expected = NotImplementedException.class)
+	public void failureOfAChildShouldBeThrown() {
+		Abstract3dModel model = new Union(new Cube(10), new Cube(5),
+				new Ring(Radius.fromRadius(10), new Square(new Dims2d(2, 2))));
+
+		model.toCSG(parallelContext(CsgOptions.DEFAULT));
+	}
+}
@@ -0,0 +1,147 @@
+package eu.printingin3d.javascad.models;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import eu.printingin3d.javascad.basic.Radius;
+import eu.printingin3d.javascad.coords.Angles3d;
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.coords2d.Dims2d;
+import eu.printingin3d.javascad.exceptions.NotImplementedException;
+import eu.printingin3d.javascad.models2d.Square;
+import eu.printingin3d.javascad.tranzitions.Difference;
+import eu.printingin3d.javascad.tranzitions.Translate;
+import eu.printingin3d.javascad.tranzitions.Union;
+import eu.printingin3d.javascad.vrl.CSG;
+import eu.printingin3d.javascad.vrl.CsgOptions;
+import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+
+public class IncrementalRenderSessionTest {
+	private static Abstract3dModel createPart(double holeRadius) {
+		return new Difference(new Cube(10), new Cylinder(12, Radius.fromRadius(holeRadius)));
+	}
+
+	private static Abstract3dModel createAssembly(double holeRadius) {
+		List<Abstract3dModel> parts = new ArrayList<>();
+		for (int i=0;i<4;i++) {
+			parts.add(createPart(i==2 ? holeRadius : 2).move(new Coords3d(i*20, 0, 0)));
+		}
+		return new Union(parts);
+	}
+
+	private static void assertSameGeometry(Abstract3dModel model, CSG csg) {
+		assertEquals(new HashSet<>(model.toCSG().getPoints()), new HashSet<>(csg.getPoints()));
+	}
+
+	@Test
+	public void copiesShouldBeRenderedOnlyOnce() {
+		IncrementalRenderSession testSubject = new IncrementalRenderSession();
+		Abstract3dModel model = createAssembly(2);
+
+		CSG csg = testSubject.render(model);
+
+		assertSameGeometry(model, csg);
+		assertEquals(Arrays.asList(new Cylinder(12, Radius.fromRadius(2)), new Cube(10),
+				createPart(2).move(new Coords3d(0, 0, 0)), model), testSubject.getRenderedModels());
+		assertEquals(Arrays.asList(
+				createPart(2).move(new Coords3d(20, 0, 0)),
+				createPart(2).move(new Coords3d(40, 0, 0)),
+				createPart(2).move(new Coords3d(60, 0, 0))), testSubject.getReusedModels());
+	}
+
+	@Test
+	public void unchangedModelShouldBeReused() {
+		IncrementalRenderSession testSubject = new IncrementalRenderSession();
+		testSubject.render(createAssembly(2));
+
+		Abstract3dModel model = createAssembly(2);
+		CSG csg = testSubject.render(model);
+
+		assertSameGeometry(model, csg);
+		assertEquals(Arrays.asList(model), testSubject.getReusedModels());
+		assertTrue(testSubject.getRenderedModels().isEmpty());
+	}
+
+	@Test
+	public void onlyTheChangedNodesAndTheirAncestorsShouldBeRendered() {
+		IncrementalRenderSession testSubject = new IncrementalRenderSession();
+		testSubject.render(createAssembly(2));
+
+		Abstract3dModel model = createAssembly(3);
+		CSG csg = testSubject.render(model);
+
+		assertSameGeometry(model, csg);
+		assertEquals(Arrays.asList(
+				new Cylinder(12, Radius.fromRadius(3)),
+				createPart(3).move(new Coords3d(40, 0, 0)),
+				model), testSubject.getRenderedModels());
+		assertEquals(Arrays.asList(
+				createPart(2).move(new Coords3d(0, 0, 0)),
+				createPart(2).move(new Coords3d(20, 0, 0)),
+				new Cube(10),
+				createPart(2).move(new Coords3d(60, 0, 0))), testSubject.getReusedModels());
+	}
+
+	@Test
+	public void movedSubtreeShouldBeReused() {
+		IncrementalRenderSession testSubject = new IncrementalRenderSession();
+		testSubject.render(createPart(2).move(new Coords3d(5, 0, 0)));
+
+		Abstract3dModel model = createPart(2).move(new Coords3d(0, 5, 0));
+		CSG csg = testSubject.render(model);
+
+		assertSameGeometry(model, csg);
+		assertEquals(Arrays.asList(model), testSubject.getReusedModels());
+		assertTrue(testSubject.getRenderedModels().isEmpty());
+	}
+
+	@Test
+	public void transformFusionShouldNotChangeTheResult() {
+		FacetGenerationContext context = new FacetGenerationContext(null, null, 0);
+		context.setCsgOptions(CsgOptions.DEFAULT.withTransformFusion(true));
+		IncrementalRenderSession testSubject = new IncrementalRenderSession(context);
+		Abstract3dModel model = new Translate(createAssembly(2).rotate(new Angles3d(0, 30, 0)), 
+				new Coords3d(1, 2, 3));
+
+		assertSameGeometry(model, testSubject.render(model));
+	}
+
+	@Test
+	public void resultsShouldBeKeptIfTheRenderingFails() {
+		IncrementalRenderSession testSubject = new IncrementalRenderSession();
+		Abstract3dModel model = createAssembly(2);
+		testSubject.render(model);
+
+		try {
+			testSubject.render(new Union(createAssembly(3), new Ring(Radius.fromRadius(10),
+					new Square(new Dims2d(2, 2)))));
+		}
+		catch (NotImplementedException e) {
+			// the ring cannot be rendered
+		}
+		testSubject.render(model);
+
+		assertEquals(Arrays.asList(model), testSubject.getReusedModels());
+	}
+
+	@Test
+	public void resetShouldDropTheResults() {
+		IncrementalRenderSession testSubject = new IncrementalRenderSession();
+		Abstract3dModel model = createPart(2);
+		testSubject.render(model);
+
+		testSubject.reset();
+		testSubject.render(model);
+
+		assertEquals(0, testSubject.getReusedModels().size());
+		assertEquals(3, testSubject.getRenderedModels().size());
+		assertEquals(3, testSubject.size());
+	}
+}
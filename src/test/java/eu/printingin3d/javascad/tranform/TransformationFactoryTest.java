@@ -6,6 +6,7 @@ import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
+import eu.printingin3d.javascad.coords.Angles3d;
 import eu.printingin3d.javascad.coords.Coords3d;
 import eu.printingin3d.javascad.tranzitions.Direction;
 
@@ -65,4 +66,18 @@ public class TransformationFactoryTest {
 		assertFalse(testSubject.isMirror());
 		assertEquals(new Coords3d(100, 100, 60), testSubject.transform(new Coords3d(10, 20, 30)));
 	}
+	
+	@Test
+	public void rotationAndTranslationShouldBeTheSameAsTheComposedMatrices() {
+		Angles3d angles = new Angles3d(10, 20, 30);
+		Coords3d delta = new Coords3d(5, -3, 7);
+		Coords3d c = new Coords3d(20, 30, 40);
+		
+		ITransformation expected = TransformationFactory.getTranlationMatrix(delta).multiply(
+				TransformationFactory.getRotationMatrix(angles));
+		
+		assertEquals(expected.transform(c), TransformationFactory.getRotationAndTranslationMatrix(angles, delta)
+				.transform(c));
+		assertEquals(c.rotate(angles).add(delta), expected.transform(c));
+	}
 }
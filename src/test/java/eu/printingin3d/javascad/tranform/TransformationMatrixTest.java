@@ -2,10 +2,13 @@ package eu.printingin3d.javascad.tranform;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
+import eu.printingin3d.javascad.coords.Angles3d;
 import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.exceptions.IllegalValueException;
 
 public class TransformationMatrixTest {
 	@Test
@@ -20,4 +23,32 @@ public class TransformationMatrixTest {
 		assertEquals(new Coords3d(20, 30, 40), testSubject.transform(new Coords3d(20, 30, 40)));
 	}
 	
+	@Test
+	public void multiplyShouldApplyTheOtherMatrixFirst() {
+		TransformationMatrix move = TransformationFactory.getTranlationMatrix(new Coords3d(10, 0, 0));
+		TransformationMatrix scale = TransformationFactory.getScaleMatrix(2, 3, -1);
+		
+		TransformationMatrix testSubject = move.multiply(scale);
+		
+		assertEquals(new Coords3d(12, 3, -1), testSubject.transform(new Coords3d(1, 1, 1)));
+		assertTrue(testSubject.isMirror());
+	}
+	
+	@Test
+	public void transformAllShouldGiveTheSameResultAsTheSingleTransformations() {
+		TransformationMatrix testSubject = TransformationFactory.getRotationAndTranslationMatrix(
+				new Angles3d(10, 20, 30), new Coords3d(5, -3, 7));
+		double[] coords = {1, 2, 3, -4, 5, -6, 7, 8, 9};
+		
+		testSubject.transformAll(coords, 3, 2);
+		
+		assertEquals(new Coords3d(1, 2, 3), new Coords3d(coords[0], coords[1], coords[2]));
+		assertEquals(testSubject.transform(new Coords3d(-4, 5, -6)), new Coords3d(coords[3], coords[4], coords[5]));
+		assertEquals(testSubject.transform(new Coords3d(7, 8, 9)), new Coords3d(coords[6], coords[7], coords[8]));
+	}
+	
+	@Test(expected = IllegalValueException.class)
+	public void transformAllShouldThrowExceptionIfTheArrayIsNotPacked() {
+		TransformationFactory.getIdentityMatrix().transformAll(new double[4]);
+	}
 }
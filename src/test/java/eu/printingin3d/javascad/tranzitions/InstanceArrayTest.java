@@ -0,0 +1,100 @@
+package eu.printingin3d.javascad.tranzitions;
+
+import static eu.printingin3d.javascad.testutils.AssertEx.assertDoubleEquals;
+import static eu.printingin3d.javascad.testutils.AssertEx.assertEqualsWithoutWhiteSpaces;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import eu.printingin3d.javascad.context.IColorGenerationContext;
+import eu.printingin3d.javascad.coords.Angles3d;
+import eu.printingin3d.javascad.coords.Boundaries3d;
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.models.Abstract3dModel;
+import eu.printingin3d.javascad.models.Atomic3dModel;
+import eu.printingin3d.javascad.models.Cube;
+import eu.printingin3d.javascad.models.SCAD;
+import eu.printingin3d.javascad.testutils.Test3dModel;
+import eu.printingin3d.javascad.vrl.CSG;
+import eu.printingin3d.javascad.vrl.FacetGenerationContext;
+
+public class InstanceArrayTest {
+	private static final List<Coords3d> MOVES = Arrays.asList(
+			new Coords3d(0, 0, 0), new Coords3d(30, 0, 0), new Coords3d(5, 5, 0), new Coords3d(0, 30, 0));
+
+	private static final class CountingCube extends Atomic3dModel {
+		private final AtomicInteger counter;
+
+		private CountingCube(AtomicInteger counter) {
+			this.counter = counter;
+		}
+
+		@Override
+		protected SCAD innerToScad(IColorGenerationContext context) {
+			return new SCAD("(cube)");
+		}
+
+		@Override
+		protected Boundaries3d getModelBoundaries() {
+			return new Cube(10).getBoundaries();
+		}
+
+		@Override
+		protected Abstract3dModel innerCloneModel() {
+			return new CountingCube(counter);
+		}
+
+		@Override
+		protected CSG toInnerCSG(FacetGenerationContext context) {
+			counter.incrementAndGet();
+			return new Cube(10).toCSG(context);
+		}
+	}
+
+	private static double volume(CSG csg) {
+		return csg.toFacets().stream().mapToDouble(f -> {
+			List<Coords3d> p = f.getTriangle().getPoints();
+			return p.get(0).dot(p.get(1).cross(p.get(2))) / 6.0;
+		}).sum();
+	}
+
+	@Test
+	public void scadShouldBeTheSameAsTheUnionOfTheCopies() {
+		Abstract3dModel model = new Test3dModel("(model)").moves(MOVES.subList(0, 2));
+		assertEqualsWithoutWhiteSpaces("union(){(model)translate([30,0,0])(model)}", model);
+	}
+
+	@Test
+	public void prototypeShouldBeRenderedOnlyOnce() {
+		AtomicInteger counter = new AtomicInteger();
+		Abstract3dModel model = new CountingCube(counter).moves(MOVES);
+
+		CSG csg = model.toCSG();
+
+		assertEquals(1, counter.get());
+		assertDoubleEquals(4*1000.0 - 5.0*5.0*10.0, volume(csg));
+	}
+
+	@Test
+	public void resultShouldBeTheSameAsTheUnionOfTheCopies() {
+		Abstract3dModel prototype = new Cube(10).move(new Coords3d(3, 0, 0)).rotate(new Angles3d(0, 0, 30));
+		List<Angles3d> angles = Arrays.asList(new Angles3d(0, 0, 0), new Angles3d(0, 0, 90), new Angles3d(90, 0, 0));
+		Abstract3dModel union = new Union(prototype.rotate(angles.get(0)), prototype.rotate(angles.get(1)),
+				prototype.rotate(angles.get(2)));
+
+		assertDoubleEquals(volume(union.toCSG()), volume(prototype.rotates(angles).toCSG()));
+	}
+
+	@Test
+	public void boundariesShouldBeTheSameAsTheUnionOfTheCopies() {
+		Boundaries3d boundaries = new Cube(10).moves(MOVES).getBoundaries();
+
+		assertDoubleEquals(-5.0, boundaries.getX().getMin());
+		assertDoubleEquals(35.0, boundaries.getX().getMax());
+		assertDoubleEquals(35.0, boundaries.getY().getMax());
+	}
+}
@@ -0,0 +1,124 @@
+package eu.printingin3d.javascad.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import eu.printingin3d.javascad.annotations.ModelPart;
+import eu.printingin3d.javascad.basic.Radius;
+import eu.printingin3d.javascad.coords2d.Dims2d;
+import eu.printingin3d.javascad.exceptions.BatchExportException;
+import eu.printingin3d.javascad.exceptions.IllegalValueException;
+import eu.printingin3d.javascad.exceptions.NotImplementedException;
+import eu.printingin3d.javascad.models.Abstract3dModel;
+import eu.printingin3d.javascad.models.Cube;
+import eu.printingin3d.javascad.models.Cylinder;
+import eu.printingin3d.javascad.models.Ring;
+import eu.printingin3d.javascad.models2d.Square;
+
+public class SaveMeshFilesTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final class TestModelProvider extends AnnotatedModelProvider {
+		@ModelPart
+		public Abstract3dModel cube() {
+			return new Cube(10);
+		}
+
+		@ModelPart("parts/cylinder.scad")
+		public Abstract3dModel cylinder() {
+			return new Cylinder(10, Radius.fromRadius(5));
+		}
+
+		@Override
+		public Abstract3dModel getAssembledModel() {
+			// we don't use this method in this test
+			return null;
+		}
+	}
+
+	@Test
+	public void providerShouldBeSavedWithTheGivenExtension() throws IOException {
+		List<File> finished = new ArrayList<>();
+		new SaveMeshFiles(folder.getRoot())
+			.addModelProvider(new TestModelProvider(), "stl")
+			.saveMeshFiles(2, (file, error, finishedFiles, allFiles) -> {
+				assertEquals(null, error);
+				assertEquals(2, allFiles);
+				finished.add(file);
+				assertEquals(finished.size(), finishedFiles);
+			});
+
+		File cube = new File(folder.getRoot(), "cube.stl");
+		File cylinder = new File(folder.getRoot(), "parts/cylinder.stl");
+		assertEquals(84+50*12, cube.length());
+		assertTrue(cylinder.length()>84);
+		assertEquals(2, finished.size());
+		assertTrue(finished.containsAll(Arrays.asList(cube.getAbsoluteFile(), cylinder.getAbsoluteFile())));
+	}
+
+	@Test
+	public void serialAndConcurrentSaveShouldWriteTheSameFiles() throws IOException {
+		File serial = folder.newFolder();
+		File concurrent = folder.newFolder();
+		for (int i=0;i<8;i++) {
+			new SaveMeshFiles(serial).addModel("cube"+i+".ply", new Cube(i+1)).saveMeshFiles();
+		}
+		SaveMeshFiles testSubject = new SaveMeshFiles(concurrent);
+		for (int i=0;i<8;i++) {
+			testSubject.addModel("cube"+i+".ply", new Cube(i+1));
+		}
+
+		testSubject.saveMeshFiles(3, null);
+
+		for (int i=0;i<8;i++) {
+			assertEquals(SaveScadFilesTest.readTheWholeFile(new File(serial, "cube"+i+".ply")),
+					SaveScadFilesTest.readTheWholeFile(new File(concurrent, "cube"+i+".ply")));
+		}
+	}
+
+	@Test
+	public void failedModelsShouldBeCollected() throws IOException {
+		Ring ring = new Ring(Radius.fromRadius(10), new Square(new Dims2d(2, 2)));
+		SaveMeshFiles testSubject = new SaveMeshFiles(folder.getRoot())
+			.addModel("ring1.stl", ring)
+			.addModel("cube.stl", new Cube(10))
+			.addModel("ring2.stl", ring);
+
+		try {
+			testSubject.saveMeshFiles(2, null);
+			fail("The rings cannot be rendered");
+		}
+		catch (BatchExportException e) {
+			assertEquals(Arrays.asList(new File(folder.getRoot(), "ring1.stl").getAbsoluteFile(),
+					new File(folder.getRoot(), "ring2.stl").getAbsoluteFile()),
+					new ArrayList<>(e.getFailures().keySet()));
+			assertEquals(NotImplementedException.class, e.getCause().getClass());
+			assertEquals(1, e.getSuppressed().length);
+		}
+		assertTrue(new File(folder.getRoot(), "cube.stl").exists());
+		assertFalse(new File(folder.getRoot(), "ring1.stl").exists());
+	}
+
+	@Test(expected = IllegalValueException.class)
+	public void unknownExtensionShouldBeRejected() {
+		new SaveMeshFiles(folder.getRoot()).addModelProvider(new TestModelProvider(), "obj");
+	}
+
+	@Test(expected = IllegalValueException.class)
+	public void numberOfThreadsShouldBePositive() throws IOException {
+		new SaveMeshFiles(folder.getRoot()).saveMeshFiles(0, null);
+	}
+}
@@ -7,9 +7,11 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -17,6 +19,7 @@ import org.junit.Test;
 
 import eu.printingin3d.javascad.context.ColorHandlingContext;
 import eu.printingin3d.javascad.context.IColorGenerationContext;
+import eu.printingin3d.javascad.exceptions.BatchExportException;
 import eu.printingin3d.javascad.exceptions.IllegalValueException;
 import eu.printingin3d.javascad.models.ConstsTest;
 import eu.printingin3d.javascad.models.IModel;
@@ -161,4 +164,54 @@ public class SaveScadFilesTest {
 		Assert.assertTrue(fileName.exists());
 		assertEqualsWithoutWhiteSpaces("", readTheWholeFile(fileName));
 	}
+	
+	@Test
+	public void shouldSaveTheFilesConcurrentlyAndCollectTheFailures() throws IOException {
+		final String model = "(model)";
+		
+		SaveScadFiles saveScadFiles = new SaveScadFiles(ROOT);
+		for (int i=0;i<10;i++) {
+			saveScadFiles.addModels("concurrent/fileName"+i+".scad", Arrays.<IModel>asList(new Test3dModel(model)));
+		}
+		final File failing = new File(ROOT.getAbsolutePath()+"/concurrent/failing.scad");
+		saveScadFiles.addScadFile(new IScadFile() {
+			@Override
+			public Collection<IModel> getModels() {
+				throw new IllegalValueException("failing model");
+			}
+			
+			@Override
+			public File getFile(File root) {
+				return failing;
+			}
+
+			@Override
+			public IColorGenerationContext getContext() {
+				return ColorHandlingContext.DEFAULT;
+			}
+		});
+		
+		final List<File> failed = new ArrayList<>();
+		final int[] finished = {0};
+		try {
+			saveScadFiles.saveScadFiles(4, (file, error, finishedFiles, allFiles) -> {
+				finished[0]++;
+				Assert.assertEquals(finished[0], finishedFiles);
+				Assert.assertEquals(11, allFiles);
+				if (error!=null) {
+					failed.add(file);
+				}
+			});
+			Assert.fail("The failing file should not be saved");
+		}
+		catch (BatchExportException e) {
+			Assert.assertEquals(Collections.singleton(failing), e.getFailures().keySet());
+		}
+		Assert.assertEquals(11, finished[0]);
+		Assert.assertEquals(Arrays.asList(failing), failed);
+		for (int i=0;i<10;i++) {
+			File fileName = new File(ROOT.getAbsolutePath()+"/concurrent/fileName"+i+".scad");
+			assertEqualsWithoutWhiteSpaces(model, readTheWholeFile(fileName));
+		}
+	}
 }
@@ -0,0 +1,111 @@
+package eu.printingin3d.javascad.vrl;
+
+import static eu.printingin3d.javascad.testutils.AssertEx.assertDoubleEquals;
+import static eu.printingin3d.javascad.vrl.CSGTest.volume;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import eu.printingin3d.javascad.coords.Angles3d;
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.coords.Dims3d;
+import eu.printingin3d.javascad.models.Abstract3dModel;
+import eu.printingin3d.javascad.models.Cube;
+import eu.printingin3d.javascad.models.Cylinder;
+import eu.printingin3d.javascad.models.Sphere;
+import eu.printingin3d.javascad.tranzitions.Difference;
+
+/**
+ * The test suite shared by the boolean engines: every engine should produce the same volumes.
+ */
+public abstract class AbstractBooleanEngineTest {
+	private static final CSG CUBE = new Cube(10).toCSG();
+	private static final CSG CYLINDER = new Cylinder(20, 3).toCSG();
+	private static final CSG SPHERE = new Sphere(6.5).toCSG();
+
+	protected abstract BooleanEngine engine();
+
+	private CsgOptions options() {
+		return CsgOptions.DEFAULT.withEngine(engine());
+	}
+
+	private static CSG cube(double size, Coords3d move) {
+		return new Cube(size).move(move).toCSG();
+	}
+
+	private static void assertClosed(CSG csg) {
+		assertTrue(csg.toIndexedMesh().isWatertight());
+	}
+
+	@Test
+	public void overlappingCubesInGeneralPosition() {
+		CSG other = cube(10, new Coords3d(5, 3, 2));
+
+		assertDoubleEquals(2000.0-280.0, volume(CUBE.union(other, options())));
+		assertDoubleEquals(1000.0-280.0, volume(CUBE.difference(other, options())));
+		assertDoubleEquals(280.0, volume(CUBE.intersect(other, options())));
+		assertClosed(CUBE.union(other, options()));
+		assertClosed(CUBE.difference(other, options()));
+	}
+
+	@Test
+	public void overlappingCubesWithCoplanarFaces() {
+		CSG other = cube(10, new Coords3d(5, 3, 0));
+
+		assertDoubleEquals(2000.0-350.0, volume(CUBE.union(other, options())));
+		assertDoubleEquals(1000.0-350.0, volume(CUBE.difference(other, options())));
+		assertDoubleEquals(350.0, volume(CUBE.intersect(other, options())));
+		assertClosed(CUBE.union(other, options()));
+		assertClosed(CUBE.intersect(other, options()));
+	}
+
+	@Test
+	public void touchingCubesShouldBeMerged() {
+		CSG other = cube(10, new Coords3d(10, 0, 0));
+
+		assertDoubleEquals(2000.0, volume(CUBE.union(other, options())));
+		assertDoubleEquals(1000.0, volume(CUBE.difference(other, options())));
+		assertDoubleEquals(0.0, volume(CUBE.intersect(other, options())));
+	}
+
+	@Test
+	public void flushHoleShouldGoThrough() {
+		CSG hole = new Cube(new Dims3d(4, 4, 10)).toCSG();
+
+		assertDoubleEquals(1000.0-160.0, volume(CUBE.difference(hole, options())));
+		assertClosed(CUBE.difference(hole, options()));
+	}
+
+	@Test
+	public void nestedOperandsShouldNotIntersect() {
+		CSG inner = new Cube(2).toCSG();
+
+		assertDoubleEquals(1000.0, volume(CUBE.union(inner, options())));
+		assertDoubleEquals(1000.0-8.0, volume(CUBE.difference(inner, options())));
+		assertDoubleEquals(8.0, volume(CUBE.intersect(inner, options())));
+		assertEquals(0, CUBE.difference(CUBE, options()).getPolygons().size());
+	}
+
+	@Test
+	public void curvedOperandsShouldGiveTheSameVolumeAsTheReference() {
+		CSG rotated = new Cube(8).rotate(new Angles3d(10, 20, 30)).toCSG();
+		CsgOptions reference = CsgOptions.DEFAULT;
+
+		assertDoubleEquals(volume(CUBE.difference(CYLINDER, reference)), volume(CUBE.difference(CYLINDER, options())));
+		assertDoubleEquals(volume(CUBE.union(CYLINDER, reference)), volume(CUBE.union(CYLINDER, options())));
+		assertDoubleEquals(volume(CUBE.intersect(SPHERE, reference)), volume(CUBE.intersect(SPHERE, options())));
+		assertDoubleEquals(volume(SPHERE.difference(rotated, reference)), volume(SPHERE.difference(rotated, options())));
+		assertClosed(CUBE.difference(CYLINDER, options()));
+		assertClosed(SPHERE.difference(rotated, options()));
+	}
+
+	@Test
+	public void engineShouldBeSelectedForTheRender() {
+		Abstract3dModel model = new Difference(new Cube(10), new Cylinder(20, 3));
+		FacetGenerationContext context = new FacetGenerationContext(null, null, 0);
+		context.setCsgOptions(options());
+
+		assertDoubleEquals(volume(model.toCSG()), volume(model.toCSG(context)));
+	}
+}
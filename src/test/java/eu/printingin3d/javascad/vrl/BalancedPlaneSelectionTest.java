@@ -0,0 +1,49 @@
+package eu.printingin3d.javascad.vrl;
+
+import static org.junit.Assert.assertSame;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.exceptions.IllegalValueException;
+
+public class BalancedPlaneSelectionTest {
+	private static Polygon square(double x) {
+		return Polygon.fromPolygons(Arrays.asList(
+				new Coords3d(x, 0, 0), new Coords3d(x, 1, 0), new Coords3d(x, 1, 1), new Coords3d(x, 0, 1)), 
+				Color.BLACK);
+	}
+
+	@Test(expected = IllegalValueException.class)
+	public void shouldRefuseZeroCandidates() {
+		new BalancedPlaneSelection(0, 10, 1.0);
+	}
+
+	@Test(expected = IllegalValueException.class)
+	public void shouldRefuseZeroSampleSize() {
+		new BalancedPlaneSelection(10, 0, 1.0);
+	}
+
+	@Test(expected = IllegalValueException.class)
+	public void shouldRefuseNegativeSplitWeight() {
+		new BalancedPlaneSelection(10, 10, -1.0);
+	}
+
+	@Test
+	public void shouldSelectTheMiddlePlane() {
+		List<Polygon> polygons = Arrays.asList(square(0), square(1), square(2), square(3), square(4));
+		
+		assertSame(polygons.get(2), new BalancedPlaneSelection().selectPlane(polygons));
+	}
+
+	@Test
+	public void firstPolygonStrategyShouldSelectTheFirstPolygon() {
+		List<Polygon> polygons = Arrays.asList(square(0), square(1), square(2));
+		
+		assertSame(polygons.get(0), PlaneSelectionStrategy.FIRST_POLYGON.selectPlane(polygons));
+	}
+}
@@ -0,0 +1,248 @@
+package eu.printingin3d.javascad.vrl;
+
+import static eu.printingin3d.javascad.testutils.AssertEx.assertDoubleEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import eu.printingin3d.javascad.coords.Angles3d;
+import eu.printingin3d.javascad.coords.Boundaries3d;
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.models.Cube;
+import eu.printingin3d.javascad.tranform.TransformationFactory;
+import eu.printingin3d.javascad.tranform.TransformationMatrix;
+import eu.printingin3d.javascad.tranzitions.Direction;
+
+public class CSGTest {
+	private static final CsgOptions WITHOUT_PARTITIONING = CsgOptions.DEFAULT.withBoundsPartitioning(false);
+
+	private static final CSG CUBE = new Cube(10).toCSG();
+	private static final CSG HOLE = new Cube(2).move(new Coords3d(4, 4, 0)).toCSG();
+	private static final CSG FAR_AWAY = new Cube(10).move(new Coords3d(100, 0, 0)).toCSG();
+	private static final CSG EMPTY = CSG.fromPolygons();
+
+	static List<List<Coords3d>> vertices(CSG csg) {
+		List<List<Coords3d>> result = new ArrayList<>();
+		for (Polygon p : csg.getPolygons()) {
+			result.add(p.getVertices());
+		}
+		return result;
+	}
+
+	static double volume(CSG csg) {
+		double volume = 0.0;
+		for (Facet f : csg.toFacets()) {
+			List<Coords3d> p = f.getTriangle().getPoints();
+			volume += p.get(0).dot(p.get(1).cross(p.get(2))) / 6.0;
+		}
+		return volume;
+	}
+
+	@Test
+	public void boundariesShouldContainAllThePoints() {
+		Boundaries3d b = HOLE.getBoundaries();
+
+		assertDoubleEquals(3.0, b.getX().getMin());
+		assertDoubleEquals(5.0, b.getX().getMax());
+		assertDoubleEquals(3.0, b.getY().getMin());
+		assertDoubleEquals(5.0, b.getY().getMax());
+		assertDoubleEquals(-1.0, b.getZ().getMin());
+		assertDoubleEquals(1.0, b.getZ().getMax());
+	}
+
+	@Test
+	public void matrixShouldTransformTheMeshLikeThePolygons() {
+		CSG csg = CUBE.difference(HOLE);
+		TransformationMatrix move = TransformationFactory.getRotationAndTranslationMatrix(
+				new Angles3d(10, 20, 30), new Coords3d(5, -3, 7));
+		
+		for (TransformationMatrix matrix : Arrays.asList(move, 
+				move.multiply(TransformationFactory.getMirrorMatrix(Direction.X)))) {
+			List<Polygon> transformed = csg.transformed(matrix).getPolygons();
+			assertEquals(csg.getPolygons().size(), transformed.size());
+			for (int i = 0; i<transformed.size(); i++) {
+				Polygon expected = csg.getPolygons().get(i).transformed(matrix);
+				assertEquals(expected.getVertices(), transformed.get(i).getVertices());
+				assertEquals(expected.getNormal(), transformed.get(i).getNormal());
+				assertDoubleEquals(expected.getDist(), transformed.get(i).getDist());
+			}
+		}
+	}
+
+	@Test
+	public void unionOfDisjointObjectsShouldConcatenateThePolygons() {
+		CSG union = CUBE.union(FAR_AWAY);
+
+		assertEquals(CUBE.getPolygons().size() + FAR_AWAY.getPolygons().size(), union.getPolygons().size());
+		assertDoubleEquals(2000.0, volume(union));
+	}
+
+	@Test
+	public void differenceOfDisjointObjectsShouldKeepTheFirstObject() {
+		assertEquals(vertices(CUBE), vertices(CUBE.difference(FAR_AWAY)));
+	}
+
+	@Test
+	public void intersectionOfDisjointObjectsShouldBeEmpty() {
+		assertTrue(CUBE.intersect(FAR_AWAY).getPolygons().isEmpty());
+	}
+
+	@Test
+	public void operationsWithEmptyObjectShouldWork() {
+		assertEquals(vertices(CUBE), vertices(CUBE.union(EMPTY)));
+		assertEquals(vertices(CUBE), vertices(EMPTY.union(CUBE)));
+		assertEquals(vertices(CUBE), vertices(CUBE.difference(EMPTY)));
+		assertTrue(EMPTY.difference(CUBE).getPolygons().isEmpty());
+		assertTrue(CUBE.intersect(EMPTY).getPolygons().isEmpty());
+	}
+
+	@Test
+	public void differenceShouldGiveTheSameVolumeWithAndWithoutPartitioning() {
+		assertDoubleEquals(1000.0 - 8.0, volume(CUBE.difference(HOLE)));
+		assertDoubleEquals(volume(CUBE.difference(HOLE, WITHOUT_PARTITIONING)), volume(CUBE.difference(HOLE)));
+	}
+
+	@Test
+	public void differenceOfAnInnerCavityShouldBeCorrect() {
+		CSG cavity = new Cube(2).toCSG();
+
+		assertDoubleEquals(1000.0 - 8.0, volume(CUBE.difference(cavity)));
+	}
+
+	@Test
+	public void partialOverlapShouldGiveTheSameVolumeWithAndWithoutPartitioning() {
+		CSG other = new Cube(10).move(new Coords3d(7, 6, 5)).toCSG();
+
+		assertDoubleEquals(volume(CUBE.union(other, WITHOUT_PARTITIONING)), volume(CUBE.union(other)));
+		assertDoubleEquals(volume(CUBE.difference(other, WITHOUT_PARTITIONING)), volume(CUBE.difference(other)));
+		assertDoubleEquals(volume(CUBE.intersect(other, WITHOUT_PARTITIONING)), volume(CUBE.intersect(other)));
+		assertDoubleEquals(3.0 * 4.0 * 5.0, volume(CUBE.intersect(other)));
+	}
+
+	@Test
+	public void touchingObjectsShouldBeMerged() {
+		CSG other = new Cube(10).move(new Coords3d(10, 0, 0)).toCSG();
+
+		assertDoubleEquals(2000.0, volume(CUBE.union(other)));
+	}
+
+	@Test
+	public void polygonsOutsideTheOverlapShouldBeKeptUntouched() {
+		CSG result = CUBE.union(new Cube(2).move(new Coords3d(5, 5, 5)).toCSG());
+
+		List<List<Coords3d>> resultVertices = vertices(result);
+		int untouched = 0;
+		for (Polygon p : CUBE.getPolygons()) {
+			if (resultVertices.contains(p.getVertices())) {
+				untouched++;
+			}
+		}
+		assertEquals(3, untouched);
+		assertDoubleEquals(1000.0 + 8.0 - 1.0, volume(result));
+	}
+
+	@Test
+	public void unionAllShouldConcatenateTheDisjointGroups() {
+		CSG other = new Cube(10).move(new Coords3d(7, 6, 5)).toCSG();
+		CSG union = CSG.unionAll(Arrays.asList(CUBE, FAR_AWAY, other), CsgOptions.DEFAULT);
+
+		assertDoubleEquals(volume(CUBE.union(other)) + 1000.0, volume(union));
+		assertEquals(union.getPolygons().size(), 
+				CUBE.union(other).getPolygons().size() + FAR_AWAY.getPolygons().size());
+	}
+
+	@Test
+	public void unionAllShouldGiveTheSameResultAsTheSequentialFold() {
+		List<CSG> csgs = Arrays.asList(CUBE,
+				new Cube(10).move(new Coords3d(5, 0, 0)).toCSG(),
+				new Cube(10).move(new Coords3d(10, 5, 0)).toCSG(),
+				new Cube(10).move(new Coords3d(15, 5, 5)).toCSG(),
+				HOLE);
+		CSG sequential = csgs.get(0);
+		for (CSG csg : csgs.subList(1, csgs.size())) {
+			sequential = sequential.union(csg);
+		}
+
+		assertDoubleEquals(volume(sequential), volume(CSG.unionAll(csgs, CsgOptions.DEFAULT)));
+		assertDoubleEquals(volume(sequential), volume(CSG.unionAll(csgs,
+				CsgOptions.DEFAULT.withParallel(true).withParallelThreshold(0))));
+	}
+
+	@Test
+	public void unionAllShouldSkipTheEmptyObjects() {
+		assertEquals(vertices(CUBE), vertices(CSG.unionAll(Arrays.asList(EMPTY, CUBE, EMPTY), CsgOptions.DEFAULT)
+				));
+		assertTrue(CSG.unionAll(Arrays.<CSG>asList(), CsgOptions.DEFAULT).getPolygons().isEmpty());
+	}
+
+	@Test
+	public void differenceAllShouldGiveTheSameResultAsTheSequentialFold() {
+		List<CSG> holes = new ArrayList<>();
+		for (int i = 0; i<4; i++) {
+			for (int j = 0; j<4; j++) {
+				holes.add(new Cube(1).move(new Coords3d(i*2.0-3.0, j*2.0-3.0, 0)).toCSG());
+			}
+		}
+		holes.add(new Cube(3).move(new Coords3d(-3, -3, 0)).toCSG());
+		holes.add(FAR_AWAY);
+		CSG sequential = CUBE;
+		for (CSG hole : holes) {
+			sequential = sequential.difference(hole);
+		}
+
+		assertDoubleEquals(volume(sequential), volume(CUBE.differenceAll(holes, CsgOptions.DEFAULT)));
+		assertDoubleEquals(volume(sequential), volume(CUBE.differenceAll(holes, WITHOUT_PARTITIONING)));
+	}
+
+	@Test
+	public void operandTouchingTheBorderOfTheCommonRegionShouldBeClassifiedCorrectly() {
+		CSG withHole = CUBE.difference(new Cube(1).move(new Coords3d(-1, -3, 0)).toCSG());
+		CSG touching = new Cube(3).move(new Coords3d(-3, -3, 0)).toCSG();
+
+		assertDoubleEquals(1000.0 - 1.0 - 27.0, volume(withHole.difference(touching)));
+		assertDoubleEquals(1000.0 - 1.0 - 27.0, volume(withHole.difference(touching, WITHOUT_PARTITIONING)));
+	}
+
+	@Test
+	public void differenceAllShouldKeepTheBaseIfNothingTouchesIt() {
+		assertEquals(vertices(CUBE), vertices(CUBE.differenceAll(Arrays.asList(EMPTY, FAR_AWAY), 
+				CsgOptions.DEFAULT)));
+		assertTrue(EMPTY.differenceAll(Arrays.asList(CUBE), CsgOptions.DEFAULT).getPolygons().isEmpty());
+	}
+
+	@Test
+	public void intersectAllShouldBeEmptyIfTheBoundariesAreSeparated() {
+		CSG other = new Cube(10).move(new Coords3d(7, 6, 5)).toCSG();
+
+		assertTrue(CSG.intersectAll(Arrays.asList(CUBE, other, FAR_AWAY), CsgOptions.DEFAULT)
+				.getPolygons().isEmpty());
+		assertTrue(CSG.intersectAll(Arrays.asList(CUBE, EMPTY), CsgOptions.DEFAULT).getPolygons().isEmpty());
+	}
+
+	@Test
+	public void intersectAllShouldCalculateTheCommonPart() {
+		CSG other = new Cube(10).move(new Coords3d(7, 6, 5)).toCSG();
+		CSG third = new Cube(10).move(new Coords3d(6, 0, 0)).toCSG();
+
+		assertDoubleEquals(3.0 * 4.0 * 5.0,
+				volume(CSG.intersectAll(Arrays.asList(CUBE, other, third), CsgOptions.DEFAULT)));
+	}
+
+	@Test
+	public void robustModeShouldWorkFarFromTheOrigin() {
+		CsgOptions robust = CsgOptions.DEFAULT.withRobust(true);
+		Coords3d far = new Coords3d(1e6, 1e6, 1e6);
+		CSG cube = new Cube(10).move(far).toCSG();
+		CSG rotated = new Cube(8).rotate(new Angles3d(10, 40, 5)).move(far.add(new Coords3d(4, 3, 2))).toCSG();
+		CSG rotatedAtOrigin = new Cube(8).rotate(new Angles3d(10, 40, 5)).move(new Coords3d(4, 3, 2)).toCSG();
+		
+		assertDoubleEquals(volume(CUBE.union(rotatedAtOrigin)), volume(CUBE.union(rotatedAtOrigin, robust)));
+		assertEquals(CUBE.difference(rotatedAtOrigin, robust).getPolygons().size(), 
+				cube.difference(rotated, robust).getPolygons().size());
+	}
+}
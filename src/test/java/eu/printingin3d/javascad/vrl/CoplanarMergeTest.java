@@ -0,0 +1,96 @@
+package eu.printingin3d.javascad.vrl;
+
+import static eu.printingin3d.javascad.testutils.AssertEx.assertDoubleEquals;
+import static eu.printingin3d.javascad.vrl.CSGTest.volume;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.models.Cube;
+
+public class CoplanarMergeTest {
+	private static final CSG CUBE = new Cube(10).toCSG();
+
+	private static Polygon rectangle(double x, double y, double width, double height, Color color) {
+		return Polygon.fromPolygons(Arrays.asList(
+				new Coords3d(x, y, 0), new Coords3d(x+width, y, 0),
+				new Coords3d(x+width, y+height, 0), new Coords3d(x, y+height, 0)), color);
+	}
+
+	private static Polygon square(double x, double y, Color color) {
+		return rectangle(x, y, 1, 1, color);
+	}
+
+	private static CSG slots(CsgOptions options) {
+		CSG result = CUBE;
+		for (int i = 0; i<6; i++) {
+			result = result.difference(new Cube(2).move(new Coords3d(-4 + 1.5*i, 0, 5)).toCSG(), options);
+		}
+		return result;
+	}
+
+	@Test
+	public void adjacentSquaresShouldBeMergedIntoOneRectangle() {
+		List<Polygon> merged = CoplanarMerge.merge(Arrays.asList(
+				square(0, 0, Color.RED), square(1, 0, Color.RED), square(2, 0, Color.RED)));
+
+		assertEquals(1, merged.size());
+		assertEquals(Arrays.asList(new Coords3d(3, 0, 0), new Coords3d(3, 1, 0),
+				new Coords3d(0, 1, 0), new Coords3d(0, 0, 0)), merged.get(0).getVertices());
+	}
+
+	@Test
+	public void polygonsSharingACollinearChainOfEdgesShouldBeMerged() {
+		List<Polygon> merged = CoplanarMerge.merge(Arrays.asList(
+				rectangle(0, 0, 1, 2, Color.RED), square(1, 0, Color.RED), square(1, 1, Color.RED)));
+
+		assertEquals(1, merged.size());
+		assertEquals(4, merged.get(0).getVertices().size());
+	}
+
+	@Test
+	public void concaveResultShouldNotBeCreated() {
+		List<Polygon> merged = CoplanarMerge.merge(Arrays.asList(
+				square(0, 0, Color.RED), square(1, 0, Color.RED), square(0, 1, Color.RED)));
+
+		assertEquals(2, merged.size());
+	}
+
+	@Test
+	public void polygonsWithDifferentColorShouldNotBeMerged() {
+		List<Polygon> merged = CoplanarMerge.merge(Arrays.asList(square(0, 0, Color.RED), square(1, 0, Color.BLUE)));
+
+		assertEquals(2, merged.size());
+	}
+
+	@Test
+	public void mergingShouldKeepTheSolidAndReportTheCounts() {
+		BspStatistics statistics = new BspStatistics();
+		CSG difference = slots(CsgOptions.DEFAULT);
+		CSG merged = difference.mergeCoplanarPolygons(CsgOptions.DEFAULT.withStatistics(statistics));
+
+		assertTrue(merged.getPolygons().size() < difference.getPolygons().size());
+		assertDoubleEquals(volume(difference), volume(merged));
+		assertEquals(difference.getPolygons().size(), statistics.getPolygonCountBeforeMerging());
+		assertEquals(merged.getPolygons().size(), statistics.getPolygonCountAfterMerging());
+	}
+
+	@Test
+	public void mergingShouldBeAppliedAsTheOptionsRequire() {
+		CsgOptions afterEach = CsgOptions.DEFAULT.withPolygonMerging(PolygonMerging.AFTER_EACH_OPERATION);
+		CsgOptions beforeExport = CsgOptions.DEFAULT.withPolygonMerging(PolygonMerging.BEFORE_EXPORT);
+		CSG difference = slots(CsgOptions.DEFAULT);
+
+		assertTrue(slots(afterEach).getPolygons().size() < difference.getPolygons().size());
+		assertDoubleEquals(volume(difference), volume(slots(afterEach)));
+		assertEquals(difference.getPolygons().size(), slots(beforeExport).getPolygons().size());
+		assertTrue(difference.toFacets(beforeExport).size() < difference.toFacets().size());
+		assertEquals(difference.toFacets().size(), difference.toFacets(CsgOptions.DEFAULT).size());
+	}
+}
@@ -0,0 +1,8 @@
+package eu.printingin3d.javascad.vrl;
+
+public class CorefinementEngineTest extends AbstractBooleanEngineTest {
+	@Override
+	protected BooleanEngine engine() {
+		return BooleanEngine.COREFINEMENT;
+	}
+}
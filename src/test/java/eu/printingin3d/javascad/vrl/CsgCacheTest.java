@@ -0,0 +1,163 @@
+package eu.printingin3d.javascad.vrl;
+
+import static eu.printingin3d.javascad.testutils.AssertEx.assertDoubleEquals;
+import static eu.printingin3d.javascad.vrl.CSGTest.vertices;
+import static eu.printingin3d.javascad.vrl.CSGTest.volume;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import eu.printingin3d.javascad.context.ColorHandlingContext;
+import eu.printingin3d.javascad.context.TagColorsBuilder;
+import eu.printingin3d.javascad.coords.Angles3d;
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.coords.Dims3d;
+import eu.printingin3d.javascad.models.Abstract3dModel;
+import eu.printingin3d.javascad.models.Cube;
+import eu.printingin3d.javascad.models.Cylinder;
+import eu.printingin3d.javascad.tranzitions.Difference;
+import eu.printingin3d.javascad.tranzitions.Union;
+
+public class CsgCacheTest {
+	private static final Abstract3dModel BOSS = new Difference(new Cylinder(10, 4), new Cylinder(12, 1.5));
+
+	private static FacetGenerationContext cached(CsgCache cache) {
+		FacetGenerationContext context = new FacetGenerationContext(null, null, 0);
+		context.setCsgCache(cache);
+		return context;
+	}
+
+	private static Abstract3dModel plate() {
+		return new Cube(new Dims3d(100, 100, 2)).addModel(BOSS.moves(Arrays.asList(
+				new Coords3d(-30, -30, 5), new Coords3d(30, -30, 5), new Coords3d(-30, 30, 5),
+				new Coords3d(30, 30, 5))));
+	}
+
+	@Test
+	public void repeatedSubtreesShouldBeRenderedOnce() {
+		CsgCache cache = new CsgCache();
+		Abstract3dModel model = plate();
+
+		CSG expected = model.toCSG();
+		CSG actual = model.toCSG(cached(cache));
+
+		assertEquals(vertices(expected), vertices(actual));
+		// the copies made by moves() are rendered from one prototype, so they don't even reach the cache
+		assertEquals(0, cache.getHitCount());
+		assertEquals(cache.size(), cache.getMissCount());
+	}
+
+	@Test
+	public void rotatedCopiesShouldGiveTheSameSolid() {
+		CsgCache cache = new CsgCache();
+		Abstract3dModel model = BOSS.rotates(Arrays.asList(
+				new Angles3d(0, 0, 0), new Angles3d(90, 0, 0), new Angles3d(0, 90, 0)));
+
+		assertDoubleEquals(volume(model.toCSG()), volume(model.toCSG(cached(cache))));
+		assertEquals(cache.size(), cache.getMissCount());
+	}
+
+	@Test
+	public void instanceArraysOfTheSameModelShouldShareThePrototype() {
+		CsgCache cache = new CsgCache();
+		Abstract3dModel model = new Union(
+				BOSS.moves(Arrays.asList(new Coords3d(-30, 0, 0), new Coords3d(30, 0, 0))),
+				BOSS.rotates(Arrays.asList(new Angles3d(90, 0, 0), new Angles3d(0, 90, 0))));
+
+		CSG expected = model.toCSG();
+		CSG actual = model.toCSG(cached(cache));
+
+		assertDoubleEquals(volume(expected), volume(actual));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(cache.size(), cache.getMissCount());
+	}
+
+	@Test
+	public void secondRenderingShouldBeServedFromTheCache() {
+		CsgCache cache = new CsgCache();
+		Abstract3dModel model = plate();
+
+		model.toCSG(cached(cache));
+		long misses = cache.getMissCount();
+		model.toCSG(cached(cache));
+
+		assertEquals(misses, cache.getMissCount());
+	}
+
+	@Test
+	public void differentResolutionShouldNotUseTheSameResult() {
+		CsgCache cache = new CsgCache();
+		FacetGenerationContext context = cached(cache);
+		CSG fine = BOSS.toCSG(context);
+		context.setFsAndFa(2.0, 12);
+
+		CSG coarse = BOSS.toCSG(context);
+
+		assertEquals(0, cache.getHitCount());
+		assertTrue(coarse.getPolygons().size() < fine.getPolygons().size());
+	}
+
+	@Test
+	public void modelsWithTheSameScadShouldNotShareTheResult() {
+		CsgCache cache = new CsgCache();
+		FacetGenerationContext context = cached(cache);
+		Abstract3dModel smaller = new Cube(9.99991);
+		Abstract3dModel bigger = new Cube(10.00009);
+		assertEquals(smaller.toScad(ColorHandlingContext.DEFAULT).getScad(), 
+				bigger.toScad(ColorHandlingContext.DEFAULT).getScad());
+
+		smaller.toCSG(context);
+		CSG actual = bigger.toCSG(context);
+
+		assertEquals(0, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+		assertEquals(vertices(bigger.toCSG()), vertices(actual));
+	}
+
+	@Test
+	public void differentTagColorsShouldNotUseTheSameResult() {
+		CsgCache cache = new CsgCache();
+		Abstract3dModel model = new Union(new Cube(10).withTag(1), new Cylinder(20, 2));
+		FacetGenerationContext red = new FacetGenerationContext(
+				new TagColorsBuilder().addTag(1, Color.RED).buildTagColors(), null, 0);
+		red.setCsgCache(cache);
+		FacetGenerationContext green = new FacetGenerationContext(
+				new TagColorsBuilder().addTag(1, Color.GREEN).buildTagColors(), null, 0);
+		green.setCsgCache(cache);
+
+		model.toCSG(red);
+		CSG actual = model.toCSG(green);
+
+		assertTrue(actual.getPolygons().stream().anyMatch(p -> Color.GREEN.equals(p.getColor())));
+		assertTrue(actual.getPolygons().stream().noneMatch(p -> Color.RED.equals(p.getColor())));
+	}
+
+	@Test
+	public void resetShouldDropTheResultsAndTheCounters() {
+		CsgCache cache = new CsgCache();
+		AtomicInteger counter = new AtomicInteger();
+		CSG csg = new Cube(10).toCSG();
+		cache.get("key", () -> {
+			counter.incrementAndGet();
+			return csg;
+		});
+		assertSame(csg, cache.get("key", () -> {
+			counter.incrementAndGet();
+			return null;
+		}));
+		assertEquals(1, cache.getHitCount());
+
+		cache.reset();
+
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getHitCount());
+		assertEquals(0, cache.getMissCount());
+		assertEquals(1, counter.get());
+	}
+}
@@ -0,0 +1,125 @@
+package eu.printingin3d.javascad.vrl;
+
+import static eu.printingin3d.javascad.testutils.AssertEx.assertDoubleEquals;
+import static eu.printingin3d.javascad.vrl.CSGTest.vertices;
+import static eu.printingin3d.javascad.vrl.CSGTest.volume;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import eu.printingin3d.javascad.coords.Angles3d;
+import eu.printingin3d.javascad.coords.Boundaries3d;
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.models.Abstract3dModel;
+import eu.printingin3d.javascad.models.Cube;
+import eu.printingin3d.javascad.models.Cylinder;
+import eu.printingin3d.javascad.models.Sphere;
+import eu.printingin3d.javascad.tranform.TransformationFactory;
+import eu.printingin3d.javascad.tranzitions.Difference;
+import eu.printingin3d.javascad.tranzitions.Direction;
+import eu.printingin3d.javascad.tranzitions.Mirror;
+import eu.printingin3d.javascad.tranzitions.Rotate;
+import eu.printingin3d.javascad.tranzitions.Scale;
+import eu.printingin3d.javascad.tranzitions.Slicer;
+import eu.printingin3d.javascad.tranzitions.Translate;
+import eu.printingin3d.javascad.tranzitions.Union;
+
+public class FacetGenerationContextTest {
+	private static FacetGenerationContext fused() {
+		FacetGenerationContext context = new FacetGenerationContext(null, null, 0);
+		context.setCsgOptions(CsgOptions.DEFAULT.withTransformFusion(true));
+		return context;
+	}
+
+	private static void assertSameAsUnfused(Abstract3dModel model) {
+		CSG expected = model.toCSG();
+		CSG actual = model.toCSG(fused());
+
+		assertDoubleEquals(volume(expected), volume(actual));
+		Boundaries3d b1 = expected.getBoundaries();
+		Boundaries3d b2 = actual.getBoundaries();
+		assertDoubleEquals(b1.getX().getMin(), b2.getX().getMin());
+		assertDoubleEquals(b1.getY().getMax(), b2.getY().getMax());
+		assertDoubleEquals(b1.getZ().getMin(), b2.getZ().getMin());
+	}
+
+	@Test
+	public void transformationChainShouldGiveTheSameVertices() {
+		Abstract3dModel model = new Translate(
+				new Rotate(
+						Mirror.mirrorX(new Scale(new Cube(5).move(new Coords3d(1, 2, 3)), new Coords3d(1, 2, 3))),
+						new Angles3d(10, 20, 30)),
+				new Coords3d(3, 2, 1)).rotate(new Angles3d(0, 0, 45)).move(new Coords3d(-5, 0, 5));
+
+		assertEquals(vertices(model.toCSG()), vertices(model.toCSG(fused())));
+	}
+
+	@Test
+	public void nestedBooleanOperationsShouldGiveTheSameSolid() {
+		Abstract3dModel part = new Difference(
+				new Union(new Cube(10), new Sphere(6).move(new Coords3d(5, 0, 0)).rotate(new Angles3d(0, 0, 30))),
+				new Cylinder(20, 2).rotate(new Angles3d(0, 90, 0)).move(new Coords3d(1, 2, 3)),
+				Mirror.mirrorZ(new Cube(4).move(new Coords3d(3, 3, 3))).rotate(new Angles3d(10, 0, 0)));
+		Abstract3dModel assembly = new Union(
+				part.move(new Coords3d(20, 0, 0)),
+				Mirror.mirrorY(part).rotate(new Angles3d(0, 30, 0)),
+				new Scale(part, new Coords3d(1, 0.5, 2)).move(new Coords3d(0, 30, 0))).rotate(new Angles3d(5, 10, 15));
+
+		assertSameAsUnfused(assembly);
+	}
+
+	@Test
+	public void modelsRenderedInTheirOwnSpaceShouldGiveTheSameSolid() {
+		Abstract3dModel model = new Slicer(new Cube(10).rotate(new Angles3d(0, 0, 30)), Direction.X, 0.25, 0.5)
+				.rotate(new Angles3d(0, 45, 0)).move(new Coords3d(1, 2, 3));
+
+		assertSameAsUnfused(model);
+	}
+
+	@Test
+	public void contextWithoutTransformationShouldTransformNothing() {
+		CSG csg = new Cube(10).toCSG();
+		FacetGenerationContext context = FacetGenerationContext.DEFAULT;
+
+		assertSame(context, context.applyTransformation(null));
+		assertSame(context, context.withoutTransformation());
+		assertSame(csg, context.transform(csg));
+	}
+
+	@Test
+	public void transformationsShouldBeComposedInTheOrderOfTheModelTree() {
+		CSG csg = new Cube(10).toCSG();
+		FacetGenerationContext context = FacetGenerationContext.DEFAULT
+				.applyTransformation(TransformationFactory.getTranlationMatrix(new Coords3d(10, 0, 0)))
+				.applyTransformation(TransformationFactory.getRotationMatrix(new Angles3d(0, 0, 90)));
+
+		CSG expected = csg.transformed(TransformationFactory.getRotationMatrix(new Angles3d(0, 0, 90)))
+				.transformed(TransformationFactory.getTranlationMatrix(new Coords3d(10, 0, 0)));
+		assertEquals(vertices(expected), vertices(context.transform(csg)));
+		assertSame(csg, context.withoutTransformation().transform(csg));
+	}
+
+	@Test
+	public void sessionShouldBeReturnedOnlyForItsModelType() {
+		RenderSession<Cube> session = new RenderSession<Cube>() {
+			@Override
+			public Class<Cube> getModelType() {
+				return Cube.class;
+			}
+
+			@Override
+			public CSG render(Cube model, FacetGenerationContext context, Supplier<CSG> rendering) {
+				return rendering.get();
+			}
+		};
+		FacetGenerationContext context = new FacetGenerationContext(null, null, 0).withRenderSession(session);
+
+		assertSame(session, context.getRenderSession(Cube.class));
+		assertNull(context.getRenderSession(Abstract3dModel.class));
+		assertNull(new FacetGenerationContext(null, null, 0).getRenderSession(Cube.class));
+	}
+}
@@ -0,0 +1,140 @@
+package eu.printingin3d.javascad.vrl;
+
+import static eu.printingin3d.javascad.testutils.AssertEx.assertDoubleEquals;
+import static eu.printingin3d.javascad.vrl.CSGTest.vertices;
+import static eu.printingin3d.javascad.vrl.CSGTest.volume;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import eu.printingin3d.javascad.coords.Angles3d;
+import eu.printingin3d.javascad.coords.Boundaries3d;
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.models.Abstract3dModel;
+import eu.printingin3d.javascad.models.Cube;
+import eu.printingin3d.javascad.models.Cylinder;
+import eu.printingin3d.javascad.models.Sphere;
+import eu.printingin3d.javascad.tranform.TransformationFactory;
+import eu.printingin3d.javascad.tranzitions.Difference;
+import eu.printingin3d.javascad.tranzitions.Intersection;
+import eu.printingin3d.javascad.tranzitions.Mirror;
+import eu.printingin3d.javascad.tranzitions.Union;
+
+public class LazyCSGTest {
+	private static final CSG CUBE = new Cube(10).toCSG();
+	private static final CSG FAR_AWAY = new Cube(10).move(new Coords3d(100, 0, 0)).toCSG();
+
+	private static LazyCSG counting(CSG csg, AtomicInteger counter) {
+		return LazyCSG.deferred(() -> {
+			counter.incrementAndGet();
+			return csg;
+		});
+	}
+
+	private static void assertSameAsEager(Abstract3dModel model) {
+		FacetGenerationContext context = FacetGenerationContext.DEFAULT;
+		assertEquals(vertices(model.toCSG(context)), vertices(model.toLazyCSG(context).evaluate()));
+	}
+
+	@Test
+	public void modelsShouldGiveTheSameResultAsTheEagerEvaluation() {
+		Abstract3dModel model = new Difference(
+				new Union(new Cube(10), new Sphere(6).move(new Coords3d(5, 0, 0)).rotate(new Angles3d(0, 0, 30))),
+				new Cylinder(20, 2).rotate(new Angles3d(0, 90, 0)).move(new Coords3d(1, 2, 3)),
+				new Cube(3).move(new Coords3d(100, 0, 0)),
+				Mirror.mirrorZ(new Cube(4).move(new Coords3d(3, 3, 3))).rotate(new Angles3d(10, 0, 0)));
+
+		assertSameAsEager(model);
+		assertSameAsEager(new Intersection(new Cube(10), new Sphere(6).move(new Coords3d(3, 2, 1))));
+		assertSameAsEager(new Intersection(new Cube(10), new Sphere(6).move(new Coords3d(50, 2, 1))));
+		assertSameAsEager(new Cube(5).move(new Coords3d(1, 2, 3)).rotate(new Angles3d(10, 20, 30))
+				.move(new Coords3d(3, 2, 1)));
+	}
+
+	@Test
+	public void consecutiveTransformationsShouldBeFolded() {
+		AtomicInteger counter = new AtomicInteger();
+		LazyCSG lazy = counting(CUBE, counter)
+				.transformed(TransformationFactory.getRotationMatrix(new Angles3d(10, 20, 30)))
+				.transformed(TransformationFactory.getTranlationMatrix(new Coords3d(1, 2, 3)));
+
+		CSG eager = CUBE.transformed(TransformationFactory.getRotationMatrix(new Angles3d(10, 20, 30)))
+				.transformed(TransformationFactory.getTranlationMatrix(new Coords3d(1, 2, 3)));
+		assertEquals(vertices(eager), vertices(lazy.evaluate()));
+		assertEquals(1, counter.get());
+	}
+
+	@Test
+	public void boundariesShouldNotEvaluateTheOperations() {
+		LazyCSG lazy = LazyCSG.of(CUBE).union(LazyCSG.of(FAR_AWAY))
+				.transformed(TransformationFactory.getTranlationMatrix(new Coords3d(0, 0, 10)));
+
+		Boundaries3d b = lazy.getBoundaries();
+		assertDoubleEquals(-5.0, b.getX().getMin());
+		assertDoubleEquals(105.0, b.getX().getMax());
+		assertDoubleEquals(5.0, b.getZ().getMin());
+		assertDoubleEquals(15.0, b.getZ().getMax());
+	}
+
+	@Test
+	public void separatedIntersectionShouldBeEmptyWithoutEvaluatingTheOperands() {
+		AtomicInteger counter = new AtomicInteger();
+		LazyCSG union = counting(CUBE, counter).union(counting(CUBE, counter));
+		LazyCSG lazy = union.intersect(LazyCSG.of(FAR_AWAY));
+
+		assertTrue(lazy.evaluate().getPolygons().isEmpty());
+		assertEquals(2, counter.get());
+		assertTrue(LazyCSG.of(CUBE).intersect(LazyCSG.empty()).evaluate().getPolygons().isEmpty());
+	}
+
+	@Test
+	public void separatedOperandsShouldBeSkippedByTheDifference() {
+		AtomicInteger counter = new AtomicInteger();
+		LazyCSG subtracted = counting(FAR_AWAY, counter).union(counting(FAR_AWAY, counter));
+		LazyCSG lazy = LazyCSG.of(CUBE).difference(subtracted);
+
+		assertEquals(vertices(CUBE.difference(FAR_AWAY)), vertices(lazy.evaluate()));
+		assertEquals(2, counter.get());
+	}
+
+	@Test
+	public void disjointOperandWithKnownBoundariesShouldNeverBeCalculated() {
+		AtomicInteger counter = new AtomicInteger();
+		LazyCSG farAway = LazyCSG.deferred(() -> {
+			counter.incrementAndGet();
+			return FAR_AWAY;
+		}, FAR_AWAY.getBoundaries());
+
+		assertEquals(vertices(CUBE), vertices(LazyCSG.of(CUBE).difference(farAway).evaluate()));
+		assertTrue(LazyCSG.of(CUBE).intersect(farAway).evaluate().getPolygons().isEmpty());
+		assertDoubleEquals(105.0, farAway.getBoundaries().getX().getMax());
+		assertEquals(0, counter.get());
+	}
+
+	@Test
+	public void emptyOperandsShouldBeDropped() {
+		LazyCSG cube = LazyCSG.of(CUBE);
+
+		assertEquals(vertices(CUBE), vertices(LazyCSG.unionAll(
+				Arrays.asList(LazyCSG.empty(), cube, LazyCSG.empty())).evaluate()));
+		assertEquals(vertices(CUBE), vertices(cube.difference(LazyCSG.empty()).evaluate()));
+		assertTrue(LazyCSG.empty().difference(cube).evaluate().getPolygons().isEmpty());
+	}
+
+	@Test
+	public void sharedSubExpressionsShouldBeEvaluatedOnce() {
+		AtomicInteger counter = new AtomicInteger();
+		LazyCSG shared = counting(CUBE, counter).union(LazyCSG.of(new Cube(4).move(new Coords3d(5, 0, 0)).toCSG()));
+		LazyCSG lazy = shared.union(shared.transformed(
+				TransformationFactory.getTranlationMatrix(new Coords3d(3, 0, 0))));
+
+		assertDoubleEquals(volume(lazy.evaluate()), volume(lazy.evaluate()));
+		assertSame(lazy.evaluate(), lazy.evaluate());
+		assertEquals(1, counter.get());
+	}
+}
@@ -0,0 +1,261 @@
+package eu.printingin3d.javascad.vrl;
+
+import static eu.printingin3d.javascad.vrl.CSGTest.vertices;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import eu.printingin3d.javascad.context.IColorGenerationContext;
+import eu.printingin3d.javascad.context.ITagColors;
+import eu.printingin3d.javascad.context.TagColorsBuilder;
+import eu.printingin3d.javascad.coords.Boundaries3d;
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.exceptions.IllegalValueException;
+import eu.printingin3d.javascad.models.Abstract3dModel;
+import eu.printingin3d.javascad.models.Atomic3dModel;
+import eu.printingin3d.javascad.models.Cube;
+import eu.printingin3d.javascad.models.Cylinder;
+import eu.printingin3d.javascad.models.Import;
+import eu.printingin3d.javascad.models.SCAD;
+import eu.printingin3d.javascad.tranzitions.Colorize;
+import eu.printingin3d.javascad.tranzitions.Difference;
+import eu.printingin3d.javascad.tranzitions.Union;
+import eu.printingin3d.javascad.vrl.export.StlBinaryFile;
+
+public class MeshDiskCacheTest {
+	private static final Abstract3dModel MODEL = model();
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final class IdentityCube extends Atomic3dModel {
+		@Override
+		protected SCAD innerToScad(IColorGenerationContext context) {
+			return new SCAD("(cube)");
+		}
+
+		@Override
+		protected Boundaries3d getModelBoundaries() {
+			return new Cube(10).getBoundaries();
+		}
+
+		@Override
+		protected Abstract3dModel innerCloneModel() {
+			return new IdentityCube();
+		}
+
+		@Override
+		protected CSG toInnerCSG(FacetGenerationContext context) {
+			return new Cube(10).toCSG();
+		}
+	}
+
+	private static Abstract3dModel model() {
+		return new Difference(
+				new Colorize(Color.RED, new Cube(10)), new Cylinder(12, 3).move(new Coords3d(1, 2, 0)));
+	}
+
+	private static FacetGenerationContext cached(CsgCache cache, ITagColors tagColors) {
+		FacetGenerationContext context = new FacetGenerationContext(tagColors, null, 0);
+		context.setCsgCache(cache);
+		return context;
+	}
+
+	private static FacetGenerationContext cached(CsgCache cache) {
+		return cached(cache, null);
+	}
+
+	@Test
+	public void storedMeshShouldBeLoadedTheSame() throws IOException {
+		MeshDiskCache testSubject = new MeshDiskCache(folder.getRoot(), 1000000);
+		CSG csg = MODEL.toCSG();
+
+		testSubject.store("key", csg);
+		CSG loaded = testSubject.load("key");
+
+		assertEquals(vertices(csg), vertices(loaded));
+		assertEquals(csg.getPolygons().get(0).getColor(), loaded.getPolygons().get(0).getColor());
+		assertNull(testSubject.load("other key"));
+		assertEquals(0, testSubject.getErrorCount());
+	}
+
+	@Test
+	public void newCacheShouldUseTheResultsOfThePreviousRun() throws IOException {
+		CsgCache first = new CsgCache(new MeshDiskCache(folder.getRoot(), 1000000));
+		CSG expected = MODEL.toCSG(cached(first));
+
+		CsgCache second = new CsgCache(new MeshDiskCache(folder.getRoot(), 1000000));
+		CSG actual = MODEL.toCSG(cached(second));
+
+		assertEquals(vertices(expected), vertices(actual));
+		assertEquals(0, second.getMissCount());
+		assertEquals(1, second.getDiskHitCount());
+	}
+
+	@Test
+	public void modelsWithTheSameScadShouldNotShareTheFile() throws IOException {
+		CsgCache first = new CsgCache(new MeshDiskCache(folder.getRoot(), 1000000));
+		new Cube(9.99991).toCSG(cached(first));
+
+		CsgCache second = new CsgCache(new MeshDiskCache(folder.getRoot(), 1000000));
+		new Cube(10.00009).toCSG(cached(second));
+
+		assertEquals(0, second.getDiskHitCount());
+		assertEquals(2, folder.getRoot().listFiles().length);
+	}
+
+	private static void writeStl(File file, Abstract3dModel model) throws IOException {
+		try (StlBinaryFile exporter = new StlBinaryFile(new FileOutputStream(file))) {
+			exporter.writeToFile(model.toCSG().toFacets());
+		}
+	}
+
+	@Test
+	public void changedImportedFileShouldNotUseTheStoredResults() throws IOException {
+		File stl = folder.newFile("part.stl");
+		File cacheDir = folder.newFolder("cache");
+		writeStl(stl, new Cube(10));
+		CsgCache first = new CsgCache(new MeshDiskCache(cacheDir, 1000000));
+		new Union(new Import(stl), new Cylinder(20, 2)).toCSG(cached(first));
+
+		writeStl(stl, new Cube(8));
+		Abstract3dModel changed = new Union(new Import(stl), new Cylinder(20, 2));
+		CsgCache second = new CsgCache(new MeshDiskCache(cacheDir, 1000000));
+		CSG actual = changed.toCSG(cached(second));
+
+		// only the unchanged cylinder can be loaded from the disk
+		assertEquals(1, second.getDiskHitCount());
+		assertEquals(vertices(changed.toCSG()), vertices(actual));
+	}
+
+	@Test
+	public void modelBuiltAgainShouldBeLoadedInAFreshContext() throws IOException {
+		CSG expected = model().toCSG(cached(new CsgCache(new MeshDiskCache(folder.getRoot(), 1000000))));
+
+		CsgCache second = new CsgCache(new MeshDiskCache(folder.getRoot(), 1000000));
+		CSG actual = model().toCSG(cached(second));
+
+		assertEquals(vertices(expected), vertices(actual));
+		assertEquals(0, second.getMissCount());
+		assertEquals(1, second.getDiskHitCount());
+	}
+
+	@Test
+	public void modelsWithIdentityHashCodeShouldNotBeStoredOnTheDisk() throws IOException {
+		CsgCache first = new CsgCache(new MeshDiskCache(folder.getRoot(), 1000000));
+		new Union(new IdentityCube(), new Cylinder(20, 2)).toCSG(cached(first));
+		assertEquals(1, folder.getRoot().listFiles().length);
+
+		CsgCache second = new CsgCache(new MeshDiskCache(folder.getRoot(), 1000000));
+		new Union(new IdentityCube(), new Cylinder(20, 2)).toCSG(cached(second));
+
+		// only the cylinder can be loaded from the disk
+		assertEquals(1, second.getDiskHitCount());
+		assertEquals(2, second.getMissCount());
+		assertEquals(1, folder.getRoot().listFiles().length);
+	}
+
+	@Test
+	public void changedTagColorsShouldNotUseTheStoredResults() throws IOException {
+		Abstract3dModel model = new Union(new Cube(10).withTag(1), new Cylinder(20, 2).withTag(2));
+		CsgCache first = new CsgCache(new MeshDiskCache(folder.getRoot(), 1000000));
+		model.toCSG(cached(first, new TagColorsBuilder().addTag(1, Color.RED).addTag(2, Color.BLUE)
+				.buildTagColors()));
+
+		CsgCache second = new CsgCache(new MeshDiskCache(folder.getRoot(), 1000000));
+		CSG actual = model.toCSG(cached(second, new TagColorsBuilder().addTag(1, Color.GREEN)
+				.addTag(2, Color.BLUE).buildTagColors()));
+
+		// only the blue cylinder can be loaded from the disk
+		assertEquals(1, second.getDiskHitCount());
+		assertTrue(actual.getPolygons().stream().anyMatch(p -> Color.GREEN.equals(p.getColor())));
+		assertTrue(actual.getPolygons().stream().noneMatch(p -> Color.RED.equals(p.getColor())));
+	}
+
+	@Test
+	public void corruptedFileShouldBeHandledAsMiss() throws IOException {
+		MeshDiskCache testSubject = new MeshDiskCache(folder.getRoot(), 1000000);
+		testSubject.store("key", MODEL.toCSG());
+		for (File f : folder.getRoot().listFiles()) {
+			Files.write(f.toPath(), new byte[] {1, 2, 3});
+		}
+
+		assertNull(testSubject.load("key"));
+		assertEquals(1, testSubject.getErrorCount());
+		assertEquals(0, folder.getRoot().listFiles().length);
+	}
+
+	@Test
+	public void leastRecentlyUsedFilesShouldBeEvicted() throws IOException {
+		CSG csg = new Cube(10).toCSG();
+		MeshDiskCache unlimited = new MeshDiskCache(folder.newFolder(), Long.MAX_VALUE);
+		unlimited.store("size", csg);
+		long size = unlimited.getSize();
+
+		MeshDiskCache testSubject = new MeshDiskCache(folder.newFolder(), size*2);
+		testSubject.store("first", csg);
+		testSubject.store("second", csg);
+		for (File f : folder.getRoot().listFiles()) {
+			for (File g : f.listFiles()) {
+				assertTrue(g.setLastModified(g.lastModified()-10000));
+			}
+		}
+		assertNotNull(testSubject.load("first"));
+		testSubject.store("third", csg);
+
+		assertEquals(size*2, testSubject.getSize());
+		assertNotNull(testSubject.load("first"));
+		assertNull(testSubject.load("second"));
+		assertNotNull(testSubject.load("third"));
+	}
+
+	private long sizeOfTheFiles() {
+		long size = 0;
+		for (File f : folder.getRoot().listFiles()) {
+			size += f.length();
+		}
+		return size;
+	}
+
+	@Test
+	public void sizeShouldBeCountedWhenTheCacheIsOpened() throws IOException {
+		MeshDiskCache first = new MeshDiskCache(folder.getRoot(), 1000000);
+		first.store("first", MODEL.toCSG());
+		first.store("second", new Cube(10).toCSG());
+		assertEquals(sizeOfTheFiles(), first.getSize());
+
+		MeshDiskCache second = new MeshDiskCache(folder.getRoot(), 1000000);
+		assertEquals(sizeOfTheFiles(), second.getSize());
+	}
+
+	@Test
+	public void overwrittenAndDeletedFilesShouldBeCounted() throws IOException {
+		MeshDiskCache testSubject = new MeshDiskCache(folder.getRoot(), 1000000);
+		testSubject.store("first", MODEL.toCSG());
+		testSubject.store("first", new Cube(10).toCSG());
+		assertEquals(sizeOfTheFiles(), testSubject.getSize());
+
+		for (File f : folder.getRoot().listFiles()) {
+			Files.write(f.toPath(), new byte[] {1, 2, 3});
+		}
+		MeshDiskCache reopened = new MeshDiskCache(folder.getRoot(), 1000000);
+		assertNull(reopened.load("first"));
+		assertEquals(0, reopened.getSize());
+	}
+
+	@Test(expected = IllegalValueException.class)
+	public void fileShouldNotBeUsedAsDirectory() throws IOException {
+		new MeshDiskCache(folder.newFile(), 1000);
+	}
+}
@@ -0,0 +1,113 @@
+package eu.printingin3d.javascad.vrl;
+
+import static eu.printingin3d.javascad.testutils.AssertEx.assertDoubleEquals;
+import static eu.printingin3d.javascad.vrl.CSGTest.volume;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import eu.printingin3d.javascad.coords.Angles3d;
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.exceptions.IllegalValueException;
+import eu.printingin3d.javascad.models.Cube;
+import eu.printingin3d.javascad.models.Cylinder;
+import eu.printingin3d.javascad.models.Sphere;
+
+public class MeshWelderTest {
+	private static final CSG CUBE = new Cube(10).toCSG();
+
+	private static double meshVolume(IndexedMesh mesh) {
+		double volume = 0.0;
+		for (Facet f : mesh.toFacets()) {
+			List<Coords3d> p = f.getTriangle().getPoints();
+			volume += p.get(0).dot(p.get(1).cross(p.get(2))) / 6.0;
+		}
+		return volume;
+	}
+
+	@Test
+	public void cubeShouldHaveSharedVertices() {
+		IndexedMesh mesh = CUBE.toIndexedMesh();
+
+		assertEquals(8, mesh.getVertexCount());
+		assertEquals(12, mesh.getTriangleCount());
+		assertTrue(mesh.isWatertight());
+		assertDoubleEquals(1000.0, meshVolume(mesh));
+	}
+
+	@Test
+	public void booleanResultsShouldBecomeWatertight() {
+		List<CSG> csgs = Arrays.asList(
+				CUBE.union(new Cube(10).move(new Coords3d(5, 3, 0)).toCSG()),
+				CUBE.difference(new Cylinder(20, 2).toCSG()),
+				new Sphere(8).toCSG().difference(new Cube(6).rotate(new Angles3d(10, 20, 30)).toCSG()),
+				CUBE.intersect(new Sphere(6.5).toCSG()));
+
+		for (CSG csg : csgs) {
+			IndexedMesh mesh = csg.toIndexedMesh();
+			assertTrue(mesh.isWatertight());
+			assertDoubleEquals(volume(csg), meshVolume(mesh));
+		}
+	}
+
+	@Test
+	public void nearlyIdenticalVerticesShouldBeWelded() {
+		Coords3d a = new Coords3d(0, 0, 0);
+		Coords3d b = new Coords3d(1, 0, 0);
+		Coords3d c = new Coords3d(0, 1, 0);
+		Coords3d nearB = new Coords3d(1+1e-9, 1e-9, 0);
+		List<Polygon> polygons = Arrays.asList(
+				Polygon.fromPolygons(Arrays.asList(a, b, c), Color.RED),
+				Polygon.fromPolygons(Arrays.asList(c, nearB, new Coords3d(1, 1, 0)), Color.RED));
+
+		assertEquals(4, MeshWelder.weld(polygons, 1e-6).getVertexCount());
+		assertEquals(5, MeshWelder.weld(polygons, 1e-12).getVertexCount());
+	}
+
+	@Test
+	public void tJunctionShouldBeRepaired() {
+		// a big square next to two small ones: the middle vertex of the small squares lies on the big one's edge
+		List<Polygon> polygons = Arrays.asList(
+				square(new Coords3d(0, 0, 0), new Coords3d(2, 0, 0), new Coords3d(2, 2, 0), new Coords3d(0, 2, 0)),
+				square(new Coords3d(2, 0, 0), new Coords3d(3, 0, 0), new Coords3d(3, 1, 0), new Coords3d(2, 1, 0)),
+				square(new Coords3d(2, 1, 0), new Coords3d(3, 1, 0), new Coords3d(3, 2, 0), new Coords3d(2, 2, 0)));
+		IndexedMesh mesh = MeshWelder.weld(polygons, 1e-6);
+
+		assertEquals(8, mesh.getVertexCount());
+		assertEquals(7, mesh.getTriangleCount());
+		for (Facet f : mesh.toFacets()) {
+			List<Coords3d> p = f.getTriangle().getPoints();
+			assertTrue(p.get(1).add(p.get(0).inverse()).cross(p.get(2).add(p.get(0).inverse())).magnitude() > 1e-9);
+		}
+	}
+
+	@Test
+	public void thinLoopWithAVertexOnItsLongSideShouldBeTriangulated() {
+		// clipping the first ear found would leave three vertices on one line and a fourth one next to them
+		List<Polygon> polygons = Arrays.asList(square(new Coords3d(0.001, 7.001, 0), new Coords3d(0, 7.001, 0),
+				new Coords3d(0, 7, 0), new Coords3d(0, 0, 0), new Coords3d(0.001, 0, 0)));
+		IndexedMesh mesh = MeshWelder.weld(polygons, 1e-6);
+
+		assertEquals(3, mesh.getTriangleCount());
+		double area = 0.0;
+		for (Facet f : mesh.toFacets()) {
+			List<Coords3d> p = f.getTriangle().getPoints();
+			area += p.get(1).add(p.get(0).inverse()).cross(p.get(2).add(p.get(0).inverse())).magnitude() / 2.0;
+		}
+		assertDoubleEquals(0.001*7.001, area);
+	}
+
+	@Test(expected = IllegalValueException.class)
+	public void toleranceShouldBePositive() {
+		CUBE.toIndexedMesh(0.0);
+	}
+
+	private static Polygon square(Coords3d... corners) {
+		return Polygon.fromPolygons(Arrays.asList(corners), Color.RED);
+	}
+}
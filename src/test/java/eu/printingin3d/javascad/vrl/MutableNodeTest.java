@@ -0,0 +1,102 @@
+package eu.printingin3d.javascad.vrl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import eu.printingin3d.javascad.basic.Radius;
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.models.Cylinder;
+import eu.printingin3d.javascad.models.Sphere;
+
+public class MutableNodeTest {
+	private static final CsgOptions PARALLEL = CsgOptions.DEFAULT.withParallel(true).withParallelThreshold(0);
+
+	private static final FacetGenerationContext CONTEXT = createContext();
+
+	private static final List<Polygon> SPHERE = new Sphere(Radius.fromRadius(10)).toCSG(CONTEXT).getPolygons();
+	private static final List<Polygon> CYLINDER = new Cylinder(30, Radius.fromRadius(4))
+			.move(new Coords3d(5, 3, 0)).toCSG(CONTEXT).getPolygons();
+
+	private static FacetGenerationContext createContext() {
+		FacetGenerationContext context = new FacetGenerationContext(null, null, 0);
+		context.setFsAndFa(1.0, 20);
+		return context;
+	}
+
+	private static List<List<Vertex>> toVertexes(List<Polygon> polygons) {
+		List<List<Vertex>> result = new ArrayList<>();
+		for (Facet f : new CSG(polygons).toFacets()) {
+			result.add(f.getVertexes());
+		}
+		return result;
+	}
+
+	private static List<Polygon> immutableUnion() {
+		Node a = Node.fromPoligons(SPHERE);
+		Node b = Node.fromPoligons(CYLINDER);
+		a = a.clipTo(b);
+		b = b.clipTo(a);
+		b = b.invert();
+		b = b.clipTo(a);
+		b = b.invert();
+		return a.build(b.allPolygons()).allPolygons();
+	}
+
+	private static List<Polygon> mutableUnion(CsgOptions options) {
+		MutableNode a = MutableNode.fromPolygons(SPHERE, options);
+		MutableNode b = MutableNode.fromPolygons(CYLINDER, options);
+		a.clipTo(b, options);
+		b.clipTo(a, options);
+		b.invert(options);
+		b.clipTo(a, options);
+		b.invert(options);
+		a.build(b.allPolygons(), options);
+		return a.allPolygons();
+	}
+
+	@Test
+	public void emptyListShouldGiveNull() {
+		assertNull(MutableNode.fromPolygons(Collections.<Polygon>emptyList(), CsgOptions.DEFAULT));
+	}
+
+	@Test
+	public void treeShouldContainThePolygonsInTheSameOrderAsTheImmutableTree() {
+		assertEquals(Node.fromPoligons(SPHERE).allPolygons(),
+				MutableNode.fromPolygons(SPHERE, CsgOptions.DEFAULT).allPolygons());
+	}
+
+	@Test
+	public void invertShouldGiveTheSameResultAsTheImmutableTree() {
+		MutableNode node = MutableNode.fromPolygons(CYLINDER, CsgOptions.DEFAULT);
+		node.invert(CsgOptions.DEFAULT);
+
+		assertEquals(toVertexes(Node.fromPoligons(CYLINDER).invert().allPolygons()), 
+				toVertexes(node.allPolygons()));
+	}
+
+	@Test
+	public void inPlaceUnionShouldGiveTheSameResultAsTheImmutableTrees() {
+		assertEquals(toVertexes(immutableUnion()), toVertexes(mutableUnion(CsgOptions.DEFAULT)));
+	}
+
+	@Test
+	public void parallelInPlaceUnionShouldGiveTheSameResultAsTheSerial() {
+		assertEquals(toVertexes(mutableUnion(CsgOptions.DEFAULT)), toVertexes(mutableUnion(PARALLEL)));
+	}
+
+	@Test
+	public void operationsShouldNotModifyTheOperands() {
+		List<Polygon> original = new ArrayList<>(SPHERE);
+		CSG sphere = new CSG(SPHERE);
+		
+		sphere.difference(new CSG(CYLINDER));
+		
+		assertEquals(original, sphere.getPolygons());
+	}
+}
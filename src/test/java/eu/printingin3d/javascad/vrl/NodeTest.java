@@ -0,0 +1,155 @@
+package eu.printingin3d.javascad.vrl;
+
+import static eu.printingin3d.javascad.testutils.AssertEx.assertDoubleEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import eu.printingin3d.javascad.basic.Radius;
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.models.Cylinder;
+import eu.printingin3d.javascad.models.Sphere;
+
+public class NodeTest {
+	private static final CsgOptions PARALLEL = CsgOptions.DEFAULT.withParallel(true).withParallelThreshold(0);
+
+	private static final FacetGenerationContext CONTEXT = createContext();
+
+	private static final CSG SPHERE = new Sphere(Radius.fromRadius(10)).toCSG(CONTEXT);
+	private static final CSG CYLINDER = new Cylinder(30, Radius.fromRadius(4)).move(new Coords3d(5, 3, 0))
+			.toCSG(CONTEXT);
+
+	private static FacetGenerationContext createContext() {
+		FacetGenerationContext context = new FacetGenerationContext(null, null, 0);
+		context.setFsAndFa(1.0, 20);
+		return context;
+	}
+
+	private static List<List<Vertex>> toVertexes(CSG csg) {
+		List<List<Vertex>> result = new ArrayList<>();
+		for (Facet f : csg.toFacets()) {
+			result.add(f.getVertexes());
+		}
+		return result;
+	}
+
+	@Test
+	public void parallelUnionShouldGiveTheSameResultAsSerial() {
+		assertEquals(toVertexes(SPHERE.union(CYLINDER)), toVertexes(SPHERE.union(CYLINDER, PARALLEL)));
+	}
+
+	@Test
+	public void parallelDifferenceShouldGiveTheSameResultAsSerial() {
+		assertEquals(toVertexes(SPHERE.difference(CYLINDER)), toVertexes(SPHERE.difference(CYLINDER, PARALLEL)));
+	}
+
+	@Test
+	public void parallelIntersectShouldGiveTheSameResultAsSerial() {
+		assertEquals(toVertexes(SPHERE.intersect(CYLINDER)), toVertexes(SPHERE.intersect(CYLINDER, PARALLEL)));
+	}
+
+	@Test
+	public void parallelTreeBuildingShouldKeepThePolygonOrder() {
+		List<Polygon> polygons = SPHERE.union(CYLINDER).getPolygons();
+
+		assertEquals(
+				toVertexes(new CSG(Node.fromPoligons(polygons).invert().allPolygons())),
+				toVertexes(new CSG(Node.fromPoligons(polygons, PARALLEL).invert(PARALLEL).allPolygons())));
+	}
+
+	@Test
+	public void firstPolygonSelectionShouldBuildAChainFromConvexObject() {
+		BspStatistics statistics = new BspStatistics();
+		
+		Node.fromPoligons(SPHERE.getPolygons(), CsgOptions.DEFAULT.withStatistics(statistics));
+		
+		assertEquals(SPHERE.getPolygons().size(), statistics.getMaxDepth());
+		assertEquals(SPHERE.getPolygons().size(), statistics.getNodeCount());
+		assertEquals(0, statistics.getFragmentCount());
+	}
+
+	@Test
+	public void balancedPlaneSelectionShouldBuildShallowerTree() {
+		List<Polygon> polygons = SPHERE.difference(CYLINDER).getPolygons();
+		BspStatistics first = new BspStatistics();
+		BspStatistics balanced = new BspStatistics();
+		
+		Node.fromPoligons(polygons, CsgOptions.DEFAULT.withStatistics(first));
+		Node.fromPoligons(polygons, CsgOptions.DEFAULT.withStatistics(balanced)
+				.withPlaneSelection(new BalancedPlaneSelection()));
+		
+		assertTrue(balanced.getMaxDepth() < first.getMaxDepth());
+	}
+
+	@Test
+	public void balancedPlaneSelectionShouldGiveTheSameVolume() {
+		CsgOptions balanced = CsgOptions.DEFAULT.withPlaneSelection(new BalancedPlaneSelection());
+		
+		assertDoubleEquals(CSGTest.volume(SPHERE.union(CYLINDER)), CSGTest.volume(SPHERE.union(CYLINDER, balanced)));
+		assertDoubleEquals(CSGTest.volume(SPHERE.difference(CYLINDER)), 
+				CSGTest.volume(SPHERE.difference(CYLINDER, balanced)));
+		assertDoubleEquals(CSGTest.volume(SPHERE.intersect(CYLINDER)), 
+				CSGTest.volume(SPHERE.intersect(CYLINDER, balanced)));
+	}
+
+	@Test
+	public void statisticsShouldCountTheFragments() {
+		BspStatistics statistics = new BspStatistics();
+		
+		SPHERE.union(CYLINDER, CsgOptions.DEFAULT.withStatistics(statistics));
+		
+		assertTrue(statistics.getFragmentCount() > 0);
+		statistics.reset();
+		assertEquals(0, statistics.getNodeCount());
+		assertEquals(0, statistics.getFragmentCount());
+		assertEquals(0, statistics.getMaxDepth());
+	}
+
+	/**
+	 * Creates squares on the planes x=0..n-1 with normals pointing to +x, so every square is in front of 
+	 * the previous ones and the BSP tree built from them is a chain with the depth of n.
+	 */
+	private static List<Polygon> createParallelSquares(int n) {
+		List<Polygon> polygons = new ArrayList<>();
+		for (int i = 0; i<n; i++) {
+			polygons.add(Polygon.fromPolygons(Arrays.asList(
+					new Coords3d(i, 0, 0), new Coords3d(i, 1, 0), new Coords3d(i, 1, 1), new Coords3d(i, 0, 1)), 
+					Color.BLACK));
+		}
+		return polygons;
+	}
+
+	@Test
+	public void veryDeepTreesShouldBeProcessedWithoutStackOverflow() {
+		int n = 3000;
+		List<Polygon> polygons = createParallelSquares(n);
+		BspStatistics statistics = new BspStatistics();
+		
+		Node node = Node.fromPoligons(polygons, CsgOptions.DEFAULT.withStatistics(statistics));
+		assertEquals(n, statistics.getMaxDepth());
+		assertEquals(polygons, node.allPolygons());
+		
+		Node inverted = node.invert();
+		assertEquals(n, inverted.allPolygons().size());
+		assertEquals(2*n, node.build(polygons).allPolygons().size());
+		// every square is behind the planes of the later squares, only the last one survives
+		assertEquals(polygons.subList(n-1, n), node.clipTo(node).allPolygons());
+		
+		List<Polygon> squares = createParallelSquares(n+1).subList(n-1, n+1);
+		assertEquals(squares, node.clipPolygons(squares));
+	}
+
+	@Test
+	public void detailedObjectsShouldBeCombinedWithoutStackOverflow() {
+		CSG sphere = new Sphere(Radius.fromRadius(10)).toCSG();
+		CSG other = new Sphere(Radius.fromRadius(10)).move(new Coords3d(5, 0, 0)).toCSG();
+		
+		assertTrue(CSGTest.volume(sphere.union(other)) > CSGTest.volume(sphere));
+	}
+}
@@ -0,0 +1,56 @@
+package eu.printingin3d.javascad.vrl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import eu.printingin3d.javascad.coords.Coords3d;
+
+public class OrientationPredicateTest {
+	private static final OrientationPredicate XY_PLANE = OrientationPredicate.fromVertices(Arrays.asList(
+			new Coords3d(0, 0, 0), new Coords3d(1, 0, 0), new Coords3d(0, 1, 0)));
+
+	@Test
+	public void shouldClassifyTheVerticesFarFromThePlane() {
+		assertEquals(VertexPosition.FRONT, XY_PLANE.classify(new Coords3d(3, 4, 1)));
+		assertEquals(VertexPosition.BACK, XY_PLANE.classify(new Coords3d(3, 4, -1)));
+		assertEquals(VertexPosition.COPLANAR, XY_PLANE.classify(new Coords3d(3, 4, 0)));
+	}
+
+	@Test
+	public void shouldUseTheToleranceOfVertexPosition() {
+		assertEquals(VertexPosition.COPLANAR, XY_PLANE.classify(new Coords3d(3, 4, 0.9e-6)));
+		assertEquals(VertexPosition.COPLANAR, XY_PLANE.classify(new Coords3d(3, 4, -0.9e-6)));
+		assertEquals(VertexPosition.FRONT, XY_PLANE.classify(new Coords3d(3, 4, 1.1e-6)));
+		assertEquals(VertexPosition.BACK, XY_PLANE.classify(new Coords3d(3, 4, -1.1e-6)));
+	}
+
+	@Test
+	public void shouldDecideExactlyOnTheBorderOfTheTolerance() {
+		assertEquals(VertexPosition.COPLANAR, XY_PLANE.classify(new Coords3d(1e8, 1e8, VertexPosition.EPSILON)));
+		assertEquals(VertexPosition.FRONT, XY_PLANE.classify(
+				new Coords3d(1e8, 1e8, Math.nextUp(VertexPosition.EPSILON))));
+	}
+
+	@Test
+	public void shouldWorkFarFromTheOrigin() {
+		double far = 1e7;
+		OrientationPredicate plane = OrientationPredicate.fromVertices(Arrays.asList(
+				new Coords3d(far, far, far), new Coords3d(far+1, far, far+1), new Coords3d(far, far+1, far+1)));
+		
+		assertEquals(VertexPosition.COPLANAR, plane.classify(new Coords3d(far+1, far+1, far+2)));
+		assertEquals(VertexPosition.FRONT, plane.classify(new Coords3d(far+1, far+1, far+2.001)));
+		assertEquals(VertexPosition.BACK, plane.classify(new Coords3d(far+1, far+1, far+1.999)));
+	}
+
+	@Test
+	public void collinearFirstVerticesShouldNotMatter() {
+		OrientationPredicate plane = OrientationPredicate.fromVertices(Arrays.asList(
+				new Coords3d(0, 0, 0), new Coords3d(0.5, 0, 0), new Coords3d(1, 0, 0), new Coords3d(0, 1, 0)));
+		
+		assertEquals(VertexPosition.FRONT, plane.classify(new Coords3d(3, 4, 1)));
+		assertEquals(VertexPosition.COPLANAR, plane.classify(new Coords3d(3, 4, 0)));
+	}
+}
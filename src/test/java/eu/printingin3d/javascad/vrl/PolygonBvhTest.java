@@ -0,0 +1,92 @@
+package eu.printingin3d.javascad.vrl;
+
+import static eu.printingin3d.javascad.testutils.AssertEx.assertDoubleEquals;
+import static eu.printingin3d.javascad.vrl.CSGTest.volume;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.models.Cube;
+import eu.printingin3d.javascad.models.Cylinder;
+
+public class PolygonBvhTest {
+	private static final CSG CUBE = new Cube(10).toCSG();
+
+	private static CSG grid() {
+		List<CSG> cubes = new ArrayList<>();
+		for (int i = 0; i<10; i++) {
+			for (int j = 0; j<10; j++) {
+				cubes.add(new Cube(1).move(new Coords3d(i*3, j*3, 0)).toCSG());
+			}
+		}
+		return CSG.unionAll(cubes, CsgOptions.DEFAULT);
+	}
+
+	@Test
+	public void emptyMeshShouldNotOverlapAnything() {
+		PolygonBvh bvh = new PolygonBvh(PolygonMesh.EMPTY);
+
+		assertEquals(0, bvh.size());
+		assertFalse(bvh.overlaps(new double[] {0, 0, 0, 1, 1, 1}, 1.0));
+	}
+
+	@Test
+	public void boxShouldOverlapOnlyNearTheSurface() {
+		PolygonBvh bvh = grid().getBvh();
+
+		assertEquals(600, bvh.size());
+		assertTrue(bvh.overlaps(new double[] {0.4, 0.4, 0.4, 0.6, 0.6, 0.6}, 0.0));
+		assertTrue(bvh.overlaps(new double[] {26.5, 26.5, -0.5, 26.5, 26.5, -0.5}, 0.0));
+		// inside the first cube, but not near its faces
+		assertFalse(bvh.overlaps(new double[] {-0.1, -0.1, -0.1, 0.1, 0.1, 0.1}, 0.0));
+		// between the cubes
+		assertFalse(bvh.overlaps(new double[] {1.0, 1.0, -1.0, 2.0, 2.0, 1.0}, 0.0));
+		assertTrue(bvh.overlaps(new double[] {1.0, 1.0, -1.0, 2.0, 2.0, 1.0}, 0.5));
+		assertFalse(bvh.overlaps(new double[] {100, 100, 100, 101, 101, 101}, 1.0));
+	}
+
+	@Test
+	public void bvhShouldBeBuiltOnlyOnce() {
+		CSG csg = grid();
+
+		assertSame(csg.getBvh(), csg.getBvh());
+	}
+
+	@Test
+	public void cullingShouldGiveTheSameVolumeWithLessFragments() {
+		CSG grid = grid();
+		CSG tool = new Cylinder(4, 8).move(new Coords3d(10, 10, 0)).toCSG();
+		BspStatistics withCulling = new BspStatistics();
+		BspStatistics withoutCulling = new BspStatistics();
+
+		CSG culled = grid.difference(tool, CsgOptions.DEFAULT.withStatistics(withCulling));
+		CSG notCulled = grid.difference(tool,
+				CsgOptions.DEFAULT.withBvhCulling(false).withStatistics(withoutCulling));
+
+		assertDoubleEquals(volume(notCulled), volume(culled));
+		assertTrue(withCulling.getCulledPolygonCount()>0);
+		assertEquals(0, withoutCulling.getCulledPolygonCount());
+		assertTrue(withCulling.getFragmentCount()<withoutCulling.getFragmentCount());
+		assertTrue(culled.getPolygons().size()<notCulled.getPolygons().size());
+	}
+
+	@Test
+	public void cullingShouldKeepTheResultOfTheOperations() {
+		CSG other = new Cube(10).move(new Coords3d(5, 3, 2)).toCSG();
+		CSG grid = grid();
+		CsgOptions noCulling = CsgOptions.DEFAULT.withBvhCulling(false);
+
+		assertDoubleEquals(volume(CUBE.union(other, noCulling)), volume(CUBE.union(other)));
+		assertDoubleEquals(volume(grid.difference(other, noCulling)), volume(grid.difference(other)));
+		assertDoubleEquals(volume(grid.intersect(CUBE, noCulling)), volume(grid.intersect(CUBE)));
+		assertDoubleEquals(volume(CUBE.difference(grid, noCulling.withBoundsPartitioning(false))),
+				volume(CUBE.difference(grid, CsgOptions.DEFAULT.withBoundsPartitioning(false))));
+	}
+}
@@ -0,0 +1,112 @@
+package eu.printingin3d.javascad.vrl;
+
+import static eu.printingin3d.javascad.testutils.AssertEx.assertDoubleEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import eu.printingin3d.javascad.coords.Boundaries3d;
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.models.Cube;
+
+public class PolygonMeshTest {
+	private static final Polygon TRIANGLE = Polygon.fromPolygons(Arrays.asList(
+			new Coords3d(0, 0, 0), new Coords3d(1, 0, 0), new Coords3d(0, 1, 0)), Color.RED);
+	private static final Polygon SQUARE = Polygon.fromPolygons(Arrays.asList(
+			new Coords3d(0, 0, 5), new Coords3d(0, 2, 5), new Coords3d(2, 2, 5), new Coords3d(2, 0, 5)), 
+			Color.BLUE);
+
+	@Test
+	public void emptyMeshShouldBeEmpty() {
+		assertEquals(0, PolygonMesh.EMPTY.size());
+		assertEquals(0, PolygonMesh.EMPTY.getVertexCount());
+		assertSame(Boundaries3d.EMPTY, PolygonMesh.EMPTY.getBoundaries());
+	}
+
+	private static void assertPolygonEquals(Polygon expected, Polygon actual) {
+		assertEquals(expected.getVertices(), actual.getVertices());
+		assertEquals(expected.getNormal(), actual.getNormal());
+		assertDoubleEquals(expected.getDist(), actual.getDist());
+		assertEquals(expected.getColor(), actual.getColor());
+	}
+
+	private static PolygonMesh writeAndRead(PolygonMesh mesh) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		mesh.write(new DataOutputStream(bytes));
+		return PolygonMesh.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+	}
+
+	@Test
+	public void polygonsShouldBeKeptByTheMesh() {
+		PolygonMesh mesh = PolygonMesh.fromPolygons(Arrays.asList(TRIANGLE, SQUARE));
+		
+		assertSame(TRIANGLE, mesh.getPolygon(0));
+		assertSame(SQUARE, mesh.getPolygon(1));
+	}
+
+	@Test
+	public void polygonsShouldBeRecreatedFromTheArrays() throws IOException {
+		PolygonMesh mesh = writeAndRead(PolygonMesh.fromPolygons(Arrays.asList(TRIANGLE, SQUARE)));
+		
+		assertEquals(2, mesh.size());
+		assertEquals(7, mesh.getVertexCount());
+		List<Polygon> polygons = mesh.toPolygons();
+		assertEquals(2, polygons.size());
+		assertNotSame(TRIANGLE, polygons.get(0));
+		assertPolygonEquals(TRIANGLE, polygons.get(0));
+		assertPolygonEquals(SQUARE, polygons.get(1));
+	}
+
+	@Test
+	public void recreatedPolygonsShouldBeKept() throws IOException {
+		PolygonMesh mesh = writeAndRead(PolygonMesh.fromPolygons(Arrays.asList(TRIANGLE, SQUARE)));
+		
+		assertSame(mesh.getPolygon(1), mesh.getPolygon(1));
+	}
+
+	@Test
+	public void copiedPolygonsShouldShareTheCreatedObjects() throws IOException {
+		PolygonMesh mesh = writeAndRead(PolygonMesh.fromPolygons(Arrays.asList(TRIANGLE, SQUARE)));
+		Polygon square = mesh.getPolygon(1);
+		
+		PolygonMesh copy = new PolygonMesh.Builder().add(mesh, 1).addAll(mesh).build();
+		
+		assertEquals(3, copy.size());
+		assertSame(square, copy.getPolygon(0));
+		assertSame(square, copy.getPolygon(2));
+		assertPolygonEquals(TRIANGLE, copy.getPolygon(1));
+	}
+
+	@Test
+	public void boundariesShouldBeCalculatedFromTheArrays() {
+		Boundaries3d b = PolygonMesh.fromPolygons(Arrays.asList(TRIANGLE, SQUARE)).getBoundaries();
+		
+		assertDoubleEquals(0.0, b.getX().getMin());
+		assertDoubleEquals(2.0, b.getX().getMax());
+		assertDoubleEquals(0.0, b.getY().getMin());
+		assertDoubleEquals(2.0, b.getY().getMax());
+		assertDoubleEquals(0.0, b.getZ().getMin());
+		assertDoubleEquals(5.0, b.getZ().getMax());
+	}
+
+	@Test
+	public void csgCreatedFromMeshShouldGiveTheSamePolygons() {
+		CSG cube = new Cube(10).toCSG();
+		CSG fromMesh = new CSG(PolygonMesh.fromPolygons(cube.getPolygons()));
+		
+		assertEquals(CSGTest.vertices(cube), CSGTest.vertices(fromMesh));
+		assertDoubleEquals(CSGTest.volume(cube.difference(new Cube(2).toCSG())), 
+				CSGTest.volume(fromMesh.difference(new Cube(2).toCSG())));
+	}
+}
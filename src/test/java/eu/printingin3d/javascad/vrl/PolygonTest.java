@@ -2,6 +2,7 @@ package eu.printingin3d.javascad.vrl;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.awt.Color;
 import java.util.ArrayList;
@@ -12,7 +13,10 @@ import java.util.stream.Collectors;
 
 import org.junit.Test;
 
+import eu.printingin3d.javascad.coords.Abstract3d;
+import eu.printingin3d.javascad.coords.Angles3d;
 import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.exceptions.IllegalValueException;
 import eu.printingin3d.javascad.testutils.RandomUtils;
 import eu.printingin3d.javascad.tranform.TransformationFactory;
 import eu.printingin3d.javascad.tranzitions.Direction;
@@ -89,6 +93,41 @@ public class PolygonTest {
 		assertEquals(new Coords3d(0, 0, -1), f.getNormal());
 	}
 	
+	private static Polygon startingWithCollinearVertices() {
+		return Polygon.fromPlane(Arrays.asList(
+				new Coords3d(0, 0, 0),
+				new Coords3d(50, 0, 0),
+				new Coords3d(100, 0, 0),
+				new Coords3d(100, 100, 0),
+				new Coords3d(0, 100, 0)), Coords3d.Z, 0.0, Color.BLACK);
+	}
+	
+	@Test
+	public void transformedPolygonShouldKeepItsPlaneEvenIfTheFirstVerticesAreCollinear() {
+		Polygon p = startingWithCollinearVertices().transformed(
+				TransformationFactory.getRotationAndTranslationMatrix(new Angles3d(90, 0, 0), new Coords3d(0, 0, 5)));
+		
+		assertTrue(Abstract3d.closeEquals(new Coords3d(0, -1, 0), p.getNormal()));
+		assertEquals(0.0, p.getDist(), 1e-9);
+	}
+	
+	@Test
+	public void splitFragmentsShouldKeepThePlaneOfTheSplitPolygon() {
+		Polygon plane = Polygon.fromPolygons(Arrays.asList(
+				new Coords3d(75, 0, 0), 
+				new Coords3d(75, 100, 0), 
+				new Coords3d(75, 0, 100)), Color.BLACK);
+		List<Polygon> front = new ArrayList<>();
+		List<Polygon> back = new ArrayList<>();
+		
+		plane.splitPolygon(startingWithCollinearVertices(), null, null, front, back);
+		
+		assertEquals(1, front.size());
+		assertEquals(1, back.size());
+		assertEquals(Coords3d.Z, front.get(0).getNormal());
+		assertEquals(Coords3d.Z, back.get(0).getNormal());
+	}
+	
 	@Test
 	public void splitFrontPolygon() {
 		Polygon p = Polygon.fromPolygons(POINTS, Color.BLACK);
@@ -225,4 +264,43 @@ public class PolygonTest {
 		assertEquals("c1", c1, l.get(1));
 		assertEquals("c2", c2, l.get(2));
 	}
+
+	private static final List<Coords3d> NOT_COPLANAR = Arrays.asList(POINT_1, POINT_2, POINT_3, new Coords3d(0, 100, 1));
+
+	@Test(expected = IllegalValueException.class)
+	public void publicFactoryShouldCheckCoplanarity() {
+		Polygon.fromPolygons(NOT_COPLANAR, Color.BLACK);
+	}
+
+	@Test
+	public void enginePolygonsShouldNotBeCheckedByDefault() {
+		assertFalse(Polygon.isDebugChecks());
+		
+		Polygon p = Polygon.fromPlane(NOT_COPLANAR, Coords3d.Z, 0.0, Color.BLACK);
+		
+		assertEquals(4, p.flip().getVertices().size());
+	}
+
+	@Test(expected = IllegalValueException.class)
+	public void debugChecksShouldCheckEnginePolygons() {
+		Polygon.setDebugChecks(true);
+		try {
+			Polygon.fromPlane(NOT_COPLANAR, Coords3d.Z, 0.0, Color.BLACK);
+		}
+		finally {
+			Polygon.setDebugChecks(false);
+		}
+	}
+
+	@Test(expected = IllegalValueException.class)
+	public void debugChecksShouldCheckFlippedPolygons() {
+		Polygon p = Polygon.fromPlane(NOT_COPLANAR, Coords3d.Z, 0.0, Color.BLACK);
+		Polygon.setDebugChecks(true);
+		try {
+			p.flip();
+		}
+		finally {
+			Polygon.setDebugChecks(false);
+		}
+	}
 }
@@ -0,0 +1,127 @@
+package eu.printingin3d.javascad.vrl;
+
+import static eu.printingin3d.javascad.vrl.CSGTest.vertices;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import eu.printingin3d.javascad.basic.Radius;
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.exceptions.IllegalValueException;
+import eu.printingin3d.javascad.exceptions.RenderAbortedException;
+import eu.printingin3d.javascad.exceptions.RenderAbortedException.Reason;
+import eu.printingin3d.javascad.models.Abstract3dModel;
+import eu.printingin3d.javascad.models.Cube;
+import eu.printingin3d.javascad.models.Sphere;
+import eu.printingin3d.javascad.tranzitions.Difference;
+import eu.printingin3d.javascad.tranzitions.Union;
+
+public class RenderHandleTest {
+	private static final CSG SPHERE = new Sphere(Radius.fromRadius(10)).toCSG();
+	private static final CSG CUBE = new Cube(12).move(new Coords3d(5, 5, 5)).toCSG();
+
+	private static CSG difference(RenderHandle handle) {
+		return SPHERE.difference(CUBE, CsgOptions.DEFAULT.withRenderHandle(handle));
+	}
+
+	private static void assertAborted(RenderHandle handle, Reason reason) {
+		try {
+			difference(handle);
+			fail("The rendering should have been stopped");
+		}
+		catch (RenderAbortedException e) {
+			assertEquals(reason, e.getReason());
+			assertEquals(reason, handle.getAbortReason());
+		}
+	}
+
+	@Test
+	public void handleShouldNotChangeTheResult() {
+		List<Long> processed = new ArrayList<>();
+		RenderHandle handle = new RenderHandle()
+			.setTimeout(1, TimeUnit.HOURS)
+			.setPolygonBudget(Long.MAX_VALUE)
+			.setProgressListener((processedPolygons, depth) -> {
+				assertTrue(depth>=1);
+				processed.add(processedPolygons);
+			});
+
+		CSG result = difference(handle);
+
+		assertEquals(vertices(SPHERE.difference(CUBE)), vertices(result));
+		assertEquals(null, handle.getAbortReason());
+		assertEquals(handle.getProcessedPolygons(), processed.get(processed.size()-1).longValue());
+		for (int i=1;i<processed.size();i++) {
+			assertTrue(processed.get(i-1)<processed.get(i));
+		}
+		assertTrue(handle.getMaxDepth()>1);
+	}
+
+	@Test
+	public void cancelledRenderingShouldFailFast() {
+		RenderHandle handle = new RenderHandle();
+		handle.cancel();
+
+		assertAborted(handle, Reason.CANCELLED);
+		assertEquals(0, handle.getProcessedPolygons());
+	}
+
+	@Test
+	public void renderingCancelledDuringTheOperationShouldStop() {
+		RenderHandle handle = new RenderHandle();
+		handle.setProgressListener((processedPolygons, depth) -> handle.cancel());
+
+		assertAborted(handle, Reason.CANCELLED);
+		assertAborted(handle, Reason.CANCELLED);
+	}
+
+	@Test
+	public void renderingShouldStopAfterTheDeadline() throws InterruptedException {
+		RenderHandle handle = new RenderHandle().setTimeout(0, TimeUnit.MILLISECONDS);
+		Thread.sleep(2);
+
+		assertAborted(handle, Reason.DEADLINE_EXCEEDED);
+	}
+
+	@Test
+	public void renderingShouldStopWhenTheBudgetIsExceeded() {
+		RenderHandle handle = new RenderHandle().setPolygonBudget(100);
+
+		assertAborted(handle, Reason.POLYGON_BUDGET_EXCEEDED);
+		assertTrue(handle.getProcessedPolygons()>100);
+	}
+
+	@Test
+	public void parallelModelRenderingShouldBeStopped() {
+		List<Abstract3dModel> parts = new ArrayList<>();
+		for (int i=0;i<8;i++) {
+			parts.add(new Difference(new Sphere(Radius.fromRadius(10)), new Cube(12)).move(new Coords3d(i*5, 0, 0)));
+		}
+		RenderHandle handle = new RenderHandle().setPolygonBudget(1000);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		FacetGenerationContext context = new FacetGenerationContext(null, null, 0);
+		context.setCsgOptions(CsgOptions.DEFAULT.withParallel(true).withRenderPool(pool).withRenderHandle(handle));
+		try {
+			new Union(parts).toCSG(context);
+			fail("The rendering should have been stopped");
+		}
+		catch (RenderAbortedException e) {
+			assertEquals(Reason.POLYGON_BUDGET_EXCEEDED, e.getReason());
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test(expected = IllegalValueException.class)
+	public void negativeBudgetShouldBeRejected() {
+		new RenderHandle().setPolygonBudget(-1);
+	}
+}
@@ -0,0 +1,63 @@
+package eu.printingin3d.javascad.vrl;
+
+import eu.printingin3d.javascad.basic.Radius;
+import eu.printingin3d.javascad.coords.Angles3d;
+import eu.printingin3d.javascad.coords.Coords3d;
+import eu.printingin3d.javascad.models.Cube;
+import eu.printingin3d.javascad.models.Cylinder;
+import eu.printingin3d.javascad.models.Sphere;
+
+/**
+ * Compares the default and the robust mode of the BSP engine on a sphere/cylinder union minus a rotated
+ * cube, placed farther and farther from the origin. For both modes it prints the average time of a run,
+ * the number of fragments created by the splitting and the number of polygons in the result - or the
+ * error if the evaluation fails. It is not part of the test suite, run it by its main method.
+ */
+public final class RobustModeBenchmark {
+	private static final double[] OFFSETS = {0, 1e2, 1e4, 1e5, 1e6, 1e7};
+	private static final int WARMUP = 10;
+	private static final int RUNS = 10;
+
+	private RobustModeBenchmark() {
+		// prevents creating this class
+	}
+
+	public static void main(String[] args) {
+		for (double offset : OFFSETS) {
+			Coords3d o = new Coords3d(offset, offset, offset);
+			CSG sphere = new Sphere(Radius.fromRadius(10)).move(o).toCSG();
+			CSG cylinder = new Cylinder(30, Radius.fromRadius(4)).rotate(new Angles3d(30, 20, 10))
+					.move(o.add(new Coords3d(5, 3, 0))).toCSG();
+			CSG cube = new Cube(12).rotate(new Angles3d(10, 40, 5)).move(o.add(new Coords3d(-4, 1, 2))).toCSG();
+			for (boolean robust : new boolean[] {false, true}) {
+				System.out.println(String.format("offset=%.0e robust=%-5b %s", Double.valueOf(offset),
+						Boolean.valueOf(robust), measure(sphere, cylinder, cube, robust)));
+			}
+		}
+	}
+
+	private static String measure(CSG sphere, CSG cylinder, CSG cube, boolean robust) {
+		try {
+			for (int i = 0; i<WARMUP; i++) {
+				evaluate(sphere, cylinder, cube, CsgOptions.DEFAULT.withRobust(robust));
+			}
+			BspStatistics statistics = new BspStatistics();
+			CsgOptions options = CsgOptions.DEFAULT.withRobust(robust).withStatistics(statistics);
+			int polygons = 0;
+			long start = System.nanoTime();
+			for (int i = 0; i<RUNS; i++) {
+				polygons = evaluate(sphere, cylinder, cube, options);
+			}
+			double millis = (System.nanoTime()-start) / 1e6 / RUNS;
+			return String.format("%8.1f ms/run fragments=%d polygons=%d", Double.valueOf(millis),
+					Long.valueOf(statistics.getFragmentCount() / RUNS), Integer.valueOf(polygons));
+		}
+		catch (RuntimeException e) {
+			return "failed: " + e.getMessage();
+		}
+	}
+
+	private static int evaluate(CSG sphere, CSG cylinder, CSG cube, CsgOptions options) {
+		return sphere.union(cylinder, options).difference(cube, options).getPolygons().size();
+	}
+}
@@ -0,0 +1,52 @@
+package eu.printingin3d.javascad.vrl.export;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import eu.printingin3d.javascad.models.Cube;
+import eu.printingin3d.javascad.vrl.IndexedMesh;
+
+public class IndexedMeshExportTest {
+	private static final IndexedMesh CUBE = new Cube(10).toCSG().toIndexedMesh();
+
+	@Test
+	public void stlShouldContainEveryTriangle() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (StlBinaryFile file = new StlBinaryFile(out)) {
+			file.writeToFile(CUBE);
+		}
+
+		assertEquals(84 + 12*50, out.size());
+	}
+
+	@Test
+	public void stlShouldBeTheSameAsTheExportOfTheFacets() throws IOException {
+		ByteArrayOutputStream direct = new ByteArrayOutputStream();
+		try (StlBinaryFile file = new StlBinaryFile(direct)) {
+			file.writeToFile(CUBE);
+		}
+		ByteArrayOutputStream facets = new ByteArrayOutputStream();
+		try (StlBinaryFile file = new StlBinaryFile(facets)) {
+			file.writeToFile(CUBE.toFacets());
+		}
+
+		assertEquals(facets.toString("ISO-8859-1"), direct.toString("ISO-8859-1"));
+	}
+
+	@Test
+	public void plyShouldUseTheSharedVertices() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (PolygonFile file = new PolygonFile(out)) {
+			file.writeToFile(CUBE);
+		}
+
+		String content = out.toString("UTF-8");
+		assertTrue(content.contains("element vertex 8"));
+		assertTrue(content.contains("element face 12"));
+	}
+}